@@ -1,7 +1,12 @@
 package james;
 
+import java.io.File;
+import java.util.Arrays;
+
 import james.command.Command;
 import james.exception.JamesException;
+import james.storage.RecoveryScanner;
+import james.storage.StorageEngine;
 
 /**
  * Represents the main logic of the James chatbot application.
@@ -10,6 +15,8 @@ import james.exception.JamesException;
  */
 public class James {
 
+    /** The command line option that turns on watching the data file for edits by other programs. */
+    public static final String WATCH_OPTION = "--watch";
     private static final String DEFAULT_FILE_PATH = "./data/tasks.txt";
 
     private Storage storage;
@@ -28,6 +35,20 @@ public class James {
         verifyInitialization();
     }
 
+    /**
+     * Initializes the James application with a specific storage backend,
+     * e.g. an in-memory engine for benchmarks and tests.
+     *
+     * @param engine The engine the tasks are loaded from and saved to.
+     */
+    public James(StorageEngine engine) {
+        assert engine != null : "Storage engine cannot be null";
+        this.storage = new Storage(engine);
+        this.ui = new Ui();
+        loadTasksSafely();
+        verifyInitialization();
+    }
+
     /**
      * Validates that the provided constructor parameters are acceptable.
      *
@@ -58,16 +79,63 @@ public class James {
     /**
      * Attempts to load existing tasks from storage.
      * If an error occurs during loading, an error message is shown and a new list is created.
+     * If some records had to be quarantined, the recovery counts are shown.
      */
     private void loadTasksSafely() {
         try {
             this.tasks = this.storage.loadTasks();
+            RecoveryScanner recovery = this.storage.getLastRecovery();
+            if (recovery != null && recovery.hasQuarantinedLines()) {
+                this.ui.showRecoverySummary(recovery.getSummary());
+            }
         } catch (JamesException e) {
             this.ui.showJamesError(e);
             this.tasks = new TaskList();
         }
     }
 
+    /**
+     * Starts noticing edits other programs make to the data file while James is running, which are then
+     * merged before each command. Watching is off unless this is called, as it keeps a hash of every record.
+     * If the file cannot be watched, James keeps running without it.
+     */
+    public void watchDataFile() {
+        try {
+            this.storage.startWatching(this.tasks);
+        } catch (JamesException e) {
+            this.ui.showJamesError(e);
+        }
+    }
+
+    /**
+     * Merges edits made to the data file by other programs since the last command,
+     * so the next command works on, and saves, the latest tasks. Edited records that were put aside are reported.
+     */
+    private void applyExternalChanges() {
+        try {
+            int changedCount = this.storage.applyExternalChanges(this.tasks);
+            if (changedCount > 0) {
+                this.ui.showExternalChanges(changedCount);
+            }
+            RecoveryScanner recovery = this.storage.takeExternalRecovery();
+            if (recovery != null) {
+                this.ui.showRecoverySummary(recovery.getSummary());
+            }
+        } catch (JamesException e) {
+            this.ui.showJamesError(e);
+        }
+    }
+
+    /**
+     * Tells the user if the last command's save overwrote an edit made by another program meanwhile.
+     */
+    private void reportSaveConflict() {
+        File conflictFile = this.storage.takeConflictFile();
+        if (conflictFile != null) {
+            this.ui.showSaveConflict(conflictFile.getPath());
+        }
+    }
+
     /**
      * Processes a single input string and returns a response.
      * Primarily used as the interface for GUI-based interactions.
@@ -79,8 +147,10 @@ public class James {
         verifyGetResponseState(input);
 
         try {
+            applyExternalChanges();
             Command command = Parser.parseCommand(input, this.tasks);
             command.execute(this.tasks, this.ui, this.storage);
+            reportSaveConflict();
             return this.ui.getAndClearResponse();
         } catch (JamesException e) {
             return e.getMessage();
@@ -156,8 +226,10 @@ public class James {
      */
     private boolean executeUserCommand(String fullCommand) {
         try {
+            applyExternalChanges();
             Command command = Parser.parseCommand(fullCommand, this.tasks);
             command.execute(this.tasks, this.ui, this.storage);
+            reportSaveConflict();
             this.ui.getAndClearResponse();
             return command.isExit();
         } catch (JamesException e) {
@@ -171,9 +243,13 @@ public class James {
     /**
      * Main entry point for the terminal application.
      *
-     * @param args Command line arguments (not used).
+     * @param args Command line arguments; {@value #WATCH_OPTION} watches the data file for external edits.
      */
     public static void main(String[] args) {
-        new James(DEFAULT_FILE_PATH).run();
+        James james = new James(DEFAULT_FILE_PATH);
+        if (Arrays.asList(args).contains(WATCH_OPTION)) {
+            james.watchDataFile();
+        }
+        james.run();
     }
 }
@@ -1,17 +1,22 @@
 package james;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
 
+import james.command.AgendaCommand;
+import james.command.ArchiveCommand;
 import james.command.Command;
 import james.command.CreateTaskCommand;
 import james.command.DeleteTaskCommand;
+import james.command.DueCommand;
+import james.command.FilterCommand;
 import james.command.FindTaskCommand;
 import james.command.ListCommand;
 import james.command.MarkCommand;
+import james.command.SyncCommand;
 import james.command.TagTaskCommand;
 import james.command.TerminateProgramCommand;
 import james.command.UnmarkCommand;
@@ -20,10 +25,10 @@ import james.exception.InvalidFormatException;
 import james.exception.InvalidNumberException;
 import james.exception.JamesException;
 import james.exception.UnknownCommandException;
-import james.task.Deadline;
+import james.index.TagFilter;
+import james.storage.RecordScanner;
 import james.task.Event;
 import james.task.Task;
-import james.task.Todo;
 
 /**
  * Deals with making sense of the user command and translating it into program actions.
@@ -37,20 +42,14 @@ public class Parser {
      * Represents the specific command types supported by the application.
      */
     private enum CommandType {
-        BYE, MARK, UNMARK, DELETE, TODO, DEADLINE, EVENT, LIST, FIND, TAG
+        BYE, MARK, UNMARK, DELETE, TODO, DEADLINE, EVENT, LIST, FIND, FILTER, DUE, OVERDUE, AGENDA, TAG, ARCHIVE, SYNC
     }
 
     private static final String SEP_BY = " /by ";
     private static final String SEP_FROM = " /from ";
     private static final String SEP_TO = " /to ";
-    private static final String SEP_STORAGE = " \\| ";
-    private static final String SEP_TAG = " /#";
-    private static final String DATE_PATTERN = "yyyy-MM-dd";
-
-    private static final String TYPE_TODO = "T";
-    private static final String TYPE_DEADLINE = "D";
-    private static final String TYPE_EVENT = "E";
-    private static final String STATUS_DONE = "1";
+    private static final String FLAG_ARCHIVED = "/archived";
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     /**
      * Parses a raw input string into an executable Command object.
@@ -87,11 +86,23 @@ public class Parser {
         case EVENT:
             return handleEvent(arguments);
         case LIST:
-            return new ListCommand();
+            return new ListCommand(arguments.trim().equals(FLAG_ARCHIVED));
         case FIND:
-            return new FindTaskCommand(arguments);
+            return handleFind(arguments);
+        case FILTER:
+            return handleFilter(arguments);
+        case DUE:
+            return handleDue(arguments);
+        case OVERDUE:
+            return new DueCommand();
+        case AGENDA:
+            return handleAgenda(arguments);
         case TAG:
             return handleTagging(arguments, tasks);
+        case ARCHIVE:
+            return new ArchiveCommand();
+        case SYNC:
+            return handleSync(arguments);
         default:
             throw new UnknownCommandException(fullCommand);
         }
@@ -138,6 +149,89 @@ public class Parser {
         }
     }
 
+    /**
+     * Creates a find command, which searches the archive if the keyword is preceded by "/archived".
+     *
+     * @param arguments The keyword, optionally preceded by "/archived ".
+     * @return The FindTaskCommand.
+     */
+    private static Command handleFind(String arguments) {
+        if (arguments.startsWith(FLAG_ARCHIVED + " ")) {
+            return new FindTaskCommand(arguments.substring(FLAG_ARCHIVED.length() + 1), true);
+        }
+        return new FindTaskCommand(arguments);
+    }
+
+    /**
+     * Creates a filter command from a tag query such as "#work #urgent or #home not #done".
+     *
+     * @param arguments The tag query.
+     * @return The FilterCommand.
+     * @throws JamesException If the query is empty or is not a valid tag query.
+     */
+    private static Command handleFilter(String arguments) throws JamesException {
+        if (arguments.trim().isEmpty()) {
+            throw new EmptyDescriptionException("filter");
+        }
+        return new FilterCommand(TagFilter.parse(arguments));
+    }
+
+    /**
+     * Creates a due command for the deadlines due up to a date, or between two dates given as
+     * "[from] /to [to]".
+     *
+     * @param arguments The last date, or the first and the last date.
+     * @return The DueCommand.
+     * @throws InvalidFormatException If a date is invalid or the range ends before it starts.
+     */
+    private static Command handleDue(String arguments) throws InvalidFormatException {
+        String[] parts = arguments.trim().split(SEP_TO, 2);
+        if (parts.length < 2) {
+            return new DueCommand(null, parseDate(parts[0]));
+        }
+        LocalDate from = parseDate(parts[0].trim());
+        LocalDate to = parseDate(parts[1].trim());
+        if (to.isBefore(from)) {
+            throw InvalidFormatException.forDateRange();
+        }
+        return new DueCommand(from, to);
+    }
+
+    /**
+     * Creates an agenda command for the events taking place between two times given as "[from] /to [to]".
+     * A date without a time of day stands for the whole day.
+     *
+     * @param arguments The start and the end of the range.
+     * @return The AgendaCommand.
+     * @throws InvalidFormatException If a time is not a date or the range ends before it starts.
+     */
+    private static Command handleAgenda(String arguments) throws InvalidFormatException {
+        String[] parts = arguments.trim().split(SEP_TO, 2);
+        if (parts.length < 2) {
+            throw InvalidFormatException.forAgenda();
+        }
+        LocalDateTime from = Event.parseTime(parts[0], false);
+        LocalDateTime to = Event.parseTime(parts[1], true);
+        if (from == null || to == null || to.isBefore(from)) {
+            throw InvalidFormatException.forAgenda();
+        }
+        return new AgendaCommand(from, to);
+    }
+
+    /**
+     * Creates a sync command for the data directory given as the argument.
+     *
+     * @param arguments The other data directory, or its data file.
+     * @return The SyncCommand.
+     * @throws EmptyDescriptionException If no directory is given.
+     */
+    private static Command handleSync(String arguments) throws EmptyDescriptionException {
+        if (arguments.trim().isEmpty()) {
+            throw new EmptyDescriptionException("sync");
+        }
+        return new SyncCommand(arguments.trim());
+    }
+
     /**
      * Handles commands that tags the task.
      *
@@ -234,7 +328,7 @@ public class Parser {
      */
     private static LocalDate parseDate(String dateString) throws InvalidFormatException {
         try {
-            return LocalDate.parse(dateString, DateTimeFormatter.ofPattern(DATE_PATTERN));
+            return LocalDate.parse(dateString, DATE_FORMATTER);
         } catch (DateTimeParseException e) {
             throw InvalidFormatException.forLocalDate();
         }
@@ -242,10 +336,11 @@ public class Parser {
 
     /**
      * Creates an Event command by parsing the description, start time, and end time.
+     * Times may be free text; times that are dates are checked to not end the event before it starts.
      *
      * @param arguments The raw arguments containing description and time range.
      * @return A CreateTaskCommand configured for an Event.
-     * @throws InvalidFormatException If the format is invalid.
+     * @throws InvalidFormatException If the format is invalid or the event ends before it starts.
      */
     private static Command handleEvent(String arguments) throws InvalidFormatException {
         if (!arguments.contains(SEP_FROM) || !arguments.contains(SEP_TO)) {
@@ -262,6 +357,11 @@ public class Parser {
 
         String startTime = splitTo[0];
         String endTime = splitTo[1];
+        LocalDateTime start = Event.parseTime(startTime, false);
+        LocalDateTime end = Event.parseTime(endTime, true);
+        if (start != null && end != null && end.isBefore(start)) {
+            throw InvalidFormatException.forEventRange();
+        }
 
         return new CreateTaskCommand(CommandType.EVENT.name().toLowerCase(),
                 new String[]{description, startTime, endTime}, null);
@@ -269,28 +369,15 @@ public class Parser {
 
     /**
      * Parses a single line from the data storage file into a Task object.
+     * Uses a single-pass, regex-free scan of the line, as this runs once per stored task on load.
      *
      * @param line The pipe-separated string representing a task in the storage file.
-     * @return The reconstructed Task object, or null if the task type is unknown.
+     * @return The reconstructed Task object, or null if the line is not a well-formed task.
      */
     public static Task parseLine(String line) {
         // Assertion: Ensure storage line input is not null
         assert line != null : "Storage line cannot be null";
-        String[] parts = line.split(SEP_STORAGE);
-        if (parts.length < 4) {
-            return null;
-        }
-
-        String type = parts[0].toUpperCase();
-        ArrayList<String> tags = loadTags(parts[1]);
-        boolean isDone = parts[2].equals(STATUS_DONE);
-        String description = parts[3];
-        Task task = createTaskFromStorage(type, tags, parts, description);
-
-        if (task != null && isDone) {
-            task.mark();
-        }
-        return task;
+        return RecordScanner.scan(line);
     }
 
     /**
@@ -301,57 +388,6 @@ public class Parser {
      */
     public static ArrayList<String> loadTags(String tagInfo) {
         assert tagInfo != null : "Storage tags cannot be null";
-        String[] parts = tagInfo.split(" /#");
-        if (parts.length < 2) {
-            return new ArrayList<>();
-        }
-        ArrayList<String> tags = new ArrayList<>(Arrays.asList(parts));
-        tags.remove(0);
-        return tags;
-    }
-
-    /**
-     * Creates a specific Task object based on the type identifier from storage.
-     *
-     * @param type The task type identifier (T, D, E).
-     * @param parts The split line array containing task details.
-     * @param description The task description.
-     * @return The specific Task object, or null if the type is unknown.
-     */
-    private static Task createTaskFromStorage(String type, ArrayList<String> tags,
-                                              String[] parts, String description) {
-        switch (type) {
-        case TYPE_TODO:
-            return new Todo(description, tags);
-        case TYPE_DEADLINE:
-            return createDeadlineFromStorage(parts, tags, description);
-        case TYPE_EVENT:
-            return createEventFromStorage(parts, tags, description);
-        default:
-            return null;
-        }
-    }
-
-    /**
-     * Helper to create a Deadline object from storage parts.
-     *
-     * @param parts The split line array.
-     * @param description The task description.
-     * @return A new Deadline object.
-     */
-    private static Task createDeadlineFromStorage(String[] parts, ArrayList<String> tags, String description) {
-        LocalDate deadline = LocalDate.parse(parts[4], DateTimeFormatter.ofPattern(DATE_PATTERN));
-        return new Deadline(description, tags, deadline);
-    }
-
-    /**
-     * Helper to create an Event object from storage parts.
-     *
-     * @param parts The split line array.
-     * @param description The task description.
-     * @return A new Event object.
-     */
-    private static Task createEventFromStorage(String[] parts, ArrayList<String> tags, String description) {
-        return new Event(description, tags, parts[4], parts[5]);
+        return RecordScanner.scanTags(tagInfo);
     }
 }
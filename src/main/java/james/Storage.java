@@ -1,19 +1,37 @@
 package james;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import james.exception.JamesException;
+import james.storage.DataFileWatcher;
+import james.storage.FileStorageEngine;
+import james.storage.Mutation;
+import james.storage.RecoveryScanner;
+import james.storage.StorageEngine;
+import james.storage.StorageFormat;
+import james.storage.SyncReplica;
+import james.storage.TaskArchive;
 import james.task.Task;
 
 /**
- * Handles the loading and saving of task data to the hard disk.
- * This class is responsible for file creation and management of the data file
- * used to store the user's task list.
+ * Handles the loading and saving of task data for the commands.
+ * The actual persistence is done by a {@link StorageEngine}; by default this is a
+ * data file on the hard disk, but any engine (e.g. an in-memory one) can be plugged in.
  */
 public class Storage {
-    private final String filePath;
+    private final StorageEngine engine;
+    /** The engine as a file engine, or null if the backend is not file-based. */
+    private final FileStorageEngine fileEngine;
+    /** The cold tier completed tasks are moved to, read only when archived tasks are asked for. */
+    private final TaskArchive archive;
+    /** Notices changes made to the data file by other programs, or null if the file is not watched. */
+    private DataFileWatcher watcher;
+    /** The copy of an external version that the last save overwrote, or null if there was none. */
+    private File conflictFile;
+    /** Logs the changes to the list for syncing with other data directories, or null if it never synced. */
+    private SyncReplica replica;
 
     /**
      * Initializes a Storage object with a specific file path.
@@ -21,22 +39,225 @@ public class Storage {
      * @param filePath The relative or absolute path where the data file is located.
      */
     public Storage(String filePath) {
-        assert filePath != null && !filePath.isEmpty() : "Storage file path cannot be null or empty";
-        this.filePath = filePath;
+        this(filePath, false);
     }
 
     /**
-     * Loads tasks from the file specified by the file path.
-     * Reads the file line by line and uses the Parser to reconstruct Task objects.
+     * Initializes a Storage object with a specific file path, optionally in journaled mode.
+     * In journaled mode each change is appended to a journal next to the data file
+     * instead of rewriting the data file, and the full file is only written on
+     * {@link #saveTasks(TaskList)}.
      *
-     * @return A TaskList containing the tasks loaded from the file.
-     * @throws JamesException If there is an error reading the file or parsing data.
+     * @param filePath The relative or absolute path where the data file is located.
+     * @param isJournaled True to append changes to a journal instead of rewriting the file.
+     */
+    public Storage(String filePath, boolean isJournaled) {
+        this(filePath, isJournaled, StorageFormat.TEXT);
+    }
+
+    /**
+     * Initializes a Storage object that writes its data file in the given format.
+     * Files in the other format are still loaded, and are converted on the next full save.
+     *
+     * @param filePath The relative or absolute path where the data file is located.
+     * @param isJournaled True to append changes to a journal instead of rewriting the file.
+     * @param format The format full saves are written in.
+     */
+    public Storage(String filePath, boolean isJournaled, StorageFormat format) {
+        this(new FileStorageEngine(filePath, isJournaled, format));
+    }
+
+    /**
+     * Initializes a Storage object backed by the given engine.
+     *
+     * @param engine The backend that persists the tasks.
+     */
+    public Storage(StorageEngine engine) {
+        assert engine != null : "Storage engine cannot be null";
+        this.engine = engine;
+        this.fileEngine = engine instanceof FileStorageEngine ? (FileStorageEngine) engine : null;
+        this.archive = new TaskArchive(engine.getArchiveFile());
+    }
+
+    /**
+     * Returns the backend that persists the tasks.
+     *
+     * @return The storage engine.
+     */
+    public StorageEngine getEngine() {
+        return this.engine;
+    }
+
+    /**
+     * Returns whether changes are appended to a journal instead of rewriting the data file.
+     *
+     * @return True if the storage is file-based and in journaled mode.
+     */
+    public boolean isJournaled() {
+        return this.fileEngine != null && this.fileEngine.isJournaled();
+    }
+
+    /**
+     * Returns the format full saves are written in.
+     *
+     * @return The storage format, or null if the storage is not file-based.
+     */
+    public StorageFormat getFormat() {
+        return this.fileEngine == null ? null : this.fileEngine.getFormat();
+    }
+
+    /**
+     * Returns the results of checking the records of the last load: how many tasks were
+     * loaded and how many corrupt or malformed records were moved to the quarantine file.
+     *
+     * @return The recovery scanner of the last load, or null if the engine does not check records.
+     */
+    public RecoveryScanner getLastRecovery() {
+        return this.engine.getLastRecovery();
+    }
+
+    /**
+     * Sets how large the journal may grow before it is compacted into the data file
+     * on a background thread. Has no effect unless the storage is journaled.
+     *
+     * @param maxRecords The number of journal records that triggers a compaction.
+     * @param maxBytes The journal size in bytes that triggers a compaction.
+     */
+    public void setCompactionThresholds(int maxRecords, long maxBytes) {
+        getFileEngine().setCompactionThresholds(maxRecords, maxBytes);
+    }
+
+    /**
+     * Enables group commit for full saves of a file-based storage.
+     *
+     * @param windowMillis How long to wait for further saves before writing; 0 writes at once.
+     * @see FileStorageEngine#setGroupCommitWindow(long)
+     */
+    public void setGroupCommitWindow(long windowMillis) {
+        getFileEngine().setGroupCommitWindow(windowMillis);
+    }
+
+    /**
+     * Enables write-behind mode for a file-based storage.
+     * Call {@link #flush()} to wait for pending writes.
+     *
+     * @param maxStalenessMillis The longest time a change may stay unsaved.
+     * @see FileStorageEngine#setWriteBehind(long)
+     */
+    public void setWriteBehind(long maxStalenessMillis) {
+        getFileEngine().setWriteBehind(maxStalenessMillis);
+    }
+
+    /**
+     * Sets the data file size from which loading is split into chunks parsed in parallel.
+     *
+     * @param thresholdBytes The file size in bytes from which the parallel path is used.
+     */
+    public void setParallelLoadThreshold(long thresholdBytes) {
+        getFileEngine().setParallelLoadThreshold(thresholdBytes);
+    }
+
+    /**
+     * Enables lazy loading for a file-based storage, so large lists only parse the tasks a session uses.
+     *
+     * @param isLazy True to load text files lazily.
+     * @see FileStorageEngine#setLazyLoading(boolean)
+     */
+    public void setLazyLoading(boolean isLazy) {
+        getFileEngine().setLazyLoading(isLazy);
+    }
+
+    /**
+     * Enables columnar loading for a file-based storage, so large lists are kept in primitive arrays.
+     *
+     * @param isColumnar True to pack loaded lists into columns.
+     * @see FileStorageEngine#setColumnarLoading(boolean)
+     */
+    public void setColumnarLoading(boolean isColumnar) {
+        getFileEngine().setColumnarLoading(isColumnar);
+    }
+
+    /**
+     * Starts watching the data file for changes made by other programs, which can then be merged
+     * into the list with {@link #applyExternalChanges(TaskList)}. Only storage that writes every
+     * save straight to the data file can be watched, i.e. not journaled or write-behind storage.
+     *
+     * @param tasks The task list that was just loaded from the file.
+     * @throws JamesException If the data file cannot be watched.
+     */
+    public void startWatching(TaskList tasks) throws JamesException {
+        assert !isJournaled() && !getFileEngine().isWriteBehind() : "Only direct saves can be watched";
+        this.watcher = new DataFileWatcher(getFileEngine().getFile());
+        this.watcher.markSynced(tasks);
+    }
+
+    /**
+     * Merges the changes other programs made to the watched data file into the task list.
+     * Call this between commands, while the list still matches what was last saved.
+     *
+     * @param tasks The task list to update.
+     * @return The number of tasks that were replaced, inserted or removed; 0 if the file is not watched.
+     * @throws JamesException If the data file cannot be read.
+     */
+    public int applyExternalChanges(TaskList tasks) throws JamesException {
+        int changedCount = this.watcher == null ? 0 : this.watcher.applyExternalChanges(tasks);
+        if (changedCount > 0 && this.replica != null) {
+            // The file already holds the merged list, so only the sync state is written
+            this.replica.recordLocalChanges(tasks);
+            this.replica.saveState();
+        }
+        return changedCount;
+    }
+
+    /**
+     * Returns and forgets the scan of the last externally changed version of the data file if some of
+     * its records could not be merged and were moved to the quarantine file.
+     *
+     * @return The recovery scanner, or null if every record was merged or the file is not watched.
+     */
+    public RecoveryScanner takeExternalRecovery() {
+        return this.watcher == null ? null : this.watcher.takeRecovery();
+    }
+
+    /**
+     * Returns and forgets the copy of an external version of the data file that the last save
+     * had to overwrite because the change arrived while a command was running.
+     *
+     * @return The copy, or null if no save overwrote an external change.
+     */
+    public File takeConflictFile() {
+        File file = this.conflictFile;
+        this.conflictFile = null;
+        return file;
+    }
+
+    /**
+     * Returns the file engine for settings that only apply to file-based storage.
+     *
+     * @return The file engine.
+     */
+    private FileStorageEngine getFileEngine() {
+        assert this.fileEngine != null : "Only file-based storage has file settings";
+        return this.fileEngine;
+    }
+
+    /**
+     * Loads the saved tasks from the engine.
+     *
+     * @return A TaskList containing the saved tasks.
+     * @throws JamesException If there is an error reading or parsing the data.
      */
     public TaskList loadTasks() throws JamesException {
-        Ui ui = new Ui(this.filePath);
-        ArrayList<String> lines = ui.readFile();
-        assert lines != null : "Read lines from UI should not be null";
-        TaskList tasks = addTasksToTaskList(lines);
+        TaskList tasks = this.engine.load();
+        if (this.fileEngine != null && SyncReplica.exists(this.fileEngine.getFile())) {
+            this.replica = SyncReplica.open(this.fileEngine.getFile());
+            this.replica.attach(tasks);
+            this.replica.applyPending(tasks);
+            saveMergedChanges(tasks);
+        }
+        if (this.watcher != null) {
+            this.watcher.markSynced(tasks);
+        }
         return tasks;
     }
 
@@ -63,44 +284,177 @@ public class Storage {
     }
 
     /**
-     * Saves the current list of tasks to the hard disk.
-     * Creates the directory and file if they do not exist before writing.
+     * Saves the complete list of tasks, replacing everything saved before.
      *
      * @param tasks The TaskList containing tasks to be saved.
-     * @throws JamesException If the file cannot be created or written to.
+     * @throws JamesException If the tasks cannot be written.
      */
     public void saveTasks(TaskList tasks) throws JamesException {
         assert tasks != null : "Cannot save a null task list";
-        File file = new File(filePath);
-        createNewDirectory(file);
-        createNewFile(file);
-        Ui ui = new Ui(this.filePath);
-        ui.writeToFile(tasks);
+        prepareWatchedSave();
+        recordSyncedChanges(tasks);
+        this.engine.save(tasks);
+        saveSyncState();
+        markWatchedSaved(tasks);
+    }
+
+    /**
+     * Persists a single change made to the task list.
+     * Engines that cannot store single changes save the whole list instead.
+     *
+     * @param tasks The TaskList after the change was applied.
+     * @param mutation The change that was applied.
+     * @throws JamesException If the change cannot be written.
+     */
+    public void saveMutation(TaskList tasks, Mutation mutation) throws JamesException {
+        assert mutation != null : "Cannot save a null mutation";
+        prepareWatchedSave();
+        if (this.replica != null) {
+            this.replica.recordMutation(tasks, mutation);
+        }
+        this.engine.apply(tasks, mutation);
+        saveSyncState();
+        if (this.watcher != null) {
+            this.watcher.markSaved(tasks, mutation);
+        }
+    }
+
+    /**
+     * Moves tasks that were removed from the hot list into the compressed archive,
+     * then saves the smaller hot list. The archive is written first, so a crash in
+     * between can only leave a task in both tiers, never in neither.
+     *
+     * @param tasks The hot TaskList after the archived tasks were removed.
+     * @param archivedTasks The tasks to archive.
+     * @throws JamesException If the archive or the hot list cannot be written.
+     */
+    public void archiveTasks(TaskList tasks, ArrayList<Task> archivedTasks) throws JamesException {
+        assert tasks != null && archivedTasks != null : "Cannot archive null lists";
+        this.archive.append(archivedTasks);
+        saveTasks(tasks);
+    }
+
+    /**
+     * Returns the archived tasks, reading the archive the first time they are asked for.
+     *
+     * @return The archived tasks, oldest first.
+     * @throws JamesException If the archive cannot be read.
+     */
+    public ArrayList<Task> loadArchivedTasks() throws JamesException {
+        return this.archive.getTasks();
+    }
+
+    /**
+     * Exchanges the changes made since the last sync with the data file of another data directory,
+     * e.g. a copy on another machine, and merges them into both. Only the changes are read and
+     * written; the other directory applies the changes it received the next time it is loaded.
+     * Concurrent edits merge the same way on both sides, see {@link SyncReplica}.
+     *
+     * @param tasks The task list, which receives the other directory's changes and is then saved.
+     * @param peerPath The other data file, or the directory holding a data file of the same name.
+     * @return The numbers of changes received and sent.
+     * @throws JamesException If either directory's files cannot be read or written.
+     */
+    public SyncReplica.Result syncWith(TaskList tasks, String peerPath) throws JamesException {
+        File file = getFileEngine().getFile();
+        File peerFile = new File(peerPath);
+        if (peerFile.isDirectory()) {
+            peerFile = new File(peerFile, file.getName());
+        }
+        if (this.replica == null) {
+            this.replica = SyncReplica.open(file);
+            this.replica.attach(tasks);
+        }
+        SyncReplica.Result result = this.replica.syncWith(tasks, peerFile);
+        saveMergedChanges(tasks);
+        return result;
+    }
+
+    /**
+     * Blocks until every save requested so far is durable.
+     *
+     * @throws JamesException If a pending write failed.
+     */
+    public void flush() throws JamesException {
+        this.engine.flush();
+    }
+
+    /**
+     * Flushes pending writes and releases the engine. The storage must not be used afterwards.
+     *
+     * @throws JamesException If a pending write failed.
+     */
+    public void close() throws JamesException {
+        if (this.watcher != null) {
+            this.watcher.close();
+        }
+        this.engine.close();
     }
 
     /**
-     * Creates the file's parent directory if it is missing currently.
+     * Keeps a copy of the watched data file before a save if it has an external change that was not merged.
      *
-     * @param file The file we want to access.
+     * @throws JamesException If the copy cannot be written.
      */
-    public void createNewDirectory(File file) {
-        if (file.getParentFile() != null && !file.getParentFile().exists()) {
-            file.getParentFile().mkdirs();
+    private void prepareWatchedSave() throws JamesException {
+        if (this.watcher != null) {
+            File copy = this.watcher.preserveConflict();
+            this.conflictFile = copy != null ? copy : this.conflictFile;
         }
     }
 
     /**
-     * Create the file if it is missing currently.
+     * Logs the changes a command made to the list for syncing, before the list is saved.
      *
-     * @param file the file we want to access.
+     * @param tasks The task list about to be saved.
+     * @throws JamesException If the changes cannot be logged.
      */
-    public void createNewFile(File file) throws JamesException {
-        try {
-            if (!file.exists()) {
-                file.createNewFile();
+    private void recordSyncedChanges(TaskList tasks) throws JamesException {
+        if (this.replica != null) {
+            this.replica.recordLocalChanges(tasks);
+        }
+    }
+
+    /**
+     * Writes the sync state of a list that was just saved.
+     *
+     * @throws JamesException If the sync state cannot be written.
+     */
+    private void saveSyncState() throws JamesException {
+        if (this.replica != null) {
+            this.replica.saveState();
+        }
+    }
+
+    /**
+     * Saves the changes a sync merged into the list, then the sync state. A journal stores them as
+     * single changes; other storage, or a merge that inserted or moved tasks, saves the whole list once.
+     *
+     * @param tasks The task list the changes were merged into.
+     * @throws JamesException If the changes or the sync state cannot be written.
+     */
+    private void saveMergedChanges(TaskList tasks) throws JamesException {
+        List<Mutation> changes = this.replica.takeAppliedChanges();
+        if (changes == null || (!changes.isEmpty() && !isJournaled())) {
+            prepareWatchedSave();
+            this.engine.save(tasks);
+            markWatchedSaved(tasks);
+        } else {
+            for (Mutation change : changes) {
+                this.engine.apply(tasks, change);
             }
-        } catch (IOException e) {
-            throw new JamesException("Could not create file");
+        }
+        this.replica.saveState();
+    }
+
+    /**
+     * Records a saved list as the current contents of the watched data file.
+     *
+     * @param tasks The task list that was saved.
+     */
+    private void markWatchedSaved(TaskList tasks) {
+        if (this.watcher != null) {
+            this.watcher.markSynced(tasks);
         }
     }
 }
@@ -1,16 +1,68 @@
 package james;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+import james.index.DeadlineIndex;
+import james.index.IntervalTree;
+import james.index.KeywordIndex;
+import james.index.LiveSlotCounter;
+import james.index.PersistentVector;
+import james.index.TagFilter;
+import james.index.TagIndex;
+import james.storage.TaskSource;
+import james.task.Deadline;
+import james.task.Event;
 import james.task.Task;
 
 /**
  * Represents a collection of tasks and provides methods for managing and displaying them.
- * This class acts as a wrapper around an {@code ArrayList<Task>} to provide task-specific operations.
+ * Change tasks only through its methods, which keep its indexes and snapshots up to date.
  */
 public class TaskList {
-    /** The internal list used to store Task objects. */
+    /** Fills the slot of a removed task until the slots are compacted. */
+    private static final Task TOMBSTONE = new Task("");
+    /** The fewest tombstones worth a compaction. */
+    private static final int MIN_COMPACTION_TOMBSTONES = 64;
+
+    /** The slots of the list: its tasks in order, with tombstones where tasks were removed. */
     private ArrayList<Task> tasks;
+    /** The number of tombstones among the slots. */
+    private int tombstoneCount;
+    /** Translates task numbers to slots, or null while there are no tombstones and they are the same. */
+    private LiveSlotCounter liveSlots;
+    /** Maps task ids to slots, or null until a task is first looked up by id. */
+    private HashMap<Long, Integer> slotsById;
+    /** The id given to the next task that is added without one. */
+    private long nextId = 1;
+    /** The source the leading tasks not used yet are created from, or null if every task is in memory. */
+    private TaskSource source;
+    /** The keyword index over the tasks, or null until the list is first searched. */
+    private KeywordIndex keywordIndex;
+    /** The tag index over the tasks, or null until the list is first filtered. */
+    private TagIndex tagIndex;
+    /** The due date index over the deadlines, or null until the list is first queried by due date. */
+    private DeadlineIndex deadlineIndex;
+    /** The interval tree over the event times, or null until the list is first queried by event time. */
+    private IntervalTree eventTree;
+    /** Whether the ids of the tasks increase along the list, checked only while an index exists. */
+    private boolean isInIdOrder;
+    /**
+     * What snapshots show of each slot, shared with them, or null until the first snapshot: a frozen
+     * copy of its task, the record of a task that is still only in the source, or null for a tombstone.
+     */
+    private PersistentVector<Object> frozenSlots;
+    /** Counts the changes to the list, so snapshots can tell which version they show. */
+    private long version;
 
     /**
      * Initializes an empty list of tasks.
@@ -19,6 +71,16 @@ public class TaskList {
         this.tasks = new ArrayList<>();
     }
 
+    /**
+     * Initializes an empty list of tasks with room for the given number of tasks.
+     *
+     * @param initialCapacity The number of tasks the list can hold before it has to grow.
+     */
+    public TaskList(int initialCapacity) {
+        assert initialCapacity >= 0 : "Initial capacity cannot be negative";
+        this.tasks = new ArrayList<>(initialCapacity);
+    }
+
     /**
      * Initializes the list with an existing collection of tasks.
      *
@@ -26,24 +88,116 @@ public class TaskList {
      */
     public TaskList(ArrayList<Task> tasks) {
         this.tasks = tasks;
+        for (Task task : tasks) {
+            assignId(task);
+        }
     }
 
     /**
-     * Returns the internal list of tasks.
+     * Initializes a lazy list whose tasks are created from a source when they are first used.
+     *
+     * @param source The source of the tasks, e.g. the offset index over the records of the data file.
+     */
+    public TaskList(TaskSource source) {
+        assert source != null : "Task source cannot be null";
+        this.tasks = new ArrayList<>(Collections.nCopies(source.size(), (Task) null));
+        this.source = source;
+        this.nextId = source.getRecordCount() + 1L;
+    }
+
+    /**
+     * Returns the internal list of tasks, creating every task of a lazy list first.
      *
      * @return An ArrayList containing all current tasks.
      */
-    public ArrayList<Task> getTasks() {
+    public synchronized ArrayList<Task> getTasks() {
+        loadAll();
+        compact();
         return this.tasks;
     }
 
+    /**
+     * Takes an immutable snapshot of the current tasks, in constant time after the first one.
+     *
+     * @return The snapshot.
+     */
+    public synchronized TaskListSnapshot snapshot() {
+        if (this.frozenSlots == null) {
+            TaskSource.Reader reader = this.source == null ? null : this.source.reader();
+            ArrayList<Object> slots = new ArrayList<>(this.tasks.size());
+            for (int i = 0; i < this.tasks.size(); i++) {
+                Task task = this.tasks.get(i);
+                slots.add(task != null ? freeze(task) : reader.readRecord(i));
+            }
+            this.frozenSlots = PersistentVector.of(slots);
+        }
+        return new TaskListSnapshot(this.frozenSlots, getSize(), this.version);
+    }
+
+    /**
+     * Returns the number of changes made to the list so far.
+     *
+     * @return The version of the list.
+     */
+    public synchronized long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Freezes one slot again after its task was changed, added or removed.
+     *
+     * @param slot The 0-indexed slot.
+     */
+    private void slotChanged(int slot) {
+        this.version++;
+        if (this.frozenSlots == null) {
+            return;
+        }
+        Object frozen = freeze(this.tasks.get(slot));
+        this.frozenSlots = slot < this.frozenSlots.size()
+                ? this.frozenSlots.set(slot, frozen)
+                : this.frozenSlots.append(frozen);
+    }
+
+    /**
+     * Returns what snapshots show of a slot holding a task.
+     *
+     * @param task The task in the slot.
+     * @return A copy of the task, or null for a tombstone.
+     */
+    private static Task freeze(Task task) {
+        return task == TOMBSTONE ? null : task.copy();
+    }
+
+    /**
+     * Returns whether some tasks are still only in the source.
+     *
+     * @return True if the list is lazy and not every task has been created yet.
+     */
+    public synchronized boolean isLazy() {
+        return this.source != null;
+    }
+
     /**
      * Replaces the current task list with a new one.
      *
      * @param tasks The new ArrayList of Task objects.
      */
-    public void setTasks(ArrayList<Task> tasks) {
+    public synchronized void setTasks(ArrayList<Task> tasks) {
         this.tasks = tasks;
+        this.source = null;
+        this.tombstoneCount = 0;
+        this.liveSlots = null;
+        this.slotsById = null;
+        this.frozenSlots = null;
+        this.version++;
+        this.keywordIndex = null;
+        this.tagIndex = null;
+        this.deadlineIndex = null;
+        this.eventTree = null;
+        for (Task task : tasks) {
+            assignId(task);
+        }
     }
 
     /**
@@ -51,8 +205,32 @@ public class TaskList {
      *
      * @param task The Task object to be added.
      */
-    public void addTask(Task task) {
+    public synchronized void addTask(Task task) {
+        boolean isNewest = task.getId() == 0 || task.getId() >= this.nextId;
+        assignId(task);
         this.tasks.add(task);
+        if (this.liveSlots != null) {
+            this.liveSlots.append();
+        }
+        if (this.slotsById != null) {
+            this.slotsById.put(task.getId(), this.tasks.size() - 1);
+        }
+        this.isInIdOrder &= isNewest;
+        indexAdded(task);
+        slotChanged(this.tasks.size() - 1);
+    }
+
+    /**
+     * Gives a task the next id if it has none, or moves the next id past the id it already has.
+     *
+     * @param task The task joining the list.
+     */
+    private void assignId(Task task) {
+        if (task.getId() == 0) {
+            task.setId(this.nextId++);
+        } else {
+            this.nextId = Math.max(this.nextId, task.getId() + 1);
+        }
     }
 
     /**
@@ -62,30 +240,80 @@ public class TaskList {
      * @return The Task object at the specified position.
      * @throws IndexOutOfBoundsException If the taskNumber is invalid.
      */
-    public Task getTask(int taskNumber) {
+    public synchronized Task getTask(int taskNumber) {
         assert this.tasks != null : "Cannot get task from a null list";
-        assert taskNumber > 0 && taskNumber <= this.tasks.size() : "Task index out of bounds";
-        int index = getIndex(taskNumber);
-        return this.tasks.get(index);
+        assert taskNumber > 0 && taskNumber <= getSize() : "Task index out of bounds";
+        return load(getIndex(taskNumber));
     }
 
     /**
-     * Returns the total number of tasks currently in the list.
+     * Retrieves a task by its stable id.
      *
-     * @return The size of the task list.
+     * @param id The id of the task.
+     * @return The task, or null if no task in the list has the id.
      */
-    public int getSize() {
-        assert this.tasks != null : "TaskList cannot be null";
-        return this.tasks.size();
+    public synchronized Task getTaskById(long id) {
+        Integer slot = getSlotsById().get(id);
+        return slot == null ? null : load(slot);
+    }
+
+    /**
+     * Returns the current position of a task, which changes as the tasks before it are removed.
+     *
+     * @param id The stable id of the task.
+     * @return The 1-indexed position of the task, or 0 if no task in the list has the id.
+     */
+    public synchronized int getTaskNumber(long id) {
+        Integer slot = getSlotsById().get(id);
+        if (slot == null) {
+            return 0;
+        }
+        return this.liveSlots == null ? slot + 1 : this.liveSlots.positionOf(slot);
+    }
+
+    /**
+     * Returns the ids of the tasks in list order, without creating the tasks of a lazy list.
+     *
+     * @return The ids, in the same order as {@link #toFileLines(String)}.
+     */
+    public synchronized long[] getTaskIds() {
+        long[] ids = new long[getSize()];
+        int position = 0;
+        for (int slot = 0; slot < this.tasks.size(); slot++) {
+            Task task = this.tasks.get(slot);
+            if (task != TOMBSTONE) {
+                ids[position++] = task != null ? task.getId() : this.source.idOf(slot);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the map from task ids to slots, building it on first use.
+     *
+     * @return The map from ids to slots.
+     */
+    private HashMap<Long, Integer> getSlotsById() {
+        if (this.slotsById == null) {
+            this.slotsById = new HashMap<>(this.tasks.size() * 2);
+            for (int slot = 0; slot < this.tasks.size(); slot++) {
+                Task task = this.tasks.get(slot);
+                if (task != TOMBSTONE) {
+                    this.slotsById.put(task != null ? task.getId() : this.source.idOf(slot), slot);
+                }
+            }
+        }
+        return this.slotsById;
     }
 
     /**
-     * Instructs the UI to display all tasks in the list.
+     * Returns the total number of tasks currently in the list.
      *
-     * @param ui The UI object responsible for formatting and printing the list.
+     * @return The size of the task list.
      */
-    public void printTasks(Ui ui) {
-        ui.printTasks(this.tasks);
+    public synchronized int getSize() {
+        assert this.tasks != null : "TaskList cannot be null";
+        return this.tasks.size() - this.tombstoneCount;
     }
 
     /**
@@ -93,11 +321,12 @@ public class TaskList {
      *
      * @param taskNumber The 1-indexed position of the task.
      */
-    public void markTask(int taskNumber) {
+    public synchronized void markTask(int taskNumber) {
         assert this.tasks != null : "Cannot get task from a null list";
-        assert taskNumber > 0 && taskNumber <= this.tasks.size() : "Task index out of bounds";
+        assert taskNumber > 0 && taskNumber <= getSize() : "Task index out of bounds";
         Task task = getTask(taskNumber);
         task.mark();
+        slotChanged(getIndex(taskNumber));
     }
 
     /**
@@ -105,11 +334,303 @@ public class TaskList {
      *
      * @param taskNumber The 1-indexed position of the task.
      */
-    public void unmarkTask(int taskNumber) {
+    public synchronized void unmarkTask(int taskNumber) {
         assert this.tasks != null : "Cannot get task from a null list";
-        assert taskNumber > 0 && taskNumber <= this.tasks.size() : "Task index out of bounds";
+        assert taskNumber > 0 && taskNumber <= getSize() : "Task index out of bounds";
         Task task = getTask(taskNumber);
         task.unmark();
+        slotChanged(getIndex(taskNumber));
+    }
+
+    /**
+     * Attaches a tag to the task at the specified position.
+     *
+     * @param taskNumber The 1-indexed position of the task.
+     * @param tag The tag to attach.
+     */
+    public synchronized void tagTask(int taskNumber, String tag) {
+        assert tag != null : "Tag cannot be null";
+        Task task = getTask(taskNumber);
+        task.addTag(tag);
+        refreshTask(task);
+    }
+
+    /**
+     * Updates the indexes and the snapshot slot of a task after it was changed.
+     *
+     * @param task The changed task.
+     */
+    private void refreshTask(Task task) {
+        if (this.keywordIndex != null) {
+            this.keywordIndex.update(task);
+        }
+        if (this.tagIndex != null) {
+            this.tagIndex.add(task);
+        }
+        if (this.frozenSlots == null) {
+            this.version++;
+        } else {
+            slotChanged(getSlotsById().get(task.getId()));
+        }
+    }
+
+    /**
+     * Finds the tasks whose description, tags or times contain a word starting with the keyword.
+     *
+     * @param keyWord The keyword, in any case; one without letters or digits matches every task.
+     * @return The matching tasks, in list order.
+     */
+    public synchronized List<Task> findTasks(String keyWord) {
+        assert keyWord != null : "Keyword cannot be null";
+        if (isSourceQueryable()) {
+            return tasksIn(matchingSlots(this.source.findEntriesMatching(keyWord),
+                    task -> KeywordIndex.matches(task.toSearchText(), keyWord)));
+        }
+        if (this.keywordIndex == null) {
+            prepareIndexing();
+            this.keywordIndex = new KeywordIndex(this.tasks);
+        }
+        List<Task> matches = this.keywordIndex.find(keyWord);
+        return matches == null ? liveTasks() : inListOrder(matches);
+    }
+
+    /**
+     * Finds the tasks whose tags satisfy a tag query.
+     *
+     * @param filter The tag query.
+     * @return The matching tasks, in list order.
+     */
+    public synchronized List<Task> filterTasks(TagFilter filter) {
+        assert filter != null : "Filter cannot be null";
+        if (isSourceQueryable()) {
+            BitSet allEntries = new BitSet(this.source.size());
+            allEntries.set(0, this.source.size());
+            BitSet allSlots = matchingSlots(allEntries, task -> true);
+            return tasksIn(filter.evaluate(tag -> matchingSlots(this.source.findEntriesWithTag(tag),
+                    task -> hasTag(task, tag)), allSlots));
+        }
+        if (this.tagIndex == null) {
+            prepareIndexing();
+            this.tagIndex = new TagIndex(this.tasks);
+        }
+        BitSet ids = filter.evaluate(this.tagIndex);
+        return inListOrder(this.tagIndex.tasksOf(ids));
+    }
+
+    /**
+     * Finds the deadlines due within a range of dates.
+     *
+     * @param from The first date of the range, or null for every deadline due up to the last date.
+     * @param to The last date of the range.
+     * @return The deadlines by due date.
+     */
+    public synchronized List<Task> findDeadlinesBetween(LocalDate from, LocalDate to) {
+        return findDeadlines(from, to, false);
+    }
+
+    /**
+     * Finds the deadlines that are not done and were due before a date.
+     *
+     * @param today The date deadlines are overdue from.
+     * @return The overdue deadlines by due date.
+     */
+    public synchronized List<Task> findOverdueTasks(LocalDate today) {
+        return findDeadlines(null, today.minusDays(1), true);
+    }
+
+    /**
+     * Finds the deadlines due within a range of dates, from the source or the due date index.
+     *
+     * @param from The first date of the range, or null for no lower bound.
+     * @param to The last date of the range.
+     * @param isUndoneOnly True to leave out the deadlines that are done.
+     * @return The deadlines by due date, those due on the same date in id order.
+     */
+    private List<Task> findDeadlines(LocalDate from, LocalDate to, boolean isUndoneOnly) {
+        if (!isSourceQueryable()) {
+            return getDeadlineIndex().findBetween(from, to, isUndoneOnly);
+        }
+        List<Task> deadlines = tasksIn(matchingSlots(this.source.findDeadlineEntries(from, to, isUndoneOnly),
+                task -> isDueBetween(task, from, to, isUndoneOnly)));
+        deadlines.sort(Comparator.comparing((Task task) -> ((Deadline) task).getDeadlineTime())
+                .thenComparingLong(Task::getId));
+        return deadlines;
+    }
+
+    /**
+     * Checks whether a task is a deadline due within a range of dates.
+     *
+     * @param task The task.
+     * @param from The first date of the range, or null for no lower bound.
+     * @param to The last date of the range.
+     * @param isUndoneOnly True to only accept deadlines that are not done.
+     * @return True if the task is such a deadline.
+     */
+    private static boolean isDueBetween(Task task, LocalDate from, LocalDate to, boolean isUndoneOnly) {
+        if (!(task instanceof Deadline) || (isUndoneOnly && task.isDone())) {
+            return false;
+        }
+        LocalDate dueDate = ((Deadline) task).getDeadlineTime();
+        return (from == null || !dueDate.isBefore(from)) && !dueDate.isAfter(to);
+    }
+
+    /**
+     * Returns whether queries can scan the source instead of indexing the list.
+     *
+     * @return True if the list has a source that answers queries.
+     */
+    private boolean isSourceQueryable() {
+        return this.source != null && this.source.isQueryable();
+    }
+
+    /**
+     * Finds the slots matching a query, checking the tasks already created instead of their entries.
+     *
+     * @param sourceMatches The source entries that match.
+     * @param isMatch Checks a task that is in memory.
+     * @return The matching slots, without tombstones.
+     */
+    private BitSet matchingSlots(BitSet sourceMatches, Predicate<Task> isMatch) {
+        BitSet slots = new BitSet(this.tasks.size());
+        for (int slot = 0; slot < this.tasks.size(); slot++) {
+            Task task = this.tasks.get(slot);
+            if (task == null ? sourceMatches.get(slot) : task != TOMBSTONE && isMatch.test(task)) {
+                slots.set(slot);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the tasks in some slots, creating only those that are still in the source.
+     *
+     * @param slots The slots.
+     * @return The tasks, in list order.
+     */
+    private List<Task> tasksIn(BitSet slots) {
+        ArrayList<Task> matches = new ArrayList<>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            matches.add(load(slot));
+        }
+        return matches;
+    }
+
+    /**
+     * Checks whether a task carries a tag, ignoring case like the {@link TagIndex}.
+     *
+     * @param task The task.
+     * @param tag The tag text.
+     * @return True if the task carries the tag.
+     */
+    private static boolean hasTag(Task task, String tag) {
+        String wanted = tag.toLowerCase();
+        for (String taskTag : task.getTags()) {
+            if (taskTag.toLowerCase().equals(wanted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the due date index, building it first if the list was not queried by due date yet.
+     *
+     * @return The deadline index.
+     */
+    private DeadlineIndex getDeadlineIndex() {
+        if (this.deadlineIndex == null) {
+            prepareIndexing();
+            this.deadlineIndex = new DeadlineIndex(this.tasks);
+        }
+        return this.deadlineIndex;
+    }
+
+    /**
+     * Finds the events that take place at some point within a time range.
+     *
+     * @param from The start of the range.
+     * @param to The end of the range, which is not part of it.
+     * @return The events by start time; events whose times are not dates are never included.
+     */
+    public synchronized List<Task> findEventsBetween(LocalDateTime from, LocalDateTime to) {
+        assert from != null && to != null : "Range cannot be open";
+        return getEventTree().findOverlapping(from, to);
+    }
+
+    /**
+     * Finds the events of the list that overlap the time range of an event.
+     *
+     * @param event The event, which may or may not be in the list.
+     * @return The other events overlapping it by start time, or none if its times are not dates.
+     */
+    public synchronized List<Task> findClashingEvents(Event event) {
+        if (!event.hasTimeRange()) {
+            return new ArrayList<>();
+        }
+        List<Task> clashes = getEventTree().findOverlapping(event.getStart(), event.getEnd());
+        clashes.remove(event);
+        return clashes;
+    }
+
+    /**
+     * Returns the interval tree, building it first if the list was not queried by event time yet.
+     *
+     * @return The interval tree over the events.
+     */
+    private IntervalTree getEventTree() {
+        if (this.eventTree == null) {
+            prepareIndexing();
+            this.eventTree = new IntervalTree(this.tasks);
+        }
+        return this.eventTree;
+    }
+
+    /**
+     * Creates every task and checks whether the list is in id order before the first index is built.
+     */
+    private void prepareIndexing() {
+        if (hasIndexes()) {
+            return;
+        }
+        loadAll();
+        compact();
+        this.isInIdOrder = true;
+        for (int i = 1; i < this.tasks.size() && this.isInIdOrder; i++) {
+            this.isInIdOrder = this.tasks.get(i - 1).getId() < this.tasks.get(i).getId();
+        }
+    }
+
+    /**
+     * Returns whether any index over the tasks exists and must be kept up to date.
+     *
+     * @return True if the list was searched, filtered or queried by date since it was loaded.
+     */
+    private boolean hasIndexes() {
+        return this.keywordIndex != null || this.tagIndex != null || this.deadlineIndex != null
+                || this.eventTree != null;
+    }
+
+    /**
+     * Puts tasks that an index returned in id order into list order.
+     *
+     * @param matches Tasks of the list, in id order.
+     * @return The same tasks, in list order.
+     */
+    private List<Task> inListOrder(List<Task> matches) {
+        if (this.isInIdOrder || matches.size() <= 1) {
+            return matches;
+        }
+        IdentityHashMap<Task, Boolean> matchSet = new IdentityHashMap<>();
+        for (Task task : matches) {
+            matchSet.put(task, Boolean.TRUE);
+        }
+        ArrayList<Task> ordered = new ArrayList<>(matches.size());
+        for (Task task : this.tasks) {
+            if (matchSet.containsKey(task)) {
+                ordered.add(task);
+            }
+        }
+        return ordered;
     }
 
     /**
@@ -125,26 +646,277 @@ public class TaskList {
     }
 
     /**
-     * Deletes the task at the specified position from the list.
+     * Deletes the task at the specified position from the list, leaving a tombstone in its slot.
      *
      * @param taskNumber The 1-indexed position of the task to be removed.
      * @throws IndexOutOfBoundsException If the taskNumber is invalid.
      */
-    public void removeTask(int taskNumber) {
+    public synchronized void removeTask(int taskNumber) {
         assert this.tasks != null : "Cannot get task from a null list";
-        assert taskNumber > 0 && taskNumber <= this.tasks.size() : "Task index out of bounds";
-        int index = getIndex(taskNumber);
-        this.tasks.remove(index);
+        assert taskNumber > 0 && taskNumber <= getSize() : "Task index out of bounds";
+        int slot = getIndex(taskNumber);
+        Task removedTask = this.tasks.set(slot, TOMBSTONE);
+        if (this.liveSlots == null) {
+            this.liveSlots = new LiveSlotCounter(this.tasks.size());
+        }
+        this.liveSlots.remove(slot);
+        this.tombstoneCount++;
+        if (this.slotsById != null) {
+            this.slotsById.remove(removedTask != null ? removedTask.getId() : this.source.idOf(slot));
+        }
+        if (removedTask != null) {
+            indexRemoved(removedTask);
+        }
+        slotChanged(slot);
+        if (this.tombstoneCount >= MIN_COMPACTION_TOMBSTONES && this.tombstoneCount * 2 >= this.tasks.size()) {
+            compact();
+        }
     }
 
     /**
-     * Generates the index of a task in the task list from its task number.
+     * Drops the tombstones from the slots, and the entries of removed tasks from the source.
+     */
+    private void compact() {
+        if (this.tombstoneCount == 0) {
+            return;
+        }
+        BitSet removedEntries = this.source == null ? null : new BitSet(this.source.size());
+        ArrayList<Task> liveTasks = new ArrayList<>(getSize());
+        for (int slot = 0; slot < this.tasks.size(); slot++) {
+            Task task = this.tasks.get(slot);
+            if (task != TOMBSTONE) {
+                liveTasks.add(task);
+            } else if (removedEntries != null && slot < this.source.size()) {
+                removedEntries.set(slot);
+            }
+        }
+        if (removedEntries != null) {
+            this.source.removeAll(removedEntries);
+        }
+        if (this.frozenSlots != null) {
+            ArrayList<Object> frozenLiveSlots = this.frozenSlots.toList();
+            frozenLiveSlots.removeIf(frozen -> frozen == null);
+            this.frozenSlots = PersistentVector.of(frozenLiveSlots);
+        }
+        this.tasks = liveTasks;
+        this.tombstoneCount = 0;
+        this.liveSlots = null;
+        this.slotsById = null;
+    }
+
+    /**
+     * Returns the tasks of the list without tombstones, parsing every task of a lazy list.
      *
-     * @param taskNumber The 1-indexed position of the task.
-     * @return The 0-indexed position of the task.
+     * @return A new list of the tasks, in list order.
+     */
+    private ArrayList<Task> liveTasks() {
+        loadAll();
+        ArrayList<Task> liveTasks = new ArrayList<>(getSize());
+        for (Task task : this.tasks) {
+            if (task != TOMBSTONE) {
+                liveTasks.add(task);
+            }
+        }
+        return liveTasks;
+    }
+
+    /**
+     * Replaces the task at the specified position, keeping the id of the old task.
+     *
+     * @param taskNumber The 1-indexed position of the task to replace.
+     * @param task The task to put in its place.
      */
-    public int getIndex(int taskNumber) {
+    public synchronized void replaceTask(int taskNumber, Task task) {
+        assert taskNumber > 0 && taskNumber <= getSize() : "Task index out of bounds";
+        int slot = getIndex(taskNumber);
+        Task oldTask = load(slot);
+        task.setId(oldTask.getId());
+        this.tasks.set(slot, task);
+        if (hasIndexes()) {
+            indexRemoved(oldTask);
+            indexAdded(task);
+        }
+        slotChanged(slot);
+    }
+
+    /**
+     * Inserts a task at the specified position, moving the tasks from there on back by one.
+     *
+     * @param taskNumber The 1-indexed position the task will have.
+     * @param task The task to insert.
+     */
+    public synchronized void insertTask(int taskNumber, Task task) {
+        assert taskNumber > 0 && taskNumber <= getSize() + 1 : "Task index out of bounds";
+        compact();
         int index = taskNumber - 1;
-        return index;
+        if (this.source != null && index < this.source.size()) {
+            loadAll();
+        }
+        assignId(task);
+        this.tasks.add(index, task);
+        this.slotsById = null;
+        this.version++;
+        if (this.frozenSlots != null) {
+            ArrayList<Object> slots = this.frozenSlots.toList();
+            slots.add(index, freeze(task));
+            this.frozenSlots = PersistentVector.of(slots);
+        }
+        if (hasIndexes()) {
+            boolean isAfterPrevious = index == 0 || this.tasks.get(index - 1).getId() < task.getId();
+            boolean isBeforeNext = index == this.tasks.size() - 1 || task.getId() < this.tasks.get(index + 1).getId();
+            this.isInIdOrder &= isAfterPrevious && isBeforeNext;
+            indexAdded(task);
+        }
+    }
+
+    /**
+     * Adds a task that just joined the list to the indexes.
+     *
+     * @param task The added task.
+     */
+    private void indexAdded(Task task) {
+        if (this.keywordIndex != null) {
+            this.keywordIndex.add(task);
+        }
+        if (this.tagIndex != null) {
+            this.tagIndex.add(task);
+        }
+        if (this.deadlineIndex != null) {
+            this.deadlineIndex.add(task);
+        }
+        if (this.eventTree != null) {
+            this.eventTree.add(task);
+        }
+    }
+
+    /**
+     * Removes a task that just left the list from the indexes.
+     *
+     * @param task The removed task.
+     */
+    private void indexRemoved(Task task) {
+        if (this.keywordIndex != null) {
+            this.keywordIndex.remove(task);
+        }
+        if (this.tagIndex != null) {
+            this.tagIndex.remove(task);
+        }
+        if (this.deadlineIndex != null) {
+            this.deadlineIndex.remove(task);
+        }
+        if (this.eventTree != null) {
+            this.eventTree.remove(task);
+        }
+    }
+
+    /**
+     * Removes every completed task from the list in a single pass.
+     *
+     * @return The removed tasks, in list order.
+     */
+    public synchronized ArrayList<Task> removeDoneTasks() {
+        loadAll();
+        ArrayList<Task> doneTasks = new ArrayList<>();
+        ArrayList<Task> remainingTasks = new ArrayList<>(getSize());
+        ArrayList<Object> frozenSlots = this.frozenSlots == null ? null : this.frozenSlots.toList();
+        ArrayList<Object> remainingFrozenSlots = new ArrayList<>(frozenSlots == null ? 0 : getSize());
+        for (int slot = 0; slot < this.tasks.size(); slot++) {
+            Task task = this.tasks.get(slot);
+            if (task == TOMBSTONE) {
+                continue;
+            } else if (task.isDone()) {
+                doneTasks.add(task);
+                indexRemoved(task);
+            } else {
+                remainingTasks.add(task);
+                if (frozenSlots != null) {
+                    remainingFrozenSlots.add(frozenSlots.get(slot));
+                }
+            }
+        }
+        this.tasks = remainingTasks;
+        this.tombstoneCount = 0;
+        this.liveSlots = null;
+        this.slotsById = null;
+        this.frozenSlots = frozenSlots == null ? null : PersistentVector.of(remainingFrozenSlots);
+        this.version++;
+        return doneTasks;
+    }
+
+    /**
+     * Converts every task into its file format, in list order.
+     *
+     * @param headerLine A line to put before the tasks, or null for none.
+     * @return The lines to be written to the data file.
+     */
+    public synchronized ArrayList<String> toFileLines(String headerLine) {
+        ArrayList<String> lines = new ArrayList<>(getSize() + 1);
+        if (headerLine != null) {
+            lines.add(headerLine);
+        }
+        TaskSource.Reader reader = this.source == null ? null : this.source.reader();
+        for (int i = 0; i < this.tasks.size(); i++) {
+            Task task = this.tasks.get(i);
+            if (task != TOMBSTONE) {
+                lines.add(task != null ? task.toFileFormat() : reader.readRecord(i));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Visits every task in list order without keeping the tasks created from the source.
+     *
+     * @param action Receives each task.
+     */
+    public synchronized void forEachTask(Consumer<Task> action) {
+        TaskSource.Reader reader = this.source == null ? null : this.source.reader();
+        for (int i = 0; i < this.tasks.size(); i++) {
+            Task task = this.tasks.get(i);
+            if (task != TOMBSTONE) {
+                action.accept(task != null ? task : reader.readTask(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the task in a slot, creating it from the source the first time.
+     *
+     * @param index The 0-indexed slot.
+     * @return The task.
+     */
+    private Task load(int index) {
+        Task task = this.tasks.get(index);
+        if (task == null) {
+            task = this.source.load(index);
+            this.tasks.set(index, task);
+        }
+        return task;
+    }
+
+    /**
+     * Creates every task that is still only in the source, then drops the source.
+     */
+    private void loadAll() {
+        if (this.source == null) {
+            return;
+        }
+        TaskSource.Reader reader = this.source.reader();
+        for (int i = 0; i < this.tasks.size(); i++) {
+            if (this.tasks.get(i) == null) {
+                this.tasks.set(i, reader.readTask(i));
+            }
+        }
+        this.source = null;
+    }
+
+    /**
+     * Generates the slot of a task in the task list from its task number.
+     *
+     * @param taskNumber The 1-indexed position of the task.
+     * @return The 0-indexed slot of the task.
+     */
+    public synchronized int getIndex(int taskNumber) {
+        return this.liveSlots == null ? taskNumber - 1 : this.liveSlots.slotOf(taskNumber);
     }
 }
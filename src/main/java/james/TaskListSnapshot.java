@@ -0,0 +1,77 @@
+package james;
+
+import java.util.ArrayList;
+
+import james.index.PersistentVector;
+import james.task.Task;
+
+/**
+ * An immutable view of a task list as it was at one version, taken with {@link TaskList#snapshot()}.
+ * It holds a frozen copy of every task and shares them with the list and with other snapshots,
+ * so it can be read on any thread without locking while the list keeps changing.
+ */
+public class TaskListSnapshot {
+    /**
+     * What the snapshot shows of each slot of the list: a frozen copy of its task, the record of a task
+     * that was still only in the source of a lazy list, or null for a removed task.
+     */
+    private final PersistentVector<Object> slots;
+    private final int size;
+    private final long version;
+
+    /**
+     * Initializes a snapshot over the frozen slots of a task list.
+     *
+     * @param slots The frozen task or the record of each slot, null where a task was removed.
+     * @param size The number of tasks.
+     * @param version The version of the list the slots belong to.
+     */
+    TaskListSnapshot(PersistentVector<Object> slots, int size, long version) {
+        assert slots != null : "Snapshot slots cannot be null";
+        this.slots = slots;
+        this.size = size;
+        this.version = version;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the records of the tasks as they are written to the data file.
+     *
+     * @return The records, in list order.
+     */
+    public ArrayList<String> toFileLines() {
+        ArrayList<String> lines = new ArrayList<>(this.size);
+        for (Object slot : this.slots.toList()) {
+            if (slot instanceof Task) {
+                lines.add(((Task) slot).toFileFormat());
+            } else if (slot != null) {
+                lines.add((String) slot);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the tasks of the snapshot. They are frozen copies with the ids of the tasks in the list
+     * and must not be changed; tasks that were still only in the data file are parsed from their records.
+     *
+     * @return The tasks, in list order.
+     */
+    public ArrayList<Task> getTasks() {
+        ArrayList<Task> tasks = new ArrayList<>(this.size);
+        for (Object slot : this.slots.toList()) {
+            Task task = slot instanceof String ? Parser.parseLine((String) slot) : (Task) slot;
+            if (task != null) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+}
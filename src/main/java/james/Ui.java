@@ -1,14 +1,14 @@
 package james;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 import james.exception.CanNotFindFileException;
-import james.exception.CanNotWriteToFileException;
 import james.exception.JamesException;
+import james.storage.AtomicFileWriter;
 import james.task.Task;
 
 /**
@@ -128,20 +128,19 @@ public class Ui {
      * @throws JamesException If an error occurs during the writing process.
      */
     public void writeToFile(TaskList tasks) throws JamesException {
-        try {
-            File file = new File(filePath);
-            File parentDir = file.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs(); // Creates 'data' folder if it disappeared
-            }
-            FileWriter fileWriter = new FileWriter(file);
-            for (int i = 1; i <= tasks.getSize(); i++) {
-                fileWriter.write(tasks.getTask(i).toFileFormat() + System.lineSeparator());
-            }
-            fileWriter.close();
-        } catch (IOException e) {
-            throw new CanNotWriteToFileException(e.getMessage());
-        }
+        writeToFile(tasks, null);
+    }
+
+    /**
+     * Writes the current TaskList to the data file, preceded by a header line.
+     * The file is replaced atomically, so a crash mid-save leaves the previous contents intact.
+     *
+     * @param tasks The TaskList containing tasks to be saved.
+     * @param headerLine The line written before the tasks, or null for no header.
+     * @throws JamesException If an error occurs during the writing process.
+     */
+    public void writeToFile(TaskList tasks, String headerLine) throws JamesException {
+        AtomicFileWriter.write(new File(filePath), tasks.toFileLines(headerLine));
     }
 
     /**
@@ -154,15 +153,47 @@ public class Ui {
         appendAndPrint(je.getMessage());
     }
 
+    /**
+     * Warns the user that some saved records could not be loaded and were set aside.
+     *
+     * @param summary The counts reported by the recovery scan.
+     */
+    public void showRecoverySummary(String summary) {
+        assert summary != null : "Cannot show a null summary";
+        appendAndPrint("Heads up bro, some saved tasks looked broken so I put them aside.");
+        appendAndPrint(summary);
+    }
+
+    /**
+     * Tells the user that edits made to the data file by another program were merged in.
+     *
+     * @param changedCount The number of tasks that were replaced, added or removed.
+     */
+    public void showExternalChanges(int changedCount) {
+        appendAndPrint("Yo bro, someone edited your task file outside of me. I picked up "
+                + changedCount + " changed tasks.");
+    }
+
+    /**
+     * Warns the user that a save overwrote an edit made by another program at the same time.
+     *
+     * @param conflictPath Where the overwritten version was kept.
+     */
+    public void showSaveConflict(String conflictPath) {
+        appendAndPrint("Heads up bro, your task file changed while I was saving. I kept that version in "
+                + conflictPath + ".");
+    }
+
     /**
      * Displays all tasks currently in the list to the user.
+     * The tasks are printed from a snapshot, so changes to the list do not wait for the printing.
      *
      * @param taskList The TaskList to be displayed.
      */
     public void printList(TaskList taskList) {
         assert taskList != null : "Cannot print a null list";
         appendAndPrint("Here you go bro! Here's your list.");
-        taskList.printTasks(this);
+        printTasks(taskList.snapshot().getTasks());
     }
 
     /**
@@ -235,20 +266,119 @@ public class Ui {
     public void printTasks(ArrayList<Task> tasks) {
         assert tasks != null : "Cannot print a null list";
         for (int i = 0; i < tasks.size(); i++) {
-            appendAndPrint((i + 1) + "." + tasks.get(i).toString());
+            printTask(i + 1, tasks.get(i));
         }
     }
 
     /**
-     * Prints a numbered list of tasks that match a keyword.
+     * Prints one entry of a numbered list of tasks.
+     *
+     * @param taskNumber The 1-indexed position of the task.
+     * @param task The task to print.
+     */
+    public void printTask(int taskNumber, Task task) {
+        assert task != null : "Cannot print a null task";
+        appendAndPrint(taskNumber + "." + task.toString());
+    }
+
+    /**
+     * Prints the tasks of the list that match a keyword.
      *
-     * @param tasks The list of Task objects to search through.
+     * @param matchingTasks The matching tasks, in list order.
+     */
+    public void findTask(List<Task> matchingTasks) {
+        assert matchingTasks != null : "Task list cannot be null";
+        appendAndPrint("Bro, here are the matching tasks in your list:");
+        for (Task task : matchingTasks) {
+            this.printTask(task);
+        }
+    }
+
+    /**
+     * Prints the tasks of the list whose tags satisfy a tag query.
+     *
+     * @param matchingTasks The matching tasks, in list order.
+     */
+    public void showFilteredTasks(List<Task> matchingTasks) {
+        assert matchingTasks != null : "Task list cannot be null";
+        appendAndPrint("Here are the tasks with those tags bro:");
+        for (Task task : matchingTasks) {
+            this.printTask(task);
+        }
+    }
+
+    /**
+     * Prints the deadlines due within a range of dates.
+     *
+     * @param deadlines The deadlines, by due date.
+     */
+    public void showDueTasks(List<Task> deadlines) {
+        assert deadlines != null : "Task list cannot be null";
+        appendAndPrint("Here's what's due bro:");
+        for (Task task : deadlines) {
+            this.printTask(task);
+        }
+    }
+
+    /**
+     * Prints the deadlines that are not done and were due before today.
+     *
+     * @param deadlines The overdue deadlines, by due date.
+     */
+    public void showOverdueTasks(List<Task> deadlines) {
+        assert deadlines != null : "Task list cannot be null";
+        appendAndPrint("Uh oh bro, these are overdue:");
+        for (Task task : deadlines) {
+            this.printTask(task);
+        }
+    }
+
+    /**
+     * Prints the events taking place within a time range.
+     *
+     * @param events The events, by start time.
+     */
+    public void showAgenda(List<Task> events) {
+        assert events != null : "Task list cannot be null";
+        appendAndPrint("Here's your agenda bro:");
+        for (Task task : events) {
+            this.printTask(task);
+        }
+    }
+
+    /**
+     * Warns the user that a new event overlaps events already in the list.
+     *
+     * @param clashes The overlapping events, by start time.
+     */
+    public void showClashingEvents(List<Task> clashes) {
+        assert clashes != null : "Task list cannot be null";
+        appendAndPrint("Heads up bro, this clashes with:");
+        for (Task task : clashes) {
+            this.printTask(task);
+        }
+    }
+
+    /**
+     * Prints the archived tasks that match a keyword.
+     *
+     * @param archivedTasks The archived tasks to search through.
      * @param keyWord The keyWord to search for in tasks.
      */
-    public void findTask(ArrayList<Task> tasks, String keyWord) {
-        assert tasks != null : "Task list cannot be null";
+    public void findArchivedTask(ArrayList<Task> archivedTasks, String keyWord) {
+        assert archivedTasks != null : "Task list cannot be null";
         assert keyWord != null : "Keyword cannot be null";
-        appendAndPrint("Bro, here are the matching tasks in your list:");
+        appendAndPrint("Bro, here are the matching tasks in your archive:");
+        printMatchingTasks(archivedTasks, keyWord);
+    }
+
+    /**
+     * Prints every task whose text contains the keyword, ignoring case.
+     *
+     * @param tasks The tasks to search through.
+     * @param keyWord The keyWord to search for in tasks.
+     */
+    private void printMatchingTasks(ArrayList<Task> tasks, String keyWord) {
         for (int i = 0; i < tasks.size(); i++) {
             Task task = tasks.get(i);
             if (task.toString().toLowerCase().contains(keyWord.toLowerCase())) {
@@ -257,6 +387,41 @@ public class Ui {
         }
     }
 
+    /**
+     * Displays every archived task.
+     *
+     * @param archivedTasks The archived tasks, oldest first.
+     */
+    public void printArchivedList(ArrayList<Task> archivedTasks) {
+        assert archivedTasks != null : "Cannot print a null list";
+        appendAndPrint("Here you go bro! Here's everything you've archived.");
+        printTasks(archivedTasks);
+    }
+
+    /**
+     * Confirms that completed tasks have been moved to the archive.
+     *
+     * @param archivedCount The number of tasks archived.
+     * @param remainingSize The number of tasks left in the list.
+     */
+    public void archiveTasks(int archivedCount, int remainingSize) {
+        appendAndPrint("Done and dusted bro! I've archived " + archivedCount + " completed tasks.");
+        appendAndPrint("Now you have " + remainingSize + " tasks in the list.");
+    }
+
+    /**
+     * Confirms a sync with another data directory.
+     *
+     * @param receivedCount The number of changes taken from the other directory.
+     * @param sentCount The number of changes handed to the other directory.
+     * @param size The number of tasks in the list after the sync.
+     */
+    public void showSyncResult(int receivedCount, int sentCount, int size) {
+        appendAndPrint("All synced up bro! I pulled in " + receivedCount + " changes and sent over "
+                + sentCount + " changes.");
+        appendAndPrint("Now you have " + size + " tasks in the list.");
+    }
+
     /**
      * Showing the confirmation message of tagging a task.
      *
@@ -0,0 +1,57 @@
+package james.command;
+
+import java.time.LocalDateTime;
+
+import james.Storage;
+import james.TaskList;
+import james.Ui;
+
+/**
+ * Represents a command to display the events taking place within a time range, by start time.
+ * The events are looked up in the interval tree of the task list; events whose times
+ * are not dates cannot be placed in time and are not shown.
+ */
+public class AgendaCommand extends Command {
+    // The start of the range
+    private final LocalDateTime from;
+    // The end of the range, which is not part of it
+    private final LocalDateTime to;
+
+    /**
+     * Initializes an AgendaCommand for a time range.
+     *
+     * @param from The start of the range.
+     * @param to The end of the range, which is not part of it.
+     */
+    public AgendaCommand(LocalDateTime from, LocalDateTime to) {
+        assert from != null && to != null : "Range cannot be open";
+        assert !to.isBefore(from) : "The range cannot end before it starts";
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return Always false as showing the agenda does not exit the application.
+     */
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Queries the interval tree for the events overlapping the range and displays them.
+     *
+     * @param tasks The TaskList holding the events.
+     * @param ui The UI used to display the events.
+     * @param storage The storage system (not used by this command).
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) {
+        assert tasks != null : "Tasks cannot be null";
+        assert ui != null : "Ui cannot be null";
+        ui.showAgenda(tasks.findEventsBetween(this.from, this.to));
+    }
+}
@@ -0,0 +1,46 @@
+package james.command;
+
+import java.util.ArrayList;
+
+import james.Storage;
+import james.TaskList;
+import james.Ui;
+import james.exception.JamesException;
+import james.task.Task;
+
+/**
+ * Represents a command to move every completed task out of the task list into the archive.
+ * Archived tasks are no longer loaded on start-up or rewritten on every save, but can still
+ * be listed and searched with {@code list /archived} and {@code find /archived}.
+ */
+public class ArchiveCommand extends Command {
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return Always false as archiving tasks does not exit the application.
+     */
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Removes the completed tasks from the list, appends them to the archive and saves the list.
+     *
+     * @param tasks The TaskList the completed tasks are taken from.
+     * @param ui The UI used to display the confirmation message.
+     * @param storage The storage system holding the archive.
+     * @throws JamesException If the archive or the task list cannot be written.
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws JamesException {
+        assert tasks != null : "Tasks cannot be null";
+        assert ui != null : "Ui cannot be null";
+        assert storage != null : "Storage cannot be null";
+        ArrayList<Task> doneTasks = tasks.removeDoneTasks();
+        storage.archiveTasks(tasks, doneTasks);
+        ui.archiveTasks(doneTasks.size(), tasks.getSize());
+    }
+}
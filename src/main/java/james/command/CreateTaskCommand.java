@@ -1,11 +1,13 @@
 package james.command;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import james.Storage;
 import james.TaskList;
 import james.Ui;
 import james.exception.JamesException;
+import james.storage.Mutation;
 import james.task.Deadline;
 import james.task.Event;
 import james.task.Task;
@@ -50,7 +52,8 @@ public class CreateTaskCommand extends Command {
     /**
      * {@inheritDoc}
      * Logic to instantiate the specific Task subclass, add it to the list,
-     * and trigger the UI confirmation message.
+     * and trigger the UI confirmation message. A new event is checked against the
+     * events already in the list, and the user is warned about any it clashes with.
      *
      * @param tasks The TaskList where the new task will be added.
      * @param ui The UI used to confirm the addition to the user.
@@ -64,10 +67,16 @@ public class CreateTaskCommand extends Command {
         assert storage != null : "Storage cannot be null";
         assert descriptions != null : "Descriptions cannot be null";
         Task newTask = createSpecificTask();
+        List<Task> clashes = newTask instanceof Event
+                ? tasks.findClashingEvents((Event) newTask)
+                : List.of();
 
         tasks.addTask(newTask);
         ui.addTask(tasks);
-        storage.saveTasks(tasks);
+        if (!clashes.isEmpty()) {
+            ui.showClashingEvents(clashes);
+        }
+        storage.saveMutation(tasks, Mutation.add(newTask));
     }
 
     /**
@@ -4,6 +4,7 @@ import james.Storage;
 import james.TaskList;
 import james.Ui;
 import james.exception.JamesException;
+import james.storage.Mutation;
 import james.task.Task;
 
 /**
@@ -54,6 +55,6 @@ public class DeleteTaskCommand extends Command {
         tasks.removeTask(this.taskNumber);
         int remainingSize = tasks.getSize();
         ui.deleteTask(taskToDelete, remainingSize);
-        storage.saveTasks(tasks);
+        storage.saveMutation(tasks, Mutation.delete(this.taskNumber, taskToDelete));
     }
 }
@@ -0,0 +1,67 @@
+package james.command;
+
+import java.time.LocalDate;
+
+import james.Storage;
+import james.TaskList;
+import james.Ui;
+
+/**
+ * Represents a command to display the deadlines due within a range of dates, or the overdue ones.
+ * The deadlines are looked up in the due date index of the task list and shown by due date.
+ */
+public class DueCommand extends Command {
+    // The first date of the range, or null for no lower bound
+    private final LocalDate from;
+    // The last date of the range, or null to show the overdue deadlines
+    private final LocalDate to;
+
+    /**
+     * Initializes a DueCommand that displays the deadlines that are not done and were due before today.
+     */
+    public DueCommand() {
+        this(null, null);
+    }
+
+    /**
+     * Initializes a DueCommand that displays the deadlines due within a range of dates.
+     *
+     * @param from The first date of the range, or null for every deadline due up to the last date.
+     * @param to The last date of the range, or null to display the overdue deadlines instead.
+     */
+    public DueCommand(LocalDate from, LocalDate to) {
+        assert from == null || to != null : "A range with a first date needs a last date";
+        assert from == null || !from.isAfter(to) : "The range cannot end before it starts";
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return Always false as querying deadlines does not exit the application.
+     */
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Scans the due date index for the range and displays the deadlines found.
+     *
+     * @param tasks The TaskList holding the deadlines.
+     * @param ui The UI used to display the deadlines.
+     * @param storage The storage system (not used by this command).
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) {
+        assert tasks != null : "Tasks cannot be null";
+        assert ui != null : "Ui cannot be null";
+        if (this.to == null) {
+            ui.showOverdueTasks(tasks.findOverdueTasks(LocalDate.now()));
+            return;
+        }
+        ui.showDueTasks(tasks.findDeadlinesBetween(this.from, this.to));
+    }
+}
@@ -0,0 +1,51 @@
+package james.command;
+
+import james.Storage;
+import james.TaskList;
+import james.Ui;
+import james.index.TagFilter;
+
+/**
+ * Represents a command to display the tasks whose tags satisfy a tag query,
+ * e.g. {@code filter #work #urgent or #home not #done}.
+ * The query is answered from the tag index of the task list.
+ */
+public class FilterCommand extends Command {
+    // The parsed tag query
+    private final TagFilter filter;
+
+    /**
+     * Initializes a FilterCommand with the tag query to apply.
+     *
+     * @param filter The parsed tag query.
+     */
+    public FilterCommand(TagFilter filter) {
+        assert filter != null : "Filter cannot be null";
+        this.filter = filter;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return Always false as filtering tasks does not exit the application.
+     */
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Looks the tags up in the tag index of the task list and displays the matching tasks.
+     *
+     * @param tasks The TaskList to filter.
+     * @param ui The UI used to display the matching tasks.
+     * @param storage The storage system (not used by this command).
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) {
+        assert tasks != null : "Tasks cannot be null";
+        assert ui != null : "Ui cannot be null";
+        ui.showFilteredTasks(tasks.filterTasks(this.filter));
+    }
+}
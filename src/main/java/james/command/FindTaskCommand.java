@@ -3,6 +3,7 @@ package james.command;
 import james.Storage;
 import james.TaskList;
 import james.Ui;
+import james.exception.JamesException;
 
 /**
  * Represents a command to search for a task including specific contents in the task list.
@@ -11,6 +12,8 @@ import james.Ui;
 public class FindTaskCommand extends Command {
     // The key word used in searching
     private final String keyWord;
+    // Whether the archive is searched instead of the task list
+    private final boolean isArchived;
 
     /**
      * Initializes a FindCommand with the specific key word given.
@@ -18,8 +21,19 @@ public class FindTaskCommand extends Command {
      * @param keyWord The specific key word that we need to look up in the task description.
      */
     public FindTaskCommand(String keyWord) {
+        this(keyWord, false);
+    }
+
+    /**
+     * Initializes a FindCommand that searches either the task list or the archive.
+     *
+     * @param keyWord The specific key word that we need to look up in the task description.
+     * @param isArchived True to search the archived tasks instead of the task list.
+     */
+    public FindTaskCommand(String keyWord, boolean isArchived) {
         assert keyWord != null : "KeyWord cannot be null";
         this.keyWord = keyWord;
+        this.isArchived = isArchived;
     }
 
     /**
@@ -34,18 +48,23 @@ public class FindTaskCommand extends Command {
 
     /**
      * {@inheritDoc}
-     * Executes the deletion by first showing the task to be removed,
-     * removing it from the task list, and then displaying the updated task count.
+     * Looks the keyword up in the task list's keyword index, or scans the archive for it,
+     * and displays the matching tasks.
      *
-     * @param tasks The TaskList from which the task will be removed.
-     * @param ui The UI used to display the confirmation messages.
-     * @param storage The storage system (not directly used by this command).
+     * @param tasks The TaskList to search.
+     * @param ui The UI used to display the matching tasks.
+     * @param storage The storage system holding the archive, which is read only for archived searches.
+     * @throws JamesException If the archive cannot be read.
      */
     @Override
-    public void execute(TaskList tasks, Ui ui, Storage storage) {
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws JamesException {
         assert tasks != null : "Tasks cannot be null";
         assert storage != null : "Storage cannot be null";
         assert ui != null : "Ui cannot be null";
-        ui.findTask(tasks.getTasks(), keyWord);
+        if (this.isArchived) {
+            ui.findArchivedTask(storage.loadArchivedTasks(), keyWord);
+            return;
+        }
+        ui.findTask(tasks.findTasks(keyWord));
     }
 }
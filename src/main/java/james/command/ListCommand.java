@@ -3,12 +3,31 @@ package james.command;
 import james.Storage;
 import james.TaskList;
 import james.Ui;
+import james.exception.JamesException;
 
 /**
  * Represents a command to display all tasks currently in the task list.
- * This command triggers the UI to format and print the entire collection of tasks.
+ * This command triggers the UI to format and print the entire collection of tasks,
+ * or of the archived tasks if they are asked for explicitly.
  */
 public class ListCommand extends Command {
+    private final boolean isArchived;
+
+    /**
+     * Initializes a ListCommand that displays the task list.
+     */
+    public ListCommand() {
+        this(false);
+    }
+
+    /**
+     * Initializes a ListCommand that displays either the task list or the archive.
+     *
+     * @param isArchived True to display the archived tasks instead of the task list.
+     */
+    public ListCommand(boolean isArchived) {
+        this.isArchived = isArchived;
+    }
 
     /**
      * {@inheritDoc}
@@ -23,16 +42,22 @@ public class ListCommand extends Command {
     /**
      * {@inheritDoc}
      * Triggers the UI to display the current list of tasks to the user.
+     * Archived tasks are read from the archive only when they are asked for.
      *
      * @param tasks The TaskList to be displayed.
      * @param ui The UI used to format and print the list.
-     * @param storage The storage system (not used by this command).
+     * @param storage The storage system holding the archive.
+     * @throws JamesException If the archive cannot be read.
      */
     @Override
-    public void execute(TaskList tasks, Ui ui, Storage storage) {
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws JamesException {
         assert tasks != null : "Tasks cannot be null";
         assert storage != null : "Storage cannot be null";
         assert ui != null : "Ui cannot be null";
+        if (this.isArchived) {
+            ui.printArchivedList(storage.loadArchivedTasks());
+            return;
+        }
         ui.printList(tasks);
     }
 }
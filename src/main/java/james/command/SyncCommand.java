@@ -0,0 +1,55 @@
+package james.command;
+
+import james.Storage;
+import james.TaskList;
+import james.Ui;
+import james.exception.JamesException;
+import james.storage.SyncReplica;
+
+/**
+ * Represents a command to exchange changes with the task file of another data directory,
+ * e.g. a copy of the list on another machine. Only the changes made since the last sync
+ * are exchanged, and edits made on both sides in the meantime are merged.
+ */
+public class SyncCommand extends Command {
+    // The other data directory, or its data file
+    private final String peerPath;
+
+    /**
+     * Initializes a SyncCommand with the data directory to sync with.
+     *
+     * @param peerPath The other data directory, or its data file.
+     */
+    public SyncCommand(String peerPath) {
+        assert peerPath != null && !peerPath.isEmpty() : "Sync path cannot be empty";
+        this.peerPath = peerPath;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return Always false as syncing does not exit the application.
+     */
+    @Override
+    public boolean isExit() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Exchanges the changes with the other data directory and saves the merged list.
+     *
+     * @param tasks The TaskList that receives the other directory's changes.
+     * @param ui The UI used to display how many changes were exchanged.
+     * @param storage The storage system that logs the changes.
+     * @throws JamesException If either directory's files cannot be read or written.
+     */
+    @Override
+    public void execute(TaskList tasks, Ui ui, Storage storage) throws JamesException {
+        assert tasks != null : "Tasks cannot be null";
+        assert ui != null : "Ui cannot be null";
+        assert storage != null : "Storage cannot be null";
+        SyncReplica.Result result = storage.syncWith(tasks, this.peerPath);
+        ui.showSyncResult(result.getReceivedCount(), result.getSentCount(), tasks.getSize());
+    }
+}
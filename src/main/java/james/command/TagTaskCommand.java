@@ -4,7 +4,7 @@ import james.Storage;
 import james.TaskList;
 import james.Ui;
 import james.exception.JamesException;
-import james.task.Task;
+import james.storage.Mutation;
 
 /**
  * Represents a command to add tags to specific tasks.
@@ -47,9 +47,8 @@ public class TagTaskCommand extends Command {
      */
     @Override
     public void execute(TaskList tasks, Ui ui, Storage storage) throws JamesException {
-        Task task = tasks.getTask(this.taskNumber);
-        task.addTag(this.tag);
+        tasks.tagTask(this.taskNumber, this.tag);
         ui.tagTask(tasks, this.taskNumber);
-        storage.saveTasks(tasks);
+        storage.saveMutation(tasks, Mutation.tag(this.taskNumber, this.tag));
     }
 }
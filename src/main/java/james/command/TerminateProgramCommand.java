@@ -24,8 +24,8 @@ public class TerminateProgramCommand extends Command {
 
     /**
      * {@inheritDoc}
-     * Saves the current state of the task list to storage and displays
-     * the goodbye message.
+     * Saves the current state of the task list to storage, waits until every
+     * pending write has reached the disk, and displays the goodbye message.
      *
      * @param tasks The TaskList to be saved before exiting.
      * @param ui The UI used to display the "bye" message.
@@ -38,6 +38,7 @@ public class TerminateProgramCommand extends Command {
         assert storage != null : "Storage cannot be null";
         assert ui != null : "Ui cannot be null";
         storage.saveTasks(tasks);
+        storage.flush();
         ui.bye();
     }
 }
@@ -4,6 +4,7 @@ import james.Storage;
 import james.TaskList;
 import james.Ui;
 import james.exception.JamesException;
+import james.storage.Mutation;
 
 /**
  * Represents a command to mark a specific task as not completed yet.
@@ -52,6 +53,6 @@ public class UnmarkCommand extends Command {
         assert ui != null : "Ui cannot be null";
         tasks.unmarkTask(this.taskNumber);
         ui.unmarkTask(tasks, this.taskNumber);
-        storage.saveTasks(tasks);
+        storage.saveMutation(tasks, Mutation.unmark(this.taskNumber));
     }
 }
@@ -44,4 +44,42 @@ public class InvalidFormatException extends JamesException {
         return new InvalidFormatException("Nah man, events need '/from' and "
                 + "'/to'! Use: event [desc] /from [s] /to [e]");
     }
+
+    /**
+     * Returns an instance for cases where a filter command is not a valid tag query.
+     *
+     * @return An InvalidFormatException with filter syntax instructions.
+     */
+    public static InvalidFormatException forFilter() {
+        return new InvalidFormatException("Bro, filter by tags like this: filter #work #urgent or #home not #done");
+    }
+
+    /**
+     * Returns an instance for cases where a range of dates ends before it starts.
+     *
+     * @return An InvalidFormatException with date range instructions.
+     */
+    public static InvalidFormatException forDateRange() {
+        return new InvalidFormatException("Yo, that range ends before it starts! "
+                + "Use: due [yyyy-mm-dd] /to [yyyy-mm-dd]");
+    }
+
+    /**
+     * Returns an instance for cases where an event ends before it starts.
+     *
+     * @return An InvalidFormatException with event time instructions.
+     */
+    public static InvalidFormatException forEventRange() {
+        return new InvalidFormatException("Bro, your event ends before it starts! Check the '/from' and '/to' times.");
+    }
+
+    /**
+     * Returns an instance for cases where an agenda command is not a valid range of dates.
+     *
+     * @return An InvalidFormatException with agenda syntax instructions.
+     */
+    public static InvalidFormatException forAgenda() {
+        return new InvalidFormatException("Hey man, use: agenda [yyyy-mm-dd HH:mm] /to [yyyy-mm-dd HH:mm], "
+                + "and make sure it doesn't end before it starts.");
+    }
 }
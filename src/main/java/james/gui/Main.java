@@ -23,6 +23,9 @@ public class Main extends Application {
             AnchorPane ap = fxmlLoader.load();
             Scene scene = new Scene(ap);
             stage.setScene(scene);
+            if (getParameters().getRaw().contains(James.WATCH_OPTION)) {
+                james.watchDataFile();
+            }
             fxmlLoader.<MainWindow>getController().setDuke(james);
             stage.show();
         } catch (IOException e) {
@@ -0,0 +1,87 @@
+package james.index;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import james.task.Deadline;
+import james.task.Task;
+
+/**
+ * An index of the deadlines of a task list, sorted by due date. A query for the deadlines due in
+ * a range of dates is a range scan of the sorted dates, taking time in the logarithm of the list
+ * size plus the number of deadlines found, instead of a walk over the whole list.
+ */
+public class DeadlineIndex {
+    /** Maps each due date, as an epoch day, to the deadlines due then by id. */
+    private final TreeMap<Long, TreeMap<Long, Task>> deadlinesByDay = new TreeMap<>();
+
+    /**
+     * Builds an index over the deadlines among the given tasks.
+     *
+     * @param tasks The tasks to index, which must all have ids.
+     */
+    public DeadlineIndex(Collection<Task> tasks) {
+        for (Task task : tasks) {
+            add(task);
+        }
+    }
+
+    /**
+     * Indexes a task under its due date if it is a deadline.
+     *
+     * @param task The task, which must have an id.
+     */
+    public void add(Task task) {
+        if (task instanceof Deadline) {
+            long day = ((Deadline) task).getDeadlineTime().toEpochDay();
+            this.deadlinesByDay.computeIfAbsent(day, d -> new TreeMap<>()).put(task.getId(), task);
+        }
+    }
+
+    /**
+     * Removes a task from the index.
+     *
+     * @param task The task to remove.
+     */
+    public void remove(Task task) {
+        if (!(task instanceof Deadline)) {
+            return;
+        }
+        long day = ((Deadline) task).getDeadlineTime().toEpochDay();
+        TreeMap<Long, Task> deadlines = this.deadlinesByDay.get(day);
+        if (deadlines != null) {
+            deadlines.remove(task.getId());
+            if (deadlines.isEmpty()) {
+                this.deadlinesByDay.remove(day);
+            }
+        }
+    }
+
+    /**
+     * Finds the deadlines due within a range of dates.
+     *
+     * @param from The first date of the range, or null for no lower bound.
+     * @param to The last date of the range.
+     * @param isUndoneOnly True to leave out the deadlines that are done.
+     * @return The deadlines by due date, those due on the same date in id order.
+     */
+    public List<Task> findBetween(LocalDate from, LocalDate to, boolean isUndoneOnly) {
+        assert to != null : "End of the range cannot be null";
+        NavigableMap<Long, TreeMap<Long, Task>> range = from == null
+                ? this.deadlinesByDay.headMap(to.toEpochDay(), true)
+                : this.deadlinesByDay.subMap(from.toEpochDay(), true, to.toEpochDay(), true);
+        ArrayList<Task> deadlines = new ArrayList<>();
+        for (TreeMap<Long, Task> sameDay : range.values()) {
+            for (Task task : sameDay.values()) {
+                if (!isUndoneOnly || !task.isDone()) {
+                    deadlines.add(task);
+                }
+            }
+        }
+        return deadlines;
+    }
+}
@@ -0,0 +1,237 @@
+package james.index;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import james.task.Event;
+import james.task.Task;
+
+/**
+ * An interval tree over the events of a task list that have a time range. It is a treap ordered
+ * by start time in which every node also keeps the latest end time in its subtree, so a query for
+ * the events overlapping a time range skips every subtree that ends before the range, taking time
+ * in the logarithm of the number of events plus the number of events found.
+ *
+ * <p>Ranges are half-open: an event ending at 14:00 does not overlap one starting at 14:00. An event
+ * or query range that ends when it starts is an instant and takes up the second it starts in, so an
+ * instant at 14:00 overlaps an event from 14:00 to 15:00 but not one ending at 14:00.</p>
+ */
+public class IntervalTree {
+    /** Gives the nodes their heap priorities; seeded, so the shape of a tree is reproducible. */
+    private final Random priorities = new Random(42);
+    private Node root;
+
+    /**
+     * A node of the treap, holding one event.
+     */
+    private static class Node {
+        private final long start;
+        private final long end;
+        private final long id;
+        private final Task task;
+        private final int priority;
+        /** The latest end time of the events in the subtree of this node. */
+        private long maxEnd;
+        private Node left;
+        private Node right;
+
+        private Node(long start, long end, Task task, int priority) {
+            this.start = start;
+            this.end = end;
+            this.id = task.getId();
+            this.task = task;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+
+        /**
+         * Orders the node before a key of start time and id.
+         *
+         * @param otherStart The start time of the key.
+         * @param otherId The id of the key.
+         * @return True if this node comes before the key.
+         */
+        private boolean isBefore(long otherStart, long otherId) {
+            return this.start < otherStart || (this.start == otherStart && this.id < otherId);
+        }
+
+        private void update() {
+            this.maxEnd = this.end;
+            if (this.left != null) {
+                this.maxEnd = Math.max(this.maxEnd, this.left.maxEnd);
+            }
+            if (this.right != null) {
+                this.maxEnd = Math.max(this.maxEnd, this.right.maxEnd);
+            }
+        }
+    }
+
+    /**
+     * Builds a tree over the events with a time range among the given tasks.
+     *
+     * @param tasks The tasks to index, which must all have ids.
+     */
+    public IntervalTree(Collection<Task> tasks) {
+        for (Task task : tasks) {
+            add(task);
+        }
+    }
+
+    /**
+     * Adds a task to the tree if it is an event with a time range.
+     *
+     * @param task The task, which must have an id.
+     */
+    public void add(Task task) {
+        if (!isIndexed(task)) {
+            return;
+        }
+        Event event = (Event) task;
+        long start = toSeconds(event.getStart());
+        Node node = new Node(start, endOf(start, toSeconds(event.getEnd())), task, this.priorities.nextInt());
+        Node[] parts = split(this.root, node.start, node.id);
+        this.root = merge(merge(parts[0], node), parts[1]);
+    }
+
+    /**
+     * Removes a task from the tree.
+     *
+     * @param task The task to remove.
+     */
+    public void remove(Task task) {
+        if (isIndexed(task)) {
+            this.root = remove(this.root, toSeconds(((Event) task).getStart()), task.getId());
+        }
+    }
+
+    /**
+     * Finds the events that overlap a time range.
+     *
+     * @param from The start of the range.
+     * @param to The end of the range, which is not part of it unless it equals the start.
+     * @return The overlapping events, by start time.
+     */
+    public List<Task> findOverlapping(LocalDateTime from, LocalDateTime to) {
+        ArrayList<Task> events = new ArrayList<>();
+        long start = toSeconds(from);
+        collectOverlapping(this.root, start, endOf(start, toSeconds(to)), events);
+        return events;
+    }
+
+    /**
+     * Collects the events of a subtree that overlap a range, in start order.
+     *
+     * @param node The root of the subtree.
+     * @param from The start of the range, in seconds.
+     * @param to The end of the range, in seconds.
+     * @param events Receives the overlapping events.
+     */
+    private static void collectOverlapping(Node node, long from, long to, List<Task> events) {
+        if (node == null || node.maxEnd <= from) {
+            return;
+        }
+        collectOverlapping(node.left, from, to, events);
+        if (node.start >= to) {
+            return;
+        }
+        if (node.end > from) {
+            events.add(node.task);
+        }
+        collectOverlapping(node.right, from, to, events);
+    }
+
+    /**
+     * Splits a subtree into the nodes before a key and the nodes from it on.
+     *
+     * @param node The root of the subtree.
+     * @param start The start time of the key.
+     * @param id The id of the key.
+     * @return The roots of the two parts.
+     */
+    private static Node[] split(Node node, long start, long id) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (node.isBefore(start, id)) {
+            Node[] parts = split(node.right, start, id);
+            node.right = parts[0];
+            node.update();
+            return new Node[]{node, parts[1]};
+        }
+        Node[] parts = split(node.left, start, id);
+        node.left = parts[1];
+        node.update();
+        return new Node[]{parts[0], node};
+    }
+
+    /**
+     * Merges two subtrees whose nodes are all ordered before those of the second.
+     *
+     * @param first The root of the first subtree.
+     * @param second The root of the second subtree.
+     * @return The root of the merged subtree.
+     */
+    private static Node merge(Node first, Node second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            first.update();
+            return first;
+        }
+        second.left = merge(first, second.left);
+        second.update();
+        return second;
+    }
+
+    /**
+     * Removes the node with a key from a subtree.
+     *
+     * @param node The root of the subtree.
+     * @param start The start time of the key.
+     * @param id The id of the key.
+     * @return The root of the subtree without the node.
+     */
+    private static Node remove(Node node, long start, long id) {
+        if (node == null) {
+            return null;
+        }
+        if (node.start == start && node.id == id) {
+            return merge(node.left, node.right);
+        }
+        if (node.isBefore(start, id)) {
+            node.right = remove(node.right, start, id);
+        } else {
+            node.left = remove(node.left, start, id);
+        }
+        node.update();
+        return node;
+    }
+
+    private static boolean isIndexed(Task task) {
+        return task instanceof Event && ((Event) task).hasTimeRange();
+    }
+
+    /**
+     * Returns the end of a range for the overlap test, widening an instant to the second it starts in.
+     *
+     * @param start The start of the range, in seconds.
+     * @param end The end of the range, in seconds.
+     * @return The end to compare against, which is always after the start.
+     */
+    private static long endOf(long start, long end) {
+        return end == start ? start + 1 : end;
+    }
+
+    private static long toSeconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,211 @@
+package james.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import james.task.Task;
+
+/**
+ * An inverted index from the words of each task's {@link Task#toSearchText() search text} to
+ * the tasks containing them. A keyword matches the tasks that have a word starting with it, so
+ * a search is a range lookup in the sorted words plus an intersection of the postings, instead
+ * of formatting and scanning every task.
+ *
+ * <p>Keywords of several words match those words in a row: every word but the last must match
+ * a whole word, e.g. {@code "read bo"} finds "read book" but not "reading book".</p>
+ */
+public class KeywordIndex {
+    /** Maps each word to the tasks containing it, in id order. */
+    private final TreeMap<String, TreeMap<Long, Task>> postings = new TreeMap<>();
+    /** The words each task was indexed under, by task id. */
+    private final HashMap<Long, String[]> wordsById = new HashMap<>();
+
+    /**
+     * Builds an index over the given tasks.
+     *
+     * @param tasks The tasks to index, which must all have ids.
+     */
+    public KeywordIndex(Collection<Task> tasks) {
+        for (Task task : tasks) {
+            add(task);
+        }
+    }
+
+    /**
+     * Indexes a task under the words of its search text.
+     *
+     * @param task The task, which must have an id.
+     */
+    public void add(Task task) {
+        assert task.getId() > 0 : "Only tasks with an id can be indexed";
+        String[] words = tokenize(task.toSearchText());
+        this.wordsById.put(task.getId(), words);
+        for (String word : words) {
+            this.postings.computeIfAbsent(word, w -> new TreeMap<>()).put(task.getId(), task);
+        }
+    }
+
+    /**
+     * Removes a task from the index.
+     *
+     * @param task The task to remove.
+     */
+    public void remove(Task task) {
+        String[] words = this.wordsById.remove(task.getId());
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            TreeMap<Long, Task> posting = this.postings.get(word);
+            if (posting != null) {
+                posting.remove(task.getId());
+                if (posting.isEmpty()) {
+                    this.postings.remove(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-indexes a task whose search text changed, e.g. after it was tagged.
+     *
+     * @param task The changed task.
+     */
+    public void update(Task task) {
+        remove(task);
+        add(task);
+    }
+
+    /**
+     * Finds the tasks matching a keyword.
+     *
+     * @param keyWord The keyword, in any case.
+     * @return The matching tasks in id order, or null if the keyword has no words and so matches every task.
+     */
+    public List<Task> find(String keyWord) {
+        String[] queryWords = tokenize(keyWord);
+        if (queryWords.length == 0) {
+            return null;
+        }
+
+        TreeMap<Long, Task> candidates = null;
+        for (int i = 0; i < queryWords.length; i++) {
+            TreeMap<Long, Task> matches = lookup(queryWords[i], i == queryWords.length - 1);
+            candidates = candidates == null ? matches : intersect(candidates, matches);
+            if (candidates.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+
+        ArrayList<Task> results = new ArrayList<>(candidates.size());
+        for (Task task : candidates.values()) {
+            if (queryWords.length == 1 || containsInARow(this.wordsById.get(task.getId()), queryWords)) {
+                results.add(task);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Checks a single text against a keyword the way {@link #find(String)} matches tasks,
+     * for a list that searches its tasks without an index.
+     *
+     * @param text The search text of a task.
+     * @param keyWord The keyword, in any case.
+     * @return True if the text matches; always true for a keyword without words.
+     */
+    public static boolean matches(String text, String keyWord) {
+        String[] queryWords = tokenize(keyWord);
+        return queryWords.length == 0 || containsInARow(tokenize(text), queryWords);
+    }
+
+    /**
+     * Returns the tasks containing a word, or a word starting with it.
+     *
+     * @param queryWord The word to look up.
+     * @param isPrefix True to also match longer words starting with it.
+     * @return The matching tasks by id; owned by the index unless several words matched.
+     */
+    private TreeMap<Long, Task> lookup(String queryWord, boolean isPrefix) {
+        if (!isPrefix) {
+            TreeMap<Long, Task> posting = this.postings.get(queryWord);
+            return posting == null ? new TreeMap<>() : posting;
+        }
+        SortedMap<String, TreeMap<Long, Task>> range =
+                this.postings.subMap(queryWord, queryWord + Character.MAX_VALUE);
+        if (range.size() == 1) {
+            return range.values().iterator().next();
+        }
+        TreeMap<Long, Task> union = new TreeMap<>();
+        for (TreeMap<Long, Task> posting : range.values()) {
+            union.putAll(posting);
+        }
+        return union;
+    }
+
+    /**
+     * Intersects two sets of tasks by walking the smaller one.
+     *
+     * @param first The first tasks by id.
+     * @param second The second tasks by id.
+     * @return A new map of the tasks in both.
+     */
+    private static TreeMap<Long, Task> intersect(TreeMap<Long, Task> first, TreeMap<Long, Task> second) {
+        TreeMap<Long, Task> smaller = first.size() <= second.size() ? first : second;
+        TreeMap<Long, Task> larger = smaller == first ? second : first;
+        TreeMap<Long, Task> both = new TreeMap<>();
+        for (Map.Entry<Long, Task> entry : smaller.entrySet()) {
+            if (larger.containsKey(entry.getKey())) {
+                both.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return both;
+    }
+
+    /**
+     * Checks that the query words appear in a row, the last one possibly as the start of a word.
+     *
+     * @param words The words of a task, in text order.
+     * @param queryWords The words of the keyword.
+     * @return True if the task matches the whole keyword.
+     */
+    private static boolean containsInARow(String[] words, String[] queryWords) {
+        int last = queryWords.length - 1;
+        for (int start = 0; start + last < words.length; start++) {
+            int i = 0;
+            while (i < last && words[start + i].equals(queryWords[i])) {
+                i++;
+            }
+            if (i == last && words[start + last].startsWith(queryWords[last])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits, keeping their order and repeats.
+     *
+     * @param text The text to split.
+     * @return The words.
+     */
+    private static String[] tokenize(String text) {
+        ArrayList<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean isWordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+}
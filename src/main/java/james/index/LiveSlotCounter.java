@@ -0,0 +1,116 @@
+package james.index;
+
+import java.util.Arrays;
+
+/**
+ * Counts the live slots of a list that leaves tombstones where entries were removed, as a Fenwick
+ * tree of ones and zeros. It translates between the slot of an entry and its 1-indexed position
+ * among the live entries in either direction in logarithmic time, so removing an entry only clears
+ * one slot instead of shifting every later entry.
+ */
+public class LiveSlotCounter {
+    /** The Fenwick tree, 1-indexed: tree[i] counts the live slots in (i - lowbit(i), i]. */
+    private int[] tree;
+    private int slotCount;
+
+    /**
+     * Initializes a counter over slots that are all live.
+     *
+     * @param slotCount The number of slots.
+     */
+    public LiveSlotCounter(int slotCount) {
+        this.slotCount = slotCount;
+        int[] counts = new int[slotCount];
+        Arrays.fill(counts, 1);
+        build(counts, Integer.highestOneBit(Math.max(slotCount, 1)) * 2);
+    }
+
+    /**
+     * Adds a live slot after the last one.
+     */
+    public void append() {
+        if (this.slotCount + 1 >= this.tree.length) {
+            grow();
+        }
+        this.slotCount++;
+        add(this.slotCount - 1, 1);
+    }
+
+    /**
+     * Marks a live slot as removed.
+     *
+     * @param slot The 0-indexed slot.
+     */
+    public void remove(int slot) {
+        assert slot >= 0 && slot < this.slotCount : "Slot out of bounds";
+        add(slot, -1);
+    }
+
+    /**
+     * Returns the position of a live slot among the live slots.
+     *
+     * @param slot The 0-indexed slot.
+     * @return The 1-indexed position.
+     */
+    public int positionOf(int slot) {
+        int count = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i) {
+            count += this.tree[i];
+        }
+        return count;
+    }
+
+    /**
+     * Finds the slot of the live entry at a position, by descending the tree.
+     *
+     * @param position The 1-indexed position among the live slots.
+     * @return The 0-indexed slot.
+     */
+    public int slotOf(int position) {
+        assert position > 0 : "Positions start at 1";
+        int node = 0;
+        int remaining = position;
+        for (int step = Integer.highestOneBit(this.tree.length - 1); step > 0; step >>= 1) {
+            int next = node + step;
+            if (next < this.tree.length && this.tree[next] < remaining) {
+                node = next;
+                remaining -= this.tree[next];
+            }
+        }
+        return node;
+    }
+
+    private void add(int slot, int delta) {
+        for (int i = slot + 1; i < this.tree.length; i += i & -i) {
+            this.tree[i] += delta;
+        }
+    }
+
+    /**
+     * Doubles the capacity of the tree, carrying over the counts of the existing slots.
+     */
+    private void grow() {
+        int[] counts = new int[this.slotCount];
+        for (int slot = 0; slot < this.slotCount; slot++) {
+            counts[slot] = positionOf(slot) - (slot == 0 ? 0 : positionOf(slot - 1));
+        }
+        build(counts, (this.tree.length - 1) * 2);
+    }
+
+    /**
+     * Builds the tree from the counts of the slots in linear time.
+     *
+     * @param counts The count of each slot, 1 if it is live and 0 if not.
+     * @param capacity The number of slots the tree can hold, a power of two.
+     */
+    private void build(int[] counts, int capacity) {
+        this.tree = new int[capacity + 1];
+        System.arraycopy(counts, 0, this.tree, 1, counts.length);
+        for (int i = 1; i <= capacity; i++) {
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                this.tree[parent] += this.tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package james.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable list stored as a trie of 32-wide nodes. {@link #set(int, Object)} and
+ * {@link #append(Object)} return a new vector that copies only the nodes on the path to the
+ * changed element, sharing every other node with the old vector, so keeping old versions is free
+ * and changing a vector of a million elements copies four small arrays.
+ *
+ * @param <T> The type of the elements.
+ */
+public final class PersistentVector<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private final int size;
+    /** How far an index is shifted to find its child in the root; 0 if the root holds the elements. */
+    private final int shift;
+    private final Object[] root;
+
+    private PersistentVector(int size, int shift, Object[] root) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    /**
+     * Returns an empty vector.
+     *
+     * @param <T> The type of the elements.
+     * @return The empty vector.
+     */
+    public static <T> PersistentVector<T> empty() {
+        return new PersistentVector<>(0, 0, new Object[WIDTH]);
+    }
+
+    /**
+     * Builds a vector of the given elements in linear time.
+     *
+     * @param values The elements, in order.
+     * @param <T> The type of the elements.
+     * @return The vector.
+     */
+    public static <T> PersistentVector<T> of(List<? extends T> values) {
+        if (values.isEmpty()) {
+            return empty();
+        }
+        List<Object[]> nodes = new ArrayList<>(values.size() / WIDTH + 1);
+        for (int start = 0; start < values.size(); start += WIDTH) {
+            Object[] leaf = new Object[WIDTH];
+            for (int i = start; i < Math.min(start + WIDTH, values.size()); i++) {
+                leaf[i - start] = values.get(i);
+            }
+            nodes.add(leaf);
+        }
+        int shift = 0;
+        while (nodes.size() > 1) {
+            List<Object[]> parents = new ArrayList<>(nodes.size() / WIDTH + 1);
+            for (int start = 0; start < nodes.size(); start += WIDTH) {
+                Object[] parent = new Object[WIDTH];
+                for (int i = start; i < Math.min(start + WIDTH, nodes.size()); i++) {
+                    parent[i - start] = nodes.get(i);
+                }
+                parents.add(parent);
+            }
+            nodes = parents;
+            shift += BITS;
+        }
+        return new PersistentVector<>(values.size(), shift, nodes.get(0));
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the element at an index.
+     *
+     * @param index The 0-indexed position.
+     * @return The element.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        assert index >= 0 && index < this.size : "Vector index out of bounds";
+        Object[] node = this.root;
+        for (int level = this.shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return (T) node[index & MASK];
+    }
+
+    /**
+     * Copies the elements into a new list in linear time.
+     *
+     * @return The elements, in order.
+     */
+    public ArrayList<T> toList() {
+        ArrayList<T> values = new ArrayList<>(this.size);
+        collect(this.root, this.shift, values);
+        return values;
+    }
+
+    /**
+     * Adds the elements of a subtree to a list, stopping at the end of the vector.
+     *
+     * @param node The root of the subtree.
+     * @param level The shift of the subtree.
+     * @param values Receives the elements.
+     */
+    @SuppressWarnings("unchecked")
+    private void collect(Object[] node, int level, ArrayList<T> values) {
+        for (int i = 0; i < WIDTH && values.size() < this.size; i++) {
+            if (level == 0) {
+                values.add((T) node[i]);
+            } else {
+                collect((Object[]) node[i], level - BITS, values);
+            }
+        }
+    }
+
+    /**
+     * Returns a vector with the element at an index replaced.
+     *
+     * @param index The 0-indexed position.
+     * @param value The new element.
+     * @return The new vector; this one is unchanged.
+     */
+    public PersistentVector<T> set(int index, T value) {
+        assert index >= 0 && index < this.size : "Vector index out of bounds";
+        return new PersistentVector<>(this.size, this.shift, setIn(this.root, this.shift, index, value));
+    }
+
+    /**
+     * Returns a vector with an element added at the end.
+     *
+     * @param value The new element.
+     * @return The new vector; this one is unchanged.
+     */
+    public PersistentVector<T> append(T value) {
+        Object[] newRoot = this.root;
+        int newShift = this.shift;
+        if (this.size == 1 << (this.shift + BITS)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = this.root;
+            newShift += BITS;
+        }
+        return new PersistentVector<>(this.size + 1, newShift, setIn(newRoot, newShift, this.size, value));
+    }
+
+    /**
+     * Copies the path to an index in a subtree, creating the nodes that do not exist yet.
+     *
+     * @param node The root of the subtree, or null if it does not exist yet.
+     * @param level The shift of the subtree.
+     * @param index The 0-indexed position.
+     * @param value The element to put there.
+     * @return The copied root of the subtree.
+     */
+    private static Object[] setIn(Object[] node, int level, int index, Object value) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int slot = (index >>> level) & MASK;
+        copy[slot] = level == 0 ? value : setIn((Object[]) copy[slot], level - BITS, index, value);
+        return copy;
+    }
+}
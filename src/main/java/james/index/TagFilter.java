@@ -0,0 +1,165 @@
+package james.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Function;
+
+import james.exception.InvalidFormatException;
+
+/**
+ * Represents a tag query such as {@code #work #urgent or #home not #done}.
+ * Tags next to each other must all be present, {@code or} separates alternatives and binds
+ * loosest, and {@code not} (or {@code !}) before a tag requires it to be absent. A tag with spaces
+ * is written in quotes, e.g. {@code #"urgent thing!!"}. The query is evaluated on a {@link TagIndex}
+ * with bitwise operations only.
+ */
+public class TagFilter {
+    private static final String OR = "or";
+    private static final String NOT = "not";
+    private static final String TAG_PREFIX = "#";
+    private static final String NOT_PREFIX = "!";
+    private static final char QUOTE = '"';
+
+    /** The alternatives; each holds the tags that must be present and those that must be absent. */
+    private final List<Conjunction> alternatives;
+
+    /**
+     * The tags that must all be present or absent in one alternative.
+     */
+    private static class Conjunction {
+        private final ArrayList<String> includedTags = new ArrayList<>();
+        private final ArrayList<String> excludedTags = new ArrayList<>();
+
+        private boolean isEmpty() {
+            return this.includedTags.isEmpty() && this.excludedTags.isEmpty();
+        }
+    }
+
+    private TagFilter(List<Conjunction> alternatives) {
+        this.alternatives = alternatives;
+    }
+
+    /**
+     * Parses a tag query.
+     *
+     * @param query The query, e.g. {@code #work not #"urgent thing!!"}.
+     * @return The parsed filter.
+     * @throws InvalidFormatException If a word is not a tag, {@code or} or {@code not}, an alternative is empty,
+     *     or a quote is not closed.
+     */
+    public static TagFilter parse(String query) throws InvalidFormatException {
+        ArrayList<Conjunction> alternatives = new ArrayList<>();
+        Conjunction current = new Conjunction();
+        boolean isNegated = false;
+        for (String word : splitWords(query)) {
+            if (word.equalsIgnoreCase(OR)) {
+                if (current.isEmpty() || isNegated) {
+                    throw InvalidFormatException.forFilter();
+                }
+                alternatives.add(current);
+                current = new Conjunction();
+            } else if (word.equalsIgnoreCase(NOT) && !isNegated) {
+                isNegated = true;
+            } else {
+                if (word.startsWith(NOT_PREFIX) && !isNegated) {
+                    isNegated = true;
+                    word = word.substring(NOT_PREFIX.length());
+                }
+                if (!word.startsWith(TAG_PREFIX) || word.length() == TAG_PREFIX.length()) {
+                    throw InvalidFormatException.forFilter();
+                }
+                String tag = unquote(word.substring(TAG_PREFIX.length()));
+                (isNegated ? current.excludedTags : current.includedTags).add(tag);
+                isNegated = false;
+            }
+        }
+        if (current.isEmpty() || isNegated) {
+            throw InvalidFormatException.forFilter();
+        }
+        alternatives.add(current);
+        return new TagFilter(alternatives);
+    }
+
+    /**
+     * Splits a query into words at whitespace, keeping a quoted tag with spaces in one word.
+     *
+     * @param query The query.
+     * @return The words, with the quotes of quoted tags still in them.
+     * @throws InvalidFormatException If a quote is not closed.
+     */
+    private static List<String> splitWords(String query) throws InvalidFormatException {
+        ArrayList<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean isQuoted = false;
+        for (char c : query.trim().toCharArray()) {
+            if (c == QUOTE) {
+                isQuoted = !isQuoted;
+            }
+            if (Character.isWhitespace(c) && !isQuoted) {
+                if (word.length() > 0) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                }
+            } else {
+                word.append(c);
+            }
+        }
+        if (isQuoted) {
+            throw InvalidFormatException.forFilter();
+        }
+        words.add(word.toString());
+        return words;
+    }
+
+    /**
+     * Returns the text of a tag written after its {@code #}, removing the quotes around it if it has any.
+     *
+     * @param text The tag as written, e.g. {@code urgent} or {@code "urgent thing!!"}.
+     * @return The tag text.
+     * @throws InvalidFormatException If the quotes are not around the whole tag or enclose nothing.
+     */
+    private static String unquote(String text) throws InvalidFormatException {
+        if (text.indexOf(QUOTE) < 0) {
+            return text;
+        }
+        if (text.length() < 3 || text.charAt(0) != QUOTE || text.indexOf(QUOTE, 1) != text.length() - 1) {
+            throw InvalidFormatException.forFilter();
+        }
+        return text.substring(1, text.length() - 1);
+    }
+
+    /**
+     * Evaluates the filter on an index.
+     *
+     * @param index The tag index of the task list.
+     * @return The ids of the matching tasks.
+     */
+    public BitSet evaluate(TagIndex index) {
+        return evaluate(index::idsWith, index.allIds());
+    }
+
+    /**
+     * Evaluates the filter on sets of bits, e.g. over the slots of a list that is not indexed.
+     *
+     * @param bitsWith Returns the bits of the items carrying a tag, ignoring case; it is not changed.
+     * @param allBits The bits of every item, which negated tags are taken out of; it is not changed.
+     * @return The bits of the matching items.
+     */
+    public BitSet evaluate(Function<String, BitSet> bitsWith, BitSet allBits) {
+        BitSet matches = new BitSet();
+        for (Conjunction conjunction : this.alternatives) {
+            BitSet ids = (BitSet) (conjunction.includedTags.isEmpty()
+                    ? allBits
+                    : bitsWith.apply(conjunction.includedTags.get(0))).clone();
+            for (int i = 1; i < conjunction.includedTags.size(); i++) {
+                ids.and(bitsWith.apply(conjunction.includedTags.get(i)));
+            }
+            for (String tag : conjunction.excludedTags) {
+                ids.andNot(bitsWith.apply(tag));
+            }
+            matches.or(ids);
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,112 @@
+package james.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import james.task.Task;
+
+/**
+ * An index from each tag to the set of tasks carrying it, kept as a {@link BitSet} over task ids.
+ * Tag queries combine the sets with word-wide AND, OR and AND-NOT operations, see {@link TagFilter},
+ * instead of scanning the tags of every task. Tags are matched ignoring case.
+ */
+public class TagIndex {
+    /** Maps each lower-case tag to the ids of the tasks carrying it. */
+    private final HashMap<String, BitSet> postings = new HashMap<>();
+    /** The ids of every indexed task, which negated tags are taken out of. */
+    private final BitSet allIds = new BitSet();
+    private final HashMap<Long, Task> tasksById = new HashMap<>();
+
+    /**
+     * Builds an index over the given tasks.
+     *
+     * @param tasks The tasks to index, which must all have ids.
+     */
+    public TagIndex(Collection<Task> tasks) {
+        for (Task task : tasks) {
+            add(task);
+        }
+    }
+
+    /**
+     * Indexes a task under all of its tags. Indexing a task again after it was tagged adds the new tags.
+     *
+     * @param task The task, which must have an id.
+     */
+    public void add(Task task) {
+        int bit = bitOf(task);
+        this.allIds.set(bit);
+        this.tasksById.put(task.getId(), task);
+        for (String tag : task.getTags()) {
+            this.postings.computeIfAbsent(tag.toLowerCase(), t -> new BitSet()).set(bit);
+        }
+    }
+
+    /**
+     * Removes a task from the index.
+     *
+     * @param task The task to remove.
+     */
+    public void remove(Task task) {
+        int bit = bitOf(task);
+        this.allIds.clear(bit);
+        this.tasksById.remove(task.getId());
+        for (String tag : task.getTags()) {
+            BitSet posting = this.postings.get(tag.toLowerCase());
+            if (posting != null) {
+                posting.clear(bit);
+                if (posting.isEmpty()) {
+                    this.postings.remove(tag.toLowerCase());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the tasks carrying a tag.
+     *
+     * @param tag The tag, in any case.
+     * @return The set of ids, which is owned by the index and must not be changed.
+     */
+    public BitSet idsWith(String tag) {
+        BitSet posting = this.postings.get(tag.toLowerCase());
+        return posting == null ? new BitSet() : posting;
+    }
+
+    /**
+     * Returns the ids of every indexed task.
+     *
+     * @return The set of ids, which is owned by the index and must not be changed.
+     */
+    public BitSet allIds() {
+        return this.allIds;
+    }
+
+    /**
+     * Returns the tasks with the given ids.
+     *
+     * @param ids The ids of indexed tasks.
+     * @return The tasks, in id order.
+     */
+    public List<Task> tasksOf(BitSet ids) {
+        ArrayList<Task> tasks = new ArrayList<>(ids.cardinality());
+        for (int bit = ids.nextSetBit(0); bit >= 0; bit = ids.nextSetBit(bit + 1)) {
+            tasks.add(this.tasksById.get((long) bit));
+        }
+        return tasks;
+    }
+
+    /**
+     * Returns the bit of a task, which is its id.
+     *
+     * @param task The task.
+     * @return The bit index.
+     */
+    private static int bitOf(Task task) {
+        assert task.getId() > 0 && task.getId() <= Integer.MAX_VALUE : "Only tasks with an int id can be indexed";
+        return (int) task.getId();
+    }
+}
@@ -0,0 +1,247 @@
+package james.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.List;
+
+import james.exception.CanNotWriteToFileException;
+
+/**
+ * Replaces a file's contents so that a crash can never leave it half written.
+ * The new contents are written to a temporary sibling through a buffered channel,
+ * forced to the disk, and then atomically moved over the target. Readers either
+ * see the complete old file or the complete new one.
+ */
+public class AtomicFileWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Atomically replaces the target file with the given lines.
+     *
+     * @param target The file to replace.
+     * @param lines The lines to write, each followed by the system line separator.
+     * @throws CanNotWriteToFileException If the temporary file cannot be written, synced or moved.
+     */
+    public static void write(File target, List<String> lines) throws CanNotWriteToFileException {
+        write(target, lines, Charset.defaultCharset());
+    }
+
+    /**
+     * Atomically replaces the target file with the given lines in the given charset.
+     *
+     * @param target The file to replace.
+     * @param lines The lines to write, each followed by the system line separator.
+     * @param charset The charset to encode the lines in.
+     * @throws CanNotWriteToFileException If the temporary file cannot be written, synced or moved.
+     */
+    public static void write(File target, List<String> lines, Charset charset) throws CanNotWriteToFileException {
+        assert lines != null : "Lines cannot be null";
+        replace(target, tempPath -> writeAndForce(tempPath, lines, charset));
+    }
+
+    /**
+     * Atomically replaces the target file with the given bytes.
+     *
+     * @param target The file to replace.
+     * @param contents The complete new contents of the file.
+     * @throws CanNotWriteToFileException If the temporary file cannot be written, synced or moved.
+     */
+    public static void write(File target, byte[] contents) throws CanNotWriteToFileException {
+        assert contents != null : "Contents cannot be null";
+        replace(target, tempPath -> writeAndForce(tempPath, contents));
+    }
+
+    /**
+     * Fills a temporary sibling of the target and atomically moves it over the target.
+     *
+     * @param target The file to replace.
+     * @param contentWriter Writes and forces the new contents into the temporary file.
+     * @throws CanNotWriteToFileException If the temporary file cannot be written, synced or moved.
+     */
+    private static void replace(File target, ContentWriter contentWriter) throws CanNotWriteToFileException {
+        assert target != null : "Target file cannot be null";
+        Path targetPath = target.toPath().toAbsolutePath();
+        Path directory = targetPath.getParent();
+        Path tempPath = null;
+        try {
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            tempPath = Files.createTempFile(directory, target.getName(), TEMP_SUFFIX);
+            copyPermissions(targetPath, tempPath);
+            contentWriter.writeTo(tempPath);
+            Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(directory);
+        } catch (IOException e) {
+            deleteQuietly(tempPath);
+            throw new CanNotWriteToFileException(e.getMessage());
+        }
+    }
+
+    /**
+     * Gives the temporary file the permissions of the target it replaces, since temporary files are
+     * created readable by the owner only. A new target keeps the permissions of an ordinary new file.
+     *
+     * @param targetPath The file to replace.
+     * @param tempPath The temporary file.
+     * @throws IOException If the permissions cannot be read or set.
+     */
+    private static void copyPermissions(Path targetPath, Path tempPath) throws IOException {
+        if (Files.getFileAttributeView(tempPath, PosixFileAttributeView.class) == null) {
+            return;
+        }
+        if (Files.exists(targetPath)) {
+            Files.setPosixFilePermissions(tempPath, Files.getPosixFilePermissions(targetPath));
+            return;
+        }
+        Path probe = Files.createFile(tempPath.resolveSibling(tempPath.getFileName() + TEMP_SUFFIX));
+        try {
+            Files.setPosixFilePermissions(tempPath, Files.getPosixFilePermissions(probe));
+        } finally {
+            Files.deleteIfExists(probe);
+        }
+    }
+
+    /**
+     * Writes raw bytes to the file and forces them to the disk.
+     *
+     * @param path The temporary file to write.
+     * @param contents The bytes to write.
+     * @throws IOException If writing or syncing fails.
+     */
+    private static void writeAndForce(Path path, byte[] contents) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(contents);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Encodes the lines into a reusable buffer, writes them to the file and forces them to the disk.
+     *
+     * @param path The temporary file to write.
+     * @param lines The lines to write.
+     * @param charset The charset to encode the lines in.
+     * @throws IOException If writing or syncing fails.
+     */
+    private static void writeAndForce(Path path, List<String> lines, Charset charset) throws IOException {
+        CharsetEncoder encoder = charset.newEncoder();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        String separator = System.lineSeparator();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (String line : lines) {
+                encode(encoder, CharBuffer.wrap(line), buffer, channel);
+                encode(encoder, CharBuffer.wrap(separator), buffer, channel);
+            }
+            drain(buffer, channel);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Encodes characters into the buffer, draining it to the channel whenever it fills up.
+     *
+     * @param encoder The charset encoder.
+     * @param chars The characters to encode.
+     * @param buffer The shared output buffer.
+     * @param channel The channel the buffer is drained into.
+     * @throws IOException If the channel write fails.
+     */
+    private static void encode(CharsetEncoder encoder, CharBuffer chars, ByteBuffer buffer,
+                               FileChannel channel) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain(buffer, channel);
+                continue;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            return;
+        }
+    }
+
+    /**
+     * Writes everything in the buffer to the channel and clears it.
+     *
+     * @param buffer The buffer in write mode.
+     * @param channel The channel to write to.
+     * @throws IOException If the channel write fails.
+     */
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Forces the directory entry of the rename to the disk where the platform supports it.
+     *
+     * @param directory The directory containing the target file.
+     */
+    private static void forceDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms (e.g. Windows) cannot open directories; the rename itself is still atomic
+        }
+    }
+
+    /**
+     * Deletes a leftover temporary file after a failed write.
+     *
+     * @param path The temporary file, or null if it was never created.
+     */
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // The stray temporary file does not affect the target and is safe to leave behind
+        }
+    }
+
+    /**
+     * Writes new contents into the temporary file.
+     */
+    private interface ContentWriter {
+        /**
+         * Writes and forces the contents.
+         *
+         * @param path The temporary file.
+         * @throws IOException If writing or syncing fails.
+         */
+        void writeTo(Path path) throws IOException;
+    }
+}
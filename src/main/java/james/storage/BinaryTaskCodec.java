@@ -0,0 +1,419 @@
+package james.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+import james.TaskList;
+import james.exception.CanNotFindFileException;
+import james.task.Deadline;
+import james.task.Event;
+import james.task.Task;
+import james.task.Todo;
+
+/**
+ * Encodes and decodes the compact binary data file format.
+ *
+ * <p>Layout: the magic bytes {@code JAMB}, a format version byte, the journal
+ * generation as a varint, a tag dictionary block (varint count, then each tag as a
+ * string), the varint task count and a 4-byte CRC32C of everything before it, and then
+ * one record per task. Each record is framed by its varint byte length in front and
+ * its 4-byte CRC32C behind. A record starts with one byte holding the task type in its
+ * low bits and the done flag in its top bit, followed by the description, a varint tag
+ * count and the tag ids into the dictionary. Deadlines add their date as a 4-byte epoch
+ * day; events add their start and end times. Strings are a varint byte length followed
+ * by UTF-8 bytes.</p>
+ *
+ * <p>A record whose checksum does not match, or that does not decode, is quarantined on
+ * its own and the next record is read; only a damaged header or frame stops the load.
+ * Files of version 1 have no checksums or frames and are still read.</p>
+ */
+public class BinaryTaskCodec {
+    private static final byte[] MAGIC = {'J', 'A', 'M', 'B'};
+    private static final int VERSION = 2;
+    private static final int UNCHECKED_VERSION = 1;
+    private static final int TYPE_TODO = 0;
+    private static final int TYPE_DEADLINE = 1;
+    private static final int TYPE_EVENT = 2;
+    private static final int TYPE_MASK = 0x0F;
+    private static final int DONE_BIT = 0x80;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private BinaryTaskCodec() {
+    }
+
+    /**
+     * Checks whether a file starts with the binary format's magic bytes.
+     *
+     * @param file The data file.
+     * @return True if the file is in the binary format.
+     */
+    public static boolean isBinary(File file) {
+        if (!file.exists() || file.length() < MAGIC.length) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] start = in.readNBytes(MAGIC.length);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (start[i] != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Encodes a task list into the binary format.
+     *
+     * @param tasks The tasks to encode.
+     * @param generation The journal generation folded into this snapshot, or 0.
+     * @return The complete file contents.
+     */
+    public static byte[] encode(TaskList tasks, long generation) {
+        assert tasks != null : "Cannot encode a null task list";
+        synchronized (tasks) {
+            return encode(tasks::forEachTask, tasks.getSize(), generation);
+        }
+    }
+
+    /**
+     * Encodes tasks into the binary format, e.g. the frozen tasks of a snapshot.
+     *
+     * @param tasks The tasks to encode, in list order.
+     * @param generation The journal generation folded into this snapshot, or 0.
+     * @return The complete file contents.
+     */
+    public static byte[] encode(List<Task> tasks, long generation) {
+        return encode(tasks::forEach, tasks.size(), generation);
+    }
+
+    /**
+     * Encodes tasks that are visited twice, once for the tag dictionary and once for the records,
+     * so that a list can hand out tasks it does not keep.
+     *
+     * @param forEachTask Visits every task in list order.
+     * @param taskCount The number of tasks.
+     * @param generation The journal generation folded into this snapshot, or 0.
+     * @return The complete file contents.
+     */
+    private static byte[] encode(Consumer<Consumer<Task>> forEachTask, int taskCount, long generation) {
+        HashMap<String, Integer> tagIds = new HashMap<>();
+        ArrayList<String> dictionary = new ArrayList<>();
+        forEachTask.accept(task -> {
+            for (String tag : task.getTags()) {
+                if (!tagIds.containsKey(tag)) {
+                    tagIds.put(tag, dictionary.size());
+                    dictionary.add(tag);
+                }
+            }
+        });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        out.writeBytes(MAGIC);
+        out.write(VERSION);
+        writeVarLong(out, generation);
+        writeVarLong(out, dictionary.size());
+        for (String tag : dictionary) {
+            writeString(out, tag);
+        }
+        writeVarLong(out, taskCount);
+        byte[] header = out.toByteArray();
+        writeInt(out, RecordChecksum.compute(header, 0, header.length));
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        forEachTask.accept(task -> {
+            record.reset();
+            writeTask(record, task, tagIds);
+            byte[] bytes = record.toByteArray();
+            writeVarLong(out, bytes.length);
+            out.writeBytes(bytes);
+            writeInt(out, RecordChecksum.compute(bytes, 0, bytes.length));
+        });
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a binary data file. Records that are damaged are counted and kept aside by the
+     * recovery scanner of the snapshot instead of failing the load.
+     *
+     * @param file The data file in the binary format.
+     * @return The tasks and the journal generation stored in the file.
+     * @throws CanNotFindFileException If the file cannot be read, is not a binary data file or its header is damaged.
+     */
+    public static Snapshot decode(File file) throws CanNotFindFileException {
+        return decode(file, false);
+    }
+
+    /**
+     * Decodes a binary data file, optionally into {@link TaskColumns} behind a lazy list. Each decoded
+     * task is then packed into the columns right away, so the tasks of the file are never all held at once.
+     *
+     * @param file The data file in the binary format.
+     * @param isColumnar True to pack the tasks into columns.
+     * @return The tasks and the journal generation stored in the file.
+     * @throws CanNotFindFileException If the file cannot be read, is not a binary data file or its header is damaged.
+     */
+    public static Snapshot decode(File file, boolean isColumnar) throws CanNotFindFileException {
+        try {
+            byte[] contents = Files.readAllBytes(file.toPath());
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+            byte[] magic = in.readNBytes(MAGIC.length);
+            int version = in.read();
+            if (!Arrays.equals(magic, MAGIC) || (version != VERSION && version != UNCHECKED_VERSION)) {
+                throw new CanNotFindFileException("Not a binary task file: " + file);
+            }
+
+            long generation = readVarLong(in);
+            int tagCount = (int) readVarLong(in);
+            String[] dictionary = new String[tagCount];
+            for (int i = 0; i < tagCount; i++) {
+                dictionary[i] = readString(in);
+            }
+
+            int taskCount = (int) readVarLong(in);
+            if (version == VERSION) {
+                int headerLength = contents.length - in.available();
+                if (in.readInt() != RecordChecksum.compute(contents, 0, headerLength)) {
+                    throw new CanNotFindFileException("Damaged header in binary file at: " + file);
+                }
+            }
+            RecoveryScanner recovery = new RecoveryScanner();
+            int capacity = Math.min(taskCount, contents.length);
+            TaskColumns columns = isColumnar ? new TaskColumns(capacity) : null;
+            TaskList tasks = isColumnar ? null : new TaskList(capacity);
+            Consumer<Task> sink = isColumnar ? task -> {
+                task.setId(columns.getRecordCount() + 1L);
+                columns.add(task);
+            } : tasks::addTask;
+            for (int i = 0; i < taskCount; i++) {
+                if (version == UNCHECKED_VERSION) {
+                    sink.accept(readTask(in, dictionary));
+                    recovery.countRecord(false);
+                } else if (!readRecord(in, contents, i + 1, dictionary, sink, recovery)) {
+                    break;
+                }
+            }
+            if (isColumnar) {
+                columns.trimToSize();
+                return new Snapshot(new TaskList(columns), generation, recovery);
+            }
+            return new Snapshot(tasks, generation, recovery);
+        } catch (IOException | RuntimeException e) {
+            throw new CanNotFindFileException("Error reading binary file at: " + file);
+        }
+    }
+
+    /**
+     * Reads one framed record and hands its task to the sink, or quarantines it if it is damaged.
+     *
+     * @param in The input positioned at the frame of the record.
+     * @param contents The whole file, which the input reads.
+     * @param recordNumber The 1-indexed number of the record in the file.
+     * @param dictionary The tag dictionary.
+     * @param sink Receives the task.
+     * @param recovery Counts the record and keeps it aside if it is damaged.
+     * @return False if the frame itself is damaged, so the records after it cannot be found.
+     * @throws IOException If the input cannot tell how much of the file is left.
+     */
+    private static boolean readRecord(DataInputStream in, byte[] contents, int recordNumber, String[] dictionary,
+                                      Consumer<Task> sink, RecoveryScanner recovery) throws IOException {
+        int start = contents.length - in.available();
+        long length;
+        try {
+            length = readVarLong(in);
+        } catch (IOException e) {
+            length = -1;
+        }
+        if (length < 0 || length + Integer.BYTES > in.available()) {
+            recovery.rejectRecord("records " + recordNumber + " on",
+                    Arrays.copyOfRange(contents, start, contents.length), true);
+            return false;
+        }
+
+        byte[] record = new byte[(int) length];
+        try {
+            in.readFully(record);
+            if (in.readInt() != RecordChecksum.compute(record, 0, record.length)) {
+                recovery.rejectRecord("record " + recordNumber, record, true);
+                return true;
+            }
+            sink.accept(readTask(new DataInputStream(new ByteArrayInputStream(record)), dictionary));
+            recovery.countRecord(true);
+        } catch (IOException | RuntimeException e) {
+            recovery.rejectRecord("record " + recordNumber, record, false);
+        }
+        return true;
+    }
+
+    /**
+     * Reads only the journal generation from the header of a binary data file.
+     *
+     * @param file The data file in the binary format.
+     * @return The generation, or 0 if the header cannot be read.
+     */
+    public static long readGeneration(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            in.skipNBytes(MAGIC.length + 1);
+            return readVarLong(in);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Writes one task record.
+     *
+     * @param out The output buffer.
+     * @param task The task to write.
+     * @param tagIds The ids of all tags in the dictionary.
+     */
+    private static void writeTask(ByteArrayOutputStream out, Task task, HashMap<String, Integer> tagIds) {
+        int type = task instanceof Deadline ? TYPE_DEADLINE : task instanceof Event ? TYPE_EVENT : TYPE_TODO;
+        out.write(type | (task.isDone() ? DONE_BIT : 0));
+        writeString(out, task.getDescription());
+        writeVarLong(out, task.getTags().size());
+        for (String tag : task.getTags()) {
+            writeVarLong(out, tagIds.get(tag));
+        }
+
+        if (task instanceof Deadline) {
+            writeInt(out, (int) ((Deadline) task).getDeadlineTime().toEpochDay());
+        } else if (task instanceof Event) {
+            writeString(out, ((Event) task).getStartTime());
+            writeString(out, ((Event) task).getEndTime());
+        }
+    }
+
+    /**
+     * Reads one task record.
+     *
+     * @param in The input stream positioned at a record.
+     * @param dictionary The tag dictionary.
+     * @return The decoded task.
+     * @throws IOException If the record is truncated or has an unknown type.
+     */
+    private static Task readTask(DataInputStream in, String[] dictionary) throws IOException {
+        int header = in.readUnsignedByte();
+        String description = readString(in);
+        int tagCount = (int) readVarLong(in);
+        ArrayList<String> tags = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            tags.add(dictionary[(int) readVarLong(in)]);
+        }
+
+        Task task;
+        switch (header & TYPE_MASK) {
+        case TYPE_TODO:
+            task = new Todo(description, tags);
+            break;
+        case TYPE_DEADLINE:
+            task = new Deadline(description, tags, LocalDate.ofEpochDay(in.readInt()));
+            break;
+        case TYPE_EVENT:
+            task = new Event(description, tags, readString(in), readString(in));
+            break;
+        default:
+            throw new IOException("Unknown task type " + (header & TYPE_MASK));
+        }
+        if ((header & DONE_BIT) != 0) {
+            task.mark();
+        }
+        return task;
+    }
+
+    /**
+     * Writes a 4-byte number, high byte first, e.g. a checksum.
+     *
+     * @param out The output buffer.
+     * @param value The number to write.
+     */
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Writes a string as a varint byte length followed by its UTF-8 bytes.
+     *
+     * @param out The output buffer.
+     * @param text The string to write.
+     */
+    private static void writeString(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(ByteArrayOutputStream, String)}.
+     *
+     * @param in The input stream.
+     * @return The decoded string.
+     * @throws IOException If the stream ends early.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = (int) readVarLong(in);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a non-negative number seven bits at a time, low bits first.
+     *
+     * @param out The output buffer.
+     * @param value The number to write.
+     */
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        assert value >= 0 : "Varints are unsigned";
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+
+    /**
+     * Reads a number written by {@link #writeVarLong(ByteArrayOutputStream, long)}.
+     *
+     * @param in The input stream.
+     * @return The decoded number.
+     * @throws IOException If the stream ends early or the varint is too long.
+     */
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int next = in.read();
+            if (next < 0) {
+                throw new EOFException("Truncated varint");
+            }
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+}
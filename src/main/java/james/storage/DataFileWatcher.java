@@ -0,0 +1,314 @@
+package james.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import james.Parser;
+import james.TaskList;
+import james.exception.CanNotWriteToFileException;
+import james.exception.JamesException;
+import james.task.Task;
+
+/**
+ * Notices when the data file is changed by another program and merges those changes into the task list.
+ * A {@link WatchService} thread flags changes as they happen; the changes are then applied on the
+ * command thread by {@link #applyExternalChanges(TaskList)}, between commands, so a command never
+ * sees the list change under it.
+ *
+ * <p>The watcher remembers a hash of every record as James last loaded or saved them, together
+ * with the file's size, modification time and file key. An external change is diffed against
+ * those records with {@link RecordDiff}, and only the tasks of changed records are replaced,
+ * inserted or removed; the rest keep their objects and ids. Writes by James itself leave the
+ * remembered state matching the file, so they are not mistaken for external changes; after a
+ * single change only the hash of the changed record is updated.</p>
+ */
+public class DataFileWatcher {
+    /** The suffix of the copy kept of an external version that a save had to overwrite. */
+    public static final String CONFLICT_SUFFIX = ".conflict";
+
+    private final File file;
+    private final WatchService watchService;
+    private final Thread thread;
+    /** Set by the watch thread when the file changed since it was last loaded or saved. */
+    private boolean isChangePending;
+    /** The hashes of the records as last loaded or saved; only the first {@link #syncedCount} are used. */
+    private long[] syncedHashes = new long[0];
+    private int syncedCount;
+    private String syncedStamp = "";
+    /** The scan of the last merged version if it had records that were put aside, until it is taken. */
+    private RecoveryScanner lastRecovery;
+
+    /**
+     * Starts watching the directory of a data file.
+     *
+     * @param file The data file.
+     * @throws JamesException If the directory cannot be watched.
+     */
+    public DataFileWatcher(File file) throws JamesException {
+        assert file != null : "Watched file cannot be null";
+        this.file = file.getAbsoluteFile();
+        try {
+            this.watchService = this.file.toPath().getFileSystem().newWatchService();
+            this.file.getParentFile().toPath().register(this.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new JamesException("Could not watch " + file + " for changes");
+        }
+        this.thread = new Thread(this::watch, "james-file-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Records the list as the current contents of the data file, after James loaded or saved it.
+     *
+     * @param tasks The task list that matches the file.
+     */
+    public synchronized void markSynced(TaskList tasks) {
+        this.syncedHashes = hash(tasks.toFileLines(null));
+        this.syncedCount = this.syncedHashes.length;
+        this.syncedStamp = stamp();
+        this.isChangePending = false;
+    }
+
+    /**
+     * Records a single change as written to the data file, updating only the hash of the changed record.
+     *
+     * @param tasks The task list after the change, which matches the file.
+     * @param mutation The change that was saved.
+     */
+    public synchronized void markSaved(TaskList tasks, Mutation mutation) {
+        int index = mutation.getTaskNumber() - 1;
+        switch (mutation.getType()) {
+        case ADD:
+            if (this.syncedCount == this.syncedHashes.length) {
+                this.syncedHashes = Arrays.copyOf(this.syncedHashes, Math.max(16, this.syncedCount * 2));
+            }
+            this.syncedHashes[this.syncedCount++] = hash(tasks.getTask(tasks.getSize()).toFileFormat());
+            break;
+        case DELETE:
+            if (index >= 0 && index < this.syncedCount) {
+                System.arraycopy(this.syncedHashes, index + 1, this.syncedHashes, index, this.syncedCount - index - 1);
+                this.syncedCount--;
+            }
+            break;
+        default:
+            if (index >= 0 && index < this.syncedCount && index < tasks.getSize()) {
+                this.syncedHashes[index] = hash(tasks.getTask(index + 1).toFileFormat());
+            }
+            break;
+        }
+        if (this.syncedCount != tasks.getSize()) {
+            markSynced(tasks);
+            return;
+        }
+        this.syncedStamp = stamp();
+        this.isChangePending = false;
+    }
+
+    /**
+     * Returns whether the data file changed since James last loaded or saved it.
+     *
+     * @return True if another program changed the file.
+     */
+    public synchronized boolean hasExternalChange() {
+        return this.isChangePending || !stamp().equals(this.syncedStamp);
+    }
+
+    /**
+     * Merges the changes another program made to the data file into the task list, record by record.
+     * The list must still match what James last loaded or saved, i.e. this is called between commands.
+     * Records edited by hand without a checksum are merged like any other. Records that do not parse or
+     * fail their checksum are moved to the quarantine file and reported by {@link #takeRecovery()}.
+     *
+     * @param tasks The task list to update.
+     * @return The number of tasks that were replaced, inserted or removed.
+     * @throws JamesException If the data file cannot be read.
+     */
+    public synchronized int applyExternalChanges(TaskList tasks) throws JamesException {
+        if (!hasExternalChange()) {
+            return 0;
+        }
+        String stamp = stamp();
+        this.isChangePending = false;
+        Snapshot snapshot = StorageFormat.read(this.file, ParallelTaskLoader.DEFAULT_THRESHOLD_BYTES);
+        if (snapshot.getRecovery().hasQuarantinedLines()) {
+            snapshot.getRecovery().quarantine(this.file);
+            this.lastRecovery = snapshot.getRecovery();
+        }
+
+        ArrayList<String> records = snapshot.getTasks().toFileLines(null);
+        long[] hashes = hash(records);
+        // A list that no longer matches the remembered records is diffed against its own records instead
+        long[] currentHashes = tasks.getSize() == this.syncedCount
+                ? Arrays.copyOf(this.syncedHashes, this.syncedCount) : hash(tasks.toFileLines(null));
+        List<RecordDiff.Hunk> hunks = RecordDiff.compute(currentHashes, hashes);
+
+        int changedCount = 0;
+        for (int i = hunks.size() - 1; i >= 0; i--) {
+            changedCount += applyHunk(tasks, hunks.get(i), records);
+        }
+        this.syncedHashes = hashes;
+        this.syncedCount = hashes.length;
+        this.syncedStamp = stamp;
+        return changedCount;
+    }
+
+    /**
+     * Returns and forgets the scan of the last merged version of the file if it put records aside.
+     *
+     * @return The recovery scanner with the quarantined records, or null if every record was merged.
+     */
+    public synchronized RecoveryScanner takeRecovery() {
+        RecoveryScanner recovery = this.lastRecovery;
+        this.lastRecovery = null;
+        return recovery;
+    }
+
+    /**
+     * Keeps a copy of the data file if it changed externally and the change has not been
+     * merged yet, because the save that is about to happen will overwrite it.
+     *
+     * @return The copy, or null if the file had no unmerged external change.
+     * @throws CanNotWriteToFileException If the copy cannot be written.
+     */
+    public synchronized File preserveConflict() throws CanNotWriteToFileException {
+        if (!hasExternalChange() || !this.file.exists()) {
+            return null;
+        }
+        File copy = new File(this.file.getPath() + CONFLICT_SUFFIX);
+        try {
+            Files.copy(this.file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new CanNotWriteToFileException(e.getMessage());
+        }
+        return copy;
+    }
+
+    /**
+     * Stops the watch thread.
+     */
+    public void close() {
+        try {
+            this.watchService.close();
+        } catch (IOException e) {
+            // The thread stops either way
+        }
+    }
+
+    /**
+     * Replaces, inserts and removes the tasks of one hunk. Hunks are applied from the last to the
+     * first, so the positions of earlier hunks stay valid.
+     *
+     * @param tasks The task list to update.
+     * @param hunk The changed records.
+     * @param records The records of the new version.
+     * @return The number of tasks changed.
+     */
+    private static int applyHunk(TaskList tasks, RecordDiff.Hunk hunk, List<String> records) {
+        int replacedCount = Math.min(hunk.getOldCount(), hunk.getNewCount());
+        for (int i = 0; i < replacedCount; i++) {
+            tasks.replaceTask(hunk.getOldStart() + i + 1, parse(records.get(hunk.getNewStart() + i)));
+        }
+        for (int i = replacedCount; i < hunk.getOldCount(); i++) {
+            tasks.removeTask(hunk.getOldStart() + replacedCount + 1);
+        }
+        for (int i = replacedCount; i < hunk.getNewCount(); i++) {
+            tasks.insertTask(hunk.getOldStart() + i + 1, parse(records.get(hunk.getNewStart() + i)));
+        }
+        return Math.max(hunk.getOldCount(), hunk.getNewCount());
+    }
+
+    /**
+     * Parses a record that already parsed while the file was read.
+     *
+     * @param record The stored record.
+     * @return A new Task without an id.
+     */
+    private static Task parse(String record) {
+        Task task = Parser.parseLine(record);
+        assert task != null : "Records read from the file parse";
+        return task;
+    }
+
+    /**
+     * Hashes every record into 64 bits, from its String hash and its CRC32C.
+     *
+     * @param records The stored records.
+     * @return The hashes, in record order.
+     */
+    private static long[] hash(List<String> records) {
+        long[] hashes = new long[records.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hash(records.get(i));
+        }
+        return hashes;
+    }
+
+    /**
+     * Hashes one record into 64 bits, from its String hash and its CRC32C.
+     *
+     * @param record The stored record.
+     * @return The hash.
+     */
+    private static long hash(String record) {
+        return ((long) record.hashCode() << 32) | (RecordChecksum.compute(record) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Flags a change to the data file unless it is a write James has already recorded. The stamp is
+     * compared under the same lock that records James's own writes, so a late event for one of them
+     * cannot flag a change after it was recorded.
+     */
+    private synchronized void flagChange() {
+        if (!stamp().equals(this.syncedStamp)) {
+            this.isChangePending = true;
+        }
+    }
+
+    /**
+     * Describes the data file's size, modification time and file key, which all change when it is rewritten.
+     *
+     * @return The stamp, or "missing" if the file does not exist.
+     */
+    private String stamp() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(this.file.toPath(), BasicFileAttributes.class);
+            return attributes.size() + "/" + attributes.lastModifiedTime() + "/" + attributes.fileKey();
+        } catch (IOException e) {
+            return "missing";
+        }
+    }
+
+    /**
+     * Runs on the watch thread and flags changes to the data file that James did not make.
+     */
+    private void watch() {
+        Path name = this.file.toPath().getFileName();
+        try {
+            while (true) {
+                WatchKey key = this.watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (name.equals(event.context())) {
+                        flagChange();
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closing the watch service ends the thread
+        }
+    }
+}
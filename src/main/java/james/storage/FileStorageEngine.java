@@ -0,0 +1,380 @@
+package james.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import james.TaskList;
+import james.exception.JamesException;
+
+/**
+ * Stores the task list in a single data file, in the text or binary format.
+ * Optionally appends each change to a journal next to the data file instead of
+ * rewriting it, coalesces concurrent full saves with group commit, or writes on a
+ * persistence thread in write-behind mode.
+ */
+public class FileStorageEngine implements StorageEngine {
+    private final String filePath;
+    /** The format full saves are written in; loading accepts either format. */
+    private final StorageFormat format;
+    /** The mutation journal, or null if every change rewrites the whole file. */
+    private final Journal journal;
+    /** Folds the journal back into the data file in the background, or null if not journaled. */
+    private final JournalCompactor compactor;
+    /** Serializes journal appends with full snapshot writes. */
+    private final Object journalLock = new Object();
+    /** Coalesces concurrent full saves into one synced write, or null to write each save directly. */
+    private GroupCommitter groupCommitter;
+    /** Writes the list on a persistence thread, or null to write on the caller's thread. */
+    private WriteBehindSaver writeBehindSaver;
+    /** The data file size from which the file is parsed on several cores. */
+    private long parallelLoadThreshold = ParallelTaskLoader.DEFAULT_THRESHOLD_BYTES;
+    /** The results of checking the records of the last load. */
+    private RecoveryScanner lastRecovery = new RecoveryScanner();
+    /** Whether text files are loaded into lazy task lists backed by an offset index. */
+    private boolean isLazy;
+    /** Whether data files are loaded into {@link TaskColumns} instead of Task objects. */
+    private boolean isColumnar;
+    /** The offset indexes of the lazy lists handed out, which keep the data file open until closed. */
+    private final ArrayList<TaskIndex> openIndexes = new ArrayList<>();
+
+    /**
+     * Initializes an engine for the given data file.
+     * In journaled mode each change is appended to a journal next to the data file
+     * instead of rewriting the data file, and the full file is only written on
+     * {@link #save(TaskList)} and by background compactions.
+     *
+     * @param filePath The relative or absolute path where the data file is located.
+     * @param isJournaled True to append changes to a journal instead of rewriting the file.
+     * @param format The format full saves are written in.
+     */
+    public FileStorageEngine(String filePath, boolean isJournaled, StorageFormat format) {
+        assert filePath != null && !filePath.isEmpty() : "Storage file path cannot be null or empty";
+        assert format != null : "Storage format cannot be null";
+        this.filePath = filePath;
+        this.format = format;
+        this.journal = isJournaled ? new Journal(filePath) : null;
+        this.compactor = isJournaled ? new JournalCompactor(filePath, format, this.journal) : null;
+    }
+
+    /**
+     * Returns whether changes are appended to a journal instead of rewriting the data file.
+     *
+     * @return True if the engine is in journaled mode.
+     */
+    public boolean isJournaled() {
+        return this.journal != null;
+    }
+
+    /**
+     * Returns whether saves are written later by a persistence thread.
+     *
+     * @return True if the engine is in write-behind mode.
+     */
+    public boolean isWriteBehind() {
+        return this.writeBehindSaver != null;
+    }
+
+    /**
+     * Returns the data file.
+     *
+     * @return The data file.
+     */
+    public File getFile() {
+        return new File(this.filePath);
+    }
+
+    /**
+     * Returns the format full saves are written in.
+     *
+     * @return The storage format.
+     */
+    public StorageFormat getFormat() {
+        return this.format;
+    }
+
+    /**
+     * Returns the results of checking the records of the last load.
+     *
+     * @return The recovery scanner of the last load, with its counts and quarantined lines.
+     */
+    @Override
+    public RecoveryScanner getLastRecovery() {
+        return this.lastRecovery;
+    }
+
+    @Override
+    public File getArchiveFile() {
+        return new File(this.filePath + TaskArchive.ARCHIVE_SUFFIX);
+    }
+
+    /**
+     * Sets how large the journal may grow before it is compacted into the data file
+     * on a background thread. Has no effect unless the engine is journaled.
+     *
+     * @param maxRecords The number of journal records that triggers a compaction.
+     * @param maxBytes The journal size in bytes that triggers a compaction.
+     */
+    public void setCompactionThresholds(int maxRecords, long maxBytes) {
+        if (this.compactor != null) {
+            this.compactor.setThresholds(maxRecords, maxBytes);
+        }
+    }
+
+    /**
+     * Enables group commit for full saves. Saves that arrive within the window of the
+     * first pending save are written together with a single fsync; every caller still
+     * returns only after its contents (or newer ones) are durable.
+     *
+     * @param windowMillis How long to wait for further saves before writing; 0 writes at once.
+     */
+    public void setGroupCommitWindow(long windowMillis) {
+        assert windowMillis >= 0 : "Commit window cannot be negative";
+        this.groupCommitter = new GroupCommitter(new File(this.filePath), windowMillis);
+    }
+
+    /**
+     * Enables write-behind mode: saves only mark the list dirty, and a dedicated
+     * persistence thread snapshots and writes it, folding every change made within
+     * the staleness bound into one write. Call {@link #flush()} to wait for pending writes.
+     * Journaled storage already appends changes cheaply, so it does not use write-behind.
+     *
+     * @param maxStalenessMillis The longest time a change may stay unsaved.
+     */
+    public void setWriteBehind(long maxStalenessMillis) {
+        assert this.journal == null : "Journaled storage does not use write-behind";
+        this.writeBehindSaver = new WriteBehindSaver(new File(this.filePath), this.format, maxStalenessMillis);
+    }
+
+    /**
+     * Sets the data file size from which loading is split into chunks parsed in parallel.
+     * Smaller files are read sequentially.
+     *
+     * @param thresholdBytes The file size in bytes from which the parallel path is used.
+     */
+    public void setParallelLoadThreshold(long thresholdBytes) {
+        assert thresholdBytes >= 0 : "Threshold cannot be negative";
+        this.parallelLoadThreshold = thresholdBytes;
+    }
+
+    /**
+     * Enables lazy loading: text files in the current layout are loaded into a lazy
+     * {@link TaskList} that only keeps an offset index, and parses each task when it is first used.
+     * Binary files and files that still need migrating are loaded as usual.
+     *
+     * @param isLazy True to load text files lazily.
+     */
+    public void setLazyLoading(boolean isLazy) {
+        this.isLazy = isLazy;
+    }
+
+    /**
+     * Enables columnar loading: the records of the data file are parsed straight into {@link TaskColumns}
+     * behind a lazy {@link TaskList}, which only creates Task objects for the tasks a session uses or a
+     * query returns. Lazy loading from an offset index takes precedence where it applies.
+     *
+     * @param isColumnar True to pack loaded lists into columns.
+     */
+    public void setColumnarLoading(boolean isColumnar) {
+        this.isColumnar = isColumnar;
+    }
+
+    /**
+     * Loads tasks from the data file, creating an empty file if it does not exist yet.
+     * Text files are streamed line by line straight into the Parser and the TaskList, or parsed
+     * in parallel chunks if they are large, or into columns in columnar mode; binary files are decoded directly.
+     * Records with a wrong checksum or that cannot be parsed are appended to a quarantine file
+     * next to the data file instead of being dropped; see {@link #getLastRecovery()}.
+     * In journaled mode, the journal records written after the snapshot are replayed on top.
+     *
+     * @return A TaskList containing the tasks loaded from the file.
+     * @throws JamesException If there is an error reading the file or parsing data.
+     */
+    @Override
+    public TaskList load() throws JamesException {
+        File file = new File(this.filePath);
+        if (!file.exists()) {
+            createNewDirectory(file);
+            createNewFile(file);
+            return new TaskList();
+        }
+
+        Snapshot snapshot = this.isLazy ? readLazily(file) : null;
+        if (snapshot == null) {
+            snapshot = this.isColumnar
+                    ? StorageFormat.readColumns(file)
+                    : StorageFormat.read(file, this.parallelLoadThreshold);
+        }
+        this.lastRecovery = snapshot.getRecovery();
+        this.lastRecovery.quarantine(file);
+        if (this.journal != null) {
+            this.journal.replay(snapshot.getTasks(), snapshot.getGeneration());
+        }
+        return snapshot.getTasks();
+    }
+
+    /**
+     * Indexes a text data file for a lazy task list.
+     *
+     * @param file The data file.
+     * @return The lazy tasks, or null if the file has to be loaded in full.
+     * @throws JamesException If the file cannot be read.
+     */
+    private Snapshot readLazily(File file) throws JamesException {
+        if (BinaryTaskCodec.isBinary(file)) {
+            return null;
+        }
+        TaskIndex index = TaskIndex.build(file);
+        if (index == null) {
+            return null;
+        }
+        if (StorageFormat.parseVersion(index.getHeaderLines()) < StorageFormat.TEXT_VERSION) {
+            index.close();
+            return null;
+        }
+        synchronized (this.openIndexes) {
+            this.openIndexes.add(index);
+        }
+        return new Snapshot(new TaskList(index), Journal.findGeneration(index.getHeaderLines()),
+                index.getRecoveryScanner());
+    }
+
+    /**
+     * Saves the current list of tasks to the data file.
+     * In journaled mode the journal is sealed first, so the new snapshot replaces it,
+     * after waiting for any background compaction to finish. In write-behind mode the
+     * list is only marked dirty and written later by the persistence thread.
+     *
+     * @param tasks The TaskList containing tasks to be saved.
+     * @throws JamesException If the file cannot be created or written to.
+     */
+    @Override
+    public void save(TaskList tasks) throws JamesException {
+        assert tasks != null : "Cannot save a null task list";
+        if (this.writeBehindSaver != null) {
+            this.writeBehindSaver.markDirty(tasks);
+            return;
+        }
+        File file = new File(this.filePath);
+        createNewDirectory(file);
+        createNewFile(file);
+        if (this.journal == null) {
+            writeSnapshot(tasks, 0);
+            return;
+        }
+
+        synchronized (this.journalLock) {
+            this.compactor.awaitIdle();
+            long generation = this.journal.seal();
+            writeSnapshot(tasks, generation);
+            this.journal.deleteSealed(generation);
+        }
+    }
+
+    /**
+     * Atomically replaces the data file with the given tasks, through the group committer if enabled.
+     *
+     * @param tasks The TaskList containing tasks to be saved.
+     * @param generation The journal generation the tasks include, or 0 if not journaled.
+     * @throws JamesException If the file cannot be written.
+     */
+    private void writeSnapshot(TaskList tasks, long generation) throws JamesException {
+        if (this.groupCommitter != null) {
+            this.groupCommitter.commit(this.format.encode(tasks, generation));
+            return;
+        }
+        File file = new File(this.filePath);
+        if (this.format == StorageFormat.TEXT) {
+            AtomicFileWriter.write(file, StorageFormat.toTextLines(tasks, generation));
+            return;
+        }
+        AtomicFileWriter.write(file, this.format.encode(tasks, generation));
+    }
+
+    /**
+     * Persists a single change made to the task list.
+     * In journaled mode only the change is appended; otherwise the whole list is saved.
+     * Appending may start a background compaction once the journal is large enough.
+     *
+     * @param tasks The TaskList after the change was applied.
+     * @param mutation The change that was applied.
+     * @throws JamesException If the change cannot be written.
+     */
+    @Override
+    public void apply(TaskList tasks, Mutation mutation) throws JamesException {
+        assert mutation != null : "Cannot save a null mutation";
+        if (this.journal == null) {
+            save(tasks);
+            return;
+        }
+
+        synchronized (this.journalLock) {
+            this.journal.append(mutation);
+            this.compactor.compactIfDue();
+        }
+    }
+
+    /**
+     * Blocks until every save requested so far has reached the disk.
+     * Waits for the write-behind thread and any running journal compaction.
+     *
+     * @throws JamesException If a pending write failed.
+     */
+    @Override
+    public void flush() throws JamesException {
+        if (this.writeBehindSaver != null) {
+            this.writeBehindSaver.flush();
+        }
+        if (this.compactor != null) {
+            this.compactor.awaitIdle();
+        }
+    }
+
+    /**
+     * Flushes pending writes and stops the write-behind and compaction threads.
+     *
+     * @throws JamesException If a pending write failed.
+     */
+    @Override
+    public void close() throws JamesException {
+        flush();
+        if (this.writeBehindSaver != null) {
+            this.writeBehindSaver.close();
+        }
+        if (this.compactor != null) {
+            this.compactor.close();
+        }
+        synchronized (this.openIndexes) {
+            for (TaskIndex index : this.openIndexes) {
+                index.close();
+            }
+            this.openIndexes.clear();
+        }
+    }
+
+    /**
+     * Creates the file's parent directory if it is missing currently.
+     *
+     * @param file The file we want to access.
+     */
+    private void createNewDirectory(File file) {
+        if (file.getParentFile() != null && !file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+    }
+
+    /**
+     * Create the file if it is missing currently.
+     *
+     * @param file the file we want to access.
+     */
+    private void createNewFile(File file) throws JamesException {
+        try {
+            if (!file.exists()) {
+                file.createNewFile();
+            }
+        } catch (IOException e) {
+            throw new JamesException("Could not create file");
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package james.storage;
+
+import java.io.File;
+
+import james.exception.JamesException;
+
+/**
+ * Converts data files between the text and binary formats, e.g. to migrate an
+ * existing {@code data/tasks.txt}. The source format is detected automatically.
+ */
+public class FormatConverter {
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private FormatConverter() {
+    }
+
+    /**
+     * Reads a data file in either format and atomically writes it in the target format.
+     * The source and target may be the same file.
+     *
+     * @param source The data file to read.
+     * @param target The data file to write.
+     * @param format The format to write the target in.
+     * @return The number of tasks converted.
+     * @throws JamesException If the source cannot be read or the target cannot be written.
+     */
+    public static int convert(File source, File target, StorageFormat format) throws JamesException {
+        assert source != null && target != null : "Files cannot be null";
+        assert format != null : "Format cannot be null";
+        Snapshot snapshot = StorageFormat.read(source, ParallelTaskLoader.DEFAULT_THRESHOLD_BYTES);
+        AtomicFileWriter.write(target, format.encode(snapshot.getTasks(), snapshot.getGeneration()));
+        return snapshot.getTasks().getSize();
+    }
+
+    /**
+     * Converts a data file from the command line.
+     * Usage: {@code FormatConverter <source> <target> <text|binary>}.
+     *
+     * @param args The source file, the target file and the target format.
+     */
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Usage: FormatConverter <source> <target> <text|binary>");
+            return;
+        }
+        try {
+            StorageFormat format = StorageFormat.valueOf(args[2].toUpperCase());
+            int count = convert(new File(args[0]), new File(args[1]), format);
+            System.out.println("Converted " + count + " tasks to " + format + ": " + args[1]);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unknown format: " + args[2]);
+        } catch (JamesException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
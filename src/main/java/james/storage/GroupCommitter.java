@@ -0,0 +1,129 @@
+package james.storage;
+
+import java.io.File;
+
+import james.exception.CanNotWriteToFileException;
+import james.exception.JamesException;
+
+/**
+ * Coalesces saves of the same file into as few synced writes as possible.
+ * The first caller to arrive becomes the leader, waits for the commit window so
+ * that other saves can join, and then atomically writes only the newest contents.
+ * Every caller still returns only once contents at least as new as its own are on
+ * the disk, so durability is unchanged while bursts of saves share one fsync.
+ */
+public class GroupCommitter {
+    private final File target;
+    private final long windowMillis;
+    private byte[] pendingContents;
+    private long lastRequested;
+    private long lastDurable;
+    private long lastFailed;
+    private JamesException lastFailure;
+    private boolean isLeaderActive;
+
+    /**
+     * Initializes a group committer for a file.
+     *
+     * @param target The file whose contents are committed.
+     * @param windowMillis How long the leader waits for further saves before writing; 0 writes at once.
+     */
+    public GroupCommitter(File target, long windowMillis) {
+        assert target != null : "Target file cannot be null";
+        assert windowMillis >= 0 : "Commit window cannot be negative";
+        this.target = target;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Submits new file contents and blocks until they, or newer contents, are durable.
+     *
+     * @param contents The complete new contents of the file.
+     * @throws JamesException If the write that would have included these contents failed.
+     */
+    public void commit(byte[] contents) throws JamesException {
+        assert contents != null : "Contents cannot be null";
+        long ticket;
+        synchronized (this) {
+            ticket = ++this.lastRequested;
+            this.pendingContents = contents;
+        }
+
+        while (true) {
+            synchronized (this) {
+                awaitLeader(ticket);
+                if (this.lastDurable >= ticket) {
+                    return;
+                }
+                if (this.lastFailed >= ticket) {
+                    throw this.lastFailure;
+                }
+                this.isLeaderActive = true;
+            }
+            leadOneRound();
+        }
+    }
+
+    /**
+     * Waits while another caller is writing a batch that has not yet covered the ticket.
+     *
+     * @param ticket The caller's request number.
+     * @throws JamesException If the wait is interrupted.
+     */
+    private void awaitLeader(long ticket) throws JamesException {
+        while (this.isLeaderActive && this.lastDurable < ticket) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CanNotWriteToFileException("Interrupted while waiting for a group commit");
+            }
+        }
+    }
+
+    /**
+     * Waits for the commit window, then writes the newest pending contents on behalf of every
+     * caller that arrived so far.
+     */
+    private void leadOneRound() {
+        sleepThroughWindow();
+        byte[] contents;
+        long coveredTicket;
+        synchronized (this) {
+            contents = this.pendingContents;
+            coveredTicket = this.lastRequested;
+            this.pendingContents = null;
+        }
+
+        try {
+            AtomicFileWriter.write(this.target, contents);
+            synchronized (this) {
+                this.lastDurable = coveredTicket;
+            }
+        } catch (JamesException e) {
+            synchronized (this) {
+                this.lastFailed = coveredTicket;
+                this.lastFailure = e;
+            }
+        } finally {
+            synchronized (this) {
+                this.isLeaderActive = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Gives concurrent saves a chance to join the current batch.
+     */
+    private void sleepThroughWindow() {
+        if (this.windowMillis == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(this.windowMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package james.storage;
+
+import java.util.ArrayList;
+
+import james.Parser;
+import james.TaskList;
+import james.task.Task;
+
+/**
+ * Keeps the "persisted" task list in memory, for benchmarks and tests that should not touch the disk.
+ * Like the journaled file engine it stores a snapshot of the stored lines plus the changes made
+ * since, so saving a change costs no more than appending it. Loading rebuilds fresh Task objects,
+ * so the caller's list is never shared with what was saved.
+ */
+public class InMemoryStorageEngine implements StorageEngine {
+    private final ArrayList<String> snapshotLines = new ArrayList<>();
+    private final ArrayList<Mutation> changes = new ArrayList<>();
+
+    @Override
+    public synchronized TaskList load() {
+        TaskList tasks = new TaskList(this.snapshotLines.size());
+        for (String line : this.snapshotLines) {
+            Task task = Parser.parseLine(line);
+            if (task != null) {
+                tasks.addTask(task);
+            }
+        }
+        for (Mutation mutation : this.changes) {
+            mutation.applyTo(tasks);
+        }
+        return tasks;
+    }
+
+    @Override
+    public synchronized void save(TaskList tasks) {
+        assert tasks != null : "Cannot save a null task list";
+        this.snapshotLines.clear();
+        this.snapshotLines.addAll(tasks.toFileLines(null));
+        this.changes.clear();
+    }
+
+    @Override
+    public synchronized void apply(TaskList tasks, Mutation mutation) {
+        assert mutation != null : "Cannot save a null mutation";
+        this.changes.add(mutation);
+    }
+
+    @Override
+    public void flush() {
+        // Every save is complete as soon as it returns
+    }
+
+    @Override
+    public void close() {
+        // There is nothing to release
+    }
+}
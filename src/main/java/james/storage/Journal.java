@@ -0,0 +1,316 @@
+package james.storage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import james.TaskList;
+import james.exception.CanNotFindFileException;
+import james.exception.CanNotWriteToFileException;
+import james.exception.JamesException;
+
+/**
+ * Manages the append-only mutation journal that sits next to a task data file.
+ * Each command appends one record, so the cost of persisting a change does not
+ * depend on the size of the task list.
+ *
+ * <p>The live journal is named {@code <data file>.journal}. When a new snapshot is
+ * about to be written, the live journal is sealed by renaming it to
+ * {@code <data file>.journal.<generation>}. The snapshot records the generation it
+ * includes in its header line, so a sealed journal is only replayed if the snapshot
+ * that folds it in never made it to disk.</p>
+ */
+public class Journal {
+    /** The header line prefix that records which generation a snapshot includes. */
+    public static final String GENERATION_HEADER = "# generation ";
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String HEADER_PREFIX = "#";
+
+    private final File liveFile;
+    private long generation;
+    private int recordCount;
+
+    /**
+     * Initializes a journal for the given task data file.
+     *
+     * @param dataFilePath The path of the snapshot file the journal belongs to.
+     */
+    public Journal(String dataFilePath) {
+        assert dataFilePath != null && !dataFilePath.isEmpty() : "Data file path cannot be null or empty";
+        this.liveFile = new File(dataFilePath + JOURNAL_SUFFIX);
+        this.generation = Math.max(readGeneration(new File(dataFilePath)), findLatestSealedGeneration());
+        this.recordCount = 0;
+    }
+
+    /**
+     * Appends a single mutation record to the live journal.
+     *
+     * @param mutation The change to persist.
+     * @throws JamesException If the journal cannot be written.
+     */
+    public synchronized void append(Mutation mutation) throws JamesException {
+        assert mutation != null : "Cannot journal a null mutation";
+        createParentDirectory(this.liveFile);
+        try (FileWriter writer = new FileWriter(this.liveFile, true)) {
+            writer.write(RecordChecksum.append(mutation.toRecord()) + System.lineSeparator());
+        } catch (IOException e) {
+            throw new CanNotWriteToFileException(e.getMessage());
+        }
+        this.recordCount++;
+    }
+
+    /**
+     * Replays every journal record newer than the given snapshot generation.
+     * Sealed journals are replayed oldest first, followed by the live journal.
+     *
+     * @param tasks The task list loaded from the snapshot.
+     * @param snapshotGeneration The generation recorded in the snapshot header.
+     * @return The number of records that were applied.
+     * @throws JamesException If a journal file exists but cannot be read.
+     */
+    public synchronized int replay(TaskList tasks, long snapshotGeneration) throws JamesException {
+        assert tasks != null : "Cannot replay onto a null list";
+        int applied = 0;
+        this.recordCount = 0;
+        for (long sealed : listSealedGenerations()) {
+            if (sealed > snapshotGeneration) {
+                applied += replayFile(getSealedFile(sealed), tasks);
+            }
+        }
+        applied += replayFile(this.liveFile, tasks);
+        this.generation = Math.max(this.generation, snapshotGeneration);
+        return applied;
+    }
+
+    /**
+     * Replays the sealed journals that lie between two snapshot generations.
+     * Sealed journals are never written again, so this does not block appends to the live journal.
+     *
+     * @param tasks The task list loaded from the older snapshot.
+     * @param fromGeneration The generation already included in the task list (exclusive).
+     * @param toGeneration The newest sealed generation to replay (inclusive).
+     * @return The number of records that were applied.
+     * @throws JamesException If a sealed journal cannot be read.
+     */
+    public int replaySealed(TaskList tasks, long fromGeneration, long toGeneration) throws JamesException {
+        assert tasks != null : "Cannot replay onto a null list";
+        int applied = 0;
+        for (long sealed : listSealedGenerations()) {
+            if (sealed > fromGeneration && sealed <= toGeneration) {
+                applied += replayFile(getSealedFile(sealed), tasks);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Seals the live journal so that new records go to a fresh file.
+     * The returned generation must be written into the header of the next snapshot.
+     *
+     * @return The generation number assigned to the sealed journal.
+     * @throws JamesException If the live journal cannot be renamed.
+     */
+    public synchronized long seal() throws JamesException {
+        this.generation++;
+        if (this.liveFile.exists() && !this.liveFile.renameTo(getSealedFile(this.generation))) {
+            throw new CanNotWriteToFileException("Could not seal journal " + this.liveFile);
+        }
+        this.recordCount = 0;
+        return this.generation;
+    }
+
+    /**
+     * Deletes every sealed journal already folded into a snapshot of the given generation.
+     *
+     * @param snapshotGeneration The generation written into the snapshot header.
+     */
+    public synchronized void deleteSealed(long snapshotGeneration) {
+        for (long sealed : listSealedGenerations()) {
+            if (sealed <= snapshotGeneration) {
+                getSealedFile(sealed).delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of records in the live journal since it was last sealed or replayed.
+     *
+     * @return The live record count.
+     */
+    public synchronized int getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Returns the size of the live journal on disk.
+     *
+     * @return The number of bytes in the live journal, or 0 if it does not exist.
+     */
+    public long getSizeInBytes() {
+        return this.liveFile.length();
+    }
+
+    /**
+     * Builds the header line that marks a snapshot as including the given generation.
+     *
+     * @param generation The generation folded into the snapshot.
+     * @return The header line, without a line separator.
+     */
+    public static String toGenerationHeader(long generation) {
+        return GENERATION_HEADER + generation;
+    }
+
+    /**
+     * Extracts the generation from a snapshot's first line.
+     *
+     * @param line The first line of a snapshot file.
+     * @return The generation, or 0 if the line is not a generation header.
+     */
+    public static long parseGenerationHeader(String line) {
+        if (line == null || !line.startsWith(GENERATION_HEADER)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(line.substring(GENERATION_HEADER.length()).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Finds the generation among the header lines of a snapshot.
+     *
+     * @param headerLines The leading '#' lines of a text snapshot.
+     * @return The generation, or 0 if there is no generation header.
+     */
+    public static long findGeneration(List<String> headerLines) {
+        for (String line : headerLines) {
+            if (line.startsWith(GENERATION_HEADER)) {
+                return parseGenerationHeader(line);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the generation recorded in the header of a text or binary snapshot file.
+     *
+     * @param snapshot The snapshot file.
+     * @return The generation, or 0 if the file is missing or has no header.
+     */
+    private static long readGeneration(File snapshot) {
+        if (!snapshot.exists()) {
+            return 0;
+        }
+        if (BinaryTaskCodec.isBinary(snapshot)) {
+            return BinaryTaskCodec.readGeneration(snapshot);
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(snapshot))) {
+            ArrayList<String> headerLines = new ArrayList<>();
+            String line = reader.readLine();
+            while (line != null && line.trim().startsWith(HEADER_PREFIX)) {
+                headerLines.add(line.trim());
+                line = reader.readLine();
+            }
+            return findGeneration(headerLines);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Applies every well-formed record with a matching checksum in a journal file to the task list.
+     *
+     * @param journalFile The journal file to read.
+     * @param tasks The task list being rebuilt.
+     * @return The number of records applied.
+     * @throws JamesException If the file exists but cannot be read.
+     */
+    private int replayFile(File journalFile, TaskList tasks) throws JamesException {
+        if (!journalFile.exists()) {
+            return 0;
+        }
+        int applied = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(journalFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String record = RecordChecksum.verify(line.trim());
+                Mutation mutation = record == null ? null : Mutation.fromRecord(record);
+                if (mutation != null && mutation.applyTo(tasks)) {
+                    applied++;
+                }
+                if (journalFile.equals(this.liveFile)) {
+                    this.recordCount++;
+                }
+            }
+        } catch (IOException e) {
+            throw new CanNotFindFileException("Error reading journal at: " + journalFile);
+        }
+        return applied;
+    }
+
+    /**
+     * Lists the generations of all sealed journals on disk, in ascending order.
+     *
+     * @return The sorted sealed generations.
+     */
+    private ArrayList<Long> listSealedGenerations() {
+        ArrayList<Long> generations = new ArrayList<>();
+        File directory = this.liveFile.getAbsoluteFile().getParentFile();
+        String prefix = this.liveFile.getName() + ".";
+        String[] names = directory == null ? null : directory.list();
+        if (names == null) {
+            return generations;
+        }
+        for (String name : names) {
+            if (!name.startsWith(prefix)) {
+                continue;
+            }
+            try {
+                generations.add(Long.parseLong(name.substring(prefix.length())));
+            } catch (NumberFormatException e) {
+                // Not a sealed journal, e.g. a temporary file from another tool
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Finds the newest sealed journal generation on disk.
+     *
+     * @return The largest sealed generation, or 0 if there is none.
+     */
+    private long findLatestSealedGeneration() {
+        ArrayList<Long> generations = listSealedGenerations();
+        return generations.isEmpty() ? 0 : generations.get(generations.size() - 1);
+    }
+
+    /**
+     * Returns the file a journal of the given generation is sealed into.
+     *
+     * @param sealedGeneration The generation of the sealed journal.
+     * @return The sealed journal file.
+     */
+    private File getSealedFile(long sealedGeneration) {
+        return new File(this.liveFile.getPath() + "." + sealedGeneration);
+    }
+
+    /**
+     * Creates the parent directory of a file if it is missing.
+     *
+     * @param file The file about to be written.
+     */
+    private static void createParentDirectory(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+    }
+}
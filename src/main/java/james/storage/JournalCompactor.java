@@ -0,0 +1,156 @@
+package james.storage;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import james.TaskList;
+import james.exception.JamesException;
+
+/**
+ * Folds the mutation journal back into the snapshot file on a background thread.
+ * Once the live journal grows past a record-count or size threshold, it is sealed
+ * on the caller's thread (a single rename) and a worker thread rebuilds the snapshot
+ * from the previous snapshot plus the sealed journal, atomically swaps it in through
+ * {@link AtomicFileWriter} and deletes the sealed journal. The command loop only pays
+ * for the rename and never touches the snapshot file itself.
+ */
+public class JournalCompactor {
+    /** The default number of live journal records that triggers a compaction. */
+    public static final int DEFAULT_MAX_RECORDS = 1000;
+    /** The default live journal size in bytes that triggers a compaction. */
+    public static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    private final String dataFilePath;
+    private final StorageFormat format;
+    private final Journal journal;
+    private final ExecutorService worker;
+    private final AtomicBoolean isRunning = new AtomicBoolean(false);
+    private int maxRecords = DEFAULT_MAX_RECORDS;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private Future<?> lastCompaction;
+
+    /**
+     * Initializes a compactor for the journal of the given data file.
+     *
+     * @param dataFilePath The path of the snapshot file.
+     * @param format The format the snapshot file is written in.
+     * @param journal The journal whose records are folded into the snapshot.
+     */
+    public JournalCompactor(String dataFilePath, StorageFormat format, Journal journal) {
+        assert dataFilePath != null && !dataFilePath.isEmpty() : "Data file path cannot be null or empty";
+        assert format != null : "Storage format cannot be null";
+        assert journal != null : "Journal cannot be null";
+        this.dataFilePath = dataFilePath;
+        this.format = format;
+        this.journal = journal;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "james-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the thresholds at which the live journal is compacted.
+     *
+     * @param maxRecords The number of live records that triggers a compaction.
+     * @param maxBytes The live journal size in bytes that triggers a compaction.
+     */
+    public void setThresholds(int maxRecords, long maxBytes) {
+        assert maxRecords > 0 && maxBytes > 0 : "Compaction thresholds must be positive";
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns whether the live journal has grown past either threshold.
+     *
+     * @return True if a compaction should be started.
+     */
+    public boolean isDue() {
+        return this.journal.getRecordCount() >= this.maxRecords
+                || this.journal.getSizeInBytes() >= this.maxBytes;
+    }
+
+    /**
+     * Starts a background compaction if the journal is past its thresholds and
+     * no compaction is already running. Returns without waiting for it to finish.
+     *
+     * @return True if a compaction was started.
+     * @throws JamesException If the live journal cannot be sealed.
+     */
+    public synchronized boolean compactIfDue() throws JamesException {
+        if (!isDue() || !this.isRunning.compareAndSet(false, true)) {
+            return false;
+        }
+
+        long generation;
+        try {
+            generation = this.journal.seal();
+        } catch (JamesException e) {
+            this.isRunning.set(false);
+            throw e;
+        }
+        this.lastCompaction = this.worker.submit(() -> {
+            try {
+                compact(generation);
+            } catch (JamesException e) {
+                // The sealed journal is kept, so it is replayed on load or folded by the next compaction
+            } finally {
+                this.isRunning.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Blocks until the compaction that is currently running, if any, has finished.
+     * Used before the snapshot is written from the foreground, so the two never interleave.
+     */
+    public synchronized void awaitIdle() {
+        if (this.lastCompaction == null) {
+            return;
+        }
+        try {
+            this.lastCompaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Failures are already handled inside the compaction task
+        }
+    }
+
+    /**
+     * Waits for the running compaction, if any, and stops the worker thread.
+     * No further compactions can be started afterwards.
+     */
+    public synchronized void close() {
+        awaitIdle();
+        this.worker.shutdown();
+    }
+
+    /**
+     * Rebuilds the snapshot so that it includes every sealed journal up to the given generation.
+     *
+     * @param generation The newest sealed generation to fold in.
+     * @throws JamesException If the snapshot cannot be read or replaced.
+     */
+    void compact(long generation) throws JamesException {
+        File dataFile = new File(this.dataFilePath);
+        Snapshot snapshot = dataFile.exists()
+                ? StorageFormat.read(dataFile, Long.MAX_VALUE)
+                : new Snapshot(new TaskList(), 0);
+        if (snapshot.getGeneration() >= generation) {
+            this.journal.deleteSealed(generation);
+            return;
+        }
+
+        this.journal.replaySealed(snapshot.getTasks(), snapshot.getGeneration(), generation);
+        AtomicFileWriter.write(dataFile, this.format.encode(snapshot.getTasks(), generation));
+        this.journal.deleteSealed(generation);
+    }
+}
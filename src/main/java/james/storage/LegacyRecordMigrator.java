@@ -0,0 +1,52 @@
+package james.storage;
+
+/**
+ * Upgrades records written before tags were added ({@code type | done | description [| extra...]})
+ * to the current layout ({@code type | tags | done | description [| extra...]}), one record at a time.
+ * A legacy record is recognized by its second field being exactly "0" or "1"; the current
+ * layout's tag field is either empty or starts with a tag marker, so it can never look like that.
+ */
+public class LegacyRecordMigrator {
+    private static final String SEP_FIELD = " | ";
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private LegacyRecordMigrator() {
+    }
+
+    /**
+     * Checks whether a record uses the layout without a tag field.
+     *
+     * @param record The stored record, without a checksum.
+     * @return True if the record needs to be upgraded.
+     */
+    public static boolean isLegacy(String record) {
+        int first = record.indexOf(SEP_FIELD);
+        if (first < 0) {
+            return false;
+        }
+        int statusStart = first + SEP_FIELD.length();
+        if (statusStart >= record.length()) {
+            return false;
+        }
+        char status = record.charAt(statusStart);
+        boolean isStatusOnly = record.length() == statusStart + 1
+                || record.startsWith(SEP_FIELD, statusStart + 1);
+        return (status == '0' || status == '1') && isStatusOnly;
+    }
+
+    /**
+     * Inserts an empty tag field into a legacy record.
+     *
+     * @param record The stored record, without a checksum.
+     * @return The record in the current layout, or the same record if it is not legacy.
+     */
+    public static String upgrade(String record) {
+        if (!isLegacy(record)) {
+            return record;
+        }
+        int first = record.indexOf(SEP_FIELD);
+        return record.substring(0, first) + SEP_FIELD + SEP_FIELD + record.substring(first + SEP_FIELD.length());
+    }
+}
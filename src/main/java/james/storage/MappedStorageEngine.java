@@ -0,0 +1,677 @@
+package james.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.zip.CRC32C;
+
+import james.TaskList;
+import james.exception.CanNotFindFileException;
+import james.exception.CanNotWriteToFileException;
+import james.exception.JamesException;
+import james.task.Deadline;
+import james.task.Event;
+import james.task.Task;
+import james.task.Todo;
+
+/**
+ * Stores every task in a fixed-width slot of a memory-mapped file, so that single changes
+ * are written in place instead of rewriting the file.
+ *
+ * <p>The file consists of a {@value #FILE_HEADER_SIZE}-byte header, a slot table and a heap.
+ * Each {@value #SLOT_SIZE}-byte slot holds the task's flags (live, done), its type, the
+ * deadline as an epoch day, and the offsets and lengths of its data (description and event
+ * times) and its tags in the heap. Marking and unmarking flip one flag byte; tagging appends
+ * the new tag field to the heap and repoints the slot; deleting turns the slot into a
+ * tombstone. Once tombstones make up half of the used slots, or when the slot table or heap
+ * is full, the file is rebuilt atomically with only the live tasks (a vacuum).</p>
+ *
+ * <p>Each slot ends with a CRC32C of its fields and of the heap bytes it points at, updated with
+ * every in-place change. On load, a slot that fails it or cannot be decoded is quarantined and
+ * turned into a tombstone, and the other tasks load as usual. Files of version 1 carry no
+ * checksums; they are read unchecked and rewritten in the current version.</p>
+ */
+public class MappedStorageEngine implements StorageEngine {
+    static final int FILE_HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 28;
+
+    private static final int MAGIC = 0x4A414D4D;
+    private static final int VERSION = 2;
+    private static final int UNCHECKED_VERSION = 1;
+    private static final int UNCHECKED_SLOT_SIZE = 24;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_SLOT_CAPACITY = 8;
+    private static final int HEADER_SLOT_COUNT = 12;
+    private static final int HEADER_LIVE_COUNT = 16;
+    private static final int HEADER_HEAP_END = 20;
+    private static final int HEADER_HEAP_CAPACITY = 24;
+
+    private static final int SLOT_FLAGS = 0;
+    private static final int SLOT_TYPE = 1;
+    private static final int SLOT_EPOCH_DAY = 4;
+    private static final int SLOT_DATA_OFFSET = 8;
+    private static final int SLOT_DATA_LENGTH = 12;
+    private static final int SLOT_TAGS_OFFSET = 16;
+    private static final int SLOT_TAGS_LENGTH = 20;
+    private static final int SLOT_CHECKSUM = 24;
+
+    private static final byte FLAG_LIVE = 0x01;
+    private static final byte FLAG_DONE = 0x02;
+    private static final byte TYPE_TODO = 0;
+    private static final byte TYPE_DEADLINE = 1;
+    private static final byte TYPE_EVENT = 2;
+
+    private static final int MIN_SLOTS = 64;
+    private static final int MIN_HEAP_BYTES = 64 * 1024;
+    private static final String SEP_TAG = " /#";
+
+    private final File file;
+    private MappedByteBuffer buffer;
+    /** The slot index of every live task, in display order. */
+    private final ArrayList<Integer> liveSlots = new ArrayList<>();
+    /** The size of a slot in the mapped file, which is smaller in files of version 1. */
+    private int slotSize = SLOT_SIZE;
+    private RecoveryScanner lastRecovery = new RecoveryScanner();
+    private int slotCapacity;
+    private int slotCount;
+    private int heapStart;
+    private int heapEnd;
+    private int heapLimit;
+
+    /**
+     * Initializes an engine for the given record file.
+     *
+     * @param filePath The path of the record file.
+     */
+    public MappedStorageEngine(String filePath) {
+        assert filePath != null && !filePath.isEmpty() : "Storage file path cannot be null or empty";
+        this.file = new File(filePath);
+    }
+
+    /**
+     * Loads the tasks from the record file. A missing file is created empty, and a data
+     * file in the text or binary format is converted into a record file first.
+     * Damaged records are quarantined next to the file and left out.
+     *
+     * @return The live tasks in display order.
+     * @throws JamesException If the file cannot be read or converted.
+     */
+    @Override
+    public synchronized TaskList load() throws JamesException {
+        this.lastRecovery = new RecoveryScanner();
+        if (!this.file.exists() || this.file.length() == 0) {
+            rebuild(new TaskList());
+        } else if (!isRecordFile(this.file)) {
+            Snapshot snapshot = StorageFormat.read(this.file, ParallelTaskLoader.DEFAULT_THRESHOLD_BYTES);
+            this.lastRecovery = snapshot.getRecovery();
+            rebuild(snapshot.getTasks());
+            this.lastRecovery.quarantine(this.file);
+            return readLiveTasks(new RecoveryScanner());
+        } else {
+            map();
+        }
+
+        TaskList tasks = readLiveTasks(this.lastRecovery);
+        this.lastRecovery.quarantine(this.file);
+        if (this.slotSize != SLOT_SIZE) {
+            rebuild(tasks);
+        }
+        return tasks;
+    }
+
+    @Override
+    public synchronized RecoveryScanner getLastRecovery() {
+        return this.lastRecovery;
+    }
+
+    /**
+     * Rewrites the record file with exactly the given tasks.
+     *
+     * @param tasks The tasks to save.
+     * @throws JamesException If the file cannot be written.
+     */
+    @Override
+    public synchronized void save(TaskList tasks) throws JamesException {
+        assert tasks != null : "Cannot save a null task list";
+        rebuild(tasks);
+    }
+
+    /**
+     * Writes a single change into the mapped file in place.
+     * Falls back to rebuilding the file from the task list if the change does not fit.
+     *
+     * @param tasks The task list after the change.
+     * @param mutation The change that was applied.
+     * @throws JamesException If the file cannot be written.
+     */
+    @Override
+    public synchronized void apply(TaskList tasks, Mutation mutation) throws JamesException {
+        assert mutation != null : "Cannot save a null mutation";
+        if (this.buffer == null) {
+            rebuild(tasks);
+            return;
+        }
+
+        boolean isApplied;
+        switch (mutation.getType()) {
+        case ADD:
+            Task added = mutation.getAddedTask();
+            isApplied = added != null && appendRecord(added);
+            break;
+        case MARK:
+            isApplied = setDone(mutation.getTaskNumber(), true);
+            break;
+        case UNMARK:
+            isApplied = setDone(mutation.getTaskNumber(), false);
+            break;
+        case TAG:
+            isApplied = appendTag(mutation.getTaskNumber(), mutation.getTag());
+            break;
+        case DELETE:
+            isApplied = tombstone(mutation.getTaskNumber());
+            break;
+        default:
+            isApplied = false;
+            break;
+        }
+
+        if (!isApplied) {
+            rebuild(tasks);
+        } else if (getTombstoneCount() * 2 > this.slotCount && this.slotCount >= MIN_SLOTS) {
+            vacuum();
+        }
+    }
+
+    /**
+     * Forces every in-place change to the disk.
+     */
+    @Override
+    public synchronized void flush() {
+        if (this.buffer != null) {
+            this.buffer.force();
+        }
+    }
+
+    /**
+     * Forces pending changes and drops the mapping.
+     */
+    @Override
+    public synchronized void close() {
+        flush();
+        this.buffer = null;
+        this.liveSlots.clear();
+    }
+
+    @Override
+    public File getArchiveFile() {
+        return new File(this.file.getPath() + TaskArchive.ARCHIVE_SUFFIX);
+    }
+
+    /**
+     * Rewrites the file with only the live tasks, reclaiming tombstones and stale heap data.
+     *
+     * @throws JamesException If the file cannot be read or written.
+     */
+    public synchronized void vacuum() throws JamesException {
+        if (this.buffer == null) {
+            return;
+        }
+        rebuild(readLiveTasks(new RecoveryScanner()));
+    }
+
+    /**
+     * Returns the number of deleted tasks whose slots have not been reclaimed yet.
+     *
+     * @return The number of tombstones.
+     */
+    public synchronized int getTombstoneCount() {
+        return this.slotCount - this.liveSlots.size();
+    }
+
+    /**
+     * Checks whether a file starts with the record file's magic number.
+     *
+     * @param file The file to check.
+     * @return True if the file is a record file.
+     */
+    static boolean isRecordFile(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] start = in.readNBytes(Integer.BYTES);
+            return start.length == Integer.BYTES && ByteBuffer.wrap(start).getInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Atomically writes a fresh record file holding the given tasks, with room to grow, and maps it.
+     *
+     * @param tasks The tasks to write.
+     * @throws JamesException If the file is too large or cannot be written.
+     */
+    private void rebuild(TaskList tasks) throws JamesException {
+        ArrayList<Task> snapshot;
+        synchronized (tasks) {
+            snapshot = new ArrayList<>(tasks.getTasks());
+        }
+        int capacity = Math.max(MIN_SLOTS, snapshot.size() * 2);
+        ByteArrayOutputStream heap = new ByteArrayOutputStream();
+        byte[][] data = new byte[snapshot.size()][];
+        byte[][] tags = new byte[snapshot.size()][];
+        for (int i = 0; i < snapshot.size(); i++) {
+            data[i] = encodeData(snapshot.get(i));
+            tags[i] = snapshot.get(i).tagsToFile().getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            heap.writeBytes(data[i]);
+            heap.writeBytes(tags[i]);
+        }
+
+        long heapStartOffset = FILE_HEADER_SIZE + (long) capacity * SLOT_SIZE;
+        long heapCapacity = Math.max(MIN_HEAP_BYTES, (long) heap.size() * 2);
+        if (heapStartOffset + heapCapacity > Integer.MAX_VALUE) {
+            throw new CanNotWriteToFileException("Too many tasks for a mapped record file: " + this.file);
+        }
+
+        ByteBuffer contents = ByteBuffer.allocate((int) (heapStartOffset + heapCapacity));
+        contents.putInt(HEADER_MAGIC, MAGIC);
+        contents.putInt(HEADER_VERSION, VERSION);
+        contents.putInt(HEADER_SLOT_CAPACITY, capacity);
+        contents.putInt(HEADER_SLOT_COUNT, snapshot.size());
+        contents.putInt(HEADER_LIVE_COUNT, snapshot.size());
+        contents.putInt(HEADER_HEAP_END, (int) heapStartOffset + heap.size());
+        contents.putInt(HEADER_HEAP_CAPACITY, (int) heapCapacity);
+
+        int position = (int) heapStartOffset;
+        for (int i = 0; i < snapshot.size(); i++) {
+            int slot = FILE_HEADER_SIZE + i * SLOT_SIZE;
+            writeSlot(contents, slot, snapshot.get(i), position, data[i].length,
+                    position + data[i].length, tags[i].length);
+            position += data[i].length + tags[i].length;
+        }
+        contents.put((int) heapStartOffset, heap.toByteArray());
+        for (int i = 0; i < snapshot.size(); i++) {
+            seal(contents, FILE_HEADER_SIZE + i * SLOT_SIZE);
+        }
+
+        AtomicFileWriter.write(this.file, contents.array());
+        map();
+    }
+
+    /**
+     * Maps the record file and reads its header and live slots.
+     *
+     * @throws JamesException If the file cannot be mapped or is not a record file.
+     */
+    private void map() throws JamesException {
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        } catch (IOException e) {
+            this.buffer = null;
+            throw new CanNotFindFileException("Error mapping file at: " + this.file);
+        }
+        int version = this.buffer.capacity() < FILE_HEADER_SIZE || this.buffer.getInt(HEADER_MAGIC) != MAGIC
+                ? 0 : this.buffer.getInt(HEADER_VERSION);
+        if (version != VERSION && version != UNCHECKED_VERSION) {
+            this.buffer = null;
+            throw new CanNotFindFileException("Not a task record file: " + this.file);
+        }
+
+        this.slotSize = version == VERSION ? SLOT_SIZE : UNCHECKED_SLOT_SIZE;
+        this.slotCapacity = this.buffer.getInt(HEADER_SLOT_CAPACITY);
+        this.slotCount = this.buffer.getInt(HEADER_SLOT_COUNT);
+        this.heapStart = FILE_HEADER_SIZE + this.slotCapacity * this.slotSize;
+        this.heapEnd = this.buffer.getInt(HEADER_HEAP_END);
+        this.heapLimit = this.heapStart + this.buffer.getInt(HEADER_HEAP_CAPACITY);
+        this.liveSlots.clear();
+        for (int i = 0; i < this.slotCount; i++) {
+            if ((this.buffer.get(slotPosition(i) + SLOT_FLAGS) & FLAG_LIVE) != 0) {
+                this.liveSlots.add(i);
+            }
+        }
+    }
+
+    /**
+     * Decodes every live slot. Slots that are damaged are quarantined and turned into tombstones.
+     *
+     * @param recovery Receives the count of checked records and the damaged ones.
+     * @return The live tasks in display order.
+     */
+    private TaskList readLiveTasks(RecoveryScanner recovery) {
+        TaskList tasks = new TaskList(this.liveSlots.size());
+        boolean isAnyRejected = false;
+        Iterator<Integer> slots = this.liveSlots.iterator();
+        while (slots.hasNext()) {
+            int slotIndex = slots.next();
+            Task task = readCheckedSlot(slotIndex, recovery);
+            if (task != null) {
+                tasks.addTask(task);
+                continue;
+            }
+            int flagsPosition = slotPosition(slotIndex) + SLOT_FLAGS;
+            this.buffer.put(flagsPosition, (byte) (this.buffer.get(flagsPosition) & ~FLAG_LIVE));
+            slots.remove();
+            isAnyRejected = true;
+        }
+        if (isAnyRejected) {
+            this.buffer.force();
+            writeHeaderCounts();
+        }
+        return tasks;
+    }
+
+    /**
+     * Verifies and decodes one slot, or hands it to the recovery scanner if it is damaged.
+     *
+     * @param slotIndex The index of the slot in the slot table.
+     * @param recovery Receives the count of checked records and the damaged ones.
+     * @return The task, or null if the slot was rejected.
+     */
+    private Task readCheckedSlot(int slotIndex, RecoveryScanner recovery) {
+        int slot = slotPosition(slotIndex);
+        boolean isChecked = this.slotSize == SLOT_SIZE;
+        boolean isIntact;
+        try {
+            isIntact = !isChecked || this.buffer.getInt(slot + SLOT_CHECKSUM) == checksumOf(this.buffer, slot);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            isIntact = false;
+        }
+        if (isIntact) {
+            try {
+                Task task = readSlot(slot);
+                recovery.countRecord(isChecked);
+                return task;
+            } catch (RuntimeException e) {
+                // Quarantined as malformed below
+            }
+        }
+        recovery.rejectRecord("slot " + slotIndex, slotRecord(slot), !isIntact);
+        return null;
+    }
+
+    /**
+     * Copies a slot together with the heap bytes it points at, as far as they are inside the file.
+     *
+     * @param slot The position of the slot.
+     * @return The slot bytes followed by its data and tag field.
+     */
+    private byte[] slotRecord(int slot) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        record.writeBytes(readBytes(slot, this.slotSize));
+        try {
+            record.writeBytes(readBytes(this.buffer.getInt(slot + SLOT_DATA_OFFSET),
+                    this.buffer.getInt(slot + SLOT_DATA_LENGTH)));
+            record.writeBytes(readBytes(this.buffer.getInt(slot + SLOT_TAGS_OFFSET),
+                    this.buffer.getInt(slot + SLOT_TAGS_LENGTH)));
+        } catch (RuntimeException e) {
+            // The slot points outside the file, so only the slot itself is kept
+        }
+        return record.toByteArray();
+    }
+
+    /**
+     * Appends a new task into the next free slot and the end of the heap.
+     *
+     * @param task The task to append.
+     * @return False if the slot table or the heap is full.
+     */
+    private boolean appendRecord(Task task) {
+        byte[] data = encodeData(task);
+        byte[] tags = task.tagsToFile().getBytes(StandardCharsets.UTF_8);
+        if (this.slotCount >= this.slotCapacity || this.heapEnd + data.length + tags.length > this.heapLimit) {
+            return false;
+        }
+
+        int dataOffset = this.heapEnd;
+        this.buffer.put(dataOffset, data);
+        this.buffer.put(dataOffset + data.length, tags);
+        this.buffer.force(dataOffset, data.length + tags.length);
+
+        int slot = slotPosition(this.slotCount);
+        writeSlot(this.buffer, slot, task, dataOffset, data.length, dataOffset + data.length, tags.length);
+        seal(this.buffer, slot);
+        this.buffer.force(slot, SLOT_SIZE);
+
+        this.liveSlots.add(this.slotCount);
+        this.slotCount++;
+        this.heapEnd += data.length + tags.length;
+        writeHeaderCounts();
+        return true;
+    }
+
+    /**
+     * Flips the done flag of a task in place.
+     *
+     * @param taskNumber The 1-indexed display position of the task.
+     * @param isDone The new status.
+     * @return False if the number does not name a live task.
+     */
+    private boolean setDone(int taskNumber, boolean isDone) {
+        if (taskNumber <= 0 || taskNumber > this.liveSlots.size()) {
+            return false;
+        }
+        int slot = slotPosition(this.liveSlots.get(taskNumber - 1));
+        byte flags = this.buffer.get(slot + SLOT_FLAGS);
+        this.buffer.put(slot + SLOT_FLAGS, (byte) (isDone ? flags | FLAG_DONE : flags & ~FLAG_DONE));
+        seal(this.buffer, slot);
+        this.buffer.force(slot, SLOT_SIZE);
+        return true;
+    }
+
+    /**
+     * Appends the task's extended tag field to the heap and repoints its slot at it.
+     *
+     * @param taskNumber The 1-indexed display position of the task.
+     * @param tag The tag that was attached.
+     * @return False if the number does not name a live task or the heap is full.
+     */
+    private boolean appendTag(int taskNumber, String tag) {
+        if (tag == null || taskNumber <= 0 || taskNumber > this.liveSlots.size()) {
+            return false;
+        }
+        int slot = slotPosition(this.liveSlots.get(taskNumber - 1));
+        byte[] oldTags = readBytes(this.buffer.getInt(slot + SLOT_TAGS_OFFSET),
+                this.buffer.getInt(slot + SLOT_TAGS_LENGTH));
+        byte[] addedTag = (SEP_TAG + tag).getBytes(StandardCharsets.UTF_8);
+        int length = oldTags.length + addedTag.length;
+        if (this.heapEnd + length > this.heapLimit) {
+            return false;
+        }
+
+        int offset = this.heapEnd;
+        this.buffer.put(offset, oldTags);
+        this.buffer.put(offset + oldTags.length, addedTag);
+        this.buffer.force(offset, length);
+        this.buffer.putInt(slot + SLOT_TAGS_OFFSET, offset);
+        this.buffer.putInt(slot + SLOT_TAGS_LENGTH, length);
+        seal(this.buffer, slot);
+        this.buffer.force(slot, SLOT_SIZE);
+        this.heapEnd += length;
+        writeHeaderCounts();
+        return true;
+    }
+
+    /**
+     * Marks a task's slot as deleted without moving any other slot.
+     *
+     * @param taskNumber The 1-indexed display position the task had before removal.
+     * @return False if the number does not name a live task.
+     */
+    private boolean tombstone(int taskNumber) {
+        if (taskNumber <= 0 || taskNumber > this.liveSlots.size()) {
+            return false;
+        }
+        int flagsPosition = slotPosition(this.liveSlots.remove(taskNumber - 1)) + SLOT_FLAGS;
+        this.buffer.put(flagsPosition, (byte) (this.buffer.get(flagsPosition) & ~FLAG_LIVE));
+        this.buffer.force(flagsPosition, 1);
+        writeHeaderCounts();
+        return true;
+    }
+
+    /**
+     * Writes the slot count, live count and heap end into the header and forces it.
+     */
+    private void writeHeaderCounts() {
+        this.buffer.putInt(HEADER_SLOT_COUNT, this.slotCount);
+        this.buffer.putInt(HEADER_LIVE_COUNT, this.liveSlots.size());
+        this.buffer.putInt(HEADER_HEAP_END, this.heapEnd);
+        this.buffer.force(0, FILE_HEADER_SIZE);
+    }
+
+    /**
+     * Fills in one slot.
+     *
+     * @param target The buffer holding the slot table.
+     * @param slot The position of the slot.
+     * @param task The task the slot describes.
+     * @param dataOffset The heap position of the task's data.
+     * @param dataLength The length of the task's data.
+     * @param tagsOffset The heap position of the task's tag field.
+     * @param tagsLength The length of the task's tag field.
+     */
+    private static void writeSlot(ByteBuffer target, int slot, Task task, int dataOffset, int dataLength,
+                                  int tagsOffset, int tagsLength) {
+        byte type = task instanceof Deadline ? TYPE_DEADLINE : task instanceof Event ? TYPE_EVENT : TYPE_TODO;
+        int epochDay = task instanceof Deadline ? (int) ((Deadline) task).getDeadlineTime().toEpochDay() : 0;
+        target.put(slot + SLOT_FLAGS, (byte) (FLAG_LIVE | (task.isDone() ? FLAG_DONE : 0)));
+        target.put(slot + SLOT_TYPE, type);
+        target.putInt(slot + SLOT_EPOCH_DAY, epochDay);
+        target.putInt(slot + SLOT_DATA_OFFSET, dataOffset);
+        target.putInt(slot + SLOT_DATA_LENGTH, dataLength);
+        target.putInt(slot + SLOT_TAGS_OFFSET, tagsOffset);
+        target.putInt(slot + SLOT_TAGS_LENGTH, tagsLength);
+    }
+
+    /**
+     * Stores the checksum of a slot in its last field.
+     *
+     * @param target The buffer holding the slot table and the heap.
+     * @param slot The position of the slot.
+     */
+    private static void seal(ByteBuffer target, int slot) {
+        target.putInt(slot + SLOT_CHECKSUM, checksumOf(target, slot));
+    }
+
+    /**
+     * Computes the CRC32C of a slot's fields and of the data and tag field it points at in the heap.
+     *
+     * @param target The buffer holding the slot table and the heap.
+     * @param slot The position of the slot.
+     * @return The checksum.
+     */
+    private static int checksumOf(ByteBuffer target, int slot) {
+        CRC32C crc = new CRC32C();
+        crc.update(target.slice(slot, SLOT_CHECKSUM));
+        crc.update(target.slice(target.getInt(slot + SLOT_DATA_OFFSET), target.getInt(slot + SLOT_DATA_LENGTH)));
+        crc.update(target.slice(target.getInt(slot + SLOT_TAGS_OFFSET), target.getInt(slot + SLOT_TAGS_LENGTH)));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Rebuilds the task described by a slot.
+     *
+     * @param slot The position of the slot.
+     * @return The task.
+     */
+    private Task readSlot(int slot) {
+        byte flags = this.buffer.get(slot + SLOT_FLAGS);
+        ByteBuffer data = ByteBuffer.wrap(readBytes(this.buffer.getInt(slot + SLOT_DATA_OFFSET),
+                this.buffer.getInt(slot + SLOT_DATA_LENGTH)));
+        String tagField = new String(readBytes(this.buffer.getInt(slot + SLOT_TAGS_OFFSET),
+                this.buffer.getInt(slot + SLOT_TAGS_LENGTH)), StandardCharsets.UTF_8);
+        ArrayList<String> tags = RecordScanner.scanTags(tagField);
+        String description = readString(data);
+
+        Task task;
+        switch (this.buffer.get(slot + SLOT_TYPE)) {
+        case TYPE_DEADLINE:
+            task = new Deadline(description, tags, LocalDate.ofEpochDay(this.buffer.getInt(slot + SLOT_EPOCH_DAY)));
+            break;
+        case TYPE_EVENT:
+            task = new Event(description, tags, readString(data), readString(data));
+            break;
+        default:
+            task = new Todo(description, tags);
+            break;
+        }
+        if ((flags & FLAG_DONE) != 0) {
+            task.mark();
+        }
+        return task;
+    }
+
+    /**
+     * Encodes the heap data of a task: its description and, for events, the start and end times.
+     *
+     * @param task The task to encode.
+     * @return The encoded data.
+     */
+    private static byte[] encodeData(Task task) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeString(out, task.getDescription());
+        if (task instanceof Event) {
+            writeString(out, ((Event) task).getStartTime());
+            writeString(out, ((Event) task).getEndTime());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a string as a 4-byte length followed by its UTF-8 bytes.
+     *
+     * @param out The output buffer.
+     * @param text The string to write.
+     */
+    private static void writeString(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        out.writeBytes(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(ByteArrayOutputStream, String)}.
+     *
+     * @param data The data positioned at the string.
+     * @return The string.
+     */
+    private static String readString(ByteBuffer data) {
+        byte[] bytes = new byte[data.getInt()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies a range of the mapped file.
+     *
+     * @param offset The first byte.
+     * @param length The number of bytes.
+     * @return The bytes.
+     */
+    private byte[] readBytes(int offset, int length) {
+        byte[] bytes = new byte[length];
+        this.buffer.get(offset, bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns the file position of a slot.
+     *
+     * @param slotIndex The index of the slot in the slot table.
+     * @return The position of its first byte.
+     */
+    private int slotPosition(int slotIndex) {
+        return FILE_HEADER_SIZE + slotIndex * this.slotSize;
+    }
+}
@@ -0,0 +1,256 @@
+package james.storage;
+
+import james.Parser;
+import james.TaskList;
+import james.task.Task;
+
+/**
+ * Represents a single change made to the task list by a command.
+ * A mutation can be written to the journal as one compact record and later
+ * replayed on top of a snapshot to rebuild the task list.
+ */
+public class Mutation {
+
+    /**
+     * Use Enumerations: Defines the kinds of changes that can be journaled,
+     * together with the code used for them in a journal record.
+     */
+    public enum Type {
+        ADD("A"), MARK("M"), UNMARK("U"), TAG("G"), DELETE("D");
+
+        private final String code;
+
+        Type(String code) {
+            this.code = code;
+        }
+
+        /**
+         * Finds the mutation type identified by a journal record code.
+         *
+         * @param code The code at the start of a journal record.
+         * @return The matching type, or null if the code is unknown.
+         */
+        public static Type fromCode(String code) {
+            for (Type type : values()) {
+                if (type.code.equals(code)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final String SEP_RECORD = " | ";
+
+    private final Type type;
+    private final int taskNumber;
+    private final String payload;
+    /** The id of the task a DELETE removed, or 0 if unknown; it is not journaled. */
+    private final long removedTaskId;
+
+    /**
+     * Private constructor to enforce the use of static factory methods.
+     *
+     * @param type The kind of change.
+     * @param taskNumber The 1-indexed position of the affected task, or 0 for additions.
+     * @param payload The stored task line for additions, the tag for tagging, otherwise null.
+     */
+    private Mutation(Type type, int taskNumber, String payload) {
+        this(type, taskNumber, payload, 0);
+    }
+
+    /**
+     * Private constructor to enforce the use of static factory methods.
+     *
+     * @param type The kind of change.
+     * @param taskNumber The 1-indexed position of the affected task, or 0 for additions.
+     * @param payload The stored task line for additions, the tag for tagging, otherwise null.
+     * @param removedTaskId The id of the task a deletion removed, or 0.
+     */
+    private Mutation(Type type, int taskNumber, String payload, long removedTaskId) {
+        this.type = type;
+        this.taskNumber = taskNumber;
+        this.payload = payload;
+        this.removedTaskId = removedTaskId;
+    }
+
+    /**
+     * Returns a mutation recording that a task was appended to the list.
+     *
+     * @param task The task that was added.
+     * @return An ADD mutation carrying the task in file format.
+     */
+    public static Mutation add(Task task) {
+        assert task != null : "Added task cannot be null";
+        return new Mutation(Type.ADD, 0, task.toFileFormat());
+    }
+
+    /**
+     * Returns a mutation recording that a task was marked as done.
+     *
+     * @param taskNumber The 1-indexed position of the task.
+     * @return A MARK mutation.
+     */
+    public static Mutation mark(int taskNumber) {
+        return new Mutation(Type.MARK, taskNumber, null);
+    }
+
+    /**
+     * Returns a mutation recording that a task was marked as not done.
+     *
+     * @param taskNumber The 1-indexed position of the task.
+     * @return An UNMARK mutation.
+     */
+    public static Mutation unmark(int taskNumber) {
+        return new Mutation(Type.UNMARK, taskNumber, null);
+    }
+
+    /**
+     * Returns a mutation recording that a tag was attached to a task.
+     *
+     * @param taskNumber The 1-indexed position of the task.
+     * @param tag The tag that was attached.
+     * @return A TAG mutation.
+     */
+    public static Mutation tag(int taskNumber, String tag) {
+        assert tag != null : "Tag cannot be null";
+        return new Mutation(Type.TAG, taskNumber, tag);
+    }
+
+    /**
+     * Returns a mutation recording that a task was removed from the list.
+     *
+     * @param taskNumber The 1-indexed position the task had before removal.
+     * @return A DELETE mutation.
+     */
+    public static Mutation delete(int taskNumber) {
+        return new Mutation(Type.DELETE, taskNumber, null);
+    }
+
+    /**
+     * Returns a mutation recording that a task was removed from the list, remembering which task it was.
+     *
+     * @param taskNumber The 1-indexed position the task had before removal.
+     * @param removedTask The task that was removed.
+     * @return A DELETE mutation.
+     */
+    public static Mutation delete(int taskNumber, Task removedTask) {
+        assert removedTask != null : "Removed task cannot be null";
+        return new Mutation(Type.DELETE, taskNumber, null, removedTask.getId());
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    public int getTaskNumber() {
+        return this.taskNumber;
+    }
+
+    public long getRemovedTaskId() {
+        return this.removedTaskId;
+    }
+
+    /**
+     * Returns the task an ADD mutation appended.
+     *
+     * @return A new Task parsed from the stored line, or null if this is not a valid addition.
+     */
+    public Task getAddedTask() {
+        return this.type == Type.ADD ? Parser.parseLine(this.payload) : null;
+    }
+
+    /**
+     * Returns the tag a TAG mutation attached.
+     *
+     * @return The tag, or null if this is not a tagging.
+     */
+    public String getTag() {
+        return this.type == Type.TAG ? this.payload : null;
+    }
+
+    /**
+     * Converts the mutation into a single journal line.
+     *
+     * @return The journal record, e.g. "M | 3" or "A | T |  | 0 | read book".
+     */
+    public String toRecord() {
+        switch (this.type) {
+        case ADD:
+            return this.type.code + SEP_RECORD + this.payload;
+        case TAG:
+            return this.type.code + SEP_RECORD + this.taskNumber + SEP_RECORD + this.payload;
+        default:
+            return this.type.code + SEP_RECORD + this.taskNumber;
+        }
+    }
+
+    /**
+     * Parses a journal line back into a mutation.
+     *
+     * @param record A line previously produced by {@link #toRecord()}.
+     * @return The mutation, or null if the record is malformed (e.g. a torn final write).
+     */
+    public static Mutation fromRecord(String record) {
+        assert record != null : "Journal record cannot be null";
+        String[] parts = record.split(" \\| ", 2);
+        Type type = Type.fromCode(parts[0]);
+        if (type == null || parts.length < 2) {
+            return null;
+        }
+        if (type == Type.ADD) {
+            return new Mutation(type, 0, parts[1]);
+        }
+
+        String[] arguments = type == Type.TAG ? parts[1].split(" \\| ", 2) : new String[]{parts[1]};
+        if (type == Type.TAG && arguments.length < 2) {
+            return null;
+        }
+        try {
+            int taskNumber = Integer.parseInt(arguments[0].trim());
+            return new Mutation(type, taskNumber, type == Type.TAG ? arguments[1] : null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Re-applies this mutation to a task list during replay.
+     * Mutations that no longer fit the list (e.g. a number out of range) are ignored.
+     *
+     * @param tasks The task list being rebuilt.
+     * @return True if the mutation was applied, false if it was skipped.
+     */
+    public boolean applyTo(TaskList tasks) {
+        assert tasks != null : "Cannot replay onto a null list";
+        if (this.type == Type.ADD) {
+            Task task = Parser.parseLine(this.payload);
+            if (task == null) {
+                return false;
+            }
+            tasks.addTask(task);
+            return true;
+        }
+
+        if (this.taskNumber <= 0 || this.taskNumber > tasks.getSize()) {
+            return false;
+        }
+        switch (this.type) {
+        case MARK:
+            tasks.markTask(this.taskNumber);
+            break;
+        case UNMARK:
+            tasks.unmarkTask(this.taskNumber);
+            break;
+        case TAG:
+            tasks.tagTask(this.taskNumber, this.payload);
+            break;
+        case DELETE:
+            tasks.removeTask(this.taskNumber);
+            break;
+        default:
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,262 @@
+package james.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import james.TaskList;
+import james.exception.CanNotFindFileException;
+import james.task.Task;
+
+/**
+ * Loads large task data files on several cores.
+ * The file is memory-mapped and split into byte ranges of about one megabyte that
+ * always end on a newline; each range is checked and parsed by its own {@link RecoveryScanner}
+ * on the fork/join pool, and the per-range results are stitched back together in file
+ * order. Files below the threshold keep the sequential {@link StreamingTaskLoader} path,
+ * where the cost of forking is not worth it.
+ */
+public class ParallelTaskLoader {
+    /** The default file size in bytes from which the parallel path is used. */
+    public static final long DEFAULT_THRESHOLD_BYTES = 8L * 1024 * 1024;
+
+    private static final int CHUNK_BYTES = 1024 * 1024;
+    private static final byte NEWLINE = '\n';
+    private static final byte HEADER_PREFIX = '#';
+
+    private final File file;
+    private final long thresholdBytes;
+    private final ArrayList<String> headerLines = new ArrayList<>();
+    private RecoveryScanner recovery = new RecoveryScanner();
+
+    /**
+     * Initializes a loader for the given data file.
+     *
+     * @param file The data file to read.
+     * @param thresholdBytes The file size from which the file is loaded in parallel.
+     */
+    public ParallelTaskLoader(File file, long thresholdBytes) {
+        assert file != null : "Data file cannot be null";
+        assert thresholdBytes >= 0 : "Threshold cannot be negative";
+        this.file = file;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    /**
+     * Reads the whole file and returns the tasks it contains, in file order.
+     *
+     * @return The loaded tasks.
+     * @throws CanNotFindFileException If the file cannot be read.
+     */
+    public TaskList load() throws CanNotFindFileException {
+        this.headerLines.clear();
+        this.recovery = new RecoveryScanner();
+        long size = this.file.length();
+        Charset charset = Charset.defaultCharset();
+        if (size < this.thresholdBytes || size > Integer.MAX_VALUE || !isNewlineSafe(charset)) {
+            StreamingTaskLoader loader = new StreamingTaskLoader(this.file);
+            TaskList tasks = loader.load();
+            this.headerLines.addAll(loader.getHeaderLines());
+            this.recovery = loader.getRecoveryScanner();
+            return tasks;
+        }
+
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodyStart = readHeaderLines(buffer, (int) size, charset);
+            int formatVersion = StorageFormat.parseVersion(this.headerLines);
+            ArrayList<ChunkParser> chunks = new ArrayList<>();
+            int start = bodyStart;
+            while (start < size) {
+                int end = findNewline(buffer, (int) Math.min(size, (long) start + CHUNK_BYTES), (int) size);
+                ChunkParser chunk = new ChunkParser(buffer, start, Math.min(end + 1, (int) size), charset,
+                        formatVersion);
+                ForkJoinPool.commonPool().execute(chunk);
+                chunks.add(chunk);
+                start = end + 1;
+            }
+            return stitch(chunks);
+        } catch (IOException e) {
+            throw new CanNotFindFileException("Error reading file at: " + this.file);
+        }
+    }
+
+    /**
+     * Waits for every chunk and concatenates their tasks and recovery results in file order.
+     *
+     * @param chunks The submitted chunks, in file order.
+     * @return The task list holding every parsed task.
+     */
+    private TaskList stitch(ArrayList<ChunkParser> chunks) {
+        ArrayList<List<Task>> results = new ArrayList<>(chunks.size());
+        int total = 0;
+        for (ChunkParser chunk : chunks) {
+            List<Task> parsed = chunk.join();
+            results.add(parsed);
+            total += parsed.size();
+            this.recovery.merge(chunk.recovery);
+        }
+
+        ArrayList<Task> tasks = new ArrayList<>(total);
+        for (List<Task> parsed : results) {
+            tasks.addAll(parsed);
+        }
+        return new TaskList(tasks);
+    }
+
+    /**
+     * Returns the header lines found at the top of the file by the last load.
+     *
+     * @return The header lines, in file order.
+     */
+    public ArrayList<String> getHeaderLines() {
+        return this.headerLines;
+    }
+
+    /**
+     * Returns the first header line found by the last load.
+     *
+     * @return The first header line, or null if the file had no header.
+     */
+    public String getFirstHeaderLine() {
+        return this.headerLines.isEmpty() ? null : this.headerLines.get(0);
+    }
+
+    /**
+     * Returns the scanner that checked the lines of the last load.
+     *
+     * @return The recovery scanner, with the counts and quarantined lines.
+     */
+    public RecoveryScanner getRecoveryScanner() {
+        return this.recovery;
+    }
+
+    /**
+     * Reads the leading '#' lines sequentially, so chunks never have to tell headers from tasks.
+     *
+     * @param buffer The mapped file.
+     * @param size The size of the file.
+     * @param charset The charset the file is encoded in.
+     * @return The offset of the first byte after the header.
+     */
+    private int readHeaderLines(MappedByteBuffer buffer, int size, Charset charset) {
+        int position = 0;
+        while (position < size && buffer.get(position) == HEADER_PREFIX) {
+            int end = findNewline(buffer, position, size);
+            this.headerLines.add(decode(buffer, position, end, charset).trim());
+            position = end + 1;
+        }
+        return Math.min(position, size);
+    }
+
+    /**
+     * Checks that a newline is encoded as the single byte '\n', so splitting on it cannot cut a character.
+     *
+     * @param charset The charset the file is encoded in.
+     * @return True if byte ranges can be split at newline bytes.
+     */
+    static boolean isNewlineSafe(Charset charset) {
+        byte[] encoded = "\n".getBytes(charset);
+        return encoded.length == 1 && encoded[0] == NEWLINE;
+    }
+
+    /**
+     * Finds the next newline at or after a position.
+     *
+     * @param buffer The mapped file.
+     * @param from The position to start searching from.
+     * @param limit The end of the searched range (exclusive).
+     * @return The position of the newline, or {@code limit} if there is none.
+     */
+    private static int findNewline(MappedByteBuffer buffer, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == NEWLINE) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Decodes a byte range of the mapped file into a string.
+     *
+     * @param buffer The mapped file.
+     * @param start The first byte (inclusive).
+     * @param end The last byte (exclusive).
+     * @param charset The charset the file is encoded in.
+     * @return The decoded text.
+     */
+    private static String decode(MappedByteBuffer buffer, int start, int end, Charset charset) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Parses one newline-aligned byte range of the mapped file on the fork/join pool.
+     */
+    private static class ChunkParser extends RecursiveTask<List<Task>> {
+        private static final long serialVersionUID = 1L;
+
+        private final MappedByteBuffer buffer;
+        private final int start;
+        private final int end;
+        private final Charset charset;
+        private final RecoveryScanner recovery = new RecoveryScanner();
+
+        /**
+         * Initializes a parser for the byte range [start, end).
+         *
+         * @param buffer The mapped file.
+         * @param start The first byte of the range, which starts a line.
+         * @param end The end of the range, which is just past a newline or the end of the file.
+         * @param charset The charset the file is encoded in.
+         * @param formatVersion The text layout version from the file's header.
+         */
+        ChunkParser(MappedByteBuffer buffer, int start, int end, Charset charset, int formatVersion) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.charset = charset;
+            this.recovery.setFormatVersion(formatVersion);
+        }
+
+        @Override
+        protected List<Task> compute() {
+            return parseRange();
+        }
+
+        /**
+         * Decodes the range once and parses it line by line.
+         *
+         * @return The tasks in this range, in file order.
+         */
+        private List<Task> parseRange() {
+            String text = decode(this.buffer, this.start, this.end, this.charset);
+            List<Task> tasks = new ArrayList<>();
+            int lineStart = 0;
+            while (lineStart < text.length()) {
+                int lineEnd = text.indexOf(NEWLINE, lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = text.length();
+                }
+                String line = text.substring(lineStart, lineEnd).trim();
+                if (!line.isEmpty()) {
+                    Task task = this.recovery.scanLine(line);
+                    if (task != null) {
+                        tasks.add(task);
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+            return tasks;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package james.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Adds and verifies the CRC32C checksum that ends every record written to the text data
+ * file and the journal, e.g. {@code T |  | 0 | read book |#1c291ca3}.
+ * Records without a checksum, written by older versions or edited by hand, are still accepted as unchecked.
+ */
+public class RecordChecksum {
+    private static final String SEP_CHECKSUM = " |#";
+    private static final int HEX_DIGITS = 8;
+    private static final int SUFFIX_LENGTH = SEP_CHECKSUM.length() + HEX_DIGITS;
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private RecordChecksum() {
+    }
+
+    /**
+     * Appends the checksum of a record to it.
+     *
+     * @param record The record to protect.
+     * @return The record followed by its checksum.
+     */
+    public static String append(String record) {
+        assert record != null : "Record cannot be null";
+        String hex = Integer.toHexString(compute(record));
+        StringBuilder line = new StringBuilder(record.length() + SUFFIX_LENGTH).append(record).append(SEP_CHECKSUM);
+        for (int i = hex.length(); i < HEX_DIGITS; i++) {
+            line.append('0');
+        }
+        return line.append(hex).toString();
+    }
+
+    /**
+     * Checks whether a line ends with a checksum.
+     *
+     * @param line The stored line.
+     * @return True if the line carries a checksum.
+     */
+    public static boolean hasChecksum(String line) {
+        int start = line.length() - HEX_DIGITS;
+        if (start < SEP_CHECKSUM.length() || !line.startsWith(SEP_CHECKSUM, start - SEP_CHECKSUM.length())) {
+            return false;
+        }
+        for (int i = start; i < line.length(); i++) {
+            if (Character.digit(line.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verifies a stored line and returns the record it holds.
+     *
+     * @param line The stored line.
+     * @return The record without its checksum, the line itself if it has no checksum,
+     *         or null if the checksum does not match.
+     */
+    public static String verify(String line) {
+        assert line != null : "Line cannot be null";
+        if (!hasChecksum(line)) {
+            return line;
+        }
+        String record = line.substring(0, line.length() - SUFFIX_LENGTH);
+        int stored = Integer.parseUnsignedInt(line.substring(line.length() - HEX_DIGITS), 16);
+        return stored == compute(record) ? record : null;
+    }
+
+    /**
+     * Computes the CRC32C of a record's UTF-8 bytes.
+     *
+     * @param record The record.
+     * @return The checksum.
+     */
+    static int compute(String record) {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        return compute(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Computes the CRC32C of a range of bytes, e.g. a record of a binary data file.
+     *
+     * @param bytes The bytes.
+     * @param offset The first byte of the range.
+     * @param length The number of bytes.
+     * @return The checksum.
+     */
+    static int compute(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
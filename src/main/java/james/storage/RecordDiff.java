@@ -0,0 +1,203 @@
+package james.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the record-level differences between two versions of the data file.
+ * Records are compared by 64-bit hashes. The common prefix and suffix are skipped first, so a
+ * typical edit of a few lines only runs Myers' O(ND) algorithm on the lines around it. If the
+ * versions differ in more than {@value #MAX_EDITS} records, the changed middle is reported as
+ * one replacement instead.
+ */
+public class RecordDiff {
+    private static final int MAX_EDITS = 512;
+
+    /**
+     * Describes one run of changed records: {@code oldCount} records starting at {@code oldStart}
+     * in the old version were replaced by {@code newCount} records starting at {@code newStart}
+     * in the new version. Either count may be 0.
+     */
+    public static class Hunk {
+        private final int oldStart;
+        private final int oldCount;
+        private final int newStart;
+        private final int newCount;
+
+        /**
+         * Initializes a hunk.
+         *
+         * @param oldStart The 0-indexed first changed record of the old version.
+         * @param oldCount The number of records removed from the old version.
+         * @param newStart The 0-indexed first changed record of the new version.
+         * @param newCount The number of records added in the new version.
+         */
+        public Hunk(int oldStart, int oldCount, int newStart, int newCount) {
+            this.oldStart = oldStart;
+            this.oldCount = oldCount;
+            this.newStart = newStart;
+            this.newCount = newCount;
+        }
+
+        public int getOldStart() {
+            return this.oldStart;
+        }
+
+        public int getOldCount() {
+            return this.oldCount;
+        }
+
+        public int getNewStart() {
+            return this.newStart;
+        }
+
+        public int getNewCount() {
+            return this.newCount;
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private RecordDiff() {
+    }
+
+    /**
+     * Computes the hunks that turn the old records into the new ones.
+     *
+     * @param oldHashes The record hashes of the old version.
+     * @param newHashes The record hashes of the new version.
+     * @return The hunks, in ascending order; empty if the versions are equal.
+     */
+    public static List<Hunk> compute(long[] oldHashes, long[] newHashes) {
+        int prefix = 0;
+        while (prefix < oldHashes.length && prefix < newHashes.length && oldHashes[prefix] == newHashes[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldHashes.length - prefix && suffix < newHashes.length - prefix
+                && oldHashes[oldHashes.length - 1 - suffix] == newHashes[newHashes.length - 1 - suffix]) {
+            suffix++;
+        }
+        int oldLength = oldHashes.length - prefix - suffix;
+        int newLength = newHashes.length - prefix - suffix;
+
+        boolean[] isRemoved = new boolean[oldLength];
+        boolean[] isAdded = new boolean[newLength];
+        if (!markEdits(oldHashes, newHashes, prefix, oldLength, newLength, isRemoved, isAdded)) {
+            ArrayList<Hunk> hunks = new ArrayList<>(1);
+            hunks.add(new Hunk(prefix, oldLength, prefix, newLength));
+            return hunks;
+        }
+        return toHunks(isRemoved, isAdded, prefix);
+    }
+
+    /**
+     * Runs Myers' algorithm on the middle parts and marks the records that are not in the
+     * longest common subsequence.
+     *
+     * @param oldHashes The record hashes of the old version.
+     * @param newHashes The record hashes of the new version.
+     * @param start The index where both middle parts start.
+     * @param oldLength The length of the old middle part.
+     * @param newLength The length of the new middle part.
+     * @param isRemoved Receives which old records were removed.
+     * @param isAdded Receives which new records were added.
+     * @return False if there are more than {@value #MAX_EDITS} edits, in which case nothing is marked.
+     */
+    private static boolean markEdits(long[] oldHashes, long[] newHashes, int start, int oldLength, int newLength,
+            boolean[] isRemoved, boolean[] isAdded) {
+        int maxEdits = Math.min(MAX_EDITS, oldLength + newLength);
+        int offset = maxEdits + 1;
+        int[] furthest = new int[2 * maxEdits + 3];
+        ArrayList<int[]> trace = new ArrayList<>();
+        for (int edits = 0; edits <= maxEdits; edits++) {
+            trace.add(furthest.clone());
+            for (int k = -edits; k <= edits; k += 2) {
+                boolean isDown = k == -edits || (k != edits && furthest[offset + k - 1] < furthest[offset + k + 1]);
+                int x = isDown ? furthest[offset + k + 1] : furthest[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < oldLength && y < newLength && oldHashes[start + x] == newHashes[start + y]) {
+                    x++;
+                    y++;
+                }
+                furthest[offset + k] = x;
+                if (x >= oldLength && y >= newLength) {
+                    backtrack(trace, offset, oldLength, newLength, isRemoved, isAdded);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the recorded search back from the end to find which records were removed or added.
+     *
+     * @param trace The furthest-reaching positions before each number of edits.
+     * @param offset The array index of diagonal 0.
+     * @param oldLength The length of the old middle part.
+     * @param newLength The length of the new middle part.
+     * @param isRemoved Receives which old records were removed.
+     * @param isAdded Receives which new records were added.
+     */
+    private static void backtrack(List<int[]> trace, int offset, int oldLength, int newLength,
+            boolean[] isRemoved, boolean[] isAdded) {
+        int x = oldLength;
+        int y = newLength;
+        for (int edits = trace.size() - 1; edits > 0; edits--) {
+            int[] furthest = trace.get(edits);
+            int k = x - y;
+            boolean isDown = k == -edits || (k != edits && furthest[offset + k - 1] < furthest[offset + k + 1]);
+            int previousK = isDown ? k + 1 : k - 1;
+            int previousX = furthest[offset + previousK];
+            int previousY = previousX - previousK;
+            while (x > previousX && y > previousY) {
+                x--;
+                y--;
+            }
+            if (isDown) {
+                isAdded[previousY] = true;
+            } else {
+                isRemoved[previousX] = true;
+            }
+            x = previousX;
+            y = previousY;
+        }
+    }
+
+    /**
+     * Groups adjacent removed and added records into hunks.
+     *
+     * @param isRemoved Which old records of the middle part were removed.
+     * @param isAdded Which new records of the middle part were added.
+     * @param start The index where both middle parts start.
+     * @return The hunks, in ascending order.
+     */
+    private static List<Hunk> toHunks(boolean[] isRemoved, boolean[] isAdded, int start) {
+        ArrayList<Hunk> hunks = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < isRemoved.length || j < isAdded.length) {
+            if (i < isRemoved.length && j < isAdded.length && !isRemoved[i] && !isAdded[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int oldStart = i;
+            int newStart = j;
+            while (i < isRemoved.length && isRemoved[i]) {
+                i++;
+            }
+            while (j < isAdded.length && isAdded[j]) {
+                j++;
+            }
+            if (i == oldStart && j == newStart) {
+                assert false : "Unmatched records outside the edits";
+                break;
+            }
+            hunks.add(new Hunk(start + oldStart, i - oldStart, start + newStart, j - newStart));
+        }
+        return hunks;
+    }
+}
@@ -0,0 +1,286 @@
+package james.storage;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+import james.task.Deadline;
+import james.task.Event;
+import james.task.TagDictionary;
+import james.task.Task;
+import james.task.Todo;
+
+/**
+ * Turns one line of the pipe-delimited data file into a Task without regular expressions.
+ * The line is scanned once with plain index searches to find the field boundaries
+ * ({@code type | tags | done | description [| extra...]}); only the description, tags
+ * and event times are copied out as strings, and deadline dates are read digit by digit.
+ */
+public class RecordScanner {
+    private static final String SEP_FIELD = " | ";
+    private static final String SEP_TAG = " /#";
+    private static final int MAX_FIELDS = 6;
+    private static final int FIELD_TYPE = 0;
+    private static final int FIELD_TAGS = 1;
+    private static final int FIELD_STATUS = 2;
+    private static final int FIELD_DESCRIPTION = 3;
+    private static final int FIELD_EXTRA = 4;
+    private static final int DATE_LENGTH = 10;
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private RecordScanner() {
+    }
+
+    /**
+     * Parses a stored line into a Task.
+     *
+     * @param line The pipe-separated line from the data file.
+     * @return The reconstructed task, or null if the line is not a well-formed task record.
+     */
+    public static Task scan(String line) {
+        assert line != null : "Storage line cannot be null";
+        int[] bounds = new int[MAX_FIELDS * 2];
+        int fieldCount = findFields(line, bounds);
+        if (fieldCount <= FIELD_DESCRIPTION) {
+            return null;
+        }
+
+        Task task = createTask(line, bounds, fieldCount);
+        if (task != null && isDone(line, bounds)) {
+            task.mark();
+        }
+        return task;
+    }
+
+    /**
+     * Parses a stored line straight into a new entry of the columns, without creating a Task.
+     * It accepts exactly the lines {@link #scan(String)} does.
+     *
+     * @param line The pipe-separated line from the data file.
+     * @param columns Receives the entry.
+     * @param id The id of the task.
+     * @return False if the line is not a well-formed task record, in which case nothing was added.
+     */
+    public static boolean scanInto(String line, TaskColumns columns, long id) {
+        assert line != null : "Storage line cannot be null";
+        int[] bounds = new int[MAX_FIELDS * 2];
+        int fieldCount = findFields(line, bounds);
+        if (fieldCount <= FIELD_DESCRIPTION || fieldLength(bounds, FIELD_TYPE) != 1) {
+            return false;
+        }
+        char type = Character.toUpperCase(line.charAt(bounds[FIELD_TYPE * 2]));
+        boolean isDone = isDone(line, bounds);
+        int[] tagIds = TagDictionary.idsOf(scanTags(line, bounds[FIELD_TAGS * 2], bounds[FIELD_TAGS * 2 + 1]));
+        String description = field(line, bounds, FIELD_DESCRIPTION);
+
+        switch (type) {
+        case 'T':
+            columns.addTodo(id, isDone, description, tagIds);
+            return true;
+        case 'D':
+            LocalDate deadline = fieldCount <= FIELD_EXTRA
+                    ? null
+                    : scanDate(line, bounds[FIELD_EXTRA * 2], bounds[FIELD_EXTRA * 2 + 1]);
+            if (deadline == null) {
+                return false;
+            }
+            columns.addDeadline(id, isDone, description, tagIds, deadline);
+            return true;
+        case 'E':
+            if (fieldCount <= FIELD_EXTRA + 1) {
+                return false;
+            }
+            columns.addEvent(id, isDone, description, tagIds,
+                    field(line, bounds, FIELD_EXTRA), field(line, bounds, FIELD_EXTRA + 1));
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Splits a tag field of the form {@code " /#a /#b"} into its tags.
+     * Text before the first marker and trailing empty tags are ignored.
+     *
+     * @param tagInfo The stored tag field.
+     * @return The tags in stored order.
+     */
+    public static ArrayList<String> scanTags(String tagInfo) {
+        assert tagInfo != null : "Storage tags cannot be null";
+        return scanTags(tagInfo, 0, tagInfo.length());
+    }
+
+    /**
+     * Parses an ISO date ({@code yyyy-MM-dd}) digit by digit.
+     *
+     * @param text The text containing the date.
+     * @param start The index of the first character of the date.
+     * @param end The index just after the last character of the date.
+     * @return The date, or null if the range is not a valid date.
+     */
+    public static LocalDate scanDate(String text, int start, int end) {
+        if (end - start != DATE_LENGTH || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-') {
+            return null;
+        }
+        int year = readDigits(text, start, start + 4);
+        int month = readDigits(text, start + 5, start + 7);
+        int day = readDigits(text, start + 8, start + 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return null;
+        }
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records the start and end of up to {@value #MAX_FIELDS} fields, the way
+     * {@code String.split(" \\| ")} would, including dropping trailing empty fields.
+     *
+     * @param line The stored line.
+     * @param bounds Receives start/end index pairs of the first fields.
+     * @return The number of fields, not counting trailing empty ones.
+     */
+    private static int findFields(String line, int[] bounds) {
+        int fieldCount = 0;
+        int lastNonEmpty = -1;
+        int start = 0;
+        while (true) {
+            int separator = line.indexOf(SEP_FIELD, start);
+            int end = separator < 0 ? line.length() : separator;
+            if (fieldCount < MAX_FIELDS) {
+                bounds[fieldCount * 2] = start;
+                bounds[fieldCount * 2 + 1] = end;
+            }
+            if (end > start) {
+                lastNonEmpty = fieldCount;
+            }
+            fieldCount++;
+            if (separator < 0) {
+                return lastNonEmpty + 1;
+            }
+            start = separator + SEP_FIELD.length();
+        }
+    }
+
+    /**
+     * Builds the Task subclass named by the type field.
+     *
+     * @param line The stored line.
+     * @param bounds The field boundaries.
+     * @param fieldCount The number of fields in the line.
+     * @return The task, or null if the type is unknown or fields are missing or malformed.
+     */
+    private static Task createTask(String line, int[] bounds, int fieldCount) {
+        if (fieldLength(bounds, FIELD_TYPE) != 1) {
+            return null;
+        }
+        char type = Character.toUpperCase(line.charAt(bounds[FIELD_TYPE * 2]));
+        ArrayList<String> tags = scanTags(line, bounds[FIELD_TAGS * 2], bounds[FIELD_TAGS * 2 + 1]);
+        String description = field(line, bounds, FIELD_DESCRIPTION);
+
+        switch (type) {
+        case 'T':
+            return new Todo(description, tags);
+        case 'D':
+            if (fieldCount <= FIELD_EXTRA) {
+                return null;
+            }
+            LocalDate deadline = scanDate(line, bounds[FIELD_EXTRA * 2], bounds[FIELD_EXTRA * 2 + 1]);
+            return deadline == null ? null : new Deadline(description, tags, deadline);
+        case 'E':
+            if (fieldCount <= FIELD_EXTRA + 1) {
+                return null;
+            }
+            return new Event(description, tags, field(line, bounds, FIELD_EXTRA), field(line, bounds, FIELD_EXTRA + 1));
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the status field is exactly "1".
+     *
+     * @param line The stored line.
+     * @param bounds The field boundaries.
+     * @return True if the task is stored as done.
+     */
+    private static boolean isDone(String line, int[] bounds) {
+        return fieldLength(bounds, FIELD_STATUS) == 1 && line.charAt(bounds[FIELD_STATUS * 2]) == '1';
+    }
+
+    /**
+     * Splits the tag markers inside a range of the line.
+     *
+     * @param text The text holding the tag field.
+     * @param start The start of the tag field.
+     * @param end The end of the tag field.
+     * @return The tags in stored order.
+     */
+    private static ArrayList<String> scanTags(String text, int start, int end) {
+        ArrayList<String> tags = new ArrayList<>();
+        int marker = text.indexOf(SEP_TAG, start);
+        int lastNonEmpty = -1;
+        while (marker >= 0 && marker + SEP_TAG.length() <= end) {
+            int tagStart = marker + SEP_TAG.length();
+            int next = text.indexOf(SEP_TAG, tagStart);
+            int tagEnd = next < 0 || next + SEP_TAG.length() > end ? end : next;
+            tags.add(text.substring(tagStart, tagEnd));
+            if (tagEnd > tagStart) {
+                lastNonEmpty = tags.size() - 1;
+            }
+            marker = tagEnd == end ? -1 : next;
+        }
+        while (tags.size() > lastNonEmpty + 1) {
+            tags.remove(tags.size() - 1);
+        }
+        return tags;
+    }
+
+    /**
+     * Reads an unsigned decimal number from a range of characters.
+     *
+     * @param text The text holding the digits.
+     * @param start The first digit.
+     * @param end Just after the last digit.
+     * @return The number, or -1 if a character is not a digit.
+     */
+    private static int readDigits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Copies one field out of the line.
+     *
+     * @param line The stored line.
+     * @param bounds The field boundaries.
+     * @param index The field index.
+     * @return The field text.
+     */
+    private static String field(String line, int[] bounds, int index) {
+        return line.substring(bounds[index * 2], bounds[index * 2 + 1]);
+    }
+
+    /**
+     * Returns the length of one field.
+     *
+     * @param bounds The field boundaries.
+     * @param index The field index.
+     * @return The number of characters in the field.
+     */
+    private static int fieldLength(int[] bounds, int index) {
+        return bounds[index * 2 + 1] - bounds[index * 2];
+    }
+}
@@ -0,0 +1,285 @@
+package james.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+
+import james.Parser;
+import james.exception.CanNotWriteToFileException;
+import james.task.Task;
+
+/**
+ * Validates the lines of a text data file while it is loaded, in the same single pass.
+ * Each line's checksum is verified before it is parsed, and rows in the layout from before
+ * tags were added are upgraded on the fly by {@link LegacyRecordMigrator} unless the file's
+ * format header says it is current. Lines with a wrong checksum or
+ * that do not parse are kept aside instead of being dropped, so they can be written to a
+ * quarantine file next to the data file. Lines without a checksum, e.g. edited by hand, are loaded
+ * and counted as unchecked. Binary and mapped data files check their own records and report them
+ * through {@link #countRecord(boolean)} and {@link #rejectRecord(String, byte[], boolean)}.
+ * The counts are reported after loading.
+ */
+public class RecoveryScanner {
+    /** The suffix of the side file bad records are moved to. */
+    public static final String QUARANTINE_SUFFIX = ".quarantine";
+    /** The separator between the task id and the record in files that store ids. */
+    public static final String SEP_ID = " @ ";
+    /** Starts the quarantine line of a binary record, which the text loader skips like any header. */
+    private static final String BINARY_PREFIX = "# binary ";
+
+    private final ArrayList<String> quarantinedLines = new ArrayList<>();
+    private int validCount;
+    private int uncheckedCount;
+    private int corruptCount;
+    private int malformedCount;
+    private int migratedCount;
+    private int formatVersion = StorageFormat.LEGACY_TEXT_VERSION;
+    private File quarantineFile;
+    private boolean hasTaskIds;
+    /** The task id stored in front of the record last read, or 0 if the file stores none. */
+    private long recordId;
+
+    /**
+     * Sets the text layout version declared by the file's header, so that files already in the
+     * current layout skip the legacy row check.
+     *
+     * @param formatVersion The version from the format header.
+     */
+    public void setFormatVersion(int formatVersion) {
+        this.formatVersion = formatVersion;
+    }
+
+    /**
+     * Sets whether each record starts with the id of its task, as in sharded data files
+     * ({@code 17 @ T |  | 0 | read book}). The id is covered by the checksum and given back to the task.
+     *
+     * @param hasTaskIds True if records start with a task id.
+     */
+    public void setHasTaskIds(boolean hasTaskIds) {
+        this.hasTaskIds = hasTaskIds;
+    }
+
+    /**
+     * Verifies and parses one line of the data file.
+     *
+     * @param line The trimmed, non-blank line.
+     * @return The task, or null if the line was quarantined.
+     */
+    public Task scanLine(String line) {
+        String record = readRecord(line);
+        if (record == null) {
+            return null;
+        }
+        Task task = Parser.parseLine(record);
+        if (!accept(line, task != null)) {
+            return null;
+        }
+        if (this.recordId > 0) {
+            task.setId(this.recordId);
+        }
+        return task;
+    }
+
+    /**
+     * Verifies one line of the data file and parses it straight into a new entry of the columns.
+     * Lines without a stored id get the next id after the highest one in the columns.
+     *
+     * @param line The trimmed, non-blank line.
+     * @param columns Receives the entry.
+     * @return False if the line was quarantined.
+     */
+    public boolean scanLineInto(String line, TaskColumns columns) {
+        String record = readRecord(line);
+        if (record == null) {
+            return false;
+        }
+        long id = this.recordId > 0 ? this.recordId : columns.getRecordCount() + 1L;
+        return accept(line, RecordScanner.scanInto(record, columns, id));
+    }
+
+    /**
+     * Verifies the checksum of a line, takes off the task id in front of it if the file stores ids,
+     * and upgrades a legacy row. The id is left in {@link #recordId}.
+     *
+     * @param line The trimmed, non-blank line.
+     * @return The record to parse, or null if the line was quarantined.
+     */
+    private String readRecord(String line) {
+        String record = RecordChecksum.verify(line);
+        if (record == null) {
+            this.corruptCount++;
+            this.quarantinedLines.add(line);
+            return null;
+        }
+
+        this.recordId = 0;
+        if (this.hasTaskIds) {
+            int separator = record.indexOf(SEP_ID);
+            this.recordId = separator > 0 ? parseId(record.substring(0, separator)) : 0;
+            if (this.recordId <= 0) {
+                this.malformedCount++;
+                this.quarantinedLines.add(line);
+                return null;
+            }
+            record = record.substring(separator + SEP_ID.length());
+        }
+
+        if (this.formatVersion < StorageFormat.TEXT_VERSION) {
+            String upgraded = LegacyRecordMigrator.upgrade(record);
+            if (upgraded != record) {
+                this.migratedCount++;
+                record = upgraded;
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Counts a line whose record was parsed, or quarantines it if it could not be.
+     *
+     * @param line The line the record was read from.
+     * @param isParsed True if the record was well-formed.
+     * @return The same as isParsed.
+     */
+    private boolean accept(String line, boolean isParsed) {
+        if (!isParsed) {
+            this.malformedCount++;
+            this.quarantinedLines.add(line);
+            return false;
+        }
+        if (!RecordChecksum.hasChecksum(line)) {
+            this.uncheckedCount++;
+        } else {
+            this.validCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Counts a record of a binary data file that was decoded.
+     *
+     * @param isChecked True if the record's checksum was verified, false if its file has none.
+     */
+    public void countRecord(boolean isChecked) {
+        if (isChecked) {
+            this.validCount++;
+        } else {
+            this.uncheckedCount++;
+        }
+    }
+
+    /**
+     * Keeps aside a record of a binary data file that could not be recovered. It is written to the
+     * quarantine file in hex, after a header naming where it was found.
+     *
+     * @param location Where the record was found, e.g. "record 17".
+     * @param record The raw bytes of the record.
+     * @param isCorrupt True if its checksum did not match, false if it did not decode.
+     */
+    public void rejectRecord(String location, byte[] record, boolean isCorrupt) {
+        if (isCorrupt) {
+            this.corruptCount++;
+        } else {
+            this.malformedCount++;
+        }
+        this.quarantinedLines.add(BINARY_PREFIX + location + " " + HexFormat.of().formatHex(record));
+    }
+
+    /**
+     * Parses the id in front of a record.
+     *
+     * @param text The text before the id separator.
+     * @return The id, or 0 if the text is not a positive number.
+     */
+    private static long parseId(String text) {
+        try {
+            return Math.max(0, Long.parseLong(text));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Adds the results of a scanner that checked a later part of the same file.
+     *
+     * @param other The scanner of the following part.
+     */
+    public void merge(RecoveryScanner other) {
+        this.quarantinedLines.addAll(other.quarantinedLines);
+        this.validCount += other.validCount;
+        this.uncheckedCount += other.uncheckedCount;
+        this.corruptCount += other.corruptCount;
+        this.malformedCount += other.malformedCount;
+        this.migratedCount += other.migratedCount;
+    }
+
+    /**
+     * Appends every quarantined line to the side file of the given data file.
+     * Does nothing if no line was quarantined.
+     *
+     * @param dataFile The data file the lines came from.
+     * @throws CanNotWriteToFileException If the side file cannot be written.
+     */
+    public void quarantine(File dataFile) throws CanNotWriteToFileException {
+        if (this.quarantinedLines.isEmpty()) {
+            return;
+        }
+        File sideFile = new File(dataFile.getPath() + QUARANTINE_SUFFIX);
+        try {
+            Files.write(sideFile.toPath(), this.quarantinedLines, Charset.defaultCharset(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new CanNotWriteToFileException(e.getMessage());
+        }
+        this.quarantineFile = sideFile;
+    }
+
+    /**
+     * Returns whether any line was quarantined.
+     *
+     * @return True if some records could not be recovered.
+     */
+    public boolean hasQuarantinedLines() {
+        return !this.quarantinedLines.isEmpty();
+    }
+
+    public ArrayList<String> getQuarantinedLines() {
+        return this.quarantinedLines;
+    }
+
+    public int getValidCount() {
+        return this.validCount;
+    }
+
+    public int getUncheckedCount() {
+        return this.uncheckedCount;
+    }
+
+    public int getCorruptCount() {
+        return this.corruptCount;
+    }
+
+    public int getMalformedCount() {
+        return this.malformedCount;
+    }
+
+    public int getMigratedCount() {
+        return this.migratedCount;
+    }
+
+    /**
+     * Describes the outcome of the scan for the user.
+     *
+     * @return A one-line summary of the counts.
+     */
+    public String getSummary() {
+        String summary = String.format("Loaded %d tasks (%d without checksum, %d upgraded from the old layout);"
+                + " quarantined %d corrupt and %d malformed records", this.validCount + this.uncheckedCount,
+                this.uncheckedCount, this.migratedCount, this.corruptCount, this.malformedCount);
+        return this.quarantineFile == null ? summary : summary + " to " + this.quarantineFile.getPath();
+    }
+}
@@ -0,0 +1,417 @@
+package james.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+import james.TaskList;
+import james.exception.CanNotFindFileException;
+import james.exception.CanNotWriteToFileException;
+import james.exception.JamesException;
+import james.task.Task;
+
+/**
+ * Spreads the task list over several text files, chosen by a hash of each task's stable id.
+ * The shards are loaded in parallel and merged back into list order by id, which is the
+ * order the tasks were added in. A save only rewrites the shards whose contents changed, so
+ * marking a task rewrites one shard instead of the whole list; each shard is replaced
+ * atomically, but a crash during a multi-shard save can leave some shards older than others.
+ *
+ * <p>Shard {@code i} of {@code data/tasks.txt} is {@code data/tasks.txt.shard<i>}. Records
+ * start with their task id ({@code 17 @ T |  | 0 | read book |#...}). If no shard exists
+ * yet, the single data file is loaded instead and split up on the next save; it is left in
+ * place as a backup. Shards beyond the configured count, e.g. after lowering it, are read
+ * and then deleted by the next save.</p>
+ */
+public class ShardedStorageEngine implements StorageEngine {
+    /** The suffix that, followed by the shard number, names each shard file. */
+    public static final String SHARD_SUFFIX = ".shard";
+
+    /** The header line that records which shard a file is. */
+    private static final String SHARD_HEADER = "# shard ";
+    /** Marks a shard whose file contents are not known, so the next save must write it. */
+    private static final long UNKNOWN_CHECKSUM = -1;
+
+    private final String filePath;
+    private final int shardCount;
+    /** The checksum of each shard's file contents as last loaded or written. */
+    private final long[] shardChecksums;
+    /** The shard numbers at or beyond the shard count that still have a file. */
+    private final ArrayList<Integer> staleShards = new ArrayList<>();
+    private RecoveryScanner lastRecovery = new RecoveryScanner();
+
+    /**
+     * Initializes an engine that spreads the given data file over a number of shards.
+     *
+     * @param filePath The path of the unsharded data file the shard files are named after.
+     * @param shardCount The number of shard files.
+     */
+    public ShardedStorageEngine(String filePath, int shardCount) {
+        assert filePath != null && !filePath.isEmpty() : "Storage file path cannot be null or empty";
+        assert shardCount > 0 : "There must be at least one shard";
+        this.filePath = filePath;
+        this.shardCount = shardCount;
+        this.shardChecksums = new long[shardCount];
+        Arrays.fill(this.shardChecksums, UNKNOWN_CHECKSUM);
+    }
+
+    public int getShardCount() {
+        return this.shardCount;
+    }
+
+    /**
+     * Returns the shard a task is stored in.
+     *
+     * @param task The task, which must already have an id.
+     * @return The shard number.
+     */
+    public int shardOf(Task task) {
+        assert task.getId() > 0 : "Only tasks with an id can be sharded";
+        return Math.floorMod(Long.hashCode(task.getId()), this.shardCount);
+    }
+
+    /**
+     * Returns the file of a shard.
+     *
+     * @param shard The shard number.
+     * @return The shard file.
+     */
+    public File getShardFile(int shard) {
+        return new File(this.filePath + SHARD_SUFFIX + shard);
+    }
+
+    @Override
+    public File getArchiveFile() {
+        return new File(this.filePath + TaskArchive.ARCHIVE_SUFFIX);
+    }
+
+    @Override
+    public RecoveryScanner getLastRecovery() {
+        return this.lastRecovery;
+    }
+
+    /**
+     * Loads every shard in parallel and merges them into one list in id order.
+     * Records that cannot be recovered are quarantined next to their shard.
+     * Falls back to the unsharded data file if there are no shards yet.
+     *
+     * @return The tasks of all shards.
+     * @throws JamesException If a shard cannot be read.
+     */
+    @Override
+    public synchronized TaskList load() throws JamesException {
+        ArrayList<Integer> shards = findShards();
+        if (shards.isEmpty()) {
+            return loadUnsharded();
+        }
+
+        ArrayList<Callable<ShardContents>> loads = new ArrayList<>(shards.size());
+        for (int shard : shards) {
+            loads.add(() -> loadShard(shard));
+        }
+        List<ShardContents> results = runAll(loads);
+
+        RecoveryScanner recovery = new RecoveryScanner();
+        ArrayList<Task> tasks = new ArrayList<>();
+        Arrays.fill(this.shardChecksums, UNKNOWN_CHECKSUM);
+        this.staleShards.clear();
+        for (ShardContents contents : results) {
+            recovery.merge(contents.recovery);
+            tasks.addAll(contents.tasks);
+            if (contents.shard >= this.shardCount) {
+                this.staleShards.add(contents.shard);
+            } else {
+                this.shardChecksums[contents.shard] = contents.checksum;
+            }
+        }
+        for (int shard = 0; shard < this.shardCount; shard++) {
+            if (!shards.contains(shard)) {
+                this.shardChecksums[shard] = checksum(encodeShard(shard, new ArrayList<>()));
+            }
+        }
+        this.lastRecovery = recovery;
+
+        // Each shard is already in id order, so this merges sorted runs
+        tasks.sort(Comparator.comparingLong(Task::getId));
+        return new TaskList(tasks);
+    }
+
+    /**
+     * Rewrites, in parallel, every shard whose contents differ from what was last loaded or
+     * written, then deletes the files of stale shards.
+     *
+     * @param tasks The tasks to save.
+     * @throws JamesException If a shard cannot be written.
+     */
+    @Override
+    public synchronized void save(TaskList tasks) throws JamesException {
+        assert tasks != null : "Cannot save a null task list";
+        ArrayList<ArrayList<Task>> shardTasks = new ArrayList<>(this.shardCount);
+        for (int shard = 0; shard < this.shardCount; shard++) {
+            shardTasks.add(new ArrayList<>());
+        }
+        synchronized (tasks) {
+            for (Task task : tasks.getTasks()) {
+                shardTasks.get(shardOf(task)).add(task);
+            }
+            ArrayList<Callable<Void>> writes = new ArrayList<>();
+            for (int shard = 0; shard < this.shardCount; shard++) {
+                addWriteIfChanged(writes, shard, shardTasks.get(shard));
+            }
+            runAll(writes);
+        }
+        deleteStaleShards();
+    }
+
+    /**
+     * Persists a single change. A mark, unmark, tag or addition only touches the shard of
+     * the task it changed, so only that shard is encoded and compared; a deletion, whose
+     * task is no longer in the list, saves the whole list.
+     *
+     * @param tasks The task list after the change.
+     * @param mutation The change that was applied.
+     * @throws JamesException If the shard cannot be written.
+     */
+    @Override
+    public synchronized void apply(TaskList tasks, Mutation mutation) throws JamesException {
+        assert mutation != null : "Cannot save a null mutation";
+        synchronized (tasks) {
+            int taskNumber = mutation.getType() == Mutation.Type.ADD ? tasks.getSize() : mutation.getTaskNumber();
+            if (mutation.getType() == Mutation.Type.DELETE || taskNumber <= 0 || taskNumber > tasks.getSize()) {
+                save(tasks);
+                return;
+            }
+
+            int shard = shardOf(tasks.getTask(taskNumber));
+            ArrayList<Task> shardTasks = new ArrayList<>();
+            for (Task task : tasks.getTasks()) {
+                if (shardOf(task) == shard) {
+                    shardTasks.add(task);
+                }
+            }
+            ArrayList<Callable<Void>> writes = new ArrayList<>(1);
+            addWriteIfChanged(writes, shard, shardTasks);
+            runAll(writes);
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Every save is written before it returns
+    }
+
+    @Override
+    public void close() {
+        // There is nothing to release
+    }
+
+    /**
+     * Finds the shard files that exist next to the data file.
+     *
+     * @return The shard numbers, in ascending order.
+     */
+    private ArrayList<Integer> findShards() {
+        ArrayList<Integer> shards = new ArrayList<>();
+        File file = new File(this.filePath).getAbsoluteFile();
+        String prefix = file.getName() + SHARD_SUFFIX;
+        String[] names = file.getParentFile() == null ? null : file.getParentFile().list();
+        if (names == null) {
+            return shards;
+        }
+        for (String name : names) {
+            if (name.startsWith(prefix) && name.length() > prefix.length()
+                    && name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+                shards.add(Integer.parseInt(name.substring(prefix.length())));
+            }
+        }
+        shards.sort(null);
+        return shards;
+    }
+
+    /**
+     * Loads the unsharded data file, if there is one, so it can be split up by the next save.
+     *
+     * @return The tasks of the data file, or an empty list.
+     * @throws JamesException If the data file cannot be read.
+     */
+    private TaskList loadUnsharded() throws JamesException {
+        Arrays.fill(this.shardChecksums, UNKNOWN_CHECKSUM);
+        this.staleShards.clear();
+        File file = new File(this.filePath);
+        if (!file.exists()) {
+            this.lastRecovery = new RecoveryScanner();
+            return new TaskList();
+        }
+        Snapshot snapshot = StorageFormat.read(file, ParallelTaskLoader.DEFAULT_THRESHOLD_BYTES);
+        this.lastRecovery = snapshot.getRecovery();
+        this.lastRecovery.quarantine(file);
+        return snapshot.getTasks();
+    }
+
+    /**
+     * Reads one shard file and the checksum of its bytes, which matches the checksum of the
+     * encoded shard only if the file holds exactly what would be written now.
+     *
+     * @param shard The shard number.
+     * @return The tasks of the shard, in file order, and how they were recovered.
+     * @throws CanNotFindFileException If the shard cannot be read.
+     * @throws CanNotWriteToFileException If bad records cannot be quarantined.
+     */
+    private ShardContents loadShard(int shard) throws CanNotFindFileException, CanNotWriteToFileException {
+        File file = getShardFile(shard);
+        long checksum;
+        try {
+            checksum = checksum(Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            throw new CanNotFindFileException("Error reading file at: " + file);
+        }
+        StreamingTaskLoader loader = new StreamingTaskLoader(file, true);
+        TaskList tasks = loader.load();
+        RecoveryScanner recovery = loader.getRecoveryScanner();
+        recovery.quarantine(file);
+        return new ShardContents(shard, tasks.getTasks(), recovery, checksum);
+    }
+
+    /**
+     * Encodes a shard and adds a write for it if its checksum differs from the file's.
+     *
+     * @param writes The writes to run.
+     * @param shard The shard number.
+     * @param tasks The tasks of the shard, in list order.
+     */
+    private void addWriteIfChanged(ArrayList<Callable<Void>> writes, int shard, ArrayList<Task> tasks) {
+        byte[] contents = encodeShard(shard, tasks);
+        long checksum = checksum(contents);
+        if (checksum == this.shardChecksums[shard]) {
+            return;
+        }
+        writes.add(() -> {
+            AtomicFileWriter.write(getShardFile(shard), contents);
+            this.shardChecksums[shard] = checksum;
+            return null;
+        });
+    }
+
+    /**
+     * Encodes the complete contents of a shard file.
+     *
+     * @param shard The shard number.
+     * @param tasks The tasks of the shard, in list order.
+     * @return The file contents.
+     */
+    private byte[] encodeShard(int shard, List<Task> tasks) {
+        String separator = System.lineSeparator();
+        StringBuilder text = new StringBuilder();
+        for (String header : headerLines(shard)) {
+            text.append(header).append(separator);
+        }
+        for (Task task : tasks) {
+            text.append(RecordChecksum.append(task.getId() + RecoveryScanner.SEP_ID + task.toFileFormat()))
+                    .append(separator);
+        }
+        return text.toString().getBytes(Charset.defaultCharset());
+    }
+
+    /**
+     * Returns the header lines of a shard file.
+     *
+     * @param shard The shard number.
+     * @return The format header and the shard header.
+     */
+    private List<String> headerLines(int shard) {
+        return List.of(StorageFormat.VERSION_HEADER + StorageFormat.TEXT_VERSION,
+                SHARD_HEADER + shard + " of " + this.shardCount);
+    }
+
+    /**
+     * Computes the checksum used to tell whether a shard changed.
+     *
+     * @param contents The encoded shard.
+     * @return The CRC32C of the contents.
+     */
+    private static long checksum(byte[] contents) {
+        CRC32C crc = new CRC32C();
+        crc.update(contents);
+        return crc.getValue();
+    }
+
+    /**
+     * Deletes the files of shards beyond the shard count, whose tasks now live in other shards.
+     *
+     * @throws CanNotWriteToFileException If a file cannot be deleted.
+     */
+    private void deleteStaleShards() throws CanNotWriteToFileException {
+        for (int shard : this.staleShards) {
+            try {
+                Files.deleteIfExists(getShardFile(shard).toPath());
+            } catch (IOException e) {
+                throw new CanNotWriteToFileException(e.getMessage());
+            }
+        }
+        this.staleShards.clear();
+    }
+
+    /**
+     * Runs shard reads or writes on the fork/join pool and waits for all of them.
+     *
+     * @param jobs The jobs to run.
+     * @param <T> The result type of the jobs.
+     * @return The results, in the order of the jobs.
+     * @throws JamesException The first failure of a job.
+     */
+    private static <T> List<T> runAll(List<Callable<T>> jobs) throws JamesException {
+        if (jobs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ArrayList<T> results = new ArrayList<>(jobs.size());
+        try {
+            for (Future<T> future : ForkJoinPool.commonPool().invokeAll(jobs)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JamesException("Interrupted while accessing the shards");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JamesException) {
+                throw (JamesException) e.getCause();
+            }
+            throw new JamesException("Could not access the shards: " + e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Holds what was read from one shard file.
+     */
+    private static class ShardContents {
+        private final int shard;
+        private final ArrayList<Task> tasks;
+        private final RecoveryScanner recovery;
+        private final long checksum;
+
+        /**
+         * Initializes the contents of a shard.
+         *
+         * @param shard The shard number.
+         * @param tasks The tasks read, in file order.
+         * @param recovery The scanner that checked the records.
+         * @param checksum The checksum of the file's bytes.
+         */
+        ShardContents(int shard, ArrayList<Task> tasks, RecoveryScanner recovery, long checksum) {
+            this.shard = shard;
+            this.tasks = tasks;
+            this.recovery = recovery;
+            this.checksum = checksum;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package james.storage;
+
+import james.TaskList;
+
+/**
+ * Holds the tasks read from a data file together with the journal generation it includes.
+ */
+public class Snapshot {
+    private final TaskList tasks;
+    private final long generation;
+    private final RecoveryScanner recovery;
+
+    /**
+     * Initializes a snapshot that was read without problems.
+     *
+     * @param tasks The tasks stored in the data file.
+     * @param generation The journal generation folded into the file, or 0 if none.
+     */
+    public Snapshot(TaskList tasks, long generation) {
+        this(tasks, generation, new RecoveryScanner());
+    }
+
+    /**
+     * Initializes a snapshot together with the results of checking its records.
+     *
+     * @param tasks The tasks stored in the data file.
+     * @param generation The journal generation folded into the file, or 0 if none.
+     * @param recovery The scanner that checked the records while they were read.
+     */
+    public Snapshot(TaskList tasks, long generation, RecoveryScanner recovery) {
+        assert tasks != null : "Snapshot tasks cannot be null";
+        assert recovery != null : "Recovery scanner cannot be null";
+        this.tasks = tasks;
+        this.generation = generation;
+        this.recovery = recovery;
+    }
+
+    public TaskList getTasks() {
+        return this.tasks;
+    }
+
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    public RecoveryScanner getRecovery() {
+        return this.recovery;
+    }
+}
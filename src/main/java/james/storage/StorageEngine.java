@@ -0,0 +1,137 @@
+package james.storage;
+
+import java.io.File;
+
+import james.TaskList;
+import james.exception.JamesException;
+
+/**
+ * A backend that persists the task list.
+ * {@link james.Storage} forwards every load and save to an engine, so the backend can be
+ * chosen per deployment without touching the commands. The factory methods create the
+ * engines that ship with James.
+ */
+public interface StorageEngine {
+    /**
+     * Creates an engine that rewrites a pipe-delimited text file on every change.
+     *
+     * @param filePath The path of the data file.
+     * @return The text file engine.
+     */
+    static StorageEngine text(String filePath) {
+        return new FileStorageEngine(filePath, false, StorageFormat.TEXT);
+    }
+
+    /**
+     * Creates an engine that rewrites a compact binary file on every change.
+     *
+     * @param filePath The path of the data file.
+     * @return The binary file engine.
+     */
+    static StorageEngine binary(String filePath) {
+        return new FileStorageEngine(filePath, false, StorageFormat.BINARY);
+    }
+
+    /**
+     * Creates an engine that appends each change to a journal and only rewrites the
+     * data file on full saves and compactions.
+     *
+     * @param filePath The path of the data file.
+     * @param format The format the data file is written in.
+     * @return The journaled engine.
+     */
+    static StorageEngine journaled(String filePath, StorageFormat format) {
+        return new FileStorageEngine(filePath, true, format);
+    }
+
+    /**
+     * Creates an engine that keeps each task in a slot of a memory-mapped record file and
+     * writes marks, unmarks, tags and deletions in place.
+     *
+     * @param filePath The path of the record file.
+     * @return The memory-mapped engine.
+     */
+    static StorageEngine mapped(String filePath) {
+        return new MappedStorageEngine(filePath);
+    }
+
+    /**
+     * Creates an engine that spreads the tasks over several text files by task id, loads them
+     * in parallel and only rewrites the files whose tasks changed.
+     *
+     * @param filePath The path of the data file the shard files are named after.
+     * @param shardCount The number of shard files.
+     * @return The sharded engine.
+     */
+    static StorageEngine sharded(String filePath, int shardCount) {
+        return new ShardedStorageEngine(filePath, shardCount);
+    }
+
+    /**
+     * Creates an engine that keeps everything in memory, for benchmarks and tests.
+     *
+     * @return The in-memory engine, initially empty.
+     */
+    static StorageEngine inMemory() {
+        return new InMemoryStorageEngine();
+    }
+
+    /**
+     * Returns the file completed tasks are archived to by this engine's storage.
+     *
+     * @return The archive file, or null to keep the archive in memory only.
+     */
+    default File getArchiveFile() {
+        return null;
+    }
+
+    /**
+     * Returns the results of checking the records of the last load.
+     *
+     * @return The recovery scanner of the last load, or null if the engine does not check records.
+     */
+    default RecoveryScanner getLastRecovery() {
+        return null;
+    }
+
+    /**
+     * Loads the persisted task list.
+     *
+     * @return The tasks, or an empty list if nothing has been saved yet.
+     * @throws JamesException If the tasks cannot be read.
+     */
+    TaskList load() throws JamesException;
+
+    /**
+     * Persists the complete task list, replacing everything saved before.
+     *
+     * @param tasks The tasks to save.
+     * @throws JamesException If the tasks cannot be written.
+     */
+    void save(TaskList tasks) throws JamesException;
+
+    /**
+     * Persists a single change that has already been applied to the task list.
+     * Engines that cannot store changes on their own may save the whole list instead.
+     *
+     * @param tasks The task list after the change.
+     * @param mutation The change that was applied.
+     * @throws JamesException If the change cannot be written.
+     */
+    void apply(TaskList tasks, Mutation mutation) throws JamesException;
+
+    /**
+     * Blocks until every save requested so far is durable.
+     *
+     * @throws JamesException If a pending write failed.
+     */
+    void flush() throws JamesException;
+
+    /**
+     * Flushes pending writes and releases the engine's threads and files.
+     * The engine must not be used afterwards.
+     *
+     * @throws JamesException If a pending write failed.
+     */
+    void close() throws JamesException;
+}
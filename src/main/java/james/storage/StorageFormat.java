@@ -0,0 +1,160 @@
+package james.storage;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import james.TaskList;
+import james.TaskListSnapshot;
+import james.exception.CanNotFindFileException;
+
+/**
+ * The on-disk formats a data file can be written in.
+ * Reading detects the format from the file itself, so a file written in either
+ * format can always be loaded, whichever format the storage writes.
+ */
+public enum StorageFormat {
+    /** The human-readable pipe-delimited format, one task per line. */
+    TEXT,
+    /** The compact format written by {@link BinaryTaskCodec}. */
+    BINARY;
+
+    /** The version of the text layout written by this version of James. */
+    public static final int TEXT_VERSION = 2;
+    /** The version assumed for text files without a format header, which may hold legacy rows. */
+    public static final int LEGACY_TEXT_VERSION = 1;
+    /** The header line that records the text layout version. */
+    public static final String VERSION_HEADER = "# format ";
+
+    /**
+     * Reads a data file in whichever format it was written in.
+     *
+     * @param file The data file to read.
+     * @param parallelThresholdBytes The text file size from which lines are parsed in parallel.
+     * @return The tasks in the file and the journal generation they include.
+     * @throws CanNotFindFileException If the file cannot be read.
+     */
+    public static Snapshot read(File file, long parallelThresholdBytes) throws CanNotFindFileException {
+        if (BinaryTaskCodec.isBinary(file)) {
+            return BinaryTaskCodec.decode(file);
+        }
+        ParallelTaskLoader loader = new ParallelTaskLoader(file, parallelThresholdBytes);
+        TaskList tasks = loader.load();
+        return new Snapshot(tasks, Journal.findGeneration(loader.getHeaderLines()), loader.getRecoveryScanner());
+    }
+
+    /**
+     * Reads a data file in whichever format it was written in into {@link TaskColumns} behind a lazy list.
+     * Text records are parsed straight into the columns in one sequential pass, and binary records are
+     * packed as they are decoded, so the tasks of the file are never all held as objects.
+     *
+     * @param file The data file to read.
+     * @return The tasks in the file and the journal generation they include.
+     * @throws CanNotFindFileException If the file cannot be read.
+     */
+    public static Snapshot readColumns(File file) throws CanNotFindFileException {
+        if (BinaryTaskCodec.isBinary(file)) {
+            return BinaryTaskCodec.decode(file, true);
+        }
+        StreamingTaskLoader loader = new StreamingTaskLoader(file);
+        TaskColumns columns = loader.loadColumns();
+        return new Snapshot(new TaskList(columns), Journal.findGeneration(loader.getHeaderLines()),
+                loader.getRecoveryScanner());
+    }
+
+    /**
+     * Encodes the complete contents of a data file in this format.
+     *
+     * @param tasks The tasks to write.
+     * @param generation The journal generation the tasks include, or 0 if the storage is not journaled.
+     * @return The file contents.
+     */
+    public byte[] encode(TaskList tasks, long generation) {
+        assert tasks != null : "Cannot encode a null task list";
+        if (this == BINARY) {
+            return BinaryTaskCodec.encode(tasks, generation);
+        }
+        return joinLines(toTextLines(tasks, generation));
+    }
+
+    /**
+     * Encodes the complete contents of a data file in this format from a snapshot of a task list,
+     * without holding the lock of the list.
+     *
+     * @param snapshot The snapshot of the tasks to write.
+     * @param generation The journal generation the tasks include, or 0 if the storage is not journaled.
+     * @return The file contents.
+     */
+    public byte[] encode(TaskListSnapshot snapshot, long generation) {
+        assert snapshot != null : "Cannot encode a null snapshot";
+        if (this == BINARY) {
+            return BinaryTaskCodec.encode(snapshot.getTasks(), generation);
+        }
+        return joinLines(toTextLines(snapshot.toFileLines(), generation));
+    }
+
+    /**
+     * Joins the lines of a text data file into its contents.
+     *
+     * @param lines The lines.
+     * @return The file contents.
+     */
+    private static byte[] joinLines(List<String> lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append(System.lineSeparator());
+        }
+        return text.toString().getBytes(Charset.defaultCharset());
+    }
+
+    /**
+     * Returns the lines of a text data file: the format header, the generation header if
+     * there is one, then one line per task ending with its {@link RecordChecksum checksum}.
+     *
+     * @param tasks The tasks to write.
+     * @param generation The journal generation the tasks include, or 0 for no header.
+     * @return The lines to write.
+     */
+    public static ArrayList<String> toTextLines(TaskList tasks, long generation) {
+        return toTextLines(tasks.toFileLines(null), generation);
+    }
+
+    /**
+     * Returns the lines of a text data file holding the given records.
+     *
+     * @param records The records of the tasks to write.
+     * @param generation The journal generation the tasks include, or 0 for no header.
+     * @return The lines to write.
+     */
+    private static ArrayList<String> toTextLines(List<String> records, long generation) {
+        ArrayList<String> lines = new ArrayList<>(records.size() + 2);
+        lines.add(VERSION_HEADER + TEXT_VERSION);
+        if (generation > 0) {
+            lines.add(Journal.toGenerationHeader(generation));
+        }
+        for (String record : records) {
+            lines.add(RecordChecksum.append(record));
+        }
+        return lines;
+    }
+
+    /**
+     * Finds the text layout version among the header lines of a data file.
+     *
+     * @param headerLines The leading '#' lines of the file.
+     * @return The version, or {@link #LEGACY_TEXT_VERSION} if the file has no format header.
+     */
+    public static int parseVersion(List<String> headerLines) {
+        for (String line : headerLines) {
+            if (line.startsWith(VERSION_HEADER)) {
+                try {
+                    return Integer.parseInt(line.substring(VERSION_HEADER.length()).trim());
+                } catch (NumberFormatException e) {
+                    return LEGACY_TEXT_VERSION;
+                }
+            }
+        }
+        return LEGACY_TEXT_VERSION;
+    }
+}
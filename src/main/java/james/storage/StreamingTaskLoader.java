@@ -0,0 +1,161 @@
+package james.storage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+import james.TaskList;
+import james.exception.CanNotFindFileException;
+import james.task.Task;
+
+/**
+ * Loads a task data file in a single streaming pass.
+ * Each line is read through a large buffer and handed straight to a
+ * {@link RecoveryScanner}, which verifies and parses it, and the parsed task goes directly into a
+ * pre-sized {@link TaskList}, or the record into {@link TaskColumns}, so no intermediate list of lines
+ * is ever built.
+ * Leading lines starting with '#' are kept aside as header lines.
+ */
+public class StreamingTaskLoader {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int ESTIMATED_BYTES_PER_LINE = 32;
+    private static final int MAX_INITIAL_CAPACITY = 1 << 22;
+    private static final String HEADER_PREFIX = "#";
+
+    private final File file;
+    private final boolean hasTaskIds;
+    private final ArrayList<String> headerLines = new ArrayList<>();
+    private RecoveryScanner recovery = new RecoveryScanner();
+
+    /**
+     * Initializes a loader for the given data file.
+     *
+     * @param file The data file to read.
+     */
+    public StreamingTaskLoader(File file) {
+        this(file, false);
+    }
+
+    /**
+     * Initializes a loader for a data file whose records may start with task ids.
+     *
+     * @param file The data file to read.
+     * @param hasTaskIds True if each record starts with the id of its task.
+     * @see RecoveryScanner#setHasTaskIds(boolean)
+     */
+    public StreamingTaskLoader(File file, boolean hasTaskIds) {
+        assert file != null : "Data file cannot be null";
+        this.file = file;
+        this.hasTaskIds = hasTaskIds;
+    }
+
+    /**
+     * Reads the whole file and returns the tasks it contains.
+     * Blank lines are skipped; corrupt and malformed lines are left out of the list and
+     * collected by the {@link #getRecoveryScanner() recovery scanner}.
+     *
+     * @return The loaded tasks, in file order.
+     * @throws CanNotFindFileException If the file cannot be read.
+     */
+    public TaskList load() throws CanNotFindFileException {
+        TaskList tasks = new TaskList(estimateCapacity(this.file.length()));
+        readRecords(line -> {
+            Task task = this.recovery.scanLine(line);
+            if (task != null) {
+                tasks.addTask(task);
+            }
+        });
+        return tasks;
+    }
+
+    /**
+     * Reads the whole file straight into columns, without creating a Task for any record.
+     * Lines are skipped and collected the same way as by {@link #load()}.
+     *
+     * @return The loaded tasks as columns, in file order.
+     * @throws CanNotFindFileException If the file cannot be read.
+     */
+    public TaskColumns loadColumns() throws CanNotFindFileException {
+        TaskColumns columns = new TaskColumns(estimateCapacity(this.file.length()));
+        readRecords(line -> this.recovery.scanLineInto(line, columns));
+        columns.trimToSize();
+        return columns;
+    }
+
+    /**
+     * Streams the lines of the file, keeping the leading header lines aside and handing every
+     * other non-blank line to a consumer once the recovery scanner knows the format version.
+     *
+     * @param recordConsumer Receives each trimmed record line.
+     * @throws CanNotFindFileException If the file cannot be read.
+     */
+    private void readRecords(Consumer<String> recordConsumer) throws CanNotFindFileException {
+        this.headerLines.clear();
+        this.recovery = new RecoveryScanner();
+        this.recovery.setHasTaskIds(this.hasTaskIds);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Files.newInputStream(this.file.toPath()), Charset.defaultCharset()), BUFFER_SIZE)) {
+            boolean isInHeader = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (isInHeader && line.startsWith(HEADER_PREFIX)) {
+                    this.headerLines.add(line);
+                    continue;
+                }
+                if (isInHeader) {
+                    this.recovery.setFormatVersion(StorageFormat.parseVersion(this.headerLines));
+                    isInHeader = false;
+                }
+                recordConsumer.accept(line);
+            }
+        } catch (IOException e) {
+            throw new CanNotFindFileException("Error reading file at: " + this.file);
+        }
+    }
+
+    /**
+     * Returns the header lines found at the top of the file by the last load.
+     *
+     * @return The header lines, in file order.
+     */
+    public ArrayList<String> getHeaderLines() {
+        return this.headerLines;
+    }
+
+    /**
+     * Returns the first header line found by the last load.
+     *
+     * @return The first header line, or null if the file had no header.
+     */
+    public String getFirstHeaderLine() {
+        return this.headerLines.isEmpty() ? null : this.headerLines.get(0);
+    }
+
+    /**
+     * Returns the scanner that checked the lines of the last load.
+     *
+     * @return The recovery scanner, with the counts and quarantined lines.
+     */
+    public RecoveryScanner getRecoveryScanner() {
+        return this.recovery;
+    }
+
+    /**
+     * Estimates how many tasks a file of the given size holds, so the list never has to grow while loading.
+     *
+     * @param fileSize The size of the data file in bytes.
+     * @return The initial capacity to use for the task list.
+     */
+    static int estimateCapacity(long fileSize) {
+        return (int) Math.min(MAX_INITIAL_CAPACITY, fileSize / ESTIMATED_BYTES_PER_LINE + 1);
+    }
+}
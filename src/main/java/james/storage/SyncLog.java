@@ -0,0 +1,109 @@
+package james.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import james.exception.CanNotFindFileException;
+import james.exception.CanNotWriteToFileException;
+
+/**
+ * The append-only log of synced changes kept next to a data file, one {@link SyncOp} per line.
+ * Lines are never rewritten, so a byte offset into the log marks for good which operations a
+ * peer has already been sent; reading from that offset returns only the operations logged since.
+ */
+public class SyncLog {
+    private static final byte NEWLINE = '\n';
+    private static final String HEADER_PREFIX = "#";
+
+    private final File file;
+
+    /**
+     * Initializes a log backed by the given file, which is created on the first append.
+     *
+     * @param file The log file.
+     */
+    public SyncLog(File file) {
+        assert file != null : "Log file cannot be null";
+        this.file = file;
+    }
+
+    /**
+     * Returns the length of the log, i.e. the offset the next operation will be written at.
+     *
+     * @return The length in bytes, or 0 if the log does not exist.
+     */
+    public long length() {
+        return this.file.length();
+    }
+
+    /**
+     * Reads the complete operations logged from an offset on. A last line without its newline is
+     * still being written and is left out; lines that fail their checksum are skipped.
+     *
+     * @param offset The offset to start at, which must be the start of a line.
+     * @param ops Receives the operations, in log order.
+     * @return The offset after the last complete line read.
+     * @throws CanNotFindFileException If the log exists but cannot be read.
+     */
+    public long readFrom(long offset, List<SyncOp> ops) throws CanNotFindFileException {
+        if (!this.file.exists() || offset >= this.file.length()) {
+            return offset;
+        }
+        byte[] bytes;
+        try (RandomAccessFile in = new RandomAccessFile(this.file, "r")) {
+            bytes = new byte[(int) (in.length() - offset)];
+            in.seek(offset);
+            in.readFully(bytes);
+        } catch (IOException e) {
+            throw new CanNotFindFileException("Error reading sync log at: " + this.file);
+        }
+
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != NEWLINE) {
+                continue;
+            }
+            String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8).trim();
+            lineStart = i + 1;
+            if (line.isEmpty() || line.startsWith(HEADER_PREFIX)) {
+                continue;
+            }
+            String record = RecordChecksum.verify(line);
+            SyncOp op = record == null ? null : SyncOp.fromRecord(record);
+            if (op != null) {
+                ops.add(op);
+            }
+        }
+        return offset + lineStart;
+    }
+
+    /**
+     * Appends operations to the log and forces them to the disk.
+     *
+     * @param ops The operations to append, in order.
+     * @throws CanNotWriteToFileException If the log cannot be written.
+     */
+    public void append(List<SyncOp> ops) throws CanNotWriteToFileException {
+        if (ops.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (SyncOp op : ops) {
+            lines.append(RecordChecksum.append(op.toRecord())).append((char) NEWLINE);
+        }
+        File parent = this.file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (FileOutputStream out = new FileOutputStream(this.file, true)) {
+            out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            throw new CanNotWriteToFileException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package james.storage;
+
+/**
+ * Represents one change in a sync log, e.g. {@code 3f2a9c1e | 12 | 40.3f2a9c1e | D | 3f2a9c1e.5 | 1}.
+ * Every operation is identified by the replica that logged it and that replica's counter, which
+ * version vectors use to tell which operations a replica already has. Its {@link Stamp} orders
+ * concurrent changes to the same task, so every replica resolves them the same way.
+ */
+public class SyncOp {
+
+    /**
+     * Use Enumerations: Defines the kinds of synced changes, together with their codes in the log.
+     */
+    public enum Type {
+        ADD("A"), DONE("D"), TAG("G"), DELETE("X");
+
+        private final String code;
+
+        Type(String code) {
+            this.code = code;
+        }
+
+        /**
+         * Finds the operation type identified by a log record code.
+         *
+         * @param code The code of the type field.
+         * @return The matching type, or null if the code is unknown.
+         */
+        public static Type fromCode(String code) {
+            for (Type type : values()) {
+                if (type.code.equals(code)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A Lamport timestamp, made unique by the replica it was taken on, e.g. {@code 40.3f2a9c1e}.
+     * Stamps are totally ordered: by time first, then by replica.
+     */
+    public static class Stamp implements Comparable<Stamp> {
+        private final long time;
+        private final String replicaId;
+
+        /**
+         * Initializes a stamp.
+         *
+         * @param time The Lamport time.
+         * @param replicaId The replica the stamp was taken on.
+         */
+        public Stamp(long time, String replicaId) {
+            assert replicaId != null && replicaId.indexOf('.') < 0 : "Replica ids cannot contain dots";
+            this.time = time;
+            this.replicaId = replicaId;
+        }
+
+        /**
+         * Parses a stamp written by {@link #toString()}.
+         *
+         * @param text The stamp, e.g. "40.3f2a9c1e".
+         * @return The stamp, or null if the text is malformed.
+         */
+        public static Stamp parse(String text) {
+            int dot = text.indexOf('.');
+            if (dot <= 0 || dot == text.length() - 1) {
+                return null;
+            }
+            try {
+                return new Stamp(Long.parseLong(text.substring(0, dot)), text.substring(dot + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        public long getTime() {
+            return this.time;
+        }
+
+        @Override
+        public int compareTo(Stamp other) {
+            int byTime = Long.compare(this.time, other.time);
+            return byTime != 0 ? byTime : this.replicaId.compareTo(other.replicaId);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Stamp && compareTo((Stamp) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.time) * 31 + this.replicaId.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.time + "." + this.replicaId;
+        }
+    }
+
+    private static final String SEP_RECORD = " | ";
+    private static final String SPLIT_RECORD = " \\| ";
+    private static final int FIELD_COUNT = 6;
+
+    private final String origin;
+    private final long counter;
+    private final Stamp stamp;
+    private final Type type;
+    private final String key;
+    private final String payload;
+
+    /**
+     * Initializes an operation.
+     *
+     * @param origin The replica that logged the operation.
+     * @param counter The origin's counter for the operation, starting at 1.
+     * @param stamp The stamp that orders the operation against concurrent changes.
+     * @param type The kind of change.
+     * @param key The sync key of the changed task.
+     * @param payload The task's base record for additions, "1" or "0" for done changes,
+     *         the tag for tagging and "-" for deletions.
+     */
+    public SyncOp(String origin, long counter, Stamp stamp, Type type, String key, String payload) {
+        assert counter > 0 : "Counters start at 1";
+        this.origin = origin;
+        this.counter = counter;
+        this.stamp = stamp;
+        this.type = type;
+        this.key = key;
+        this.payload = payload;
+    }
+
+    /**
+     * Parses a log record written by {@link #toRecord()}.
+     *
+     * @param record The record, without its checksum.
+     * @return The operation, or null if the record is malformed.
+     */
+    public static SyncOp fromRecord(String record) {
+        String[] fields = record.split(SPLIT_RECORD, FIELD_COUNT);
+        if (fields.length != FIELD_COUNT) {
+            return null;
+        }
+        Stamp stamp = Stamp.parse(fields[2]);
+        Type type = Type.fromCode(fields[3]);
+        try {
+            long counter = Long.parseLong(fields[1]);
+            return stamp == null || type == null || counter <= 0
+                    ? null
+                    : new SyncOp(fields[0], counter, stamp, type, fields[4], fields[5]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converts the operation into a log record.
+     *
+     * @return The record, without its checksum.
+     */
+    public String toRecord() {
+        return this.origin + SEP_RECORD + this.counter + SEP_RECORD + this.stamp + SEP_RECORD
+                + this.type.code + SEP_RECORD + this.key + SEP_RECORD + this.payload;
+    }
+
+    public String getOrigin() {
+        return this.origin;
+    }
+
+    public long getCounter() {
+        return this.counter;
+    }
+
+    public Stamp getStamp() {
+        return this.stamp;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public String getPayload() {
+        return this.payload;
+    }
+}
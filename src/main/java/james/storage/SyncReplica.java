@@ -0,0 +1,1044 @@
+package james.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import james.Parser;
+import james.TaskList;
+import james.exception.CanNotFindFileException;
+import james.exception.CanNotWriteToFileException;
+import james.exception.JamesException;
+import james.task.Task;
+
+/**
+ * Keeps a data file in sync with copies of it in other data directories, e.g. on a laptop and a server.
+ * Every change to the list is logged as a {@link SyncOp} in a {@link SyncLog} next to the data file,
+ * keyed by a sync key that identifies the task on every replica. A sync only exchanges the operations
+ * logged since the last sync with that peer: each replica remembers how far it has read the peer's log
+ * and how far the peer has read its own, and a version vector drops operations it already has.
+ * The time a sync takes thus grows with the number of changes, not with the size of the list.
+ *
+ * <p>Operations merge the same way in any order, so replicas that have seen the same operations have
+ * the same list: the done status of a task is the value with the latest stamp, a task has a tag once
+ * any replica added it, a deletion is final, and tasks are kept in the order of the stamps they were
+ * added with. Only the order of tags added on two replicas between syncs can differ, as each task shows
+ * its tags in the order they reached it. Operations sent to a peer are appended to its log and applied to
+ * its data file the next time it is loaded, so the peer's list is never rewritten by a sync.</p>
+ *
+ * <p>A command's change is logged from its {@link Mutation}, and the sync state of the tasks it touched is
+ * appended to the keys file, which is only rewritten once most of its lines are stale. The changes a
+ * merge makes to the list are handed out as mutations too, see {@link #takeAppliedChanges()}. Tasks are
+ * tracked by their ids, so the tasks of a lazy list are not created for syncing.</p>
+ */
+public class SyncReplica {
+    /** The suffix of the log of synced changes. */
+    public static final String LOG_SUFFIX = ".sync";
+    /** The suffix of the replica's id, clocks, version vector and peer positions. */
+    public static final String META_SUFFIX = ".sync.meta";
+    /** The suffix of the sync keys, stamps and logged tags of the tasks, appended as they change. */
+    public static final String KEYS_SUFFIX = ".sync.keys";
+
+    private static final String SEP_RECORD = " | ";
+    private static final String SPLIT_RECORD = " \\| ";
+    private static final String SEP_TAG_HASHES = ",";
+    private static final String HEADER_REPLICA = "# replica ";
+    private static final String HEADER_CLOCK = "# clock ";
+    private static final String HEADER_COUNTER = "# counter ";
+    private static final String HEADER_APPLIED = "# applied ";
+    private static final String CODE_VECTOR = "V";
+    private static final String CODE_PEER = "P";
+    private static final String CODE_KEY = "K";
+    private static final String CODE_TOMBSTONE = "X";
+    /** Marks the stamps and keys of tasks that were already in the list when it started syncing. */
+    private static final String INITIAL_PREFIX = "~";
+    private static final String DONE = "1";
+    private static final String UNDONE = "0";
+    private static final String NO_PAYLOAD = "-";
+    /** The fewest lines of the keys file worth rewriting it without its stale lines. */
+    private static final int MIN_COMPACTION_KEY_LINES = 64;
+
+    private final File dataFile;
+    private final SyncLog log;
+    private String replicaId;
+    /** The Lamport clock: the latest time seen in any operation. */
+    private long clock;
+    /** The number of operations this replica has logged itself. */
+    private long counter;
+    /** The offset up to which the own log is reflected in the data file. */
+    private long appliedOffset;
+    /** The highest counter of every replica whose operations are in the own log. */
+    private final TreeMap<String, Long> vector = new TreeMap<>();
+    /** For every peer: how far its log was read, and how far it has read the own log. */
+    private final TreeMap<String, long[]> peers = new TreeMap<>();
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private final HashMap<Long, Entry> entriesByTask = new HashMap<>();
+    private final HashSet<String> tombstones = new HashSet<>();
+    /** The keys whose sync state changed since the keys file was last written. */
+    private final LinkedHashSet<String> changedKeys = new LinkedHashSet<>();
+    /** The number of lines in the keys file, including lines that later lines replace. */
+    private int keyLineCount;
+    /** The changes merged into the list since they were last taken, in the order they were made. */
+    private ArrayList<Mutation> appliedChanges = new ArrayList<>();
+    /** Whether a merge inserted or moved a task, which no mutation describes. */
+    private boolean isReordered;
+    private boolean isStateChanged;
+
+    /**
+     * The sync state of one task: its key, the stamps of its fields and the values last logged for them.
+     */
+    private static class Entry {
+        private final String key;
+        private final String baseHash;
+        private SyncOp.Stamp addStamp;
+        /** The id of the task in the attached list, or 0 if it has none. */
+        private long taskId;
+        private SyncOp.Stamp doneStamp;
+        private boolean isDone;
+        /** The hashes of the tags that were logged for the task. */
+        private final HashSet<String> tagHashes = new HashSet<>();
+
+        private Entry(String key, String baseHash, SyncOp.Stamp addStamp) {
+            this.key = key;
+            this.baseHash = baseHash;
+            this.addStamp = addStamp;
+        }
+    }
+
+    /**
+     * Describes the outcome of a sync.
+     */
+    public static class Result {
+        private final int receivedCount;
+        private final int sentCount;
+
+        /**
+         * Initializes a result.
+         *
+         * @param receivedCount The number of operations taken from the peer.
+         * @param sentCount The number of operations handed to the peer.
+         */
+        public Result(int receivedCount, int sentCount) {
+            this.receivedCount = receivedCount;
+            this.sentCount = sentCount;
+        }
+
+        public int getReceivedCount() {
+            return this.receivedCount;
+        }
+
+        public int getSentCount() {
+            return this.sentCount;
+        }
+    }
+
+    /**
+     * Initializes a replica of a data file without any state.
+     *
+     * @param dataFile The data file.
+     */
+    private SyncReplica(File dataFile) {
+        this.dataFile = dataFile.getAbsoluteFile();
+        this.log = new SyncLog(new File(this.dataFile.getPath() + LOG_SUFFIX));
+    }
+
+    /**
+     * Returns whether a data file takes part in syncing.
+     *
+     * @param dataFile The data file.
+     * @return True if the data file has synced before.
+     */
+    public static boolean exists(File dataFile) {
+        return new File(dataFile.getPath() + META_SUFFIX).exists();
+    }
+
+    /**
+     * Opens the replica of a data file, reading its id, clocks and version vector.
+     * A data file that has not synced before gets a new replica id.
+     * The sync state of the tasks is only read by {@link #attach(TaskList)}.
+     *
+     * @param dataFile The data file.
+     * @return The replica.
+     * @throws CanNotFindFileException If the replica's files exist but cannot be read.
+     */
+    public static SyncReplica open(File dataFile) throws CanNotFindFileException {
+        SyncReplica replica = new SyncReplica(dataFile);
+        if (!exists(dataFile)) {
+            replica.replicaId = UUID.randomUUID().toString().substring(0, 8);
+            replica.isStateChanged = true;
+            return replica;
+        }
+        for (String line : readLines(replica.metaFile())) {
+            replica.readMetaLine(line);
+        }
+        if (replica.replicaId == null) {
+            throw new CanNotFindFileException("Sync state without a replica id at: " + replica.metaFile());
+        }
+        return replica;
+    }
+
+    /**
+     * Matches the tasks of a freshly loaded list with their saved sync state, and logs the changes made
+     * to the data file since it was last saved with syncing. Tasks are matched by their contents, so a
+     * data file that is slightly ahead of its sync state still matches; tasks that do not match are
+     * logged as new, and saved tasks that are no longer in the list as deleted. A list that never
+     * synced gets keys derived from the contents of its tasks, so two copies of the same file start
+     * out with the same keys.
+     *
+     * @param tasks The task list loaded from the data file.
+     * @throws JamesException If the sync state cannot be read or the operations cannot be logged.
+     */
+    public void attach(TaskList tasks) throws JamesException {
+        File keysFile = keysFile();
+        if (!keysFile.exists()) {
+            start(tasks);
+            return;
+        }
+
+        for (String line : readLines(keysFile)) {
+            readKeyLine(line);
+            this.keyLineCount++;
+        }
+        HashMap<String, ArrayDeque<Entry>> entriesByHash = new HashMap<>();
+        for (Entry entry : this.entries.values()) {
+            entriesByHash.computeIfAbsent(entry.baseHash, hash -> new ArrayDeque<>()).add(entry);
+        }
+
+        ArrayList<SyncOp> ops = new ArrayList<>();
+        ArrayList<String> records = tasks.toFileLines(null);
+        long[] ids = tasks.getTaskIds();
+        for (int i = 0; i < ids.length; i++) {
+            String[] fields = fieldsOf(records.get(i));
+            String baseRecord = baseRecordOf(fields);
+            ArrayDeque<Entry> candidates = entriesByHash.get(hashOf(baseRecord));
+            Entry entry = candidates == null ? null : candidates.poll();
+            if (entry == null) {
+                entry = recordAdd(ids[i], baseRecord, ops);
+            } else {
+                entry.taskId = ids[i];
+                this.entriesByTask.put(ids[i], entry);
+                forgetMissingTags(entry, fields);
+            }
+            recordFieldChanges(entry, fields, ops);
+        }
+        recordDeletions(ops);
+        appendOps(ops);
+    }
+
+    /**
+     * Applies the operations that peers appended to the own log since the data file was last saved.
+     *
+     * @param tasks The attached task list.
+     * @return The number of tasks that were added, changed or removed.
+     * @throws JamesException If the log cannot be read.
+     */
+    public int applyPending(TaskList tasks) throws JamesException {
+        ArrayList<SyncOp> ops = new ArrayList<>();
+        this.appliedOffset = this.log.readFrom(this.appliedOffset, ops);
+        this.isStateChanged |= !ops.isEmpty();
+        return applyOps(tasks, ops);
+    }
+
+    /**
+     * Logs the changes made to the list since it was attached or last recorded, by comparing every
+     * task with the values last logged for it. Tasks without sync state are logged as added, and
+     * keys whose task is no longer in the list as deleted. This reads every record, so it is only
+     * used when the whole list is saved or was merged with an external edit; single changes are
+     * logged with {@link #recordMutation(TaskList, Mutation)}.
+     *
+     * @param tasks The attached task list.
+     * @throws JamesException If the operations cannot be logged.
+     */
+    public void recordLocalChanges(TaskList tasks) throws JamesException {
+        ArrayList<SyncOp> ops = new ArrayList<>();
+        ArrayList<String> records = tasks.toFileLines(null);
+        long[] ids = tasks.getTaskIds();
+        HashSet<String> liveKeys = new HashSet<>();
+        for (int i = 0; i < ids.length; i++) {
+            String[] fields = fieldsOf(records.get(i));
+            String baseRecord = baseRecordOf(fields);
+            Entry entry = this.entriesByTask.get(ids[i]);
+            if (entry != null && !entry.baseHash.equals(hashOf(baseRecord))) {
+                this.entriesByTask.remove(ids[i]);
+                entry.taskId = 0;
+                entry = null;
+            }
+            if (entry == null) {
+                entry = recordAdd(ids[i], baseRecord, ops);
+            }
+            recordFieldChanges(entry, fields, ops);
+            liveKeys.add(entry.key);
+        }
+        for (Entry entry : this.entries.values()) {
+            if (!liveKeys.contains(entry.key)) {
+                this.entriesByTask.remove(entry.taskId, entry);
+                entry.taskId = 0;
+            }
+        }
+        recordDeletions(ops);
+        appendOps(ops);
+    }
+
+    /**
+     * Logs the change a command made to one task. Only that task's sync state is looked at, so
+     * logging takes the same time however long the list is.
+     *
+     * @param tasks The attached task list, after the change.
+     * @param mutation The change that was applied.
+     * @throws JamesException If the operations cannot be logged.
+     */
+    public void recordMutation(TaskList tasks, Mutation mutation) throws JamesException {
+        ArrayList<SyncOp> ops = new ArrayList<>();
+        if (mutation.getType() == Mutation.Type.DELETE) {
+            Entry entry = this.entriesByTask.get(mutation.getRemovedTaskId());
+            if (entry == null) {
+                recordLocalChanges(tasks);
+                return;
+            }
+            ops.add(newOp(tick(), SyncOp.Type.DELETE, entry.key, NO_PAYLOAD));
+            forget(entry.key);
+        } else {
+            int taskNumber = mutation.getType() == Mutation.Type.ADD ? tasks.getSize() : mutation.getTaskNumber();
+            if (taskNumber <= 0 || taskNumber > tasks.getSize()) {
+                recordLocalChanges(tasks);
+                return;
+            }
+            Task task = tasks.getTask(taskNumber);
+            String[] fields = fieldsOf(task.toFileFormat());
+            Entry entry = this.entriesByTask.get(task.getId());
+            if (entry == null) {
+                entry = recordAdd(task.getId(), baseRecordOf(fields), ops);
+            }
+            recordFieldChanges(entry, fields, ops);
+        }
+        appendOps(ops);
+    }
+
+    /**
+     * Exchanges the operations the two replicas have not seen yet and applies the received ones to the list.
+     * The peer's list is not loaded: the operations it is sent are applied when it is next loaded.
+     *
+     * @param tasks The attached task list, whose changes are all recorded.
+     * @param peerDataFile The data file of the other replica.
+     * @return The numbers of operations received and sent.
+     * @throws JamesException If either replica's files cannot be read or written.
+     */
+    public Result syncWith(TaskList tasks, File peerDataFile) throws JamesException {
+        SyncReplica peer = openPeer(peerDataFile);
+        if (peer.replicaId.equals(this.replicaId)) {
+            throw new JamesException("Cannot sync " + this.dataFile + " with itself or a copy of its sync files");
+        }
+        long[] positions = this.peers.computeIfAbsent(peer.replicaId, id -> new long[2]);
+        applyPending(tasks);
+
+        ArrayList<SyncOp> incoming = new ArrayList<>();
+        peer.log.readFrom(positions[0], incoming);
+        List<SyncOp> received = filterUnseen(incoming);
+        this.log.append(received);
+        applyOps(tasks, received);
+        this.appliedOffset = this.log.length();
+
+        ArrayList<SyncOp> outgoing = new ArrayList<>();
+        this.log.readFrom(positions[1], outgoing);
+        List<SyncOp> sent = peer.filterUnseen(outgoing);
+        peer.log.append(sent);
+
+        positions[0] = peer.log.length();
+        positions[1] = this.log.length();
+        peer.peers.put(this.replicaId, new long[] {this.log.length(), peer.log.length()});
+        peer.writeMeta();
+        this.isStateChanged = true;
+        return new Result(received.size(), sent.size());
+    }
+
+    /**
+     * Returns the changes the operations applied since the last call made to the list, so that they
+     * can be saved like the changes of commands.
+     *
+     * @return The changes in the order they were made, or null if tasks were inserted or moved,
+     *         in which case the whole list has to be saved.
+     */
+    public List<Mutation> takeAppliedChanges() {
+        List<Mutation> changes = this.isReordered ? null : this.appliedChanges;
+        this.appliedChanges = new ArrayList<>();
+        this.isReordered = false;
+        return changes;
+    }
+
+    /**
+     * Writes the sync state of the tasks that changed and the replica's clocks, if anything changed
+     * since they were last written. The changed tasks are appended to the keys file, which is rewritten
+     * once most of its lines are stale. Call this after the list itself was saved.
+     *
+     * @throws JamesException If the sync state cannot be written.
+     */
+    public void saveState() throws JamesException {
+        if (!this.isStateChanged) {
+            return;
+        }
+        int liveLineCount = this.entries.size() + this.tombstones.size();
+        if (this.keyLineCount + this.changedKeys.size() > Math.max(MIN_COMPACTION_KEY_LINES, liveLineCount * 2)) {
+            ArrayList<String> lines = new ArrayList<>(liveLineCount);
+            for (Entry entry : this.entries.values()) {
+                lines.add(RecordChecksum.append(toKeyLine(entry)));
+            }
+            for (String key : this.tombstones) {
+                lines.add(RecordChecksum.append(toTombstoneLine(key)));
+            }
+            AtomicFileWriter.write(keysFile(), lines, StandardCharsets.UTF_8);
+            this.keyLineCount = lines.size();
+        } else if (!this.changedKeys.isEmpty() || !keysFile().exists()) {
+            // The keys file is created even without tasks, as its absence means the list never synced
+            StringBuilder lines = new StringBuilder();
+            for (String key : this.changedKeys) {
+                Entry entry = this.entries.get(key);
+                lines.append(RecordChecksum.append(entry != null ? toKeyLine(entry) : toTombstoneLine(key)))
+                        .append(System.lineSeparator());
+            }
+            appendToKeysFile(lines.toString());
+            this.keyLineCount += this.changedKeys.size();
+        }
+        this.changedKeys.clear();
+        writeMeta();
+        this.isStateChanged = false;
+    }
+
+    /**
+     * Opens the replica of a peer's data file, giving the file its initial sync state if it never synced.
+     *
+     * @param peerDataFile The peer's data file.
+     * @return The peer's replica, with its clocks and version vector.
+     * @throws JamesException If the peer's data file does not exist or its files cannot be read or written.
+     */
+    private static SyncReplica openPeer(File peerDataFile) throws JamesException {
+        File peerDirectory = peerDataFile.getAbsoluteFile().getParentFile();
+        if (peerDirectory == null || !peerDirectory.isDirectory()) {
+            throw new JamesException("Cannot sync with " + peerDirectory + " as the directory does not exist");
+        }
+        if (!peerDataFile.isFile()) {
+            throw new JamesException("Cannot sync with " + peerDataFile + " as there is no data file there");
+        }
+        SyncReplica peer = open(peerDataFile);
+        if (exists(peerDataFile)) {
+            return peer;
+        }
+        peer.start(StorageFormat.read(peerDataFile, ParallelTaskLoader.DEFAULT_THRESHOLD_BYTES).getTasks());
+        peer.saveState();
+        return peer;
+    }
+
+    /**
+     * Gives a list that never synced its initial sync state and logs its tasks as initial operations.
+     * Keys and stamps depend only on the contents and positions of the tasks, so the initial
+     * operations of two copies of the same file are the same and merge into one list.
+     *
+     * @param tasks The task list that starts syncing.
+     * @throws JamesException If the initial operations cannot be logged.
+     */
+    private void start(TaskList tasks) throws JamesException {
+        ArrayList<SyncOp> ops = new ArrayList<>();
+        HashMap<String, Integer> occurrences = new HashMap<>();
+        ArrayList<String> records = tasks.toFileLines(null);
+        long[] ids = tasks.getTaskIds();
+        for (int i = 0; i < ids.length; i++) {
+            String[] fields = fieldsOf(records.get(i));
+            String baseRecord = baseRecordOf(fields);
+            String hash = hashOf(baseRecord);
+            int occurrence = occurrences.merge(hash, 1, Integer::sum);
+            String position = INITIAL_PREFIX + String.format("%010d", i);
+
+            Entry entry = new Entry(INITIAL_PREFIX + hash + "." + occurrence, hash, new SyncOp.Stamp(0, position));
+            ops.add(newOp(entry.addStamp, SyncOp.Type.ADD, entry.key, baseRecord));
+            if (fields[2].equals(DONE)) {
+                entry.isDone = true;
+                entry.doneStamp = entry.addStamp;
+                ops.add(newOp(entry.doneStamp, SyncOp.Type.DONE, entry.key, DONE));
+            }
+            List<String> tags = RecordScanner.scanTags(fields[1]);
+            for (int j = 0; j < tags.size(); j++) {
+                SyncOp.Stamp tagStamp = new SyncOp.Stamp(0, position + String.format("-%04d", j));
+                entry.tagHashes.add(hashOf(tags.get(j)));
+                ops.add(newOp(tagStamp, SyncOp.Type.TAG, entry.key, tags.get(j)));
+            }
+            entry.taskId = ids[i];
+            this.entries.put(entry.key, entry);
+            this.entriesByTask.put(entry.taskId, entry);
+            markChanged(entry.key);
+        }
+        this.log.append(ops);
+        this.appliedOffset = this.log.length();
+        this.isStateChanged = true;
+    }
+
+    /**
+     * Applies operations to the list. Operations that are already reflected, or whose task was
+     * deleted, change nothing, so applying an operation twice is harmless.
+     *
+     * @param tasks The attached task list.
+     * @param ops The operations, in log order.
+     * @return The number of tasks that were added, changed or removed.
+     */
+    private int applyOps(TaskList tasks, List<SyncOp> ops) {
+        int changedCount = 0;
+        for (SyncOp op : ops) {
+            this.clock = Math.max(this.clock, op.getStamp().getTime());
+            Entry entry = this.entries.get(op.getKey());
+            if (op.getType() == SyncOp.Type.ADD) {
+                changedCount += (entry == null ? applyAdd(tasks, op) : applyReadd(tasks, entry, op)) ? 1 : 0;
+            } else if (entry == null || entry.taskId == 0) {
+                if (op.getType() == SyncOp.Type.DELETE) {
+                    forget(op.getKey());
+                }
+            } else if (op.getType() == SyncOp.Type.DONE) {
+                changedCount += applyDone(tasks, entry, op) ? 1 : 0;
+            } else if (op.getType() == SyncOp.Type.TAG) {
+                changedCount += applyTag(tasks, entry, op) ? 1 : 0;
+            } else {
+                int taskNumber = positionOf(tasks, entry);
+                tasks.removeTask(taskNumber);
+                this.appliedChanges.add(Mutation.delete(taskNumber));
+                forget(entry.key);
+                changedCount++;
+            }
+        }
+        return changedCount;
+    }
+
+    /**
+     * Inserts the task of an addition at the position its stamp gives it.
+     *
+     * @param tasks The attached task list.
+     * @param op The addition.
+     * @return False if the task was already deleted or its record does not parse.
+     */
+    private boolean applyAdd(TaskList tasks, SyncOp op) {
+        Task task = this.tombstones.contains(op.getKey()) ? null : Parser.parseLine(op.getPayload());
+        if (task == null) {
+            return false;
+        }
+        int taskNumber = insertionPoint(tasks, op.getStamp(), op.getKey());
+        if (taskNumber > tasks.getSize()) {
+            tasks.addTask(task);
+            this.appliedChanges.add(Mutation.add(task));
+        } else {
+            tasks.insertTask(taskNumber, task);
+            this.isReordered = true;
+        }
+
+        Entry entry = new Entry(op.getKey(), hashOf(op.getPayload()), op.getStamp());
+        entry.taskId = task.getId();
+        this.entries.put(entry.key, entry);
+        this.entriesByTask.put(entry.taskId, entry);
+        markChanged(entry.key);
+        return true;
+    }
+
+    /**
+     * Handles an addition of a task that is already in the list. Replicas that started syncing
+     * separately add the same task with their own initial stamps; the earliest stamp wins, so the
+     * task moves to the same position everywhere.
+     *
+     * @param tasks The attached task list.
+     * @param entry The task's sync state.
+     * @param op The addition.
+     * @return True if the task moved.
+     */
+    private boolean applyReadd(TaskList tasks, Entry entry, SyncOp op) {
+        if (entry.taskId == 0 || op.getStamp().compareTo(entry.addStamp) >= 0) {
+            return false;
+        }
+        int taskNumber = positionOf(tasks, entry);
+        Task task = tasks.getTask(taskNumber);
+        tasks.removeTask(taskNumber);
+        entry.addStamp = op.getStamp();
+        tasks.insertTask(insertionPoint(tasks, entry.addStamp, entry.key), task);
+        this.isReordered = true;
+        markChanged(entry.key);
+        return true;
+    }
+
+    /**
+     * Finds the position a task with the given add stamp takes in the list, which is kept in stamp order.
+     *
+     * @param tasks The attached task list.
+     * @param addStamp The add stamp of the task.
+     * @param key The sync key of the task.
+     * @return The 1-indexed position to insert the task at.
+     */
+    private int insertionPoint(TaskList tasks, SyncOp.Stamp addStamp, String key) {
+        int low = 1;
+        int high = tasks.getSize() + 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Entry other = this.entriesByTask.get(tasks.getTask(middle).getId());
+            if (other != null && compareOrder(other.addStamp, other.key, addStamp, key) > 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sets the done status of a task if the operation is later than the last change to it.
+     *
+     * @param tasks The attached task list.
+     * @param entry The task's sync state.
+     * @param op The done change.
+     * @return True if the status of the task changed.
+     */
+    private boolean applyDone(TaskList tasks, Entry entry, SyncOp op) {
+        if (entry.doneStamp != null && op.getStamp().compareTo(entry.doneStamp) <= 0) {
+            return false;
+        }
+        entry.doneStamp = op.getStamp();
+        markChanged(entry.key);
+        boolean isDone = op.getPayload().equals(DONE);
+        if (entry.isDone == isDone) {
+            return false;
+        }
+        entry.isDone = isDone;
+        int taskNumber = positionOf(tasks, entry);
+        if (isDone) {
+            tasks.markTask(taskNumber);
+            this.appliedChanges.add(Mutation.mark(taskNumber));
+        } else {
+            tasks.unmarkTask(taskNumber);
+            this.appliedChanges.add(Mutation.unmark(taskNumber));
+        }
+        return true;
+    }
+
+    /**
+     * Adds a tag to a task. Tags are compared as a set, so a tag added on both replicas is kept once.
+     *
+     * @param tasks The attached task list.
+     * @param entry The task's sync state.
+     * @param op The tagging.
+     * @return True if the task did not have the tag yet.
+     */
+    private boolean applyTag(TaskList tasks, Entry entry, SyncOp op) {
+        if (entry.tagHashes.add(hashOf(op.getPayload()))) {
+            markChanged(entry.key);
+        }
+        int taskNumber = positionOf(tasks, entry);
+        if (tasks.getTask(taskNumber).getTags().contains(op.getPayload())) {
+            return false;
+        }
+        tasks.tagTask(taskNumber, op.getPayload());
+        this.appliedChanges.add(Mutation.tag(taskNumber, op.getPayload()));
+        return true;
+    }
+
+    /**
+     * Finds the position of a task in the list from its stable id.
+     *
+     * @param tasks The attached task list.
+     * @param entry The task's sync state.
+     * @return The 1-indexed position of the task.
+     */
+    private int positionOf(TaskList tasks, Entry entry) {
+        int taskNumber = tasks.getTaskNumber(entry.taskId);
+        if (taskNumber == 0) {
+            throw new IllegalStateException("Synced task is not in the list");
+        }
+        return taskNumber;
+    }
+
+    /**
+     * Orders tasks by their add stamps. Initial stamps of replicas that started syncing separately
+     * can be equal, so ties are broken by the task's key.
+     *
+     * @param stamp The first stamp.
+     * @param name The key of the first task.
+     * @param otherStamp The second stamp.
+     * @param otherName The key of the second task.
+     * @return A negative number, zero or a positive number as the first comes before, with or after the second.
+     */
+    private static int compareOrder(SyncOp.Stamp stamp, String name, SyncOp.Stamp otherStamp, String otherName) {
+        int byStamp = stamp.compareTo(otherStamp);
+        return byStamp != 0 ? byStamp : name.compareTo(otherName);
+    }
+
+    /**
+     * Logs a task as added and gives it sync state.
+     *
+     * @param taskId The id of the task, which has no sync state yet.
+     * @param baseRecord The record of the task without its done status and tags.
+     * @param ops Receives the addition.
+     * @return The task's new sync state.
+     */
+    private Entry recordAdd(long taskId, String baseRecord, List<SyncOp> ops) {
+        SyncOp.Stamp stamp = tick();
+        Entry entry = new Entry(this.replicaId + "." + (this.counter + 1), hashOf(baseRecord), stamp);
+        ops.add(newOp(stamp, SyncOp.Type.ADD, entry.key, baseRecord));
+        entry.taskId = taskId;
+        this.entries.put(entry.key, entry);
+        this.entriesByTask.put(taskId, entry);
+        markChanged(entry.key);
+        return entry;
+    }
+
+    /**
+     * Logs the done status and the tags of a task that changed since they were last logged.
+     * Tags are only ever added by commands, so the tags that were not logged yet are new.
+     *
+     * @param entry The task's sync state.
+     * @param fields The fields of the task's record.
+     * @param ops Receives the changes.
+     */
+    private void recordFieldChanges(Entry entry, String[] fields, List<SyncOp> ops) {
+        boolean isDone = fields[2].equals(DONE);
+        if (isDone != entry.isDone) {
+            entry.isDone = isDone;
+            entry.doneStamp = tick();
+            ops.add(newOp(entry.doneStamp, SyncOp.Type.DONE, entry.key, isDone ? DONE : UNDONE));
+            markChanged(entry.key);
+        }
+        List<String> tags = RecordScanner.scanTags(fields[1]);
+        if (entry.tagHashes.size() == tags.size()) {
+            return;
+        }
+        for (String tag : tags) {
+            if (entry.tagHashes.add(hashOf(tag))) {
+                ops.add(newOp(tick(), SyncOp.Type.TAG, entry.key, tag));
+                markChanged(entry.key);
+            }
+        }
+    }
+
+    /**
+     * Forgets the logged tags a matched task no longer has, as if they had never been logged.
+     *
+     * @param entry The task's sync state.
+     * @param fields The fields of the task's record.
+     */
+    private void forgetMissingTags(Entry entry, String[] fields) {
+        if (entry.tagHashes.isEmpty()) {
+            return;
+        }
+        HashSet<String> tagHashes = new HashSet<>();
+        for (String tag : RecordScanner.scanTags(fields[1])) {
+            tagHashes.add(hashOf(tag));
+        }
+        if (entry.tagHashes.retainAll(tagHashes)) {
+            markChanged(entry.key);
+        }
+    }
+
+    /**
+     * Logs the keys whose task is no longer in the list as deleted.
+     *
+     * @param ops Receives the deletions.
+     */
+    private void recordDeletions(List<SyncOp> ops) {
+        ArrayList<String> deletedKeys = new ArrayList<>();
+        for (Entry entry : this.entries.values()) {
+            if (entry.taskId == 0) {
+                deletedKeys.add(entry.key);
+            }
+        }
+        for (String key : deletedKeys) {
+            ops.add(newOp(tick(), SyncOp.Type.DELETE, key, NO_PAYLOAD));
+            forget(key);
+        }
+    }
+
+    /**
+     * Appends operations logged on this replica to the own log. If the log held no operations of
+     * peers that are still to be applied, the data file reflects the log up to its new end.
+     *
+     * @param ops The operations, in order.
+     * @throws CanNotWriteToFileException If the log cannot be written.
+     */
+    private void appendOps(List<SyncOp> ops) throws CanNotWriteToFileException {
+        boolean isCaughtUp = this.appliedOffset == this.log.length();
+        this.log.append(ops);
+        if (isCaughtUp) {
+            this.appliedOffset = this.log.length();
+        }
+        this.isStateChanged |= !ops.isEmpty();
+    }
+
+    /**
+     * Drops the sync state of a deleted task and remembers its key as deleted.
+     *
+     * @param key The task's sync key.
+     */
+    private void forget(String key) {
+        Entry entry = this.entries.remove(key);
+        if (entry != null && entry.taskId != 0) {
+            this.entriesByTask.remove(entry.taskId, entry);
+        }
+        this.tombstones.add(key);
+        markChanged(key);
+    }
+
+    /**
+     * Notes that the sync state of a task has to be written again.
+     *
+     * @param key The task's sync key.
+     */
+    private void markChanged(String key) {
+        this.changedKeys.add(key);
+        this.isStateChanged = true;
+    }
+
+    /**
+     * Keeps the operations that are not in the own log yet and adds them to the version vector.
+     *
+     * @param ops The operations of a peer's log, in log order.
+     * @return The operations that are new to this replica.
+     */
+    private List<SyncOp> filterUnseen(List<SyncOp> ops) {
+        ArrayList<SyncOp> unseen = new ArrayList<>();
+        for (SyncOp op : ops) {
+            if (op.getCounter() > this.vector.getOrDefault(op.getOrigin(), 0L)) {
+                this.vector.put(op.getOrigin(), op.getCounter());
+                unseen.add(op);
+            }
+        }
+        return unseen;
+    }
+
+    /**
+     * Advances the Lamport clock for a change made on this replica.
+     *
+     * @return The stamp of the change.
+     */
+    private SyncOp.Stamp tick() {
+        this.clock++;
+        return new SyncOp.Stamp(this.clock, this.replicaId);
+    }
+
+    /**
+     * Creates an operation of this replica and adds it to the version vector.
+     *
+     * @param stamp The stamp that orders the change.
+     * @param type The kind of change.
+     * @param key The sync key of the task.
+     * @param payload The payload of the operation.
+     * @return The operation.
+     */
+    private SyncOp newOp(SyncOp.Stamp stamp, SyncOp.Type type, String key, String payload) {
+        this.counter++;
+        this.vector.put(this.replicaId, this.counter);
+        return new SyncOp(this.replicaId, this.counter, stamp, type, key, payload);
+    }
+
+    /**
+     * Splits the record of a task into its type, tag field, done status and the rest.
+     *
+     * @param record The record, e.g. "T |  /#fun | 1 | read book".
+     * @return The four fields.
+     */
+    private static String[] fieldsOf(String record) {
+        String[] fields = record.split(SPLIT_RECORD, 4);
+        assert fields.length == 4 : "Task records have a type, tags, status and description";
+        return fields;
+    }
+
+    /**
+     * Returns the record of a task without its done status and tags, which are synced separately.
+     *
+     * @param fields The fields of the task's record.
+     * @return The record, e.g. "T |  | 0 | read book".
+     */
+    private static String baseRecordOf(String[] fields) {
+        return fields[0] + SEP_RECORD + SEP_RECORD + UNDONE + SEP_RECORD + fields[3];
+    }
+
+    /**
+     * Hashes a base record for matching tasks with their sync state, or a tag for remembering it was logged.
+     *
+     * @param baseRecord The record without done status and tags, or a tag.
+     * @return The CRC32C of the text in hex.
+     */
+    private static String hashOf(String baseRecord) {
+        return Integer.toHexString(RecordChecksum.compute(baseRecord));
+    }
+
+    /**
+     * Parses the sync state of a task from its line in the keys file.
+     *
+     * @param fields The fields of the line: code, key, hash, add stamp, done stamp, done and tag hashes.
+     * @return The task's sync state, without its task.
+     * @throws CanNotFindFileException If a stamp is malformed.
+     */
+    private Entry readEntry(String[] fields) throws CanNotFindFileException {
+        SyncOp.Stamp addStamp = parseStamp(fields[3]);
+        Entry entry = new Entry(fields[1], fields[2], addStamp);
+        entry.doneStamp = fields[4].equals(NO_PAYLOAD) ? null : parseStamp(fields[4]);
+        entry.isDone = fields[5].equals(DONE);
+        if (!fields[6].equals(NO_PAYLOAD)) {
+            entry.tagHashes.addAll(List.of(fields[6].split(SEP_TAG_HASHES)));
+        }
+        return entry;
+    }
+
+    /**
+     * Writes the sync state of a task as a line of the keys file.
+     *
+     * @param entry The task's sync state.
+     * @return The line.
+     */
+    private static String toKeyLine(Entry entry) {
+        String tagHashes = String.join(SEP_TAG_HASHES, entry.tagHashes);
+        return CODE_KEY + SEP_RECORD + entry.key + SEP_RECORD + entry.baseHash + SEP_RECORD + entry.addStamp
+                + SEP_RECORD + (entry.doneStamp == null ? NO_PAYLOAD : entry.doneStamp.toString())
+                + SEP_RECORD + (entry.isDone ? DONE : UNDONE) + SEP_RECORD
+                + (tagHashes.isEmpty() ? NO_PAYLOAD : tagHashes);
+    }
+
+    /**
+     * Writes a deleted key as a line of the keys file.
+     *
+     * @param key The key of the deleted task.
+     * @return The line.
+     */
+    private static String toTombstoneLine(String key) {
+        return CODE_TOMBSTONE + SEP_RECORD + key;
+    }
+
+    /**
+     * Reads one line of the keys file. A later line for a key replaces the earlier ones, and a line
+     * that fails its checksum, e.g. one cut short by a crash, is skipped.
+     *
+     * @param line The line.
+     * @throws CanNotFindFileException If a stamp in the line is malformed.
+     */
+    private void readKeyLine(String line) throws CanNotFindFileException {
+        String record = RecordChecksum.verify(line);
+        if (record == null) {
+            return;
+        }
+        String[] fields = record.split(SPLIT_RECORD);
+        if (fields[0].equals(CODE_TOMBSTONE) && fields.length == 2) {
+            this.entries.remove(fields[1]);
+            this.tombstones.add(fields[1]);
+        } else if (fields[0].equals(CODE_KEY) && fields.length == 7) {
+            Entry entry = readEntry(fields);
+            this.entries.put(entry.key, entry);
+        }
+    }
+
+    /**
+     * Appends lines to the keys file and forces them to the disk.
+     *
+     * @param lines The lines, each ending with a line separator.
+     * @throws CanNotWriteToFileException If the keys file cannot be written.
+     */
+    private void appendToKeysFile(String lines) throws CanNotWriteToFileException {
+        try (FileOutputStream out = new FileOutputStream(keysFile(), true)) {
+            out.write(lines.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            throw new CanNotWriteToFileException(e.getMessage());
+        }
+    }
+
+    /**
+     * Parses a stamp of the keys file.
+     *
+     * @param text The stamp.
+     * @return The stamp.
+     * @throws CanNotFindFileException If the stamp is malformed.
+     */
+    private SyncOp.Stamp parseStamp(String text) throws CanNotFindFileException {
+        SyncOp.Stamp stamp = SyncOp.Stamp.parse(text);
+        if (stamp == null) {
+            throw new CanNotFindFileException("Malformed sync state at: " + keysFile());
+        }
+        return stamp;
+    }
+
+    /**
+     * Reads one line of the meta file.
+     *
+     * @param line The line.
+     * @throws CanNotFindFileException If a number in the line is malformed.
+     */
+    private void readMetaLine(String line) throws CanNotFindFileException {
+        try {
+            if (line.startsWith(HEADER_REPLICA)) {
+                this.replicaId = line.substring(HEADER_REPLICA.length()).trim();
+            } else if (line.startsWith(HEADER_CLOCK)) {
+                this.clock = Long.parseLong(line.substring(HEADER_CLOCK.length()).trim());
+            } else if (line.startsWith(HEADER_COUNTER)) {
+                this.counter = Long.parseLong(line.substring(HEADER_COUNTER.length()).trim());
+            } else if (line.startsWith(HEADER_APPLIED)) {
+                this.appliedOffset = Long.parseLong(line.substring(HEADER_APPLIED.length()).trim());
+            } else if (line.startsWith(CODE_VECTOR + SEP_RECORD)) {
+                String[] fields = line.split(SPLIT_RECORD);
+                this.vector.put(fields[1], Long.parseLong(fields[2]));
+            } else if (line.startsWith(CODE_PEER + SEP_RECORD)) {
+                String[] fields = line.split(SPLIT_RECORD);
+                this.peers.put(fields[1], new long[] {Long.parseLong(fields[2]), Long.parseLong(fields[3])});
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new CanNotFindFileException("Malformed sync state at: " + metaFile());
+        }
+    }
+
+    /**
+     * Writes the replica's id, clocks, version vector and peer positions.
+     *
+     * @throws JamesException If the meta file cannot be written.
+     */
+    private void writeMeta() throws JamesException {
+        ArrayList<String> lines = new ArrayList<>();
+        lines.add(HEADER_REPLICA + this.replicaId);
+        lines.add(HEADER_CLOCK + this.clock);
+        lines.add(HEADER_COUNTER + this.counter);
+        lines.add(HEADER_APPLIED + this.appliedOffset);
+        for (Map.Entry<String, Long> origin : this.vector.entrySet()) {
+            lines.add(CODE_VECTOR + SEP_RECORD + origin.getKey() + SEP_RECORD + origin.getValue());
+        }
+        for (Map.Entry<String, long[]> peer : this.peers.entrySet()) {
+            long[] positions = peer.getValue();
+            lines.add(CODE_PEER + SEP_RECORD + peer.getKey() + SEP_RECORD + positions[0] + SEP_RECORD + positions[1]);
+        }
+        AtomicFileWriter.write(metaFile(), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the lines of one of the replica's files.
+     *
+     * @param file The file.
+     * @return The trimmed lines that are not empty.
+     * @throws CanNotFindFileException If the file cannot be read.
+     */
+    private static List<String> readLines(File file) throws CanNotFindFileException {
+        try {
+            ArrayList<String> lines = new ArrayList<>();
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line.trim());
+                }
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new CanNotFindFileException("Error reading sync state at: " + file);
+        }
+    }
+
+    private File metaFile() {
+        return new File(this.dataFile.getPath() + META_SUFFIX);
+    }
+
+    private File keysFile() {
+        return new File(this.dataFile.getPath() + KEYS_SUFFIX);
+    }
+}
@@ -0,0 +1,243 @@
+package james.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import james.Parser;
+import james.exception.CanNotFindFileException;
+import james.exception.CanNotWriteToFileException;
+import james.exception.JamesException;
+import james.task.Task;
+
+/**
+ * The cold storage tier for completed tasks.
+ * Archived tasks are kept out of the hot data file, so they are neither parsed on start-up
+ * nor rewritten on every save. Each archive operation appends one segment to the archive
+ * file: the raw and compressed lengths followed by the checksummed records, compressed with
+ * {@link Deflater}. The archive is only read, and then cached, the first time archived tasks
+ * are asked for.
+ */
+public class TaskArchive {
+    /** The suffix of the archive file kept next to the data file. */
+    public static final String ARCHIVE_SUFFIX = ".archive";
+
+    private static final int SEGMENT_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String LINE_SEPARATOR = "\n";
+
+    /** The archive file, or null if the archive only lives in memory. */
+    private final File file;
+    /** The archived tasks, or null until they are first needed. */
+    private ArrayList<Task> archivedTasks;
+
+    /**
+     * Initializes an archive stored in the given file.
+     *
+     * @param file The archive file, or null to keep archived tasks in memory only.
+     */
+    public TaskArchive(File file) {
+        this.file = file;
+        this.archivedTasks = file == null ? new ArrayList<>() : null;
+    }
+
+    /**
+     * Appends tasks to the archive as one compressed segment and forces it to the disk.
+     *
+     * @param tasks The tasks to archive.
+     * @throws JamesException If the segment cannot be written.
+     */
+    public synchronized void append(List<Task> tasks) throws JamesException {
+        assert tasks != null : "Cannot archive a null list";
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (this.file != null) {
+            writeSegment(tasks);
+        }
+        if (this.archivedTasks != null) {
+            this.archivedTasks.addAll(tasks);
+        }
+    }
+
+    /**
+     * Returns every archived task, reading the archive file the first time it is called.
+     *
+     * @return The archived tasks, oldest first.
+     * @throws JamesException If the archive file cannot be read.
+     */
+    public synchronized ArrayList<Task> getTasks() throws JamesException {
+        if (this.archivedTasks == null) {
+            this.archivedTasks = readAllSegments();
+        }
+        return this.archivedTasks;
+    }
+
+    /**
+     * Returns whether the archive has been read into memory.
+     *
+     * @return True if the archived tasks are cached.
+     */
+    public synchronized boolean isLoaded() {
+        return this.archivedTasks != null;
+    }
+
+    /**
+     * Compresses the tasks' records and appends them as one segment.
+     *
+     * @param tasks The tasks to archive.
+     * @throws CanNotWriteToFileException If the segment cannot be written or synced.
+     */
+    private void writeSegment(List<Task> tasks) throws CanNotWriteToFileException {
+        StringBuilder text = new StringBuilder();
+        for (Task task : tasks) {
+            text.append(RecordChecksum.append(task.toFileFormat())).append(LINE_SEPARATOR);
+        }
+        byte[] raw = text.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(raw);
+
+        ByteBuffer segment = ByteBuffer.allocate(SEGMENT_HEADER_SIZE + compressed.length);
+        segment.putInt(raw.length).putInt(compressed.length).put(compressed);
+        File parent = this.file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (FileOutputStream out = new FileOutputStream(this.file, true)) {
+            out.write(segment.array());
+            out.getFD().sync();
+        } catch (IOException e) {
+            throw new CanNotWriteToFileException(e.getMessage());
+        }
+    }
+
+    /**
+     * Reads and decompresses every segment of the archive file.
+     * A segment cut short by a crash during its write is ignored.
+     *
+     * @return The archived tasks, oldest first.
+     * @throws CanNotFindFileException If the archive file cannot be read or is damaged.
+     */
+    private ArrayList<Task> readAllSegments() throws CanNotFindFileException {
+        ArrayList<Task> tasks = new ArrayList<>();
+        if (!this.file.exists()) {
+            return tasks;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(this.file.toPath()))) {
+            while (true) {
+                byte[] raw = readSegment(in);
+                if (raw == null) {
+                    return tasks;
+                }
+                addRecords(new String(raw, StandardCharsets.UTF_8), tasks);
+            }
+        } catch (IOException | DataFormatException e) {
+            throw new CanNotFindFileException("Error reading archive at: " + this.file);
+        }
+    }
+
+    /**
+     * Reads and decompresses the next segment.
+     *
+     * @param in The archive stream, positioned at a segment.
+     * @return The raw records, or null at the end of the file or of its last complete segment.
+     * @throws IOException If the stream cannot be read.
+     * @throws DataFormatException If the compressed data is damaged.
+     */
+    private static byte[] readSegment(DataInputStream in) throws IOException, DataFormatException {
+        int rawLength;
+        byte[] compressed;
+        try {
+            rawLength = in.readInt();
+            compressed = new byte[in.readInt()];
+            in.readFully(compressed);
+        } catch (EOFException e) {
+            return null;
+        }
+        return inflate(compressed, rawLength);
+    }
+
+    /**
+     * Parses the records of one segment, skipping any whose checksum does not match.
+     *
+     * @param text The decompressed records.
+     * @param tasks The list receiving the tasks.
+     */
+    private static void addRecords(String text, ArrayList<Task> tasks) {
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf(LINE_SEPARATOR, start);
+            if (end < 0) {
+                end = text.length();
+            }
+            String record = RecordChecksum.verify(text.substring(start, end));
+            Task task = record == null ? null : Parser.parseLine(record);
+            if (task != null) {
+                tasks.add(task);
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Compresses bytes with {@link Deflater} at its best compression level.
+     *
+     * @param raw The bytes to compress.
+     * @return The compressed bytes.
+     */
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses bytes produced by {@link #deflate(byte[])}.
+     *
+     * @param compressed The compressed bytes.
+     * @param rawLength The length of the original bytes.
+     * @return The original bytes.
+     * @throws DataFormatException If the compressed data is damaged or has the wrong length.
+     */
+    private static byte[] inflate(byte[] compressed, int rawLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != rawLength) {
+                throw new DataFormatException("Archive segment has the wrong length");
+            }
+            return raw;
+        } finally {
+            inflater.end();
+        }
+    }
+}
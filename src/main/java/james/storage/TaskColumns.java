@@ -0,0 +1,432 @@
+package james.storage;
+
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import james.index.KeywordIndex;
+import james.task.Deadline;
+import james.task.Event;
+import james.task.TagDictionary;
+import james.task.Task;
+import james.task.Todo;
+
+/**
+ * A {@link TaskSource} that keeps the tasks of a large list in parallel primitive arrays instead of
+ * Task objects: a bit per done flag, a byte per type, an int epoch day per deadline, an offset into a
+ * shared UTF-8 arena for the description and event times, and an index into a table of the distinct
+ * sets of {@link TagDictionary} tag ids in use. Ids are not stored while they are the positions of the
+ * entries plus one, as they are after a load. An entry takes 13 bytes plus its text, where a Task with
+ * its strings, tag ids and date objects takes over a hundred. A Task is only created as a view
+ * of an entry when the list first uses it.
+ *
+ * <p>Records are parsed straight into the columns on load, see {@link RecordScanner#scanInto}, and
+ * searches, tag filters and due date queries are answered by scanning the columns, so a list backed by
+ * columns only creates the tasks a query returns. {@code ColumnarHeapBenchmark} measures the heap
+ * taken by a loaded list in both forms.</p>
+ */
+public class TaskColumns implements TaskSource {
+    private static final byte TODO = 0;
+    private static final byte DEADLINE = 1;
+    private static final byte EVENT = 2;
+    /** Separates the description and the event times in the arena; records are lines, so it cannot occur in them. */
+    private static final String FIELD_SEPARATOR = "\n";
+    private static final int MIN_CAPACITY = 16;
+
+    private final BitSet doneFlags = new BitSet();
+    private byte[] types;
+    /** The id of each entry, or null while the id of every entry is its position plus one. */
+    private int[] ids;
+    /** The due date of each deadline as an epoch day, unused for other types. */
+    private int[] dueDays;
+    /** Where the text of each entry starts in the arena; it ends where the next one starts. */
+    private int[] textStarts;
+    /** The position of the tag ids of each entry in {@link #tagSets}. */
+    private int[] tagSetIndexes;
+    private byte[] textArena;
+    private int textArenaSize;
+    /** The distinct lists of tag ids of the entries; a list uses few combinations of tags. */
+    private final ArrayList<int[]> tagSets = new ArrayList<>();
+    /** The position of each set in {@link #tagSets}, keyed by a buffer over it, which compares by contents. */
+    private final HashMap<IntBuffer, Integer> tagSetIndexesByIds = new HashMap<>();
+    private int size;
+    private int recordCount;
+
+    /**
+     * Initializes empty columns with room for the given number of entries.
+     *
+     * @param initialCapacity The number of entries to make room for.
+     */
+    public TaskColumns(int initialCapacity) {
+        assert initialCapacity >= 0 : "Initial capacity cannot be negative";
+        int capacity = Math.max(initialCapacity, MIN_CAPACITY);
+        this.types = new byte[capacity];
+        this.dueDays = new int[capacity];
+        this.textStarts = new int[capacity];
+        this.tagSetIndexes = new int[capacity];
+        this.textArena = new byte[capacity * 16];
+    }
+
+    /**
+     * Adds an entry for a task after the last one.
+     *
+     * @param task The task, which must have an id.
+     */
+    public void add(Task task) {
+        if (task instanceof Deadline) {
+            addDeadline(task.getId(), task.isDone(), task.getDescription(), task.getTagIds(),
+                    ((Deadline) task).getDeadlineTime());
+        } else if (task instanceof Event) {
+            Event event = (Event) task;
+            addEvent(task.getId(), task.isDone(), task.getDescription(), task.getTagIds(),
+                    event.getStartTime(), event.getEndTime());
+        } else {
+            addTodo(task.getId(), task.isDone(), task.getDescription(), task.getTagIds());
+        }
+    }
+
+    /**
+     * Adds an entry for a to-do after the last one.
+     *
+     * @param id The id of the task.
+     * @param isDone Whether the task is done.
+     * @param description The description.
+     * @param tagIds The ids of its tags in the {@link TagDictionary}.
+     */
+    void addTodo(long id, boolean isDone, String description, int[] tagIds) {
+        append(id, TODO, isDone, description, tagIds);
+    }
+
+    /**
+     * Adds an entry for a deadline after the last one.
+     *
+     * @param id The id of the task.
+     * @param isDone Whether the task is done.
+     * @param description The description.
+     * @param tagIds The ids of its tags in the {@link TagDictionary}.
+     * @param deadline The due date.
+     */
+    void addDeadline(long id, boolean isDone, String description, int[] tagIds, LocalDate deadline) {
+        int entry = append(id, DEADLINE, isDone, description, tagIds);
+        this.dueDays[entry] = (int) deadline.toEpochDay();
+    }
+
+    /**
+     * Adds an entry for an event after the last one.
+     *
+     * @param id The id of the task.
+     * @param isDone Whether the task is done.
+     * @param description The description.
+     * @param tagIds The ids of its tags in the {@link TagDictionary}.
+     * @param startTime The start time as written.
+     * @param endTime The end time as written.
+     */
+    void addEvent(long id, boolean isDone, String description, int[] tagIds, String startTime, String endTime) {
+        append(id, EVENT, isDone, description + FIELD_SEPARATOR + startTime + FIELD_SEPARATOR + endTime, tagIds);
+    }
+
+    /**
+     * Fills the columns shared by every type for a new last entry.
+     *
+     * @param id The id of the task.
+     * @param type The type of the task.
+     * @param isDone Whether the task is done.
+     * @param text The description, followed by the times of an event.
+     * @param tagIds The ids of its tags.
+     * @return The new entry.
+     */
+    private int append(long id, byte type, boolean isDone, String text, int[] tagIds) {
+        assert id > 0 && id <= Integer.MAX_VALUE : "Only tasks with an int id can be packed";
+        if (this.size == this.types.length) {
+            grow();
+        }
+        if (this.ids == null && id != this.size + 1L) {
+            storeIds();
+        }
+        this.types[this.size] = type;
+        this.doneFlags.set(this.size, isDone);
+        if (this.ids != null) {
+            this.ids[this.size] = (int) id;
+        }
+        this.recordCount = Math.max(this.recordCount, (int) id);
+        this.textStarts[this.size] = this.textArenaSize;
+        appendText(text.getBytes(StandardCharsets.UTF_8));
+        this.tagSetIndexes[this.size] = tagSetIndexOf(tagIds);
+        return this.size++;
+    }
+
+    /**
+     * Frees the unused capacity of the columns, e.g. once a data file is loaded into them.
+     */
+    void trimToSize() {
+        this.types = Arrays.copyOf(this.types, this.size);
+        this.dueDays = Arrays.copyOf(this.dueDays, this.size);
+        this.textStarts = Arrays.copyOf(this.textStarts, this.size);
+        this.tagSetIndexes = Arrays.copyOf(this.tagSetIndexes, this.size);
+        this.textArena = Arrays.copyOf(this.textArena, this.textArenaSize);
+        if (this.ids != null) {
+            this.ids = Arrays.copyOf(this.ids, this.size);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return The highest id among the tasks that were packed.
+     */
+    @Override
+    public int getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Creates a Task with the contents of an entry.
+     *
+     * @param entry The 0-indexed entry.
+     * @return A new Task with the entry's contents and id.
+     */
+    @Override
+    public Task load(int entry) {
+        assert entry >= 0 && entry < this.size : "Column entry out of bounds";
+        String text = new String(this.textArena, this.textStarts[entry],
+                textEnd(entry) - this.textStarts[entry], StandardCharsets.UTF_8);
+        int[] tagIds = this.tagSets.get(this.tagSetIndexes[entry]);
+        ArrayList<String> tags = new ArrayList<>(tagIds.length);
+        for (int tagId : tagIds) {
+            tags.add(TagDictionary.nameOf(tagId));
+        }
+        Task task;
+        if (this.types[entry] == DEADLINE) {
+            task = new Deadline(text, tags, LocalDate.ofEpochDay(this.dueDays[entry]));
+        } else if (this.types[entry] == EVENT) {
+            String[] fields = text.split(FIELD_SEPARATOR, 3);
+            task = new Event(fields[0], tags, fields[1], fields[2]);
+        } else {
+            task = new Todo(text, tags);
+        }
+        if (this.doneFlags.get(entry)) {
+            task.mark();
+        }
+        task.setId(idOf(entry));
+        return task;
+    }
+
+    /**
+     * Returns a reader that creates the tasks of entries; the columns need no buffering for it.
+     *
+     * @return A new reader.
+     */
+    @Override
+    public TaskSource.Reader reader() {
+        return new TaskSource.Reader() {
+            @Override
+            public String readRecord(int entry) {
+                return load(entry).toFileFormat();
+            }
+
+            @Override
+            public Task readTask(int entry) {
+                return load(entry);
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long idOf(int entry) {
+        return this.ids == null ? entry + 1L : this.ids[entry];
+    }
+
+    /**
+     * Removes entries in a single pass, moving the text of the kept entries down in the arena.
+     * The ids of the kept entries are stored from then on.
+     *
+     * @param entries The 0-indexed entries to remove.
+     */
+    @Override
+    public void removeAll(BitSet entries) {
+        int firstRemoved = entries.nextSetBit(0);
+        if (firstRemoved < 0 || firstRemoved >= this.size) {
+            return;
+        }
+        if (this.ids == null) {
+            storeIds();
+        }
+        int kept = firstRemoved;
+        int textSize = this.textStarts[firstRemoved];
+        for (int entry = firstRemoved; entry < this.size; entry++) {
+            if (entries.get(entry)) {
+                continue;
+            }
+            int textStart = this.textStarts[entry];
+            int textLength = textEnd(entry) - textStart;
+            System.arraycopy(this.textArena, textStart, this.textArena, textSize, textLength);
+            this.textStarts[kept] = textSize;
+            this.tagSetIndexes[kept] = this.tagSetIndexes[entry];
+            this.types[kept] = this.types[entry];
+            this.ids[kept] = this.ids[entry];
+            this.dueDays[kept] = this.dueDays[entry];
+            this.doneFlags.set(kept, this.doneFlags.get(entry));
+            textSize += textLength;
+            kept++;
+        }
+        this.doneFlags.clear(kept, Math.max(kept, this.size));
+        this.size = kept;
+        this.textArenaSize = textSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isQueryable() {
+        return true;
+    }
+
+    /**
+     * Finds the entries whose task search text matches a keyword. Each entry is viewed as a Task
+     * that is dropped again right away, as the search text includes formatted dates.
+     *
+     * @param keyWord The keyword, in any case.
+     * @return The matching entries.
+     */
+    @Override
+    public BitSet findEntriesMatching(String keyWord) {
+        BitSet entries = new BitSet(this.size);
+        for (int entry = 0; entry < this.size; entry++) {
+            if (KeywordIndex.matches(load(entry).toSearchText(), keyWord)) {
+                entries.set(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Finds the entries whose task carries a tag by checking each distinct set of tags once,
+     * then scanning the column of tag sets.
+     *
+     * @param tag The tag text.
+     * @return The matching entries.
+     */
+    @Override
+    public BitSet findEntriesWithTag(String tag) {
+        String wanted = tag.toLowerCase();
+        BitSet matchingSets = new BitSet(this.tagSets.size());
+        for (int set = 0; set < this.tagSets.size(); set++) {
+            for (int tagId : this.tagSets.get(set)) {
+                if (TagDictionary.nameOf(tagId).toLowerCase().equals(wanted)) {
+                    matchingSets.set(set);
+                    break;
+                }
+            }
+        }
+        BitSet entries = new BitSet(this.size);
+        for (int entry = 0; entry < this.size; entry++) {
+            if (matchingSets.get(this.tagSetIndexes[entry])) {
+                entries.set(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Finds the deadlines due within a range of dates from the type, due day and done columns alone.
+     *
+     * @param from The first date of the range, or null for no lower bound.
+     * @param to The last date of the range.
+     * @param isUndoneOnly True to leave out the deadlines that are done.
+     * @return The matching entries.
+     */
+    @Override
+    public BitSet findDeadlineEntries(LocalDate from, LocalDate to, boolean isUndoneOnly) {
+        long firstDay = from == null ? Long.MIN_VALUE : from.toEpochDay();
+        long lastDay = to.toEpochDay();
+        BitSet entries = new BitSet(this.size);
+        for (int entry = 0; entry < this.size; entry++) {
+            if (this.types[entry] == DEADLINE && this.dueDays[entry] >= firstDay && this.dueDays[entry] <= lastDay
+                    && !(isUndoneOnly && this.doneFlags.get(entry))) {
+                entries.set(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns where the text of an entry ends in the arena.
+     *
+     * @param entry The 0-indexed entry.
+     * @return The end offset, exclusive.
+     */
+    private int textEnd(int entry) {
+        return entry + 1 < this.size ? this.textStarts[entry + 1] : this.textArenaSize;
+    }
+
+    /**
+     * Appends the encoded text of an entry to the arena, growing it if needed.
+     *
+     * @param bytes The UTF-8 bytes of the text.
+     */
+    private void appendText(byte[] bytes) {
+        if (this.textArenaSize + bytes.length > this.textArena.length) {
+            this.textArena = Arrays.copyOf(this.textArena,
+                    Math.max(this.textArena.length * 2, this.textArenaSize + bytes.length));
+        }
+        System.arraycopy(bytes, 0, this.textArena, this.textArenaSize, bytes.length);
+        this.textArenaSize += bytes.length;
+    }
+
+    /**
+     * Returns the position of a set of tag ids in the table of sets, adding it if it is new.
+     *
+     * @param tagIds The tag ids of an entry.
+     * @return The position of the set.
+     */
+    private int tagSetIndexOf(int[] tagIds) {
+        Integer index = this.tagSetIndexesByIds.get(IntBuffer.wrap(tagIds));
+        if (index != null) {
+            return index;
+        }
+        int[] tagSet = tagIds.clone();
+        this.tagSets.add(tagSet);
+        this.tagSetIndexesByIds.put(IntBuffer.wrap(tagSet), this.tagSets.size() - 1);
+        return this.tagSets.size() - 1;
+    }
+
+    /**
+     * Starts storing the ids of the entries, which so far were their positions plus one.
+     */
+    private void storeIds() {
+        this.ids = new int[this.types.length];
+        for (int entry = 0; entry < this.size; entry++) {
+            this.ids[entry] = entry + 1;
+        }
+    }
+
+    /**
+     * Doubles the capacity of the per-entry columns.
+     */
+    private void grow() {
+        int capacity = Math.max(this.types.length * 2, MIN_CAPACITY);
+        this.types = Arrays.copyOf(this.types, capacity);
+        this.dueDays = Arrays.copyOf(this.dueDays, capacity);
+        this.textStarts = Arrays.copyOf(this.textStarts, capacity);
+        this.tagSetIndexes = Arrays.copyOf(this.tagSetIndexes, capacity);
+        if (this.ids != null) {
+            this.ids = Arrays.copyOf(this.ids, capacity);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package james.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Arrays;
+
+import james.Parser;
+import james.exception.CanNotFindFileException;
+import james.task.Task;
+
+/**
+ * An offset index over the records of a text data file, a {@link TaskSource} for task lists
+ * that only parse the tasks that are actually used.
+ * Building the index checks every line like a normal load, but keeps only the byte position
+ * and length of each good record instead of its Task. Records are read back from a file
+ * channel that stays open for the life of the index, so atomic saves that replace the data
+ * file do not move them.
+ *
+ * <p>Entries are kept in list order and are removed together with their tasks, so entry
+ * {@code i} always belongs to the i-th task of the list while the index covers it.</p>
+ */
+public class TaskIndex implements TaskSource {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int WINDOW_SIZE = 64 * 1024;
+    private static final byte NEWLINE = '\n';
+    private static final String HEADER_PREFIX = "#";
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final ArrayList<String> headerLines = new ArrayList<>();
+    private final RecoveryScanner recovery = new RecoveryScanner();
+    private long[] offsets;
+    private int[] lengths;
+    /** The position of each record among the good records of the file, which gives its task id. */
+    private int[] ordinals;
+    private int size;
+    private int recordCount;
+    private boolean isInHeader = true;
+
+    /**
+     * Initializes an empty index over an open data file.
+     *
+     * @param channel The channel records are read from.
+     * @param charset The charset the file is encoded in.
+     * @param initialCapacity The number of entries to make room for.
+     */
+    private TaskIndex(FileChannel channel, Charset charset, int initialCapacity) {
+        this.channel = channel;
+        this.charset = charset;
+        this.offsets = new long[initialCapacity];
+        this.lengths = new int[initialCapacity];
+        this.ordinals = new int[initialCapacity];
+    }
+
+    /**
+     * Indexes a text data file in one pass. Corrupt and malformed lines are left out and
+     * collected by the {@link #getRecoveryScanner() recovery scanner}, as in a normal load.
+     *
+     * @param file The data file in the text format.
+     * @return The index, or null if the file's charset cannot be split at newline bytes.
+     * @throws CanNotFindFileException If the file cannot be read.
+     */
+    public static TaskIndex build(File file) throws CanNotFindFileException {
+        Charset charset = Charset.defaultCharset();
+        if (!ParallelTaskLoader.isNewlineSafe(charset)) {
+            return null;
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            TaskIndex index = new TaskIndex(channel, charset, StreamingTaskLoader.estimateCapacity(file.length()));
+            index.scan(channel);
+            return index;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new CanNotFindFileException("Error reading file at: " + file);
+        }
+    }
+
+    /**
+     * Returns the number of entries, i.e. the leading tasks of the list that the index covers.
+     *
+     * @return The number of entries.
+     */
+    @Override
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of good records in the file, which is also the highest task id given out.
+     *
+     * @return The number of records indexed when the file was scanned.
+     */
+    @Override
+    public int getRecordCount() {
+        return this.recordCount;
+    }
+
+    public ArrayList<String> getHeaderLines() {
+        return this.headerLines;
+    }
+
+    public RecoveryScanner getRecoveryScanner() {
+        return this.recovery;
+    }
+
+    /**
+     * Parses the task of an entry.
+     *
+     * @param entry The 0-indexed entry.
+     * @return A new Task with the record's contents and id.
+     * @throws UncheckedIOException If the record cannot be read.
+     */
+    @Override
+    public synchronized Task load(int entry) {
+        return new Reader(this.lengths[entry]).readTask(entry);
+    }
+
+    /**
+     * Opens a reader for visiting many entries in ascending order, which reads the file in
+     * large sequential blocks instead of one read per record.
+     *
+     * @return A new reader.
+     */
+    @Override
+    public Reader reader() {
+        return new Reader(WINDOW_SIZE);
+    }
+
+    /**
+     * Returns the id of the task of an entry without reading its record.
+     *
+     * @param entry The 0-indexed entry.
+     * @return The id the task gets when it is parsed.
+     */
+    @Override
+    public synchronized long idOf(int entry) {
+        return this.ordinals[entry] + 1L;
+    }
+
+    /**
+     * Removes the entries whose tasks were removed from the list, in a single pass.
+     *
+     * @param entries The 0-indexed entries to remove.
+     */
+    @Override
+    public synchronized void removeAll(BitSet entries) {
+        int kept = 0;
+        for (int entry = 0; entry < this.size; entry++) {
+            if (!entries.get(entry)) {
+                this.offsets[kept] = this.offsets[entry];
+                this.lengths[kept] = this.lengths[entry];
+                this.ordinals[kept] = this.ordinals[entry];
+                kept++;
+            }
+        }
+        this.size = kept;
+    }
+
+    /**
+     * Closes the data file. Entries can no longer be read afterwards.
+     */
+    public void close() {
+        closeQuietly(this.channel);
+    }
+
+    /**
+     * Reads the file once, recording the position of every record that checks and parses.
+     *
+     * @param source The channel to read from.
+     * @throws IOException If the file cannot be read.
+     */
+    private void scan(FileChannel source) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int filled = 0;
+        int scanned = 0;
+        long bufferOffset = 0;
+        InputStream in = Channels.newInputStream(source);
+        while (true) {
+            int read = in.read(buffer, filled, buffer.length - filled);
+            if (read > 0) {
+                filled += read;
+            }
+            int lineStart = 0;
+            for (int i = scanned; i < filled; i++) {
+                if (buffer[i] == NEWLINE) {
+                    addLine(buffer, lineStart, i, bufferOffset + lineStart);
+                    lineStart = i + 1;
+                }
+            }
+            if (read < 0) {
+                addLine(buffer, lineStart, filled, bufferOffset + lineStart);
+                return;
+            }
+
+            System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+            bufferOffset += lineStart;
+            filled -= lineStart;
+            scanned = filled;
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Checks one line and records its position if it holds a good record.
+     *
+     * @param buffer The bytes holding the line.
+     * @param start The start of the line in the buffer.
+     * @param end The end of the line in the buffer, before its newline.
+     * @param offset The position of the line in the file.
+     */
+    private void addLine(byte[] buffer, int start, int end, long offset) {
+        String line = new String(buffer, start, end - start, this.charset).trim();
+        if (line.isEmpty()) {
+            return;
+        }
+        if (this.isInHeader && line.startsWith(HEADER_PREFIX)) {
+            this.headerLines.add(line);
+            return;
+        }
+        if (this.isInHeader) {
+            this.recovery.setFormatVersion(StorageFormat.parseVersion(this.headerLines));
+            this.isInHeader = false;
+        }
+        if (this.recovery.scanLine(line) == null) {
+            return;
+        }
+
+        if (this.size == this.offsets.length) {
+            int capacity = Math.max(16, this.size * 2);
+            this.offsets = Arrays.copyOf(this.offsets, capacity);
+            this.lengths = Arrays.copyOf(this.lengths, capacity);
+            this.ordinals = Arrays.copyOf(this.ordinals, capacity);
+        }
+        this.offsets[this.size] = offset;
+        this.lengths[this.size] = end - start;
+        this.ordinals[this.size] = this.recordCount++;
+        this.size++;
+    }
+
+    /**
+     * Closes a channel, ignoring errors.
+     *
+     * @param channel The channel, or null.
+     */
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // The index is unusable either way
+        }
+    }
+
+    /**
+     * Reads entries through a window over the file that is refilled when an entry falls outside it.
+     * Visiting entries in ascending order reads each block of the file only once.
+     */
+    public class Reader implements TaskSource.Reader {
+        private ByteBuffer window;
+        private long windowOffset = -1;
+
+        /**
+         * Initializes a reader with a window of the given size.
+         *
+         * @param windowSize The number of bytes read at a time.
+         */
+        private Reader(int windowSize) {
+            this.window = ByteBuffer.allocate(windowSize);
+        }
+
+        /**
+         * Returns the record of an entry, without its checksum.
+         *
+         * @param entry The 0-indexed entry.
+         * @return The stored record, e.g. "T |  | 0 | read book".
+         * @throws UncheckedIOException If the record cannot be read.
+         */
+        @Override
+        public String readRecord(int entry) {
+            synchronized (TaskIndex.this) {
+                String record = RecordChecksum.verify(readLine(entry));
+                if (record == null) {
+                    throw new UncheckedIOException(new IOException("Indexed record changed on disk"));
+                }
+                return record;
+            }
+        }
+
+        /**
+         * Parses the task of an entry.
+         *
+         * @param entry The 0-indexed entry.
+         * @return A new Task with the record's contents and id.
+         * @throws UncheckedIOException If the record cannot be read.
+         */
+        @Override
+        public Task readTask(int entry) {
+            synchronized (TaskIndex.this) {
+                Task task = Parser.parseLine(readRecord(entry));
+                if (task == null) {
+                    throw new UncheckedIOException(new IOException("Indexed record changed on disk"));
+                }
+                task.setId(TaskIndex.this.ordinals[entry] + 1L);
+                return task;
+            }
+        }
+
+        /**
+         * Reads the trimmed line of an entry, refilling the window if needed.
+         *
+         * @param entry The 0-indexed entry.
+         * @return The stored line.
+         */
+        private String readLine(int entry) {
+            assert entry >= 0 && entry < TaskIndex.this.size : "Index entry out of bounds";
+            long offset = TaskIndex.this.offsets[entry];
+            int length = TaskIndex.this.lengths[entry];
+            if (this.windowOffset < 0 || offset < this.windowOffset
+                    || offset + length > this.windowOffset + this.window.limit()) {
+                fill(offset, length);
+            }
+            int position = (int) (offset - this.windowOffset);
+            return new String(this.window.array(), position, length, TaskIndex.this.charset).trim();
+        }
+
+        /**
+         * Reads the block of the file starting at an offset into the window.
+         *
+         * @param offset The file position to start at.
+         * @param minLength The number of bytes that must be read.
+         */
+        private void fill(long offset, int minLength) {
+            if (this.window.capacity() < minLength) {
+                this.window = ByteBuffer.allocate(minLength);
+            }
+            this.window.clear();
+            try {
+                while (this.window.hasRemaining()) {
+                    if (TaskIndex.this.channel.read(this.window, offset + this.window.position()) < 0) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.window.flip();
+            this.windowOffset = offset;
+            if (this.window.limit() < minLength) {
+                throw new UncheckedIOException(new IOException("Indexed record is past the end of the file"));
+            }
+        }
+    }
+}
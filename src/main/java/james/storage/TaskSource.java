@@ -0,0 +1,124 @@
+package james.storage;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+
+import james.task.Task;
+
+/**
+ * Holds the tasks of a lazy task list that have not been used yet, in a form that is cheaper to keep
+ * than Task objects. Entry {@code i} belongs to the i-th task of the list while the source covers it,
+ * and a Task is only created for an entry when the list first uses it.
+ *
+ * @see TaskIndex
+ * @see TaskColumns
+ */
+public interface TaskSource {
+    /**
+     * Returns the number of entries.
+     *
+     * @return The number of entries.
+     */
+    int size();
+
+    /**
+     * Returns the number of ids handed out to the entries so far; every id is at most this.
+     *
+     * @return The highest id an entry can have.
+     */
+    int getRecordCount();
+
+    /**
+     * Creates the task of an entry.
+     *
+     * @param entry The 0-indexed entry.
+     * @return A new Task with the entry's contents and id.
+     */
+    Task load(int entry);
+
+    /**
+     * Opens a reader for visiting many entries in ascending order.
+     *
+     * @return A new reader.
+     */
+    Reader reader();
+
+    /**
+     * Returns the id of the task of an entry without creating the task.
+     *
+     * @param entry The 0-indexed entry.
+     * @return The id the task gets when it is created.
+     */
+    long idOf(int entry);
+
+    /**
+     * Removes the entries whose tasks were removed from the list, in a single pass.
+     *
+     * @param entries The 0-indexed entries to remove.
+     */
+    void removeAll(BitSet entries);
+
+    /**
+     * Returns whether the source can answer the queries below from what it keeps, so that a list can
+     * search, filter and query it by due date without creating every task. A list indexes the tasks of
+     * a source that cannot.
+     *
+     * @return True if the query methods are supported.
+     */
+    default boolean isQueryable() {
+        return false;
+    }
+
+    /**
+     * Finds the entries whose task search text matches a keyword, see {@link james.index.KeywordIndex}.
+     *
+     * @param keyWord The keyword, in any case.
+     * @return The matching entries.
+     */
+    default BitSet findEntriesMatching(String keyWord) {
+        throw new UnsupportedOperationException("Source cannot be queried");
+    }
+
+    /**
+     * Finds the entries whose task carries a tag, ignoring case.
+     *
+     * @param tag The tag text.
+     * @return The matching entries.
+     */
+    default BitSet findEntriesWithTag(String tag) {
+        throw new UnsupportedOperationException("Source cannot be queried");
+    }
+
+    /**
+     * Finds the entries whose task is a deadline due within a range of dates.
+     *
+     * @param from The first date of the range, or null for no lower bound.
+     * @param to The last date of the range.
+     * @param isUndoneOnly True to leave out the deadlines that are done.
+     * @return The matching entries.
+     */
+    default BitSet findDeadlineEntries(LocalDate from, LocalDate to, boolean isUndoneOnly) {
+        throw new UnsupportedOperationException("Source cannot be queried");
+    }
+
+    /**
+     * Reads the entries of a source one after another.
+     */
+    interface Reader {
+        /**
+         * Returns the data file record of an entry.
+         *
+         * @param entry The 0-indexed entry.
+         * @return The record, e.g. "T |  | 0 | read book".
+         */
+        String readRecord(int entry);
+
+        /**
+         * Creates the task of an entry.
+         *
+         * @param entry The 0-indexed entry.
+         * @return A new Task with the entry's contents and id.
+         */
+        Task readTask(int entry);
+    }
+}
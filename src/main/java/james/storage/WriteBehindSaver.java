@@ -0,0 +1,166 @@
+package james.storage;
+
+import java.io.File;
+
+import james.TaskList;
+import james.exception.CanNotWriteToFileException;
+import james.exception.JamesException;
+
+/**
+ * Saves the task list on a dedicated persistence thread instead of the caller's thread.
+ * Commands only mark the list dirty; the persistence thread waits up to the staleness
+ * bound so that every change made in the meantime is folded into a single snapshot
+ * and write. The snapshot is a {@link TaskList#snapshot()}, so writing it never holds up
+ * changes to the list. {@link #flush()} blocks until everything marked dirty so far is on disk.
+ */
+public class WriteBehindSaver {
+    /** The default upper bound on how long a change may stay unsaved. */
+    public static final long DEFAULT_MAX_STALENESS_MILLIS = 200;
+
+    private final File target;
+    private final StorageFormat format;
+    private final long maxStalenessMillis;
+    private final Thread persistenceThread;
+    private TaskList dirtyTasks;
+    private long dirtySince;
+    private long dirtyVersion;
+    private long savedVersion;
+    private long failedVersion;
+    private JamesException lastFailure;
+    private boolean isFlushRequested;
+
+    /**
+     * Initializes a write-behind saver and starts its persistence thread.
+     *
+     * @param target The data file the task list is written to.
+     * @param format The format the data file is written in.
+     * @param maxStalenessMillis The longest time a change may wait before it is written.
+     */
+    public WriteBehindSaver(File target, StorageFormat format, long maxStalenessMillis) {
+        assert target != null : "Target file cannot be null";
+        assert format != null : "Storage format cannot be null";
+        assert maxStalenessMillis >= 0 : "Staleness bound cannot be negative";
+        this.target = target;
+        this.format = format;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.persistenceThread = new Thread(this::runPersistenceLoop, "james-write-behind");
+        this.persistenceThread.setDaemon(true);
+        this.persistenceThread.start();
+    }
+
+    /**
+     * Records that the task list has changed and needs to be written.
+     * Returns immediately; the write happens on the persistence thread.
+     *
+     * @param tasks The task list to write.
+     */
+    public synchronized void markDirty(TaskList tasks) {
+        assert tasks != null : "Cannot save a null task list";
+        if (this.dirtyVersion == this.savedVersion) {
+            this.dirtySince = System.currentTimeMillis();
+        }
+        this.dirtyTasks = tasks;
+        this.dirtyVersion++;
+        notifyAll();
+    }
+
+    /**
+     * Blocks until every change marked dirty before this call has been written.
+     *
+     * @throws JamesException If the write covering those changes failed, or the wait was interrupted.
+     */
+    public synchronized void flush() throws JamesException {
+        long requiredVersion = this.dirtyVersion;
+        this.isFlushRequested = true;
+        notifyAll();
+        try {
+            while (this.savedVersion < requiredVersion) {
+                if (this.failedVersion >= requiredVersion) {
+                    throw this.lastFailure;
+                }
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CanNotWriteToFileException("Interrupted while flushing " + this.target);
+        } finally {
+            this.isFlushRequested = false;
+        }
+    }
+
+    /**
+     * Returns whether there are changes that have not been written yet.
+     *
+     * @return True if the task list is dirty.
+     */
+    public synchronized boolean isDirty() {
+        return this.savedVersion < this.dirtyVersion;
+    }
+
+    /**
+     * Stops the persistence thread. Changes that were not flushed before are not written.
+     */
+    public void close() {
+        this.persistenceThread.interrupt();
+    }
+
+    /**
+     * Repeatedly waits for dirty changes, lets them accumulate up to the staleness bound,
+     * and writes one snapshot covering all of them.
+     */
+    private void runPersistenceLoop() {
+        while (true) {
+            TaskList tasks;
+            long version;
+            synchronized (this) {
+                try {
+                    awaitWritableBatch();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                tasks = this.dirtyTasks;
+                version = this.dirtyVersion;
+            }
+            writeBatch(tasks, version);
+        }
+    }
+
+    /**
+     * Waits until there is something to write and either the staleness bound has passed
+     * or a flush has been requested. Must be called while holding the monitor.
+     *
+     * @throws InterruptedException If the persistence thread is interrupted.
+     */
+    private void awaitWritableBatch() throws InterruptedException {
+        while (this.savedVersion == this.dirtyVersion || this.failedVersion == this.dirtyVersion) {
+            wait();
+        }
+        long remaining = this.dirtySince + this.maxStalenessMillis - System.currentTimeMillis();
+        while (remaining > 0 && !this.isFlushRequested) {
+            wait(remaining);
+            remaining = this.dirtySince + this.maxStalenessMillis - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Snapshots the task list and atomically writes the snapshot, then wakes up anyone waiting on a flush.
+     *
+     * @param tasks The task list to snapshot.
+     * @param version The dirty version this snapshot covers.
+     */
+    private void writeBatch(TaskList tasks, long version) {
+        try {
+            AtomicFileWriter.write(this.target, this.format.encode(tasks.snapshot(), 0));
+            synchronized (this) {
+                this.savedVersion = Math.max(this.savedVersion, version);
+                notifyAll();
+            }
+        } catch (JamesException e) {
+            synchronized (this) {
+                this.failedVersion = version;
+                this.lastFailure = e;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -37,6 +37,33 @@ public class Deadline extends Task {
         this.deadlineTime = deadlineTime;
     }
 
+    /**
+     * Initializes a copy of a Deadline task.
+     *
+     * @param deadline The deadline to copy.
+     */
+    protected Deadline(Deadline deadline) {
+        super(deadline);
+        this.deadlineTime = deadline.deadlineTime;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Deadline copy() {
+        return new Deadline(this);
+    }
+
+    /**
+     * Returns the date by which the task is due.
+     *
+     * @return The deadline date.
+     */
+    public LocalDate getDeadlineTime() {
+        return this.deadlineTime;
+    }
+
     /**
      * {@inheritDoc}
      * Prefixes the representation with "[D]" and appends the deadline
@@ -46,14 +73,33 @@ public class Deadline extends Task {
      */
     @Override
     public String toString() {
+        return String.format("[D]%s (by: %s) %s", super.toString(), this.formatDeadlineTime(), super.tagsToString());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Appends the deadline as it is displayed, so e.g. "jan" finds the deadlines in January.
+     *
+     * @return The searchable text.
+     */
+    @Override
+    public String toSearchText() {
+        return super.toSearchText() + " " + this.formatDeadlineTime();
+    }
+
+    /**
+     * Formats the deadline as "Month Day Year" (e.g., January 31 2026).
+     *
+     * @return The formatted deadline.
+     */
+    private String formatDeadlineTime() {
         String monthName = this.deadlineTime.getMonth().name();
         String formatMonthName = monthName.substring(0, 1).toUpperCase() + monthName.substring(1).toLowerCase();
 
         int year = this.deadlineTime.getYear();
         int day = this.deadlineTime.getDayOfMonth();
 
-        return String.format("[D]%s (by: %s %s %d) %s", super.toString(),
-                formatMonthName, day, year, super.tagsToString());
+        return String.format("%s %s %d", formatMonthName, day, year);
     }
 
     /**
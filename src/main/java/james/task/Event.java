@@ -1,15 +1,33 @@
 package james.task;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 
 /**
  * Represents a task that occurs within a specific time frame.
  * An Event includes a start time and an end time in addition to the
  * basic task description and status.
+ * The times are kept as they were entered for display. Times written as dates, optionally
+ * followed by a time of day (e.g. "2026-10-18 14:00"), are also parsed, so the event can be
+ * placed in time; other times (e.g. "Mon 2pm") are only kept as text.
  */
 public class Event extends Task {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter[] TIME_OF_DAY_FORMATTERS = {
+        DateTimeFormatter.ofPattern("H:mm"), DateTimeFormatter.ofPattern("HHmm")
+    };
+    private static final int DATE_LENGTH = 10;
+
     private String startTime;
     private String endTime;
+    /** The parsed start time, or null if the start time is not a date. */
+    private final LocalDateTime start;
+    /** The parsed end time, or null if the end time is not a date. */
+    private final LocalDateTime end;
 
     /**
      * Initializes a new Event task with a description, start time, and end time.
@@ -24,6 +42,8 @@ public class Event extends Task {
         super(description, tags);
         this.startTime = startTime;
         this.endTime = endTime;
+        this.start = parseTime(startTime, false);
+        this.end = parseTime(endTime, true);
     }
 
     /**
@@ -37,6 +57,110 @@ public class Event extends Task {
         super(description);
         this.startTime = startTime;
         this.endTime = endTime;
+        this.start = parseTime(startTime, false);
+        this.end = parseTime(endTime, true);
+    }
+
+    /**
+     * Initializes a copy of an Event task.
+     *
+     * @param event The event to copy.
+     */
+    protected Event(Event event) {
+        super(event);
+        this.startTime = event.startTime;
+        this.endTime = event.endTime;
+        this.start = event.start;
+        this.end = event.end;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Event copy() {
+        return new Event(this);
+    }
+
+    /**
+     * Parses an event time written as "yyyy-MM-dd", "yyyy-MM-dd H:mm" or "yyyy-MM-dd HHmm".
+     * A date without a time of day stands for the start of the day, or for its end if it ends an event.
+     *
+     * @param time The time as it was entered.
+     * @param isEnd True if the time ends an event.
+     * @return The parsed time, or null if the text is not in one of those formats.
+     */
+    public static LocalDateTime parseTime(String time, boolean isEnd) {
+        if (time == null) {
+            return null;
+        }
+        String text = time.trim();
+        if (text.length() < DATE_LENGTH || !Character.isDigit(text.charAt(0))) {
+            return null;
+        }
+        try {
+            LocalDate date = LocalDate.parse(text.substring(0, DATE_LENGTH), DATE_FORMATTER);
+            String timeOfDay = text.substring(DATE_LENGTH).trim();
+            if (timeOfDay.isEmpty()) {
+                return isEnd ? date.plusDays(1).atStartOfDay() : date.atStartOfDay();
+            }
+            for (DateTimeFormatter formatter : TIME_OF_DAY_FORMATTERS) {
+                try {
+                    return date.atTime(LocalTime.parse(timeOfDay, formatter));
+                } catch (DateTimeParseException e) {
+                    // Try the next format
+                }
+            }
+            return null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the start time of the event as it was entered.
+     *
+     * @return The start time text.
+     */
+    public String getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * Returns the end time of the event as it was entered.
+     *
+     * @return The end time text.
+     */
+    public String getEndTime() {
+        return this.endTime;
+    }
+
+    /**
+     * Returns the parsed start time of the event.
+     *
+     * @return The start time, or null if it was not entered as a date.
+     */
+    public LocalDateTime getStart() {
+        return this.start;
+    }
+
+    /**
+     * Returns the parsed end time of the event.
+     *
+     * @return The end time, or null if it was not entered as a date.
+     */
+    public LocalDateTime getEnd() {
+        return this.end;
+    }
+
+    /**
+     * Returns whether the event can be placed in time, i.e. both of its times are dates
+     * and it does not end before it starts.
+     *
+     * @return True if the event has a valid parsed time range.
+     */
+    public boolean hasTimeRange() {
+        return this.start != null && this.end != null && !this.end.isBefore(this.start);
     }
 
     /**
@@ -53,6 +177,17 @@ public class Event extends Task {
                 this.endTime, super.tagsToString());
     }
 
+    /**
+     * {@inheritDoc}
+     * Appends the start and end times.
+     *
+     * @return The searchable text.
+     */
+    @Override
+    public String toSearchText() {
+        return super.toSearchText() + " " + this.startTime + " " + this.endTime;
+    }
+
     /**
      * {@inheritDoc}
      * Identifies the task as an "E" and appends the start and end times.
@@ -0,0 +1,106 @@
+package james.task;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The dictionary of every tag used in this run, which gives each distinct tag text a small int id.
+ * Tasks keep the ids of their tags instead of strings, so a tag used by thousands of tasks is stored
+ * once. Ids are handed out in the order tags are first seen and are never reused; they are not
+ * written to the data file, so they may differ between runs.
+ *
+ * <p>The dictionary is safe to use from several threads, as tasks are parsed in parallel on load.</p>
+ */
+public class TagDictionary {
+    private static final int[] NO_IDS = new int[0];
+    private static final ConcurrentHashMap<String, Integer> IDS_BY_NAME = new ConcurrentHashMap<>();
+    /** The text of each tag by id; replaced when it grows, and always written before the id is published. */
+    private static volatile String[] names = new String[64];
+    private static int count;
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private TagDictionary() {
+    }
+
+    /**
+     * Returns the id of a tag, adding the tag to the dictionary if it is new.
+     *
+     * @param tag The tag text.
+     * @return The id of the tag.
+     */
+    public static int idOf(String tag) {
+        assert tag != null : "Tag cannot be null";
+        Integer id = IDS_BY_NAME.get(tag);
+        return id != null ? id : register(tag);
+    }
+
+    /**
+     * Returns the text of a tag.
+     *
+     * @param id The id of the tag.
+     * @return The tag text, which is the same String object for every task with the tag.
+     */
+    public static String nameOf(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the ids of a list of tags in the same order, without repeats.
+     *
+     * @param tags The tag texts.
+     * @return The ids.
+     */
+    public static int[] idsOf(List<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return NO_IDS;
+        }
+        int[] ids = new int[tags.size()];
+        int length = 0;
+        for (String tag : tags) {
+            int id = idOf(tag);
+            if (!contains(ids, length, id)) {
+                ids[length++] = id;
+            }
+        }
+        return length == ids.length ? ids : Arrays.copyOf(ids, length);
+    }
+
+    /**
+     * Checks whether an id is among the first ids of an array.
+     *
+     * @param ids The ids.
+     * @param length The number of ids to look at.
+     * @param id The id to look for.
+     * @return True if the id is found.
+     */
+    private static boolean contains(int[] ids, int length, int id) {
+        for (int i = 0; i < length; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gives a new tag the next id, unless another thread just did.
+     *
+     * @param tag The tag text.
+     * @return The id of the tag.
+     */
+    private static synchronized int register(String tag) {
+        Integer id = IDS_BY_NAME.get(tag);
+        if (id != null) {
+            return id;
+        }
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+        }
+        names[count] = tag;
+        IDS_BY_NAME.put(tag, count);
+        return count++;
+    }
+}
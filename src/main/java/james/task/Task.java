@@ -1,6 +1,7 @@
 package james.task;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Represents a general task in the James application.
@@ -10,20 +11,23 @@ import java.util.ArrayList;
 public class Task {
     private final String description;
     private boolean isDone;
-    private ArrayList<String> tags;
+    /** The {@link TagDictionary} ids of the tags in the order they were added; replaced, never changed in place. */
+    private int[] tagIds;
+    /** The stable id given by the task list, or 0 while the task is not in one. */
+    private long id;
 
     /**
      * Initializes a new task with the specified description.
      * The task is initially marked as not done.
      *
      * @param description The description of the task.
-     * @param tags The tags of the task.
+     * @param tags The tags of the task; a tag that is listed twice is kept once.
      */
     public Task(String description, ArrayList<String> tags) {
         assert description != null : "Description cannot be null";
         this.description = description;
         this.isDone = false;
-        this.tags = tags;
+        this.tagIds = TagDictionary.idsOf(tags);
     }
 
     /**
@@ -37,7 +41,87 @@ public class Task {
         assert description != null : "Description cannot be null";
         this.description = description;
         this.isDone = false;
-        this.tags = new ArrayList<>();
+        this.tagIds = TagDictionary.idsOf(null);
+    }
+
+    /**
+     * Initializes a copy of a task, sharing its description and tag ids, which are never changed in place.
+     *
+     * @param task The task to copy.
+     */
+    protected Task(Task task) {
+        this.description = task.description;
+        this.isDone = task.isDone;
+        this.tagIds = task.tagIds;
+        this.id = task.id;
+    }
+
+    /**
+     * Returns a copy of the task that later changes to the task do not affect, e.g. for a snapshot.
+     *
+     * @return The copy, with the same id.
+     */
+    public Task copy() {
+        return new Task(this);
+    }
+
+    /**
+     * Returns the description of the task.
+     *
+     * @return The description text.
+     */
+    public String getDescription() {
+        return this.description;
+    }
+
+    /**
+     * Returns the stable id of the task, which does not change when other tasks are removed.
+     *
+     * @return The id, or 0 if none has been given yet.
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * Sets the stable id of the task.
+     *
+     * @param id The positive id.
+     */
+    public void setId(long id) {
+        assert id > 0 : "Task ids are positive";
+        this.id = id;
+    }
+
+    /**
+     * Returns whether the task is completed.
+     *
+     * @return True if the task is marked as done.
+     */
+    public boolean isDone() {
+        return this.isDone;
+    }
+
+    /**
+     * Returns the tags attached to the task in the order they were added.
+     *
+     * @return A new list of the tags; changing it does not change the task.
+     */
+    public ArrayList<String> getTags() {
+        ArrayList<String> tags = new ArrayList<>(this.tagIds.length);
+        for (int tagId : this.tagIds) {
+            tags.add(TagDictionary.nameOf(tagId));
+        }
+        return tags;
+    }
+
+    /**
+     * Returns the {@link TagDictionary} ids of the tags attached to the task, in the order they were added.
+     *
+     * @return The ids, which must not be changed.
+     */
+    public int[] getTagIds() {
+        return this.tagIds;
     }
 
     /**
@@ -65,12 +149,53 @@ public class Task {
     }
 
     /**
-     * Add a tag to the task.
+     * Add a tag to the task, unless the task already has it.
      *
      * @param tag The tag we want to attach to the task.
+     * @return True if the tag was added.
      */
-    public void addTag(String tag) {
-        this.tags.add(tag);
+    public boolean addTag(String tag) {
+        int tagId = TagDictionary.idOf(tag);
+        if (positionOf(tagId) >= 0) {
+            return false;
+        }
+        int[] newIds = Arrays.copyOf(this.tagIds, this.tagIds.length + 1);
+        newIds[this.tagIds.length] = tagId;
+        this.tagIds = newIds;
+        return true;
+    }
+
+    /**
+     * Removes a tag from the task.
+     *
+     * @param tag The tag to remove.
+     * @return True if the task had the tag.
+     */
+    public boolean removeTag(String tag) {
+        int position = positionOf(TagDictionary.idOf(tag));
+        if (position < 0) {
+            return false;
+        }
+        int[] newIds = new int[this.tagIds.length - 1];
+        System.arraycopy(this.tagIds, 0, newIds, 0, position);
+        System.arraycopy(this.tagIds, position + 1, newIds, position, newIds.length - position);
+        this.tagIds = newIds;
+        return true;
+    }
+
+    /**
+     * Finds a tag among the tags of the task; a task has few tags, so they are simply scanned.
+     *
+     * @param tagId The id of the tag.
+     * @return The position of the tag, or -1 if the task does not have it.
+     */
+    private int positionOf(int tagId) {
+        for (int i = 0; i < this.tagIds.length; i++) {
+            if (this.tagIds[i] == tagId) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -83,6 +208,16 @@ public class Task {
         return String.format("[%s] %s", this.getStatusIcon(), this.description);
     }
 
+    /**
+     * Returns the text that {@code find} searches: the description and the tags.
+     * Subclasses add their times. Unlike {@link #toString()} it does not change when the task is marked.
+     *
+     * @return The searchable text.
+     */
+    public String toSearchText() {
+        return this.description + " " + this.tagsToString();
+    }
+
     /**
      * Returns a string representation of all the tags of the task.
      *
@@ -90,9 +225,8 @@ public class Task {
      */
     public String tagsToString() {
         StringBuilder builder = new StringBuilder();
-        for (String tag : this.tags) {
-            String hashedTag = "#" + tag;
-            builder.append(hashedTag);
+        for (String tag : getTags()) {
+            builder.append('#').append(tag);
         }
         return builder.toString();
     }
@@ -104,9 +238,8 @@ public class Task {
      */
     public String tagsToFile() {
         StringBuilder builder = new StringBuilder();
-        for (String tag : this.tags) {
-            String modifiedTag = " /#" + tag;
-            builder.append(modifiedTag);
+        for (String tag : getTags()) {
+            builder.append(" /#").append(tag);
         }
         return builder.toString();
     }
@@ -28,6 +28,23 @@ public class Todo extends Task {
         super(description);
     }
 
+    /**
+     * Initializes a copy of a Todo task.
+     *
+     * @param todo The todo item to copy.
+     */
+    protected Todo(Todo todo) {
+        super(todo);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Todo copy() {
+        return new Todo(this);
+    }
+
     /**
      * {@inheritDoc}
      * Prefixes the task representation with a "[T]" to indicate its type.
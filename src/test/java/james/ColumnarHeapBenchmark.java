@@ -0,0 +1,134 @@
+package james;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import james.exception.JamesException;
+import james.storage.StorageFormat;
+import james.task.Deadline;
+import james.task.Todo;
+
+/**
+ * Measures the heap taken by a large task list loaded as Task objects and loaded into columns,
+ * both while loading and once loaded, on a synthetic data file of half todos and half deadlines with
+ * two tags each. Run its main method from the test classpath with a fixed heap, e.g.
+ * {@code java -Xmx2g -cp <test and main classes> james.ColumnarHeapBenchmark 1000000};
+ * it is not part of the test suite.
+ */
+public class ColumnarHeapBenchmark {
+    private static final int DEFAULT_TASK_COUNT = 1_000_000;
+    private static final int GC_ROUNDS = 5;
+
+    /**
+     * Writes the data file in both formats, then loads each in both modes and prints the bytes per task.
+     *
+     * @param args The number of tasks, 1,000,000 if not given.
+     * @throws IOException If the temporary files cannot be created.
+     * @throws JamesException If a data file cannot be written or loaded.
+     */
+    public static void main(String[] args) throws IOException, JamesException {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TASK_COUNT;
+        for (StorageFormat format : StorageFormat.values()) {
+            File file = Files.createTempFile("james-heap", ".dat").toFile();
+            file.deleteOnExit();
+            new Storage(file.getPath(), false, format).saveTasks(createTasks(taskCount));
+
+            long[] objects = measure(file, false, taskCount);
+            long[] columns = measure(file, true, taskCount);
+            System.out.printf("%s: objects %d B/task (peak %d), columns %d B/task (peak %d), %.1fx less%n",
+                    format, objects[0], objects[1], columns[0], columns[1], (double) objects[0] / columns[0]);
+        }
+    }
+
+    /**
+     * Builds a list of half todos and half deadlines, each with two tags.
+     *
+     * @param taskCount The number of tasks.
+     * @return The tasks.
+     */
+    private static TaskList createTasks(int taskCount) {
+        TaskList tasks = new TaskList(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            ArrayList<String> tags = new ArrayList<>(List.of("project" + i % 50, i % 2 == 0 ? "work" : "home"));
+            if (i % 2 == 0) {
+                tasks.addTask(new Todo("read chapter " + i + " of the book", tags));
+            } else {
+                tasks.addTask(new Deadline("return book " + i, tags, LocalDate.of(2026, 1, 1).plusDays(i % 365)));
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Loads the data file once and measures the heap it takes.
+     *
+     * @param file The data file.
+     * @param isColumnar True to load into columns.
+     * @param taskCount The number of tasks in the file.
+     * @return The retained and the peak heap in bytes per task.
+     * @throws JamesException If the file cannot be loaded.
+     */
+    private static long[] measure(File file, boolean isColumnar, int taskCount) throws JamesException {
+        Storage storage = new Storage(file.getPath());
+        storage.setColumnarLoading(isColumnar);
+        long before = usedHeapAfterGc();
+        resetPeakUsage();
+        TaskList tasks = storage.loadTasks();
+        long peak = peakHeapUsage() - before;
+        long retained = usedHeapAfterGc() - before;
+        if (tasks.getSize() != taskCount) {
+            throw new IllegalStateException("Loaded " + tasks.getSize() + " of " + taskCount + " tasks");
+        }
+        storage.close();
+        return new long[] {retained / taskCount, peak / taskCount};
+    }
+
+    /**
+     * Collects garbage until the used heap settles and returns it.
+     *
+     * @return The used heap in bytes.
+     */
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int round = 0; round < GC_ROUNDS; round++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * Starts recording the peak usage of the heap pools afresh.
+     */
+    private static void resetPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the peak usage of the heap pools since they were reset, which is at least
+     * the highest heap usage reached.
+     *
+     * @return The peak heap in bytes.
+     */
+    private static long peakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
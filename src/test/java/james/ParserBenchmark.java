@@ -0,0 +1,136 @@
+package james;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import james.task.Deadline;
+import james.task.Event;
+import james.task.Task;
+import james.task.Todo;
+
+/**
+ * Compares the regex-free {@link Parser#parseLine(String)} with the previous
+ * split-based implementation on a synthetic data file held in memory.
+ * Run its main method from the test classpath, e.g. from the IDE; it is not part of the test suite.
+ */
+public class ParserBenchmark {
+    private static final int LINE_COUNT = 300_000;
+    private static final int ROUNDS = 5;
+
+    /**
+     * Runs both parsers over the same lines several times and prints the timings.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        String[] lines = createLines();
+        verifySameResults(lines);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long legacyNanos = time(lines, true);
+            long scannerNanos = time(lines, false);
+            System.out.printf("round %d: split/regex %d ms, scanner %d ms (%.1fx)%n", round,
+                    legacyNanos / 1_000_000, scannerNanos / 1_000_000, (double) legacyNanos / scannerNanos);
+        }
+    }
+
+    /**
+     * Builds a mix of todo, deadline and event lines, some of them tagged.
+     *
+     * @return The stored lines.
+     */
+    private static String[] createLines() {
+        String[] lines = new String[LINE_COUNT];
+        for (int i = 0; i < LINE_COUNT; i++) {
+            String tags = i % 4 == 0 ? " /#work /#urgent" : "";
+            switch (i % 3) {
+            case 0:
+                lines[i] = "T | " + tags + " | " + (i % 2) + " | read book " + i;
+                break;
+            case 1:
+                lines[i] = "D | " + tags + " | 0 | return book " + i + " | 2026-05-" + (10 + i % 18);
+                break;
+            default:
+                lines[i] = "E | " + tags + " | 1 | project meeting " + i + " | Mon 2pm | 4pm";
+                break;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Checks that both parsers agree on every line before timing them.
+     *
+     * @param lines The stored lines.
+     */
+    private static void verifySameResults(String[] lines) {
+        for (String line : lines) {
+            String expected = parseLineLegacy(line).toFileFormat();
+            String actual = Parser.parseLine(line).toFileFormat();
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Parsers disagree on: " + line);
+            }
+        }
+    }
+
+    /**
+     * Parses every line once with one of the two parsers.
+     *
+     * @param lines The stored lines.
+     * @param isLegacy True to time the split-based parser.
+     * @return The elapsed time in nanoseconds.
+     */
+    private static long time(String[] lines, boolean isLegacy) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (String line : lines) {
+            Task task = isLegacy ? parseLineLegacy(line) : Parser.parseLine(line);
+            checksum += task.isDoneToFile().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum == 0) {
+            System.out.println("unexpected empty result");
+        }
+        return elapsed;
+    }
+
+    /**
+     * The previous implementation of {@link Parser#parseLine(String)}, kept here as the baseline.
+     *
+     * @param line The stored line.
+     * @return The parsed task, or null if the line has too few fields or an unknown type.
+     */
+    private static Task parseLineLegacy(String line) {
+        String[] parts = line.split(" \\| ");
+        if (parts.length < 4) {
+            return null;
+        }
+
+        String[] tagParts = parts[1].split(" /#");
+        ArrayList<String> tags = new ArrayList<>();
+        if (tagParts.length >= 2) {
+            tags.addAll(Arrays.asList(tagParts).subList(1, tagParts.length));
+        }
+
+        Task task;
+        switch (parts[0].toUpperCase()) {
+        case "T":
+            task = new Todo(parts[3], tags);
+            break;
+        case "D":
+            task = new Deadline(parts[3], tags, LocalDate.parse(parts[4], DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+            break;
+        case "E":
+            task = new Event(parts[3], tags, parts[4], parts[5]);
+            break;
+        default:
+            return null;
+        }
+        if (parts[2].equals("1")) {
+            task.mark();
+        }
+        return task;
+    }
+}
@@ -2,16 +2,20 @@ package james;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.lang.reflect.Field;
 import java.time.LocalDate;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
 import james.command.Command;
 import james.command.CreateTaskCommand;
 import james.exception.JamesException;
+import james.task.TagDictionary;
 import james.task.Task;
 
 /**
@@ -114,4 +118,53 @@ public class ParserTest {
         assertTrue(result.contains("May 15 2026") || result.contains("2026-05-15"),
                 "Date should be parsed and formatted correctly");
     }
+
+    /**
+     * Tests that tags, status and both event times are extracted from a stored Event.
+     */
+    @Test
+    public void parseLine_savedTaggedEvent_detailedCheck() {
+        String savedLine = "E |  /#urgent /#work | 1 | project meeting | Mon 2pm | 4pm";
+
+        Task task = Parser.parseLine(savedLine);
+
+        assertEquals("[E][X] project meeting (from: Mon 2pm to 4pm) #urgent#work", task.toString());
+        assertEquals(savedLine, task.toFileFormat(), "Parsing and saving again should be lossless.");
+    }
+
+    /**
+     * Tests that tags loaded from different records share one dictionary entry, repeats are dropped
+     * and a task keeps its tags in the order they were added.
+     */
+    @Test
+    public void parseLine_repeatedTags_internedAndDeduplicated() {
+        Task first = Parser.parseLine("T |  /#home /#chores /#home | 0 | sweep floor");
+        Task second = Parser.parseLine("T |  /#chores | 0 | wash dishes");
+
+        assertEquals("T |  /#home /#chores | 0 | sweep floor", first.toFileFormat());
+        assertEquals(List.of("home", "chores"), first.getTags());
+        assertEquals(List.of("chores"), second.getTags());
+        assertEquals(TagDictionary.idOf("chores"), second.getTagIds()[0]);
+        assertTrue(first.getTags().get(1) == second.getTags().get(0), "Both tasks should share the tag text.");
+        assertFalse(first.addTag("chores"));
+        assertTrue(second.addTag("dusting"));
+        assertTrue(second.addTag("home"));
+        assertEquals(List.of("chores", "dusting", "home"), second.getTags());
+        assertEquals("#chores#dusting#home", second.tagsToString());
+        assertTrue(second.removeTag("dusting"));
+        assertEquals(List.of("chores", "home"), second.getTags());
+        assertArrayEquals(new int[] {TagDictionary.idOf("home"), TagDictionary.idOf("chores")}, first.getTagIds());
+    }
+
+    /**
+     * Tests that malformed records are rejected instead of throwing out of the whole load.
+     */
+    @Test
+    public void parseLine_malformedRecords_returnsNull() {
+        assertNull(Parser.parseLine("T | 0 | legacy row"), "Rows with too few fields are not tasks.");
+        assertNull(Parser.parseLine("D |  | 0 | return book | 2026-13-01"), "Invalid dates are rejected.");
+        assertNull(Parser.parseLine("D |  | 0 | return book"), "Deadlines need a date field.");
+        assertNull(Parser.parseLine("E |  | 0 | party | 8pm"), "Events need both times.");
+        assertNull(Parser.parseLine("X |  | 0 | mystery"), "Unknown types are rejected.");
+    }
 }
@@ -1,19 +1,41 @@
 package james;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import james.exception.JamesException;
+import james.index.TagFilter;
+import james.storage.DataFileWatcher;
+import james.storage.FormatConverter;
+import james.storage.MappedStorageEngine;
+import james.storage.Mutation;
+import james.storage.RecordChecksum;
+import james.storage.RecoveryScanner;
+import james.storage.ShardedStorageEngine;
+import james.storage.StorageEngine;
+import james.storage.StorageFormat;
+import james.storage.SyncReplica;
+import james.task.Deadline;
+import james.task.Event;
+import james.task.Task;
 import james.task.Todo;
 
 /**
@@ -63,6 +85,652 @@ public class StorageTest {
         assertTrue(loadedTasks.getTask(1).toString().contains("manual task 1"));
     }
 
+    @Test
+    public void loadTasks_headerAndBlankLines_skipped() throws JamesException, IOException {
+        Path file = tempDir.resolve("streamed_james.txt");
+        List<String> lines = List.of(
+                "# generation 4",
+                "",
+                "   D |  | 0 | streamed deadline | 2026-05-15   ",
+                "",
+                "E |  | 1 | streamed event | Mon 2pm | 4pm"
+        );
+        Files.write(file, lines);
+
+        TaskList loadedTasks = new Storage(file.toAbsolutePath().toString()).loadTasks();
+
+        assertEquals(2, loadedTasks.getSize(), "Header and blank lines should not become tasks.");
+        assertTrue(loadedTasks.getTask(2).toString().contains("streamed event"));
+    }
+
+    @Test
+    public void loadTasks_parallelChunks_keepFileOrder() throws JamesException, IOException {
+        Path file = tempDir.resolve("parallel_james.txt");
+        List<String> lines = new ArrayList<>();
+        lines.add("# generation 1");
+        for (int i = 1; i <= 60_000; i++) {
+            lines.add("T |  | " + (i % 2) + " | parallel task " + i);
+        }
+        Files.write(file, lines);
+
+        Storage storage = new Storage(file.toAbsolutePath().toString());
+        storage.setParallelLoadThreshold(0);
+        TaskList loadedTasks = storage.loadTasks();
+
+        assertEquals(60_000, loadedTasks.getSize(), "Every line should be parsed exactly once.");
+        for (int i = 1; i <= 60_000; i += 997) {
+            assertTrue(loadedTasks.getTask(i).toString().endsWith("parallel task " + i + " "),
+                    "Chunks should be stitched back in file order.");
+        }
+    }
+
+    @Test
+    public void loadTasks_journaledMutations_replayedOnSnapshot() throws JamesException {
+        File tempFile = tempDir.resolve("journaled_james.txt").toFile();
+        Storage storage = new Storage(tempFile.getAbsolutePath(), true);
+
+        TaskList tasks = new TaskList();
+        tasks.addTask(new Todo("snapshot task"));
+        storage.saveTasks(tasks);
+
+        Todo added = new Todo("journaled task");
+        tasks.addTask(added);
+        storage.saveMutation(tasks, Mutation.add(added));
+        tasks.markTask(2);
+        storage.saveMutation(tasks, Mutation.mark(2));
+        tasks.tagTask(2, "urgent");
+        storage.saveMutation(tasks, Mutation.tag(2, "urgent"));
+        tasks.removeTask(1);
+        storage.saveMutation(tasks, Mutation.delete(1));
+
+        TaskList loadedTasks = new Storage(tempFile.getAbsolutePath(), true).loadTasks();
+
+        assertEquals(1, loadedTasks.getSize(), "Journal records should be replayed on top of the snapshot.");
+        assertEquals("[T][X] journaled task #urgent", loadedTasks.getTask(1).toString());
+    }
+
+    @Test
+    public void saveTasks_journaledMode_foldsJournalIntoSnapshot() throws JamesException {
+        File tempFile = tempDir.resolve("folded_james.txt").toFile();
+        Storage storage = new Storage(tempFile.getAbsolutePath(), true);
+
+        TaskList tasks = new TaskList();
+        Todo added = new Todo("only once");
+        tasks.addTask(added);
+        storage.saveMutation(tasks, Mutation.add(added));
+        storage.saveTasks(tasks);
+
+        TaskList loadedTasks = new Storage(tempFile.getAbsolutePath(), true).loadTasks();
+
+        assertEquals(1, loadedTasks.getSize(), "Records folded into the snapshot must not be replayed again.");
+    }
+
+    @Test
+    public void saveMutation_pastCompactionThreshold_loadsSameTasks() throws JamesException {
+        File tempFile = tempDir.resolve("compacted_james.txt").toFile();
+        Storage storage = new Storage(tempFile.getAbsolutePath(), true);
+        storage.setCompactionThresholds(2, Long.MAX_VALUE);
+
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 7; i++) {
+            Todo added = new Todo("task " + i);
+            tasks.addTask(added);
+            storage.saveMutation(tasks, Mutation.add(added));
+        }
+        tasks.markTask(7);
+        storage.saveMutation(tasks, Mutation.mark(7));
+        storage.saveTasks(tasks);
+
+        TaskList loadedTasks = new Storage(tempFile.getAbsolutePath(), true).loadTasks();
+
+        assertEquals(7, loadedTasks.getSize(), "Compaction should neither lose nor duplicate records.");
+        assertEquals("[T][X] task 7 ", loadedTasks.getTask(7).toString());
+    }
+
+    @Test
+    public void saveTasks_groupCommit_writesAtomicallyWithoutLeftovers() throws JamesException {
+        File tempFile = tempDir.resolve("group_james.txt").toFile();
+        Storage storage = new Storage(tempFile.getAbsolutePath());
+        storage.setGroupCommitWindow(5);
+
+        TaskList tasks = new TaskList();
+        tasks.addTask(new Todo("first save"));
+        storage.saveTasks(tasks);
+        tasks.addTask(new Todo("second save"));
+        storage.saveTasks(tasks);
+
+        assertEquals(2, storage.loadTasks().getSize(), "The newest contents should be durable after saving.");
+        assertEquals(1, tempDir.toFile().list().length, "No temporary file should be left next to the data file.");
+    }
+
+    @Test
+    public void saveMutation_writeBehind_durableAfterFlush() throws JamesException {
+        File tempFile = tempDir.resolve("write_behind_james.txt").toFile();
+        Storage storage = new Storage(tempFile.getAbsolutePath());
+        storage.setWriteBehind(10_000);
+
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 3; i++) {
+            Todo added = new Todo("behind " + i);
+            tasks.addTask(added);
+            storage.saveMutation(tasks, Mutation.add(added));
+        }
+        storage.flush();
+
+        TaskList loadedTasks = new Storage(tempFile.getAbsolutePath()).loadTasks();
+        assertEquals(3, loadedTasks.getSize(), "Flush should write changes without waiting out the staleness bound.");
+    }
+
+    @Test
+    public void saveTasks_binaryFormat_roundTripsAndConvertsToText() throws JamesException, IOException {
+        File binaryFile = tempDir.resolve("binary_james.bin").toFile();
+        File textFile = tempDir.resolve("converted_james.txt").toFile();
+        Storage storage = new Storage(binaryFile.getAbsolutePath(), false, StorageFormat.BINARY);
+        TaskList tasks = new TaskList();
+        tasks.addTask(Parser.parseLine("T |  /#fun | 1 | read book"));
+        tasks.addTask(Parser.parseLine("D |  /#fun /#work | 0 | return book | 2026-05-10"));
+        tasks.addTask(Parser.parseLine("E |  | 1 | project meeting | Mon 2pm | 4pm"));
+        storage.saveTasks(tasks);
+
+        TaskList loadedTasks = new Storage(binaryFile.getAbsolutePath()).loadTasks();
+        assertEquals(3, loadedTasks.getSize());
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(tasks.getTask(i).toFileFormat(), loadedTasks.getTask(i).toFileFormat());
+        }
+
+        FormatConverter.convert(binaryFile, textFile, StorageFormat.TEXT);
+        assertEquals(StorageFormat.toTextLines(tasks, 0), Files.readAllLines(textFile.toPath()),
+                "Converting to text should give the regular text format.");
+    }
+
+    @Test
+    public void saveMutation_inMemoryEngine_loadsSameTasks() throws JamesException {
+        Storage storage = new Storage(StorageEngine.inMemory());
+        TaskList tasks = new TaskList();
+        tasks.addTask(new Todo("first"));
+        storage.saveTasks(tasks);
+
+        Todo added = new Todo("second");
+        tasks.addTask(added);
+        storage.saveMutation(tasks, Mutation.add(added));
+        tasks.markTask(1);
+        storage.saveMutation(tasks, Mutation.mark(1));
+
+        TaskList loadedTasks = storage.loadTasks();
+        assertEquals(tasks.toFileLines(null), loadedTasks.toFileLines(null));
+        assertTrue(loadedTasks.getTask(1) != tasks.getTask(1), "Loaded tasks should be fresh copies.");
+    }
+
+    @Test
+    public void saveMutation_mappedEngine_updatesInPlaceAndVacuums() throws JamesException {
+        String path = tempDir.resolve("mapped_james.db").toString();
+        MappedStorageEngine engine = new MappedStorageEngine(path);
+        Storage storage = new Storage(engine);
+        TaskList tasks = storage.loadTasks();
+        for (int i = 1; i <= 5; i++) {
+            Task added = Parser.parseLine("D |  | 0 | return book " + i + " | 2026-05-1" + i);
+            tasks.addTask(added);
+            storage.saveMutation(tasks, Mutation.add(added));
+        }
+        tasks.markTask(2);
+        storage.saveMutation(tasks, Mutation.mark(2));
+        tasks.tagTask(3, "library");
+        storage.saveMutation(tasks, Mutation.tag(3, "library"));
+        tasks.removeTask(1);
+        storage.saveMutation(tasks, Mutation.delete(1));
+        assertEquals(1, engine.getTombstoneCount());
+
+        TaskList loadedTasks = new Storage(StorageEngine.mapped(path)).loadTasks();
+        assertEquals(tasks.toFileLines(null), loadedTasks.toFileLines(null));
+
+        engine.vacuum();
+        assertEquals(0, engine.getTombstoneCount());
+        assertEquals(tasks.toFileLines(null), new MappedStorageEngine(path).load().toFileLines(null));
+    }
+
+    @Test
+    public void loadTasks_damagedRecords_quarantinedAndCounted() throws JamesException, IOException {
+        Path file = tempDir.resolve("damaged_james.txt");
+        String tampered = RecordChecksum.append("T |  | 0 | original").replace("original", "tampered");
+        List<String> lines = List.of(RecordChecksum.append("T |  | 0 | checked task"), tampered,
+                "X |  | 0 | unknown type", "D |  | 0 | bad date | 2026-13-40", "T |  | 1 | unchecked task");
+        Files.write(file, lines);
+
+        Storage storage = new Storage(file.toString());
+        TaskList loadedTasks = storage.loadTasks();
+        RecoveryScanner recovery = storage.getLastRecovery();
+
+        assertEquals(2, loadedTasks.getSize());
+        assertEquals(1, recovery.getValidCount());
+        assertEquals(1, recovery.getUncheckedCount());
+        assertEquals(1, recovery.getCorruptCount());
+        assertEquals(2, recovery.getMalformedCount());
+        assertEquals(List.of(tampered, "X |  | 0 | unknown type", "D |  | 0 | bad date | 2026-13-40"),
+                Files.readAllLines(tempDir.resolve("damaged_james.txt" + RecoveryScanner.QUARANTINE_SUFFIX)));
+    }
+
+    @Test
+    public void loadTasks_versionedLineWithoutChecksum_loadedUnchecked() throws JamesException, IOException {
+        Path file = tempDir.resolve("versioned_james.txt");
+        Files.write(file, List.of(StorageFormat.VERSION_HEADER + StorageFormat.TEXT_VERSION,
+                RecordChecksum.append("T |  | 0 | checked task"), "T |  | 0 | stripped task"));
+
+        Storage storage = new Storage(file.toString());
+        TaskList loadedTasks = storage.loadTasks();
+
+        assertEquals("T |  | 0 | stripped task", loadedTasks.getTask(2).toFileFormat());
+        assertEquals(1, storage.getLastRecovery().getUncheckedCount());
+        assertEquals(0, storage.getLastRecovery().getCorruptCount());
+        assertFalse(tempDir.resolve("versioned_james.txt" + RecoveryScanner.QUARANTINE_SUFFIX).toFile().exists());
+    }
+
+    @Test
+    public void loadTasks_damagedBinaryAndMappedRecords_othersLoad() throws JamesException, IOException {
+        for (String name : new String[]{"damaged_james.bin", "damaged_james.db"}) {
+            Path file = tempDir.resolve(name);
+            StorageEngine engine = name.endsWith(".bin") ? StorageEngine.binary(file.toString())
+                    : StorageEngine.mapped(file.toString());
+            TaskList tasks = new TaskList();
+            tasks.addTask(Parser.parseLine("T |  | 0 | first task"));
+            tasks.addTask(Parser.parseLine("D |  /#work | 0 | second task | 2026-05-10"));
+            tasks.addTask(Parser.parseLine("T |  | 1 | third task"));
+            new Storage(engine).saveTasks(tasks);
+            engine.close();
+
+            byte[] contents = Files.readAllBytes(file);
+            String text = new String(contents, StandardCharsets.ISO_8859_1);
+            contents[text.indexOf("second")] = 'S';
+            Files.write(file, contents);
+
+            Storage storage = new Storage(name.endsWith(".bin") ? StorageEngine.binary(file.toString())
+                    : StorageEngine.mapped(file.toString()));
+            TaskList loadedTasks = storage.loadTasks();
+            assertEquals(List.of("T |  | 0 | first task", "T |  | 1 | third task"), loadedTasks.toFileLines(null));
+            assertEquals(2, storage.getLastRecovery().getValidCount());
+            assertEquals(1, storage.getLastRecovery().getCorruptCount());
+            List<String> quarantined = Files.readAllLines(tempDir.resolve(name + RecoveryScanner.QUARANTINE_SUFFIX));
+            assertEquals(1, quarantined.size());
+            assertTrue(quarantined.get(0).startsWith("# binary "), quarantined.get(0));
+        }
+    }
+
+    @Test
+    public void loadTasks_legacyRows_upgradedAndRewrittenWithHeader() throws JamesException, IOException {
+        Path file = tempDir.resolve("legacy_james.txt");
+        Files.write(file, List.of("T | 0 | read book", "D | 0 | return book | 2006-01-25",
+                "E | 1 | project meeting | Mon 2pm | 4pm", "T |  /#new | 1 | already current"));
+
+        for (long threshold : new long[]{Long.MAX_VALUE, 0}) {
+            Storage storage = new Storage(file.toString());
+            storage.setParallelLoadThreshold(threshold);
+            TaskList loadedTasks = storage.loadTasks();
+            assertEquals(4, loadedTasks.getSize());
+            assertEquals(3, storage.getLastRecovery().getMigratedCount());
+            assertEquals("E |  | 1 | project meeting | Mon 2pm | 4pm", loadedTasks.getTask(3).toFileFormat());
+        }
+
+        Storage storage = new Storage(file.toString());
+        storage.saveTasks(storage.loadTasks());
+        assertEquals(StorageFormat.VERSION_HEADER + StorageFormat.TEXT_VERSION, Files.readAllLines(file).get(0));
+        assertEquals(4, storage.loadTasks().getSize());
+        assertEquals(0, storage.getLastRecovery().getMigratedCount());
+    }
+
+    @Test
+    public void archiveTasks_doneTasks_movedOutOfHotFileAndLoadedLazily() throws JamesException, IOException {
+        Path file = tempDir.resolve("archived_james.txt");
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 6; i++) {
+            Task task = new Todo("task " + i, new ArrayList<>());
+            if (i % 2 == 0) {
+                task.mark();
+            }
+            tasks.addTask(task);
+        }
+        Storage storage = new Storage(file.toString());
+        storage.saveTasks(tasks);
+        long fullSize = Files.size(file);
+
+        ArrayList<Task> doneTasks = tasks.removeDoneTasks();
+        storage.archiveTasks(tasks, doneTasks);
+
+        assertEquals(3, doneTasks.size());
+        assertTrue(Files.size(file) < fullSize);
+        assertEquals(3, storage.loadTasks().getSize());
+        ArrayList<Task> archivedTasks = new Storage(file.toString()).loadArchivedTasks();
+        assertEquals(List.of("task 0", "task 2", "task 4"),
+                archivedTasks.stream().map(Task::getDescription).toList());
+    }
+
+    @Test
+    public void saveMutation_shardedEngine_rewritesOnlyDirtyShardAndKeepsOrder() throws JamesException, IOException {
+        String path = tempDir.resolve("sharded_james.txt").toString();
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 20; i++) {
+            tasks.addTask(new Todo("task " + i, new ArrayList<>()));
+        }
+        new Storage(path).saveTasks(tasks);
+
+        ShardedStorageEngine engine = new ShardedStorageEngine(path, 4);
+        Storage storage = new Storage(engine);
+        TaskList loadedTasks = storage.loadTasks();
+        storage.saveTasks(loadedTasks);
+        for (int shard = 0; shard < 4; shard++) {
+            assertTrue(engine.getShardFile(shard).setLastModified(1000));
+        }
+
+        loadedTasks.markTask(3);
+        storage.saveMutation(loadedTasks, Mutation.mark(3));
+        int dirtyShard = engine.shardOf(loadedTasks.getTask(3));
+        for (int shard = 0; shard < 4; shard++) {
+            assertEquals(shard != dirtyShard, engine.getShardFile(shard).lastModified() == 1000);
+        }
+
+        loadedTasks.removeTask(1);
+        storage.saveMutation(loadedTasks, Mutation.delete(1));
+        TaskList reloadedTasks = new Storage(new ShardedStorageEngine(path, 4)).loadTasks();
+        assertEquals(loadedTasks.toFileLines(null), reloadedTasks.toFileLines(null));
+        assertEquals(loadedTasks.getTask(1).getId(), reloadedTasks.getTask(1).getId());
+    }
+
+    @Test
+    public void loadTasks_lazyLoading_parsesOnAccessAndSavesSameLines() throws JamesException {
+        String path = tempDir.resolve("lazy_james.txt").toString();
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 10; i++) {
+            tasks.addTask(new Todo("task " + i, new ArrayList<>()));
+        }
+        new Storage(path).saveTasks(tasks);
+
+        Storage storage = new Storage(path);
+        storage.setLazyLoading(true);
+        TaskList lazyTasks = storage.loadTasks();
+        assertTrue(lazyTasks.isLazy());
+        lazyTasks.markTask(4);
+        lazyTasks.removeTask(2);
+        lazyTasks.addTask(new Todo("task 10", new ArrayList<>()));
+        tasks.markTask(4);
+        tasks.removeTask(2);
+        tasks.addTask(new Todo("task 10", new ArrayList<>()));
+        storage.saveTasks(lazyTasks);
+
+        assertTrue(lazyTasks.isLazy());
+        assertEquals(tasks.toFileLines(null), lazyTasks.toFileLines(null));
+        assertEquals(tasks.toFileLines(null), new Storage(path).loadTasks().toFileLines(null));
+        assertEquals(5, lazyTasks.getTask(4).getId());
+        storage.close();
+    }
+
+    @Test
+    public void loadTasks_columnarLoading_createsTasksOnAccessAndSavesSameLines() throws JamesException {
+        String path = tempDir.resolve("columnar_james.txt").toString();
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 200; i++) {
+            ArrayList<String> tags = new ArrayList<>(i % 3 == 0 ? List.of("work", "home") : List.of());
+            if (i % 3 == 1) {
+                tasks.addTask(new Deadline("deadline " + i, tags, LocalDate.of(2026, 1, 1).plusDays(i)));
+            } else if (i % 3 == 2) {
+                tasks.addTask(new Event("event " + i, tags, "2026-10-19 9:00", "2026-10-19 10:00"));
+            } else {
+                tasks.addTask(new Todo("todo " + i, tags));
+            }
+        }
+        tasks.markTask(7);
+        new Storage(path).saveTasks(tasks);
+
+        Storage storage = new Storage(path);
+        storage.setColumnarLoading(true);
+        TaskList columnarTasks = storage.loadTasks();
+        assertTrue(columnarTasks.isLazy());
+        assertEquals(tasks.toFileLines(null), columnarTasks.toFileLines(null));
+        for (int i = 0; i < 120; i++) {
+            columnarTasks.removeTask(2);
+            tasks.removeTask(2);
+        }
+        columnarTasks.markTask(50);
+        tasks.markTask(50);
+
+        assertTrue(columnarTasks.isLazy());
+        assertEquals(tasks.toFileLines(null), columnarTasks.toFileLines(null));
+        assertEquals(tasks.getTask(60).getId(), columnarTasks.getTask(60).getId());
+        assertEquals(tasks.getTask(60).toString(), columnarTasks.getTask(60).toString());
+    }
+
+    @Test
+    public void loadTasks_columnarLoading_answersQueriesWithoutCreatingEveryTask() throws JamesException {
+        String path = tempDir.resolve("columnar_james.bin").toString();
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 300; i++) {
+            ArrayList<String> tags = new ArrayList<>(i % 4 == 0 ? List.of("Work") : List.of("home"));
+            if (i % 2 == 0) {
+                tasks.addTask(new Deadline("return book " + i, tags, LocalDate.of(2026, 1, 1).plusDays(i % 40)));
+            } else {
+                tasks.addTask(new Todo("read book " + i, tags));
+            }
+        }
+        tasks.markTask(5);
+        new Storage(path, false, StorageFormat.BINARY).saveTasks(tasks);
+
+        Storage storage = new Storage(path, false, StorageFormat.BINARY);
+        storage.setColumnarLoading(true);
+        TaskList columnarTasks = storage.loadTasks();
+        for (TaskList list : List.of(tasks, columnarTasks)) {
+            list.removeTask(1);
+            list.markTask(7);
+            list.tagTask(8, "work");
+        }
+        TagFilter filter = TagFilter.parse("#work not #home");
+        LocalDate today = LocalDate.of(2026, 1, 10);
+
+        assertEquals(tasks.findTasks("book 2").toString(), columnarTasks.findTasks("book 2").toString());
+        assertEquals(tasks.filterTasks(filter).toString(), columnarTasks.filterTasks(filter).toString());
+        assertEquals(tasks.findDeadlinesBetween(today, today.plusDays(3)).toString(),
+                columnarTasks.findDeadlinesBetween(today, today.plusDays(3)).toString());
+        assertEquals(tasks.findOverdueTasks(today).toString(), columnarTasks.findOverdueTasks(today).toString());
+        storage.saveTasks(columnarTasks);
+
+        assertTrue(columnarTasks.isLazy());
+        assertEquals(tasks.toFileLines(null), new Storage(path).loadTasks().toFileLines(null));
+    }
+
+    @Test
+    public void applyExternalChanges_editedFile_mergesOnlyChangedRecords() throws JamesException, IOException {
+        Path file = tempDir.resolve("watched_james.txt");
+        Storage storage = new Storage(file.toString());
+        TaskList tasks = storage.loadTasks();
+        for (int i = 0; i < 5; i++) {
+            tasks.addTask(new Todo("task " + i, new ArrayList<>()));
+        }
+        storage.saveTasks(tasks);
+        storage.startWatching(tasks);
+        Task untouched = tasks.getTask(2);
+
+        List<String> lines = new ArrayList<>(Files.readAllLines(file));
+        lines.set(3, RecordChecksum.append("T |  | 1 | task 2"));
+        lines.remove(5);
+        lines.add(2, RecordChecksum.append("T |  | 0 | inserted task"));
+        Files.write(file, lines);
+
+        assertEquals(3, storage.applyExternalChanges(tasks));
+        assertEquals(storage.loadTasks().toFileLines(null), tasks.toFileLines(null));
+        assertTrue(untouched == tasks.getTask(3));
+        assertEquals(3, tasks.getTask(4).getId());
+        assertEquals(0, storage.applyExternalChanges(tasks));
+
+        Files.write(file, List.of("T |  | 0 | written meanwhile"));
+        storage.saveTasks(tasks);
+        assertEquals(List.of("T |  | 0 | written meanwhile"),
+                Files.readAllLines(Path.of(file + DataFileWatcher.CONFLICT_SUFFIX)));
+        assertEquals(file + DataFileWatcher.CONFLICT_SUFFIX, storage.takeConflictFile().getPath());
+        storage.close();
+    }
+
+    @Test
+    public void applyExternalChanges_handEditedFile_mergesEditsAndQuarantinesBadLines()
+            throws JamesException, IOException {
+        Path file = tempDir.resolve("hand_edited_james.txt");
+        Storage storage = new Storage(file.toString());
+        TaskList tasks = storage.loadTasks();
+        for (int i = 0; i < 3; i++) {
+            tasks.addTask(new Todo("task " + i, new ArrayList<>()));
+        }
+        storage.saveTasks(tasks);
+        storage.startWatching(tasks);
+
+        List<String> lines = new ArrayList<>(Files.readAllLines(file));
+        lines.set(2, "T |  | 0 | edited in editor");
+        lines.add("T |  | 0 | new from editor");
+        lines.add("X | not a task");
+        Files.write(file, lines);
+
+        assertEquals(2, storage.applyExternalChanges(tasks));
+        assertEquals("edited in editor", tasks.getTask(2).getDescription());
+        assertEquals("new from editor", tasks.getTask(4).getDescription());
+        assertEquals(1, storage.takeExternalRecovery().getMalformedCount());
+        assertEquals(List.of("X | not a task"),
+                Files.readAllLines(Path.of(file + RecoveryScanner.QUARANTINE_SUFFIX)));
+        storage.saveTasks(tasks);
+        assertEquals(tasks.toFileLines(null), new Storage(file.toString()).loadTasks().toFileLines(null));
+        storage.close();
+    }
+
+    @Test
+    public void applyExternalChanges_afterMutationsAndUnsavedChange_mergesOnlyChangedRecords()
+            throws JamesException, IOException {
+        Path file = tempDir.resolve("watched_mutations_james.txt");
+        Storage storage = new Storage(file.toString());
+        TaskList tasks = storage.loadTasks();
+        storage.startWatching(tasks);
+        for (int i = 0; i < 5; i++) {
+            Task added = new Todo("task " + i, new ArrayList<>());
+            tasks.addTask(added);
+            storage.saveMutation(tasks, Mutation.add(added));
+        }
+        tasks.markTask(2);
+        storage.saveMutation(tasks, Mutation.mark(2));
+        tasks.removeTask(4);
+        storage.saveMutation(tasks, Mutation.delete(4));
+        assertEquals(0, storage.applyExternalChanges(tasks), "James's own saves are not external changes.");
+
+        tasks.addTask(new Todo("unsaved task", new ArrayList<>()));
+        Task untouched = tasks.getTask(1);
+        List<String> lines = new ArrayList<>(Files.readAllLines(file));
+        lines.set(lines.size() - 1, RecordChecksum.append("T |  | 1 | task 4"));
+        Files.write(file, lines);
+
+        assertEquals(2, storage.applyExternalChanges(tasks));
+        assertEquals(storage.loadTasks().toFileLines(null), tasks.toFileLines(null));
+        assertTrue(untouched == tasks.getTask(1));
+        storage.close();
+    }
+
+    @Test
+    public void syncWith_concurrentEdits_exchangesOnlyChangesAndConverges() throws JamesException, IOException {
+        Path laptopFile = tempDir.resolve("laptop").resolve("tasks.txt");
+        Storage laptop = new Storage(laptopFile.toString());
+        TaskList laptopTasks = laptop.loadTasks();
+        for (int i = 0; i < 3; i++) {
+            laptopTasks.addTask(new Todo("task " + i, new ArrayList<>()));
+        }
+        laptop.saveTasks(laptopTasks);
+        Path serverFile = Files.createDirectories(tempDir.resolve("server")).resolve("tasks.txt");
+        Files.copy(laptopFile, serverFile);
+        laptop.syncWith(laptopTasks, serverFile.getParent().toString());
+
+        Storage server = new Storage(serverFile.toString());
+        TaskList serverTasks = server.loadTasks();
+        assertEquals(laptopTasks.toFileLines(null), serverTasks.toFileLines(null));
+        serverTasks.tagTask(1, "home");
+        serverTasks.removeTask(3);
+        serverTasks.addTask(new Todo("server task", new ArrayList<>()));
+        server.saveTasks(serverTasks);
+        laptopTasks.markTask(1);
+        laptopTasks.addTask(new Todo("laptop task", new ArrayList<>()));
+        laptop.saveTasks(laptopTasks);
+
+        SyncReplica.Result result = laptop.syncWith(laptopTasks, serverFile.getParent().toString());
+        assertEquals(3, result.getReceivedCount());
+        assertEquals(2, result.getSentCount());
+        assertEquals(0, laptop.syncWith(laptopTasks, serverFile.toString()).getReceivedCount());
+        assertEquals(4, laptopTasks.getSize());
+        assertTrue(laptopTasks.getTask(1).isDone());
+        assertEquals(List.of("home"), laptopTasks.getTask(1).getTags());
+        assertEquals(laptopTasks.toFileLines(null), new Storage(serverFile.toString()).loadTasks().toFileLines(null));
+        assertEquals(laptopTasks.toFileLines(null), new Storage(laptopFile.toString()).loadTasks().toFileLines(null));
+    }
+
+    @Test
+    public void syncWith_journaledStorage_appendsSyncStateAndJournalsMergedChanges()
+            throws JamesException, IOException {
+        Path laptopFile = tempDir.resolve("journaled_laptop").resolve("tasks.txt");
+        Storage laptop = new Storage(laptopFile.toString(), true);
+        TaskList laptopTasks = laptop.loadTasks();
+        for (int i = 0; i < 3; i++) {
+            laptopTasks.addTask(new Todo("task " + i, new ArrayList<>()));
+        }
+        laptop.saveTasks(laptopTasks);
+        Path serverFile = Files.createFile(Files.createDirectories(tempDir.resolve("journaled_server"))
+                .resolve("tasks.txt"));
+        laptop.syncWith(laptopTasks, serverFile.getParent().toString());
+
+        Storage server = new Storage(serverFile.toString());
+        TaskList serverTasks = server.loadTasks();
+        assertEquals(laptopTasks.toFileLines(null), serverTasks.toFileLines(null));
+        serverTasks.markTask(2);
+        server.saveMutation(serverTasks, Mutation.mark(2));
+        Task removed = serverTasks.getTask(1);
+        serverTasks.removeTask(1);
+        server.saveMutation(serverTasks, Mutation.delete(1, removed));
+
+        Path keysFile = Path.of(laptopFile + SyncReplica.KEYS_SUFFIX);
+        List<String> keyLines = Files.readAllLines(keysFile);
+        laptopTasks.tagTask(3, "home");
+        laptop.saveMutation(laptopTasks, Mutation.tag(3, "home"));
+        List<String> newKeyLines = Files.readAllLines(keysFile);
+        assertEquals(keyLines.size() + 1, newKeyLines.size());
+        assertEquals(keyLines, newKeyLines.subList(0, keyLines.size()), "Sync state should be appended.");
+
+        byte[] snapshot = Files.readAllBytes(laptopFile);
+        SyncReplica.Result result = laptop.syncWith(laptopTasks, serverFile.getParent().toString());
+        assertEquals(2, result.getReceivedCount());
+        assertEquals(1, result.getSentCount());
+        assertTrue(Arrays.equals(snapshot, Files.readAllBytes(laptopFile)),
+                "Merged changes should be journaled instead of rewriting the data file.");
+        assertEquals(List.of("T |  | 1 | task 1", "T |  /#home | 0 | task 2"), laptopTasks.toFileLines(null));
+        assertEquals(laptopTasks.toFileLines(null),
+                new Storage(laptopFile.toString(), true).loadTasks().toFileLines(null));
+        assertEquals(laptopTasks.toFileLines(null), new Storage(serverFile.toString()).loadTasks().toFileLines(null));
+    }
+
+    @Test
+    public void syncWith_missingPeer_throwsExceptionWithoutCreatingFiles() throws JamesException, IOException {
+        Path file = tempDir.resolve("synced").resolve("tasks.txt");
+        Storage storage = new Storage(file.toString());
+        TaskList tasks = storage.loadTasks();
+        Path missingDirectory = tempDir.resolve("typo");
+        Path emptyDirectory = Files.createDirectories(tempDir.resolve("empty"));
+
+        JamesException e = assertThrows(JamesException.class,
+                () -> storage.syncWith(tasks, missingDirectory.toString()));
+        assertTrue(e.getMessage().contains(missingDirectory.toString()), "The message should name the peer.");
+        assertThrows(JamesException.class, () -> storage.syncWith(tasks, emptyDirectory.toString()));
+        assertFalse(Files.exists(missingDirectory));
+        assertEquals(0, emptyDirectory.toFile().list().length, "No sync state should be written for a missing peer.");
+    }
+
+    @Test
+    public void saveTasks_existingFile_keepsPermissions() throws JamesException, IOException {
+        Path file = tempDir.resolve("shared_james.txt");
+        Files.write(file, List.of("T |  | 0 | shared task"));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(file, permissions);
+        Storage storage = new Storage(file.toString());
+
+        storage.saveTasks(storage.loadTasks());
+
+        assertEquals(permissions, Files.getPosixFilePermissions(file));
+    }
+
     @Test
     public void loadTasks_nonExistentFile_throwsException() {
         Storage storage = new Storage(tempDir.resolve("non_existent_file.txt").toString());
@@ -0,0 +1,242 @@
+package james;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import james.exception.InvalidFormatException;
+import james.exception.JamesException;
+import james.index.TagFilter;
+import james.task.Deadline;
+import james.task.Event;
+import james.task.Task;
+import james.task.Todo;
+
+/**
+ * JUnit test class for TaskList.
+ * Verifies that the indexes kept by the list answer queries the same way a scan of the list would.
+ */
+public class TaskListTest {
+
+    private static List<String> descriptionsOf(List<Task> tasks) {
+        List<String> descriptions = new ArrayList<>();
+        for (Task task : tasks) {
+            descriptions.add(task.getDescription());
+        }
+        return descriptions;
+    }
+
+    @Test
+    public void findTasks_indexKeptUpToDate_matchesWordPrefixesInListOrder() {
+        TaskList tasks = new TaskList();
+        tasks.addTask(new Todo("return books"));
+        tasks.addTask(new Todo("read book"));
+        tasks.addTask(new Deadline("submit report", LocalDate.of(2026, 1, 31)));
+        assertEquals(List.of("return books", "read book"), descriptionsOf(tasks.findTasks("BOOK")));
+
+        tasks.tagTask(3, "books");
+        tasks.removeTask(1);
+        tasks.insertTask(1, new Todo("buy bookshelf"));
+        assertEquals(List.of("buy bookshelf", "read book", "submit report"), descriptionsOf(tasks.findTasks("book")));
+        assertEquals(List.of("read book"), descriptionsOf(tasks.findTasks("read bo")));
+        assertEquals(List.of(), descriptionsOf(tasks.findTasks("ead")));
+        assertEquals(List.of("submit report"), descriptionsOf(tasks.findTasks("january 31")));
+        assertEquals(3, tasks.findTasks("").size());
+    }
+
+    @Test
+    public void filterTasks_tagQuery_evaluatesAndOrNotInListOrder() throws JamesException {
+        TaskList tasks = new TaskList();
+        tasks.addTask(new Todo("write report"));
+        tasks.addTask(new Todo("fix sink"));
+        tasks.addTask(new Todo("plan trip"));
+        tasks.tagTask(1, "work");
+        tasks.tagTask(1, "urgent");
+        tasks.tagTask(2, "home");
+        assertEquals(List.of("write report"), descriptionsOf(tasks.filterTasks(TagFilter.parse("#work #URGENT"))));
+
+        tasks.tagTask(2, "urgent");
+        tasks.tagTask(3, "work");
+        tasks.removeTask(1);
+        tasks.insertTask(1, new Todo("call boss"));
+        tasks.tagTask(1, "work");
+        assertEquals(List.of("call boss", "fix sink", "plan trip"),
+                descriptionsOf(tasks.filterTasks(TagFilter.parse("#work or #urgent"))));
+        assertEquals(List.of("call boss", "plan trip"), descriptionsOf(tasks.filterTasks(TagFilter.parse("#work"))));
+        assertEquals(List.of("fix sink"), descriptionsOf(tasks.filterTasks(TagFilter.parse("not #work"))));
+        assertEquals(List.of("fix sink"), descriptionsOf(tasks.filterTasks(TagFilter.parse("#urgent !#work"))));
+    }
+
+    @Test
+    public void filterTasks_quotedMultiWordTag_matchesWholeTag() throws JamesException {
+        TaskList tasks = new TaskList();
+        tasks.addTask(new Todo("pay rent"));
+        tasks.addTask(new Todo("water plants"));
+        tasks.tagTask(1, "urgent thing!!");
+        tasks.tagTask(2, "urgent");
+        assertEquals(List.of("pay rent"),
+                descriptionsOf(tasks.filterTasks(TagFilter.parse("#\"urgent thing!!\""))));
+        assertEquals(List.of("water plants"),
+                descriptionsOf(tasks.filterTasks(TagFilter.parse("#urgent not  #\"urgent thing!!\""))));
+        assertEquals(List.of("pay rent", "water plants"),
+                descriptionsOf(tasks.filterTasks(TagFilter.parse("!#\"urgent thing!!\" or #\"urgent thing!!\""))));
+        assertThrows(InvalidFormatException.class, () -> TagFilter.parse("#\"urgent thing!!"));
+        assertThrows(InvalidFormatException.class, () -> TagFilter.parse("#\"\""));
+    }
+
+    @Test
+    public void findDeadlinesBetween_indexKeptUpToDate_returnsRangeByDueDate() {
+        TaskList tasks = new TaskList();
+        tasks.addTask(new Deadline("pay rent", LocalDate.of(2026, 10, 31)));
+        tasks.addTask(new Todo("read book"));
+        tasks.addTask(new Deadline("file taxes", LocalDate.of(2026, 4, 15)));
+        assertEquals(List.of("file taxes"),
+                descriptionsOf(tasks.findDeadlinesBetween(null, LocalDate.of(2026, 10, 30))));
+
+        tasks.addTask(new Deadline("renew visa", LocalDate.of(2026, 10, 1)));
+        tasks.markTask(3);
+        tasks.removeTask(1);
+        assertEquals(List.of("file taxes", "renew visa"),
+                descriptionsOf(tasks.findDeadlinesBetween(null, LocalDate.of(2026, 10, 31))));
+        assertEquals(List.of("renew visa"),
+                descriptionsOf(tasks.findDeadlinesBetween(LocalDate.of(2026, 5, 1), LocalDate.of(2026, 10, 1))));
+        assertEquals(List.of("renew visa"), descriptionsOf(tasks.findOverdueTasks(LocalDate.of(2026, 10, 2))));
+        assertEquals(List.of(), descriptionsOf(tasks.findOverdueTasks(LocalDate.of(2026, 10, 1))));
+    }
+
+    @Test
+    public void findEventsBetween_intervalTreeKeptUpToDate_returnsOverlapsByStartTime() {
+        TaskList tasks = new TaskList();
+        tasks.addTask(new Event("lecture", "2026-10-19 10:00", "2026-10-19 12:00"));
+        tasks.addTask(new Event("retreat", "2026-10-18", "2026-10-20"));
+        tasks.addTask(new Event("party", "Fri 8pm", "late"));
+        Event lunch = new Event("lunch", "2026-10-19 12:00", "2026-10-19 13:00");
+        assertEquals(List.of("retreat"), descriptionsOf(tasks.findClashingEvents(lunch)));
+
+        tasks.addTask(lunch);
+        tasks.addTask(new Event("exam", "2026-10-21 0900", "2026-10-21 1100"));
+        tasks.removeTask(2);
+        assertEquals(List.of("lecture", "lunch"), descriptionsOf(tasks.findEventsBetween(
+                LocalDateTime.of(2026, 10, 19, 11, 0), LocalDateTime.of(2026, 10, 19, 12, 30))));
+        assertEquals(List.of("lecture", "lunch", "exam"), descriptionsOf(tasks.findEventsBetween(
+                LocalDateTime.of(2026, 10, 19, 0, 0), LocalDateTime.of(2026, 10, 22, 0, 0))));
+        assertEquals(List.of(), descriptionsOf(tasks.findClashingEvents(new Event("walk", "2026-10-19 13:00",
+                "2026-10-19 14:00"))));
+    }
+
+    @Test
+    public void findEventsBetween_boundaryTouchingAndZeroLengthEvents_instantsOverlapHalfOpen() {
+        TaskList tasks = new TaskList();
+        tasks.addTask(new Event("meeting", "2026-10-19 13:00", "2026-10-19 14:00"));
+        tasks.addTask(new Event("call", "2026-10-19 14:00", "2026-10-19 15:00"));
+        tasks.addTask(new Event("alarm", "2026-10-19 14:00", "2026-10-19 14:00"));
+        tasks.addTask(new Event("ping", "2026-10-19 15:00", "2026-10-19 15:00"));
+
+        assertEquals(List.of("meeting"), descriptionsOf(tasks.findEventsBetween(
+                LocalDateTime.of(2026, 10, 19, 13, 0), LocalDateTime.of(2026, 10, 19, 14, 0))));
+        assertEquals(List.of("call", "alarm"), descriptionsOf(tasks.findEventsBetween(
+                LocalDateTime.of(2026, 10, 19, 14, 0), LocalDateTime.of(2026, 10, 19, 14, 0))));
+        assertEquals(List.of("call", "alarm", "ping"), descriptionsOf(tasks.findEventsBetween(
+                LocalDateTime.of(2026, 10, 19, 14, 0), LocalDateTime.of(2026, 10, 19, 15, 30))));
+
+        assertEquals(List.of("call"), descriptionsOf(tasks.findClashingEvents((Event) tasks.getTask(3))));
+        assertEquals(List.of(), descriptionsOf(tasks.findClashingEvents((Event) tasks.getTask(4))));
+        assertEquals(List.of("alarm"), descriptionsOf(tasks.findClashingEvents((Event) tasks.getTask(2))));
+        assertEquals(List.of(), descriptionsOf(tasks.findClashingEvents(new Event("lunch", "2026-10-19 12:00",
+                "2026-10-19 13:00"))));
+    }
+
+    @Test
+    public void removeTask_tombstonedSlots_renumbersAndKeepsIds() {
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 100; i++) {
+            tasks.addTask(new Todo("task " + i));
+        }
+        long lastId = tasks.getTask(100).getId();
+        tasks.removeTask(2);
+        tasks.removeTask(2);
+        assertEquals(98, tasks.getSize());
+        assertEquals("task 4", tasks.getTask(2).getDescription());
+        assertEquals(98, tasks.getTaskNumber(lastId));
+        assertEquals("task 100", tasks.getTaskById(lastId).getDescription());
+
+        for (int i = 0; i < 60; i++) {
+            tasks.removeTask(1);
+        }
+        tasks.addTask(new Todo("task 101"));
+        assertEquals(39, tasks.getSize());
+        assertEquals("task 63", tasks.getTask(1).getDescription());
+        assertEquals(38, tasks.getTaskNumber(lastId));
+        assertEquals("task 101", tasks.getTask(39).getDescription());
+        assertEquals(0, tasks.getTaskNumber(tasks.getTask(1).getId() - 1));
+        assertEquals(39, tasks.getTasks().size());
+    }
+
+    @Test
+    public void snapshot_laterChanges_leaveSnapshotUnchanged() {
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 40; i++) {
+            tasks.addTask(new Todo("task " + i));
+        }
+        TaskListSnapshot before = tasks.snapshot();
+        tasks.markTask(1);
+        tasks.tagTask(2, "work");
+        tasks.removeTask(3);
+        tasks.addTask(new Todo("task 41"));
+        TaskListSnapshot after = tasks.snapshot();
+
+        assertEquals(40, before.getSize());
+        assertFalse(before.getTasks().get(0).isDone());
+        assertEquals("task 3", before.getTasks().get(2).getDescription());
+        assertEquals(40, after.getSize());
+        assertTrue(after.getTasks().get(0).isDone());
+        assertEquals(List.of("work"), after.getTasks().get(1).getTags());
+        assertEquals("task 41", after.getTasks().get(39).getDescription());
+        assertEquals(tasks.toFileLines(null), after.toFileLines());
+        assertEquals(4, after.getVersion() - before.getVersion());
+    }
+
+    @Test
+    public void snapshot_pipeInDescription_listRendersFrozenTasks() {
+        TaskList tasks = new TaskList();
+        tasks.addTask(new Todo("read book"));
+        TaskListSnapshot before = tasks.snapshot();
+        tasks.addTask(new Deadline("pay | rent", LocalDate.of(2026, 1, 2)));
+        TaskListSnapshot after = tasks.snapshot();
+
+        assertEquals("pay | rent", after.getTasks().get(1).getDescription());
+        Ui ui = new Ui("unused");
+        ui.printList(tasks);
+        assertTrue(ui.getAndClearResponse().endsWith("2.[D][ ] pay | rent (by: January 2 2026)"));
+        assertEquals(1, before.getTasks().size());
+    }
+
+    @Test
+    public void snapshot_compactionAndInsertion_keepEarlierSnapshots() {
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 200; i++) {
+            tasks.addTask(new Todo("task " + i));
+        }
+        TaskListSnapshot before = tasks.snapshot();
+        for (int i = 0; i < 100; i++) {
+            tasks.removeTask(1);
+        }
+        tasks.insertTask(1, new Todo("first"));
+        tasks.markTask(2);
+        TaskListSnapshot after = tasks.snapshot();
+
+        assertEquals(200, before.getTasks().size());
+        assertEquals("task 1", before.getTasks().get(0).getDescription());
+        assertFalse(before.getTasks().get(100).isDone());
+        assertEquals(tasks.toFileLines(null), after.toFileLines());
+        assertTrue(after.getTasks().get(1).isDone());
+    }
+}